@@ -0,0 +1,85 @@
+package easytcp.model.packet;
+
+import easytcp.model.PacketStoreBackend;
+import easytcp.model.application.FiltersForm;
+import easytcp.service.BenchmarkCaptures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/* Adding packets to a container and looking them up, on a container holding every packet of a capture as the one
+ * of the capture data does. Adding is timed for the whole capture, each lookup for a single packet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PacketContainerBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int packets;
+  @Param({"HEAP", "OFF_HEAP_COLUMNAR"})
+  public PacketStoreBackend backend;
+  private List<EasyTCPacket> easyTcpPackets;
+  private PacketContainer filledContainer;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var filtersForm = FiltersForm.getInstance();
+    filtersForm.restoreDefaults();
+    var captureData = BenchmarkCaptures.load(BenchmarkCaptures.packetTransformerService(),
+      BenchmarkCaptures.decode(BenchmarkCaptures.traffic(packets)), filtersForm);
+    easyTcpPackets = new ArrayList<>(captureData.getPackets().getPackets());
+    filledContainer = new PacketContainer(backend);
+    easyTcpPackets.forEach(filledContainer::addPacketToContainer);
+    //builds the lookup indexes before measuring, as the first lookup of a capture does
+    filledContainer.findPacketsWithSeqNum(0L, true);
+  }
+
+  //the packet to look up, going through the capture so lookups are not answered from the same cache lines
+  private EasyTCPacket nextPacket() {
+    next = (next + 7919) % easyTcpPackets.size();
+    return easyTcpPackets.get(next);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public PacketContainer addPacketToContainer() {
+    //new columns as a new capture has, otherwise the packets already in the shared columns are not written again
+    PacketContainer.resetSharedColumns();
+    var packetContainer = new PacketContainer(backend);
+    for (var easyTcpPacket : easyTcpPackets) {
+      packetContainer.addPacketToContainer(easyTcpPacket);
+    }
+    return packetContainer;
+  }
+
+  @Benchmark
+  public List<EasyTCPacket> findPacketsWithSeqNum() {
+    var packet = nextPacket();
+    return filledContainer.findPacketsWithSeqNum(packet.getSequenceNumber(), packet.getOutgoingPacket());
+  }
+
+  @Benchmark
+  public Optional<EasyTCPacket> findLatestPacketWithSeqNumberLessThan() {
+    var packet = nextPacket();
+    return filledContainer.findLatestPacketWithSeqNumberLessThan(packet.getAckNumber(), !packet.getOutgoingPacket());
+  }
+
+  @Benchmark
+  public Optional<EasyTCPacket> findPreviousPacketReceived() {
+    return filledContainer.findPreviousPacketReceived(nextPacket());
+  }
+
+  @Benchmark
+  public Optional<EasyTCPacket> findPacketWith() {
+    var packet = nextPacket();
+    return filledContainer.findPacketWith(packet.getSequenceNumber(), packet.getAckNumber(),
+      packet.getDataPayloadLength(), packet.getTcpFlagsDisplayable());
+  }
+}
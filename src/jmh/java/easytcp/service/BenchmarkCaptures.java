@@ -0,0 +1,75 @@
+package easytcp.service;
+
+import easytcp.TrafficGenerator;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.TcpPacket;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Captures for the benchmarks, from the traffic generator of the tests with its default mix of conversations.
+ */
+public final class BenchmarkCaptures {
+  //the client sends one ACK for every two segments of a transfer, so a segment takes about one and a half packets
+  private static final double PACKETS_PER_SEGMENT = 1.5;
+
+  //the decoded pcap4j packets of a frame, as the file and live readers hand them to the transformer
+  public record DecodedFrame(IpPacket ipPacket, TcpPacket tcpPacket, Timestamp timestamp) {}
+
+  private BenchmarkCaptures() {
+  }
+
+  /* Traffic of the given number of packets, the last connections cut short
+   */
+  public static TrafficGenerator traffic(int packets) {
+    return new TrafficGenerator()
+      .connections(Math.min(TrafficGenerator.MAX_CONNECTIONS, packets))
+      .maxPackets(packets);
+  }
+
+  /* Traffic of a single connection transferring as many segments as fit in the given number of packets
+   */
+  public static TrafficGenerator singleConnection(int packets) {
+    var segments = Math.max(1, (int) (packets / PACKETS_PER_SEGMENT));
+    return new TrafficGenerator()
+      .connections(1)
+      .bulkSegments(segments, segments)
+      .maxPackets(packets);
+  }
+
+  public static List<DecodedFrame> decode(TrafficGenerator trafficGenerator) {
+    var decodedFrames = new ArrayList<DecodedFrame>();
+    for (var packet : trafficGenerator) {
+      var ipPacket = packet.ipPacket();
+      decodedFrames.add(new DecodedFrame(ipPacket, ipPacket.get(TcpPacket.class), packet.timestamp()));
+    }
+    return decodedFrames;
+  }
+
+  /* A transformer whose hostnames are made up straight away, so the benchmarks do not depend on the network
+   */
+  public static PacketTransformerService packetTransformerService() {
+    var hostnameResolverService = new HostnameResolverService(1, Integer.MAX_VALUE, 1_000_000,
+      Duration.ofHours(1), Duration.ofHours(1), address -> "host-" + address.getHostAddress(), System::nanoTime);
+    return new PacketTransformerService(hostnameResolverService);
+  }
+
+  /* Transforms the frames into the capture data, as reading a file does
+   */
+  public static CaptureData load(PacketTransformerService packetTransformerService,
+                                 List<DecodedFrame> decodedFrames,
+                                 FiltersForm filtersForm) {
+    var captureData = CaptureData.getInstance();
+    captureData.clear();
+    for (var decodedFrame : decodedFrames) {
+      var easyTcpPacket = packetTransformerService.fromPackets(decodedFrame.ipPacket(), decodedFrame.tcpPacket(),
+        decodedFrame.timestamp(), captureData, filtersForm);
+      captureData.getPackets().addPacketToContainer(easyTcpPacket);
+    }
+    return captureData;
+  }
+}
@@ -0,0 +1,118 @@
+package easytcp.service;
+
+import easytcp.model.IPprotocol;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.EasyTCPacket;
+
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/* Measures the throughput of setting up the connections of packets with 1 to N threads, each thread taking the
+ * packets of its own share of the connections as the decode workers of the capture pipeline do. The packets are
+ * shared out before the clock starts, so each thread only goes through its own.
+ * Run with ./gradlew connectionAssemblyBenchmark
+ */
+public class ConnectionAssemblyBenchmark {
+  private static final int CONNECTIONS = 10_000;
+  private static final int PACKETS_PER_CONNECTION = 50;
+  private static final int ROUNDS = 5;
+
+  private record PacketToTransform(int sequence, InetAddress source, int sourcePort,
+                                   InetAddress destination, int destinationPort) {}
+
+  public static void main(String[] args) throws Exception {
+    var maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    //hostnames are resolved straight away, so the benchmark does not depend on the network
+    var hostnameResolverService = new HostnameResolverService(1, Integer.MAX_VALUE, CONNECTIONS * 2,
+      Duration.ofHours(1), Duration.ofHours(1), address -> "host-" + address.getHostAddress(), System::nanoTime);
+    var packetTransformerService = new PacketTransformerService(hostnameResolverService);
+    var packets = createPackets();
+    System.out.printf("%d connections, %d packets%n", CONNECTIONS, CONNECTIONS * PACKETS_PER_CONNECTION);
+    double singleThreaded = 0;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      var best = Double.MAX_VALUE;
+      for (int round = 0; round < ROUNDS; round++) {
+        best = Math.min(best, run(packetTransformerService, packets, threads));
+      }
+      var packetsPerSecond = packets.size() / best;
+      if (threads == 1) {
+        singleThreaded = packetsPerSecond;
+      }
+      System.out.printf("%2d threads: %,12.0f packets/s, %.2fx%n", threads, packetsPerSecond,
+        packetsPerSecond / singleThreaded);
+    }
+    System.exit(0);
+  }
+
+  private static List<PacketToTransform> createPackets() throws Exception {
+    var client = InetAddress.getByName("192.168.0.2");
+    var servers = new InetAddress[100];
+    for (int i = 0; i < servers.length; i++) {
+      servers[i] = InetAddress.getByAddress(new byte[] {10, 0, (byte) (i / 256), (byte) i});
+    }
+    var packets = new ArrayList<PacketToTransform>(CONNECTIONS * PACKETS_PER_CONNECTION);
+    for (int i = 0; i < PACKETS_PER_CONNECTION; i++) {
+      for (int connection = 0; connection < CONNECTIONS; connection++) {
+        var server = servers[connection % servers.length];
+        var clientPort = 10_000 + connection;
+        var sequence = packets.size();
+        packets.add(i % 2 == 0
+          ? new PacketToTransform(sequence, client, clientPort, server, 443)
+          : new PacketToTransform(sequence, server, 443, client, clientPort));
+      }
+    }
+    return packets;
+  }
+
+  //returns the seconds taken to transform the packets
+  private static double run(PacketTransformerService packetTransformerService,
+                            List<PacketToTransform> packets,
+                            int threads) throws Exception {
+    var captureData = CaptureData.getInstance();
+    captureData.clear();
+    var filtersForm = FiltersForm.getInstance();
+    //the packets of a connection always go to the same thread, in the order they were captured
+    var shares = new ArrayList<List<PacketToTransform>>();
+    for (int thread = 0; thread < threads; thread++) {
+      shares.add(new ArrayList<>(packets.size() / threads + 1));
+    }
+    for (var packet : packets) {
+      shares.get((packet.sequence() % CONNECTIONS) % threads).add(packet);
+    }
+    var executor = Executors.newFixedThreadPool(threads);
+    var start = new CountDownLatch(1);
+    var tasks = new ArrayList<Future<?>>();
+    for (var share : shares) {
+      tasks.add(executor.submit(() -> {
+        start.await();
+        for (var packet : share) {
+          var easyTcpPacket = new EasyTCPacket();
+          easyTcpPacket.setiPprotocol(IPprotocol.IPV4);
+          easyTcpPacket.setSequenceNumber((long) packet.sequence());
+          easyTcpPacket.setAckNumber(1L);
+          easyTcpPacket.setTcpFlagBits(EasyTCPacket.toFlagBits(false, true, false, false, false, false));
+          easyTcpPacket.setTimestamp(new Timestamp(packet.sequence()));
+          packetTransformerService.fromDecodedPacket(easyTcpPacket, packet.source(), packet.sourcePort(),
+            packet.destination(), packet.destinationPort(), captureData, filtersForm);
+        }
+        return null;
+      }));
+    }
+    var startTime = System.nanoTime();
+    start.countDown();
+    for (var task : tasks) {
+      task.get(10, TimeUnit.MINUTES);
+    }
+    var seconds = (System.nanoTime() - startTime) / 1e9;
+    executor.shutdown();
+    return seconds;
+  }
+}
@@ -0,0 +1,37 @@
+package easytcp.service;
+
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.TCPConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/* Time to describe a connection in the connection information panel, for a single connection of a growing number
+ * of packets, as a long transfer has.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConnectionDisplayBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int packets;
+  private final ConnectionDisplayService connectionDisplayService = new ConnectionDisplayService();
+  private TCPConnection tcpConnection;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var filtersForm = FiltersForm.getInstance();
+    filtersForm.restoreDefaults();
+    var captureData = BenchmarkCaptures.load(BenchmarkCaptures.packetTransformerService(),
+      BenchmarkCaptures.decode(BenchmarkCaptures.singleConnection(packets)), filtersForm);
+    tcpConnection = captureData.getTcpConnections().get(0);
+  }
+
+  @Benchmark
+  public String getConnectionInformation() {
+    return connectionDisplayService.getConnectionInformation(tcpConnection);
+  }
+}
@@ -0,0 +1,56 @@
+package easytcp.service;
+
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.EasyTCPacket;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Time to filter and format every packet of a capture, as the packet log does when it is rebuilt.
+ * The host filter matches the IPv4 connections of one server in 254, the case the connection index helps with most.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PacketDisplayBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int packets;
+  @Param({"", "198.51.100.250"})
+  public String hostSelected;
+  private final PacketDisplayService packetDisplayService = new PacketDisplayService();
+  private List<EasyTCPacket> easyTcpPackets;
+  private FiltersForm filtersForm;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    filtersForm = FiltersForm.getInstance();
+    filtersForm.restoreDefaults();
+    var captureData = BenchmarkCaptures.load(BenchmarkCaptures.packetTransformerService(),
+      BenchmarkCaptures.decode(BenchmarkCaptures.traffic(packets)), filtersForm);
+    easyTcpPackets = captureData.getPackets().getPackets();
+    filtersForm.setHostSelected(hostSelected);
+  }
+
+  @Benchmark
+  public int isVisible() {
+    var visible = 0;
+    for (var easyTcpPacket : easyTcpPackets) {
+      if (packetDisplayService.isVisible(easyTcpPacket, filtersForm)) {
+        visible++;
+      }
+    }
+    return visible;
+  }
+
+  @Benchmark
+  public void toLogRow(Blackhole blackhole) {
+    for (var easyTcpPacket : easyTcpPackets) {
+      blackhole.consume(packetDisplayService.toLogRow(easyTcpPacket, filtersForm));
+    }
+  }
+}
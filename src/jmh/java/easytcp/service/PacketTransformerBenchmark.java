@@ -0,0 +1,38 @@
+package easytcp.service;
+
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Time to transform a whole capture of decoded pcap4j packets into packets and connections, which is what reading
+ * a file or a live capture spends most of its time on once the frames are decoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PacketTransformerBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int packets;
+  private PacketTransformerService packetTransformerService;
+  private List<BenchmarkCaptures.DecodedFrame> decodedFrames;
+  private FiltersForm filtersForm;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    packetTransformerService = BenchmarkCaptures.packetTransformerService();
+    decodedFrames = BenchmarkCaptures.decode(BenchmarkCaptures.traffic(packets));
+    filtersForm = FiltersForm.getInstance();
+    filtersForm.restoreDefaults();
+  }
+
+  @Benchmark
+  public CaptureData fromPackets() {
+    return BenchmarkCaptures.load(packetTransformerService, decodedFrames, filtersForm);
+  }
+}
@@ -0,0 +1,76 @@
+package easytcp.service.capture;
+
+import easytcp.model.CaptureStatus;
+import easytcp.model.FileReaderBackend;
+import easytcp.model.application.ApplicationStatus;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.service.BenchmarkCaptures;
+import easytcp.service.PacketTransformerService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/* Time to read a capture file into the capture data, with either file reader, the same way opening a file does
+ * but on the benchmark thread. The capture is the sample file of the repository or a synthetic capture of the
+ * given number of packets, written to a temporary file before the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileIngestBenchmark {
+  private static final String SYNTHETIC = "synthetic-";
+  @Param({"testPcapFile.pcap", "synthetic-10000", "synthetic-100000"})
+  public String capture;
+  @Param({"LIBPCAP", "MEMORY_MAPPED"})
+  public FileReaderBackend backend;
+  private PacketTransformerService packetTransformerService;
+  private MappedPcapFileReader mappedPcapFileReader;
+  private FiltersForm filtersForm;
+  private File file;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    packetTransformerService = BenchmarkCaptures.packetTransformerService();
+    mappedPcapFileReader = new MappedPcapFileReader(packetTransformerService);
+    filtersForm = FiltersForm.getInstance();
+    filtersForm.restoreDefaults();
+    ApplicationStatus.getStatus().setMethodOfCapture(CaptureStatus.READING_FROM_FILE);
+    if (capture.startsWith(SYNTHETIC)) {
+      var packets = Integer.parseInt(capture.substring(SYNTHETIC.length()));
+      file = Files.createTempFile("easytcp-benchmark", ".pcap").toFile();
+      file.deleteOnExit();
+      BenchmarkCaptures.traffic(packets).writePcap(file.toPath());
+    } else {
+      //relative to the project directory, which the jmh task runs in
+      file = new File(capture);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (capture.startsWith(SYNTHETIC)) {
+      file.delete();
+    }
+  }
+
+  @Benchmark
+  public CaptureData readFile() throws Exception {
+    var captureData = CaptureData.getInstance();
+    captureData.clear();
+    if (backend == FileReaderBackend.MEMORY_MAPPED) {
+      mappedPcapFileReader.readFile(file, captureData, filtersForm, bytesRead -> {});
+    } else {
+      var handle = PcapFileReaderService.openOffline(file);
+      handle.loop(Integer.MAX_VALUE,
+        new FilePacketListener(packetTransformerService, handle, captureData, filtersForm, bytesRead -> {}));
+      handle.close();
+    }
+    return captureData;
+  }
+}
@@ -0,0 +1,38 @@
+package easytcp.model;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/* Where and how live captures are written to disk as the packets arrive, like tcpdump -w with -C, -G and -W.
+ * A new file is started when the current one would grow past maxFileBytes or has been open for rotationInterval,
+ * a zero for either turns that limit off. Only the last fileCount files are kept, the oldest being overwritten.
+ */
+public record CaptureFileSettings(Path directory, String fileNamePrefix, long maxFileBytes,
+                                  Duration rotationInterval, int fileCount) {
+  public static final String DEFAULT_FILE_NAME_PREFIX = "easytcp-capture";
+
+  public CaptureFileSettings {
+    if (directory == null) {
+      throw new IllegalArgumentException("No directory for the capture files");
+    }
+    if (fileNamePrefix == null || fileNamePrefix.isBlank()) {
+      throw new IllegalArgumentException("No name for the capture files");
+    }
+    if (maxFileBytes < 0) {
+      throw new IllegalArgumentException("Maximum file size cannot be negative");
+    }
+    if (rotationInterval == null || rotationInterval.isNegative()) {
+      throw new IllegalArgumentException("Rotation interval cannot be negative");
+    }
+    if (fileCount < 1) {
+      throw new IllegalArgumentException("At least one capture file is needed");
+    }
+  }
+
+  /* The file at the given position of the ring, numbered from 0 like tcpdump does.
+   */
+  public Path fileAt(int index) {
+    var digits = String.valueOf(fileCount - 1).length();
+    return directory.resolve(("%s%0" + digits + "d.pcap").formatted(fileNamePrefix, index));
+  }
+}
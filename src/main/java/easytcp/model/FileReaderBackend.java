@@ -0,0 +1,8 @@
+package easytcp.model;
+
+/* Enum indicating how capture files are read.
+ */
+public enum FileReaderBackend {
+  LIBPCAP, // through libpcap and pcap4j, supports BPF filters
+  MEMORY_MAPPED // decoded directly from the memory mapped file, faster for large files
+}
@@ -0,0 +1,8 @@
+package easytcp.model;
+
+/* Enum indicating how the packets of a capture are held in memory.
+ */
+public enum PacketStoreBackend {
+  HEAP, // one object per packet
+  OFF_HEAP_COLUMNAR // one off-heap column per header field, packets are only created as objects when read
+}
@@ -1,10 +1,17 @@
 package easytcp.model;
 
+import easytcp.model.packet.TCPConnection;
 import org.pcap4j.packet.IpPacket;
 import org.pcap4j.packet.TcpPacket;
 
 import java.sql.Timestamp;
 
 
-public record PcapCaptureData(TcpPacket tcpPacket, IpPacket ipPacket, Timestamp timestamp) {
+/* A captured packet in its pcap4j format, with the connection it was found to belong to once it has been transformed,
+ * so the copies of a connection's packets can be let go together with the connection's packets.
+ */
+public record PcapCaptureData(TcpPacket tcpPacket, IpPacket ipPacket, Timestamp timestamp, TCPConnection tcpConnection) {
+  public PcapCaptureData(TcpPacket tcpPacket, IpPacket ipPacket, Timestamp timestamp) {
+    this(tcpPacket, ipPacket, timestamp, null);
+  }
 }
@@ -1,9 +1,14 @@
 package easytcp.model.application;
 
+import easytcp.model.CaptureFileSettings;
 import easytcp.model.CaptureStatus;
+import easytcp.model.FileReaderBackend;
+import easytcp.model.PacketStoreBackend;
 
 import java.awt.*;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tracks the current status of EasyTCP
@@ -11,9 +16,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ApplicationStatus {
   private static ApplicationStatus currentApplicationStatus;
   private CaptureStatus methodOfCapture;
+  private volatile FileReaderBackend fileReaderBackend = FileReaderBackend.LIBPCAP;
+  private volatile PacketStoreBackend packetStoreBackend = PacketStoreBackend.HEAP;
+  private volatile List<String> localNetworks = LocalAddressClassifier.DEFAULT_LOCAL_NETWORKS;
+  private volatile CaptureFileSettings captureFileSettings; // null when live captures are not written to disk
+  private volatile long memoryBudgetBytes; // 0 when live captures keep every packet
   private Dimension frameDimension;
   private final AtomicBoolean isLiveCapturing = new AtomicBoolean(false);
   private final AtomicBoolean isLoading = new AtomicBoolean(false);
+  private final AtomicInteger loadingProgress = new AtomicInteger(0); // percentage of the file read so far
 
   private ApplicationStatus() {
   }
@@ -49,6 +60,54 @@ public class ApplicationStatus {
     isLoading.set(loading);
   }
 
+  public int getLoadingProgress() {
+    return loadingProgress.get();
+  }
+
+  public void setLoadingProgress(int percentage) {
+    loadingProgress.set(percentage);
+  }
+
+  public FileReaderBackend getFileReaderBackend() {
+    return fileReaderBackend;
+  }
+
+  public void setFileReaderBackend(FileReaderBackend fileReaderBackend) {
+    this.fileReaderBackend = fileReaderBackend;
+  }
+
+  public PacketStoreBackend getPacketStoreBackend() {
+    return packetStoreBackend;
+  }
+
+  public void setPacketStoreBackend(PacketStoreBackend packetStoreBackend) {
+    this.packetStoreBackend = packetStoreBackend;
+  }
+
+  public List<String> getLocalNetworks() {
+    return localNetworks;
+  }
+
+  public void setLocalNetworks(List<String> localNetworks) {
+    this.localNetworks = List.copyOf(localNetworks);
+  }
+
+  public CaptureFileSettings getCaptureFileSettings() {
+    return captureFileSettings;
+  }
+
+  public void setCaptureFileSettings(CaptureFileSettings captureFileSettings) {
+    this.captureFileSettings = captureFileSettings;
+  }
+
+  public long getMemoryBudgetBytes() {
+    return memoryBudgetBytes;
+  }
+
+  public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+    this.memoryBudgetBytes = memoryBudgetBytes;
+  }
+
   public Dimension getFrameDimension() {
     return frameDimension;
   }
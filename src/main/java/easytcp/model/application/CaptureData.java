@@ -2,20 +2,29 @@ package easytcp.model.application;
 
 import easytcp.model.packet.*;
 
-import java.util.ArrayList;
+import java.io.File;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /*Singleton class to store the capture data
  */
 public class CaptureData {
   private static CaptureData captureData;
-  private final ConcurrentHashMap<String, String> resolvedHostnames = new ConcurrentHashMap<>();
   private final PacketContainer packets = new PacketContainer();
-  private final ConcurrentHashMap<ConnectionAddresses, TCPConnection> tcpConnectionMap = new ConcurrentHashMap<>();
+  private final ConnectionTable tcpConnections = new ConnectionTable();
+  //the connections by their ports, addresses and hostnames, for filters to find their connections without the packets
+  private final ConnectionIndex connectionIndex = new ConnectionIndex();
+  // the file the packets were read from and the filter they were read with, so it can be saved again later
+  private volatile File sourceFile;
+  private volatile String sourceFilter;
+  //built on the first packet of a capture, as the interface and local networks are known by then
+  private volatile LocalAddressClassifier localAddressClassifier;
+  //packets let go of to keep a live capture within its memory budget, their connections are kept
+  private final LongAdder evictedPackets = new LongAdder();
+  private final LongAdder evictedConnections = new LongAdder();
 
   private CaptureData() {
   }
@@ -30,33 +39,115 @@ public class CaptureData {
   }
 
   public long getTcpConnectionsEstablished() {
-    return tcpConnectionMap.keySet().size();
+    return tcpConnections.size();
   }
 
   public List<TCPConnection> getTcpConnectionsWithStatus(Set<ConnectionStatus> statusSet) {
     //gets tcp connections with a particular status
-    return new ArrayList<>(tcpConnectionMap.values())
+    return tcpConnections.values()
       .stream()
       .filter(tcpConnection ->
         tcpConnection.getConnectionStatus() != null && statusSet.contains(tcpConnection.getConnectionStatus()))
       .toList();
   }
 
-  public ConcurrentMap<String, String> getResolvedHostnames() {
-    return resolvedHostnames;
-  }
-
   public PacketContainer getPackets() {
     return packets;
   }
 
-  public ConcurrentMap<ConnectionAddresses, TCPConnection> getTcpConnectionMap() {
-    return tcpConnectionMap;
+  //Gets the connections of the capture, in the order they were first seen
+  public List<TCPConnection> getTcpConnections() {
+    return tcpConnections.values();
+  }
+
+  //Gets the connection between the two addresses, in either direction, or null if there is none yet
+  public TCPConnection getTcpConnection(InternetAddress one, InternetAddress two) {
+    return tcpConnections.get(one, two);
+  }
+
+  /* Gets the connection between the two addresses, creating, storing and indexing it if this is the first packet
+   * seen between them. Safe to call from several threads, a connection is only ever created once.
+   */
+  public TCPConnection getOrAddTcpConnection(InternetAddress source, InternetAddress destination) {
+    return tcpConnections.computeIfAbsent(source, destination, () -> {
+      var tcpConnection = new TCPConnection();
+      tcpConnection.setConnectionAddresses(new ConnectionAddresses(source, destination));
+      connectionIndex.add(tcpConnection);
+      return tcpConnection;
+    });
+  }
+
+  /* Stores a connection made elsewhere and indexes it, unless there already is one between its addresses.
+   */
+  public void addTcpConnection(TCPConnection tcpConnection) {
+    var connectionAddresses = tcpConnection.getConnectionAddresses();
+    tcpConnections.computeIfAbsent(connectionAddresses.addressOne(), connectionAddresses.addressTwo(), () -> {
+      connectionIndex.add(tcpConnection);
+      return tcpConnection;
+    });
+  }
+
+  /* Finds the connections which can have packets matching the filter through the connection index.
+   * Empty when the filter does not narrow down the connections, so the packets have to be tested one by one.
+   */
+  public Optional<Set<TCPConnection>> findConnectionsMatching(PacketFilter packetFilter) {
+    return packetFilter.selectConnections(connectionIndex);
+  }
+
+  /* Gets the classifier telling which addresses of the capture are local, building it on the first call of a capture
+   * from the capturing interface and the local networks of the application status.
+   */
+  public LocalAddressClassifier getLocalAddressClassifier(FiltersForm filtersForm) {
+    var classifier = localAddressClassifier;
+    if (classifier == null) {
+      synchronized (this) {
+        classifier = localAddressClassifier;
+        if (classifier == null) {
+          classifier = LocalAddressClassifier.forCapture(ApplicationStatus.getStatus(), filtersForm);
+          localAddressClassifier = classifier;
+        }
+      }
+    }
+    return classifier;
+  }
+
+  public void recordEviction(int connections, long packets) {
+    evictedConnections.add(connections);
+    evictedPackets.add(packets);
+  }
+
+  public long getEvictedPackets() {
+    return evictedPackets.sum();
+  }
+
+  public long getEvictedConnections() {
+    return evictedConnections.sum();
+  }
+
+  public File getSourceFile() {
+    return sourceFile;
+  }
+
+  public String getSourceFilter() {
+    return sourceFilter;
+  }
+
+  public void setSource(File sourceFile, String sourceFilter) {
+    this.sourceFile = sourceFile;
+    this.sourceFilter = sourceFilter;
   }
 
   public void clear() {
-    // notably does not clear the resolved hostnames map
+    // notably does not clear the resolved hostnames, they are cached by the resolver across captures
+    //the packets of the next capture are written to new columns, if they are kept in columns
+    PacketContainer.resetSharedColumns();
     this.packets.clearPackets();
-    this.tcpConnectionMap.clear();
+    this.tcpConnections.clear();
+    this.connectionIndex.clear();
+    this.sourceFile = null;
+    this.sourceFilter = null;
+    this.localAddressClassifier = null;
+    this.evictedPackets.reset();
+    this.evictedConnections.reset();
   }
 }
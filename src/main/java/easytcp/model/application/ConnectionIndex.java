@@ -0,0 +1,108 @@
+package easytcp.model.application;
+
+import easytcp.model.packet.InternetAddress;
+import easytcp.model.packet.TCPConnection;
+
+import java.util.*;
+
+/* Inverted indexes from the ports, numeric addresses and resolved hostnames of the connections of a capture to the
+ * connections, kept up to date as connections are created. Host and port filters select their connections through
+ * these rather than by testing every packet, so they take time with the number of distinct addresses and ports
+ * rather than the number of packets. Hostnames are resolved in the background, so addresses without one are kept
+ * aside and moved into the hostname index once theirs is known.
+ */
+final class ConnectionIndex {
+  private final NavigableMap<Integer, List<TCPConnection>> byPort = new TreeMap<>();
+  private final Map<String, List<TCPConnection>> byAddress = new HashMap<>();
+  private final Map<String, List<TCPConnection>> byHostName = new HashMap<>();
+  private final List<AddressOfConnection> unresolved = new ArrayList<>();
+
+  private record AddressOfConnection(InternetAddress address, TCPConnection tcpConnection) {}
+
+  synchronized void add(TCPConnection tcpConnection) {
+    var connectionAddresses = tcpConnection.getConnectionAddresses();
+    addAddress(connectionAddresses.addressOne(), tcpConnection);
+    if (connectionAddresses.addressTwo() != connectionAddresses.addressOne()) {
+      addAddress(connectionAddresses.addressTwo(), tcpConnection);
+    }
+  }
+
+  private void addAddress(InternetAddress address, TCPConnection tcpConnection) {
+    if (address.getPort() != null) {
+      byPort.computeIfAbsent(address.getPort(), port -> new ArrayList<>()).add(tcpConnection);
+    }
+    if (address.getAlphanumericalAddress() != null) {
+      byAddress.computeIfAbsent(address.getAlphanumericalAddress(), key -> new ArrayList<>()).add(tcpConnection);
+    }
+    var addressOfConnection = new AddressOfConnection(address, tcpConnection);
+    if (!indexHostName(addressOfConnection)) {
+      unresolved.add(addressOfConnection);
+    }
+  }
+
+  //returns whether the address had a hostname to index
+  private boolean indexHostName(AddressOfConnection addressOfConnection) {
+    var hostName = addressOfConnection.address().getHostName();
+    if (hostName == null || hostName.isEmpty()) {
+      return false;
+    }
+    byHostName.computeIfAbsent(hostName, key -> new ArrayList<>()).add(addressOfConnection.tcpConnection());
+    return true;
+  }
+
+  /* Gets the connections with an address on a port in the range, inclusive.
+   */
+  synchronized Set<TCPConnection> findByPort(int minPort, int maxPort) {
+    var found = newConnectionSet();
+    if (minPort <= maxPort) {
+      byPort.subMap(minPort, true, maxPort, true).values().forEach(found::addAll);
+    }
+    return found;
+  }
+
+  /* Gets the connections with a numeric address or resolved hostname containing the text.
+   */
+  synchronized Set<TCPConnection> findByHost(String host) {
+    indexResolvedHostNames();
+    var found = newConnectionSet();
+    addContaining(byAddress, host, found);
+    addContaining(byHostName, host, found);
+    return found;
+  }
+
+  /* Gets the connections with an address equal to the given one, which includes the connection of those addresses.
+   */
+  synchronized Set<TCPConnection> findByAddress(InternetAddress address) {
+    var found = newConnectionSet();
+    var connections = byAddress.get(address.getAlphanumericalAddress());
+    if (connections != null) {
+      found.addAll(connections);
+    }
+    return found;
+  }
+
+  synchronized void clear() {
+    byPort.clear();
+    byAddress.clear();
+    byHostName.clear();
+    unresolved.clear();
+  }
+
+  private void indexResolvedHostNames() {
+    unresolved.removeIf(this::indexHostName);
+  }
+
+  private static void addContaining(Map<String, List<TCPConnection>> index, String text, Set<TCPConnection> found) {
+    //the distinct addresses are far fewer than the packets sent between them
+    for (var entry : index.entrySet()) {
+      if (entry.getKey().contains(text)) {
+        found.addAll(entry.getValue());
+      }
+    }
+  }
+
+  //connections are compared by identity, their equality changes with their status
+  private static Set<TCPConnection> newConnectionSet() {
+    return Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+}
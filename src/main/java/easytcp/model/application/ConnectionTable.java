@@ -0,0 +1,209 @@
+package easytcp.model.application;
+
+import easytcp.model.packet.InternetAddress;
+import easytcp.model.packet.TCPConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/* The connections of a capture by their flow, the two addresses and ports of the connection in either order.
+ * The flow key is the packed addresses and the ports of the two ends, with the lower end first, so it is the same
+ * for the packets going both ways. Keys are kept in primitive arrays with open addressing and linear probing,
+ * so looking up the connection of a packet compares a few longs and allocates nothing.
+ * The table is split into stripes by the hash of the flow, each with its own lock, so packets of different
+ * connections can be looked up and new connections added from several threads at once.
+ */
+final class ConnectionTable {
+  //the longs of a key: the two addresses as high and low halves, then both ports and a marker that the slot is used
+  private static final int KEY_LONGS = 5;
+  private static final int PORTS = 4;
+  private static final long USED = 1L << 32;
+  //the top bits of the hash choose the stripe, the bottom bits the slot in it
+  private static final int STRIPE_BITS = 6;
+  private static final int INITIAL_CAPACITY = 16;
+  private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+  //in the order they were added, for going through the connections
+  private final List<TCPConnection> connections = new ArrayList<>();
+
+  ConnectionTable() {
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  TCPConnection get(InternetAddress one, InternetAddress two) {
+    var hash = hash(one, two);
+    var stripe = stripeOf(hash);
+    synchronized (stripe) {
+      return stripe.values[stripe.findSlot(hash, one, two)];
+    }
+  }
+
+  /* Gets the connection between the two addresses, creating and adding it if there is none yet. The connection is
+   * created while holding the lock of its stripe, so it is only ever created once.
+   */
+  TCPConnection computeIfAbsent(InternetAddress one, InternetAddress two, Supplier<TCPConnection> createConnection) {
+    var hash = hash(one, two);
+    var stripe = stripeOf(hash);
+    synchronized (stripe) {
+      var slot = stripe.findSlot(hash, one, two);
+      if (stripe.values[slot] != null) {
+        return stripe.values[slot];
+      }
+      var tcpConnection = createConnection.get();
+      stripe.add(slot, one, two, tcpConnection);
+      synchronized (connections) {
+        connections.add(tcpConnection);
+      }
+      return tcpConnection;
+    }
+  }
+
+  int size() {
+    synchronized (connections) {
+      return connections.size();
+    }
+  }
+
+  List<TCPConnection> values() {
+    synchronized (connections) {
+      return new ArrayList<>(connections);
+    }
+  }
+
+  void clear() {
+    for (var stripe : stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+    synchronized (connections) {
+      connections.clear();
+    }
+  }
+
+  private Stripe stripeOf(int hash) {
+    return stripes[hash >>> (Integer.SIZE - STRIPE_BITS)];
+  }
+
+  private static final class Stripe {
+    private long[] keys;
+    private TCPConnection[] values;
+    private int size;
+
+    private Stripe() {
+      clear();
+    }
+
+    private void clear() {
+      keys = new long[INITIAL_CAPACITY * KEY_LONGS];
+      values = new TCPConnection[INITIAL_CAPACITY];
+      size = 0;
+    }
+
+    /* Finds the slot holding the flow of the two addresses, or the empty slot it would be added to.
+     */
+    private int findSlot(int hash, InternetAddress one, InternetAddress two) {
+      var oneFirst = isLowerEnd(one, two);
+      var low = oneFirst ? one : two;
+      var high = oneFirst ? two : one;
+      var lowHigh = low.getAddressHigh();
+      var lowLow = low.getAddressLow();
+      var highHigh = high.getAddressHigh();
+      var highLow = high.getAddressLow();
+      var ports = packPorts(low, high);
+      var mask = values.length - 1;
+      var slot = hash & mask;
+      while (true) {
+        var offset = slot * KEY_LONGS;
+        var slotPorts = keys[offset + PORTS];
+        if (slotPorts == 0
+          || (slotPorts == ports
+          && keys[offset] == lowHigh
+          && keys[offset + 1] == lowLow
+          && keys[offset + 2] == highHigh
+          && keys[offset + 3] == highLow)) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    private void add(int slot, InternetAddress one, InternetAddress two, TCPConnection tcpConnection) {
+      var oneFirst = isLowerEnd(one, two);
+      var low = oneFirst ? one : two;
+      var high = oneFirst ? two : one;
+      var offset = slot * KEY_LONGS;
+      keys[offset] = low.getAddressHigh();
+      keys[offset + 1] = low.getAddressLow();
+      keys[offset + 2] = high.getAddressHigh();
+      keys[offset + 3] = high.getAddressLow();
+      keys[offset + PORTS] = packPorts(low, high);
+      values[slot] = tcpConnection;
+      size++;
+      //kept at most half full, so probes stay short
+      if (size * 2 > values.length) {
+        resize();
+      }
+    }
+
+    private void resize() {
+      var oldKeys = keys;
+      var oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new TCPConnection[oldValues.length * 2];
+      var mask = values.length - 1;
+      for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+        if (oldValues[oldSlot] == null) {
+          continue;
+        }
+        var offset = oldSlot * KEY_LONGS;
+        var slot = hash(oldKeys[offset], oldKeys[offset + 1], oldKeys[offset + 2], oldKeys[offset + 3],
+          oldKeys[offset + PORTS]) & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        System.arraycopy(oldKeys, offset, keys, slot * KEY_LONGS, KEY_LONGS);
+        values[slot] = oldValues[oldSlot];
+      }
+    }
+  }
+
+  private static int hash(InternetAddress one, InternetAddress two) {
+    var oneFirst = isLowerEnd(one, two);
+    var low = oneFirst ? one : two;
+    var high = oneFirst ? two : one;
+    return hash(low.getAddressHigh(), low.getAddressLow(), high.getAddressHigh(), high.getAddressLow(),
+      packPorts(low, high));
+  }
+
+  //orders the ends of a flow by address and then port, so a flow has one key whichever way a packet goes
+  private static boolean isLowerEnd(InternetAddress one, InternetAddress two) {
+    var compared = Long.compareUnsigned(one.getAddressHigh(), two.getAddressHigh());
+    if (compared == 0) {
+      compared = Long.compareUnsigned(one.getAddressLow(), two.getAddressLow());
+    }
+    if (compared == 0) {
+      compared = Integer.compare(portOf(one), portOf(two));
+    }
+    return compared <= 0;
+  }
+
+  private static long packPorts(InternetAddress low, InternetAddress high) {
+    return USED | (long) portOf(low) << 16 | portOf(high);
+  }
+
+  private static int portOf(InternetAddress address) {
+    return address.getPort() == null ? 0 : address.getPort() & 0xFFFF;
+  }
+
+  private static int hash(long lowHigh, long lowLow, long highHigh, long highLow, long ports) {
+    var hash = lowHigh * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ lowLow) * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ highHigh) * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ highLow) * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ ports) * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+}
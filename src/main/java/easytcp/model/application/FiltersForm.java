@@ -5,6 +5,8 @@ import easytcp.model.packet.TCPConnection;
 import org.apache.logging.log4j.util.Strings;
 import org.pcap4j.core.PcapNetworkInterface;
 
+import java.util.Objects;
+
 /*Represents the current selected filters, singleton model class.
  */
 public class FiltersForm {
@@ -24,6 +26,8 @@ public class FiltersForm {
   private String hostSelected;
   private TCPConnection selectedConnection;
   private TcpStrategyDetection tcpStrategyThreshold;
+  private long packetFilterVersion;
+  private PacketFilter packetFilter; // compiled from the filters above when first needed after they change
 
   public synchronized static FiltersForm getInstance() {
     if (filtersForm == null) {
@@ -42,7 +46,10 @@ public class FiltersForm {
   }
 
   public void setShowIpv4(boolean showIpv4) {
-    this.showIpv4 = showIpv4;
+    if (this.showIpv4 != showIpv4) {
+      this.showIpv4 = showIpv4;
+      packetFiltersChanged();
+    }
   }
 
   public boolean isShowIpv6() {
@@ -50,7 +57,10 @@ public class FiltersForm {
   }
 
   public void setShowIpv6(boolean showIpv6) {
-    this.showIpv6 = showIpv6;
+    if (this.showIpv6 != showIpv6) {
+      this.showIpv6 = showIpv6;
+      packetFiltersChanged();
+    }
   }
 
   public boolean isResolveHostnames() {
@@ -77,6 +87,21 @@ public class FiltersForm {
     this.tcpStrategyThreshold = TcpStrategyDetection.BALANCED;
     this.showGeneralInformation = false;
     this.showTcpFeatures = true;
+    packetFiltersChanged();
+  }
+
+  /* Gets the filters deciding which packets are visible, compiling them again if they have changed since.
+   */
+  public synchronized PacketFilter getPacketFilter() {
+    if (packetFilter == null) {
+      packetFilter = PacketFilter.compile(this, ++packetFilterVersion);
+    }
+    return packetFilter;
+  }
+
+  //the setters of the filters only call this when a value changed, so the views are not rebuilt needlessly
+  private synchronized void packetFiltersChanged() {
+    packetFilter = null;
   }
 
   public String getPortRangeSelected() {
@@ -84,7 +109,10 @@ public class FiltersForm {
   }
 
   public void setPortRangeSelected(String portRangeSelected) {
-    this.portRangeSelected = portRangeSelected;
+    if (!Objects.equals(this.portRangeSelected, portRangeSelected)) {
+      this.portRangeSelected = portRangeSelected;
+      packetFiltersChanged();
+    }
   }
 
   public String getHostSelected() {
@@ -92,7 +120,10 @@ public class FiltersForm {
   }
 
   public void setHostSelected(String hostSelected) {
-    this.hostSelected = hostSelected;
+    if (!Objects.equals(this.hostSelected, hostSelected)) {
+      this.hostSelected = hostSelected;
+      packetFiltersChanged();
+    }
   }
 
   public String toBfpExpression() {
@@ -140,7 +171,11 @@ public class FiltersForm {
   }
 
   public void setSelectedConnection(TCPConnection selectedConnection) {
-    this.selectedConnection = selectedConnection;
+    //compared by identity, as the equality of a connection changes with its status
+    if (this.selectedConnection != selectedConnection) {
+      this.selectedConnection = selectedConnection;
+      packetFiltersChanged();
+    }
   }
 
   public boolean isShowAckAndSeqNumbers() {
@@ -0,0 +1,149 @@
+package easytcp.model.application;
+
+import easytcp.model.CaptureStatus;
+import easytcp.model.packet.InternetAddress;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/* Tells whether an address is of the capturing machine or one of its local networks, which decides the direction of
+ * packets. Built once per capture from the addresses of the capturing interface and a list of networks in CIDR
+ * notation, which by default are the private, unique local and loopback ranges.
+ * The networks are kept in a binary trie over the bits of the addresses, packed as 128 bit numbers with IPv4
+ * addresses mapped into IPv6 as the packets' addresses are, so classifying an address walks at most 128 nodes of
+ * primitive arrays and allocates nothing. Instances are immutable.
+ */
+public final class LocalAddressClassifier {
+  public static final List<String> DEFAULT_LOCAL_NETWORKS = List.of(
+    "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", //RFC 1918 private networks
+    "fc00::/7", //RFC 4193 unique local addresses
+    "127.0.0.0/8", "::1/128"); //loopback
+  private static final int IPV4_MAPPED_PREFIX_LENGTH = 96;
+  private static final int ADDRESS_BITS = 128;
+  private static final int NO_NODE = 0;
+  //node 0 is the root, the children of a node are its next bit being 0 or 1, the root is never a child
+  private int[] zeroChildren = new int[16];
+  private int[] oneChildren = new int[16];
+  private boolean[] networkEnds = new boolean[16];
+  private int nodeCount = 1;
+
+  private LocalAddressClassifier() {
+  }
+
+  /* Builds a classifier from networks in CIDR notation and single addresses, such as those of an interface.
+   * Throws an IllegalArgumentException if a network is not a numeric address with an optional prefix length.
+   */
+  public static LocalAddressClassifier of(Collection<String> networks, Collection<InetAddress> addresses) {
+    var classifier = new LocalAddressClassifier();
+    for (var network : networks) {
+      classifier.addNetwork(network);
+    }
+    for (var address : addresses) {
+      classifier.add(address, address.getAddress().length * Byte.SIZE);
+    }
+    return classifier;
+  }
+
+  /* Builds the classifier of a capture, from the addresses of the selected interface when capturing live and the
+   * local networks set in the application status.
+   */
+  public static LocalAddressClassifier forCapture(ApplicationStatus applicationStatus, FiltersForm filtersForm) {
+    var interfaceAddresses = new ArrayList<InetAddress>();
+    if (applicationStatus.getMethodOfCapture() == CaptureStatus.LIVE_CAPTURE
+      && filtersForm.getSelectedInterface() != null) {
+      for (var pcapAddress : filtersForm.getSelectedInterface().getAddresses()) {
+        if (pcapAddress.getAddress() != null) {
+          interfaceAddresses.add(pcapAddress.getAddress());
+        }
+      }
+    }
+    return of(applicationStatus.getLocalNetworks(), interfaceAddresses);
+  }
+
+  /* Checks the notation of a network, throwing an IllegalArgumentException with the reason if it is not valid.
+   */
+  public static void validateNetwork(String network) {
+    new LocalAddressClassifier().addNetwork(network);
+  }
+
+  public boolean isLocal(InternetAddress address) {
+    return isLocal(address.getAddressHigh(), address.getAddressLow());
+  }
+
+  boolean isLocal(long addressHigh, long addressLow) {
+    var node = 0;
+    for (int bit = 0; bit < ADDRESS_BITS; bit++) {
+      if (networkEnds[node]) {
+        return true;
+      }
+      node = bitAt(addressHigh, addressLow, bit) ? oneChildren[node] : zeroChildren[node];
+      if (node == NO_NODE) {
+        return false;
+      }
+    }
+    return networkEnds[node];
+  }
+
+  private void addNetwork(String network) {
+    var trimmed = network.trim();
+    var slash = trimmed.indexOf('/');
+    var addressText = slash < 0 ? trimmed : trimmed.substring(0, slash);
+    //only numeric addresses, so building the classifier never looks up a hostname
+    if (addressText.isEmpty() || !addressText.matches("[0-9a-fA-F.:]+")) {
+      throw new IllegalArgumentException("Not a numeric address: " + network);
+    }
+    InetAddress address;
+    try {
+      address = InetAddress.getByName(addressText);
+    } catch (UnknownHostException e) {
+      throw new IllegalArgumentException("Not a numeric address: " + network, e);
+    }
+    var addressBits = address.getAddress().length * Byte.SIZE;
+    int prefixLength;
+    try {
+      prefixLength = slash < 0 ? addressBits : Integer.parseInt(trimmed.substring(slash + 1));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Not a prefix length: " + network, e);
+    }
+    if (prefixLength < 0 || prefixLength > addressBits) {
+      throw new IllegalArgumentException("Prefix length out of range: " + network);
+    }
+    add(address, prefixLength);
+  }
+
+  private void add(InetAddress address, int prefixLength) {
+    var packed = new InternetAddress(null, null, address, null);
+    //IPv4 networks sit under the IPv4-mapped prefix
+    var bits = address.getAddress().length == 4 ? IPV4_MAPPED_PREFIX_LENGTH + prefixLength : prefixLength;
+    var node = 0;
+    for (int bit = 0; bit < bits; bit++) {
+      var one = bitAt(packed.getAddressHigh(), packed.getAddressLow(), bit);
+      if ((one ? oneChildren : zeroChildren)[node] == NO_NODE) {
+        var child = newNode();
+        //read the array again after adding the node, as it may have grown
+        (one ? oneChildren : zeroChildren)[node] = child;
+      }
+      node = (one ? oneChildren : zeroChildren)[node];
+    }
+    networkEnds[node] = true;
+  }
+
+  private int newNode() {
+    if (nodeCount == networkEnds.length) {
+      zeroChildren = Arrays.copyOf(zeroChildren, nodeCount * 2);
+      oneChildren = Arrays.copyOf(oneChildren, nodeCount * 2);
+      networkEnds = Arrays.copyOf(networkEnds, nodeCount * 2);
+    }
+    return nodeCount++;
+  }
+
+  private static boolean bitAt(long addressHigh, long addressLow, int bit) {
+    return bit < Long.SIZE
+      ? (addressHigh >>> (Long.SIZE - 1 - bit) & 1) == 1
+      : (addressLow >>> (ADDRESS_BITS - 1 - bit) & 1) == 1;
+  }
+}
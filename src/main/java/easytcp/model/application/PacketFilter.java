@@ -0,0 +1,171 @@
+package easytcp.model.application;
+
+import easytcp.model.packet.ConnectionAddresses;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.InternetAddress;
+import easytcp.model.packet.TCPConnection;
+import org.apache.logging.log4j.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.Set;
+
+/* The filters deciding which packets are visible, compiled from the filters form whenever they change.
+ * Port ranges are parsed and the host text is cleaned once here rather than for every packet. The host, port and
+ * selected connection filters only depend on the addresses of a packet's connection, so their result is kept on
+ * the connection and reused for its other packets, until the filters change or a hostname is resolved.
+ * Instances are immutable, and each is given a new version so views can tell when the filters have changed.
+ */
+public final class PacketFilter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PacketFilter.class);
+  //the result of the connection filters when neither a host nor a port is filtered on
+  private static final int NOT_FILTERED = 0;
+  private static final int MATCHES = 1;
+  private static final int DOES_NOT_MATCH = 2;
+  private static final int OTHER_CONNECTION = 3;
+  private final long version;
+  private final boolean showIpv4;
+  private final boolean showIpv6;
+  private final TCPConnection selectedConnection;
+  private final ConnectionAddresses selectedAddresses;
+  private final String host; // null when not filtering by host
+  private final boolean filteringByPort;
+  private final int minPort;
+  private final int maxPort;
+
+  /* The result of the host, port and selected connection filters for a connection, with the addresses and hostnames
+   * it was worked out from.
+   */
+  public record ConnectionMatch(PacketFilter packetFilter,
+                                InternetAddress addressOne,
+                                InternetAddress addressTwo,
+                                String hostNameOne,
+                                String hostNameTwo,
+                                int result) {
+    private boolean isFor(PacketFilter filter, InternetAddress source, InternetAddress destination) {
+      //compared by identity, packets share the address instances of their connection
+      return packetFilter == filter
+        && ((addressOne == source && addressTwo == destination) || (addressOne == destination && addressTwo == source))
+        && hostNameOne == addressOne.getHostName()
+        && hostNameTwo == addressTwo.getHostName();
+    }
+  }
+
+  private PacketFilter(FiltersForm filtersForm, long version) {
+    this.version = version;
+    this.showIpv4 = filtersForm.isShowIpv4();
+    this.showIpv6 = filtersForm.isShowIpv6();
+    this.selectedConnection = filtersForm.getSelectedConnection();
+    this.selectedAddresses = selectedConnection != null ? selectedConnection.getConnectionAddresses() : null;
+    this.host = Strings.isBlank(filtersForm.getHostSelected())
+      ? null
+      : filtersForm.getHostSelected().replace(" ", "").replace("/", "");
+    var filteringByPort = false;
+    var minPort = 0;
+    var maxPort = 0;
+    if (!Strings.isBlank(filtersForm.getPortRangeSelected())) {
+      var twoPorts = filtersForm.getPortRangeSelected().replace(" ", "").split("-");
+      try {
+        if (twoPorts.length == 2) {
+          //allows for port ranges eg 80-150, which includes all ports from 80 to 150
+          minPort = Integer.parseInt(twoPorts[0]);
+          maxPort = Integer.parseInt(twoPorts[1]);
+          filteringByPort = true;
+        } else if (twoPorts.length == 1) {
+          //single port number, on destination or source.
+          minPort = Integer.parseInt(twoPorts[0]);
+          maxPort = minPort;
+          filteringByPort = true;
+        }
+      } catch (Exception e) {
+        LOGGER.error("Text input into the port field");
+      }
+    }
+    this.filteringByPort = filteringByPort;
+    this.minPort = minPort;
+    this.maxPort = maxPort;
+  }
+
+  static PacketFilter compile(FiltersForm filtersForm, long version) {
+    return new PacketFilter(filtersForm, version);
+  }
+
+  //checks if packet matches filters
+  public boolean test(EasyTCPacket packet) {
+    var matchesFilter = true;
+    switch (packet.getiPprotocol()) {
+      case IPV4 ->
+        matchesFilter = showIpv4;
+      case IPV6 ->
+        matchesFilter = showIpv6;
+    }
+    var connectionResult = getConnectionResult(packet);
+    //a host or port filter takes the place of the protocol filter, as they always have
+    return switch (connectionResult) {
+      case MATCHES -> true;
+      case DOES_NOT_MATCH, OTHER_CONNECTION -> false;
+      default -> matchesFilter;
+    };
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /* Selects the connections whose packets can match the filter from the index, without looking at any packet.
+   * Empty when the filter does not narrow down the connections, so any connection can have visible packets.
+   */
+  Optional<Set<TCPConnection>> selectConnections(ConnectionIndex connectionIndex) {
+    if (selectedConnection != null) {
+      var connections = connectionIndex.findByAddress(selectedAddresses.addressOne());
+      connections.removeIf(connection -> !selectedAddresses.equals(connection.getConnectionAddresses()));
+      return Optional.of(connections);
+    } else if (filteringByPort) {
+      //a port filter is applied after the host filter and replaces its result
+      return Optional.of(connectionIndex.findByPort(minPort, maxPort));
+    } else if (host != null) {
+      return Optional.of(connectionIndex.findByHost(host));
+    }
+    return Optional.empty();
+  }
+
+  private int getConnectionResult(EasyTCPacket packet) {
+    var source = packet.getSourceAddress();
+    var destination = packet.getDestinationAddress();
+    var connection = packet.getTcpConnection();
+    if (connection == null) {
+      return evaluate(null, source, destination);
+    }
+    var match = connection.getFilterMatch();
+    if (match == null || !match.isFor(this, source, destination)) {
+      match = new ConnectionMatch(this, source, destination, source.getHostName(), destination.getHostName(),
+        evaluate(connection, source, destination));
+      connection.setFilterMatch(match);
+    }
+    return match.result();
+  }
+
+  private int evaluate(TCPConnection connection, InternetAddress source, InternetAddress destination) {
+    if (selectedConnection != null
+      && (connection == null || !selectedAddresses.equals(connection.getConnectionAddresses()))) {
+      return OTHER_CONNECTION;
+    }
+    var result = NOT_FILTERED;
+    if (host != null) {
+      //filter by text ip/host
+      result = destination.getAddressString().contains(host)
+        || source.getAddressString().contains(host)
+        || destination.getAlphanumericalAddress().contains(host)
+        || source.getAlphanumericalAddress().contains(host) ? MATCHES : DOES_NOT_MATCH;
+    }
+    if (filteringByPort) {
+      var dstPort = destination.getPort();
+      var srcPort = source.getPort();
+      result = (dstPort <= maxPort && dstPort >= minPort) || (srcPort <= maxPort && srcPort >= minPort)
+        ? MATCHES
+        : DOES_NOT_MATCH;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,455 @@
+package easytcp.model.packet;
+
+import easytcp.model.TCPFlag;
+import org.pcap4j.packet.namednumber.TcpOptionKind;
+
+import java.util.*;
+
+/*
+ * Packet store for very large captures, keeping the packets in off-heap columns rather than as objects.
+ * The store itself only holds row numbers: the timestamp order of its rows and, once a sequence number lookup
+ * needs them, per-direction indexes built from primitive arrays. Packets are created as objects when they are
+ * read, so the garbage collector never has to trace one object per stored packet, and queries over every
+ * packet such as the bytes sent are loops over the columns. Readers see immutable snapshots of the
+ * row order in the same way as in the heap store.
+ */
+final class ColumnarPacketStore implements PacketStore {
+  private static final int INITIAL_CAPACITY = 16;
+  private final Object writeLock = new Object();
+  private final PacketColumns columns;
+  private volatile RowOrder order;
+  //per-direction indexes, null until a lookup needs them, guarded by the write lock
+  private DirectionIndex outgoingIndex;
+  private DirectionIndex incomingIndex;
+
+  ColumnarPacketStore(PacketColumns columns) {
+    this.columns = columns;
+    this.order = new RowOrder(new int[0], 0);
+  }
+
+  long offHeapBytes() {
+    return columns.allocatedBytes();
+  }
+
+  @Override
+  public PacketStore copy() {
+    var copy = new ColumnarPacketStore(columns);
+    var current = order;
+    //the rows are shared, only the order needs copying
+    copy.order = new RowOrder(Arrays.copyOf(current.rows, current.size), current.size);
+    return copy;
+  }
+
+  @Override
+  public boolean add(EasyTCPacket easyTCPacket) {
+    var row = columns.append(easyTCPacket);
+    synchronized (writeLock) {
+      var appended = !isLate(order, row);
+      order = insert(order, row);
+      if (outgoingIndex != null) {
+        addToIndex(row);
+      }
+      return appended;
+    }
+  }
+
+  /* Only the rows are dropped, the columns are shared by the capture and keep their contents until it is cleared.
+   */
+  @Override
+  public int removeConnections(Set<TCPConnection> connections) {
+    synchronized (writeLock) {
+      var current = order;
+      var kept = new int[Math.max(INITIAL_CAPACITY, current.size)];
+      var size = 0;
+      for (int i = 0; i < current.size; i++) {
+        var row = current.rows[i];
+        if (!connections.contains(columns.connection(row))) {
+          kept[size++] = row;
+        }
+      }
+      var removed = current.size - size;
+      if (removed > 0) {
+        order = new RowOrder(Arrays.copyOf(kept, Math.max(INITIAL_CAPACITY, size)), size);
+        outgoingIndex = null;
+        incomingIndex = null;
+      }
+      return removed;
+    }
+  }
+
+  /* Returns an order with the row added in timestamp order, the given order is left unchanged.
+   */
+  private RowOrder insert(RowOrder current, int row) {
+    var rows = current.rows;
+    var size = current.size;
+    if (!isLate(current, row)) {
+      //appended in place, slots past the current size are never visible to readers of older snapshots
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, Math.max(INITIAL_CAPACITY, size * 2));
+      }
+      rows[size] = row;
+    } else {
+      //late packet, inserted after any packets with an equal timestamp into a fresh array
+      var insertAt = findInsertionPoint(rows, size, row);
+      var copy = new int[size == rows.length ? size * 2 : rows.length];
+      System.arraycopy(rows, 0, copy, 0, insertAt);
+      copy[insertAt] = row;
+      System.arraycopy(rows, insertAt, copy, insertAt + 1, size - insertAt);
+      rows = copy;
+    }
+    return new RowOrder(rows, size + 1);
+  }
+
+  private boolean isLate(RowOrder current, int row) {
+    return current.size > 0 && isBefore(row, current.rows[current.size - 1]);
+  }
+
+  private int findInsertionPoint(int[] rows, int size, int row) {
+    var low = 0;
+    var high = size;
+    while (low < high) {
+      var mid = (low + high) >>> 1;
+      if (isBefore(row, rows[mid])) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private boolean isBefore(int row, int otherRow) {
+    //packets without a timestamp are treated as being in order
+    var timestamp = columns.timestamp(row);
+    var otherTimestamp = columns.timestamp(otherRow);
+    return timestamp != EasyTCPacket.NO_TIMESTAMP
+      && otherTimestamp != EasyTCPacket.NO_TIMESTAMP
+      && timestamp < otherTimestamp;
+  }
+
+  /* Gets the index for a direction, building both indexes from the current rows on first use.
+   * Must be called while holding the write lock.
+   */
+  private DirectionIndex getIndex(boolean outgoing) {
+    if (outgoingIndex == null) {
+      outgoingIndex = new DirectionIndex();
+      incomingIndex = new DirectionIndex();
+      var current = order;
+      for (int i = 0; i < current.size; i++) {
+        addToIndex(current.rows[i]);
+      }
+    }
+    return outgoing ? outgoingIndex : incomingIndex;
+  }
+
+  private void addToIndex(int row) {
+    //packets missing the direction are only kept in the time ordered rows
+    var direction = columns.direction(row);
+    if (direction != PacketColumns.UNKNOWN_DIRECTION) {
+      (direction == PacketColumns.OUTGOING ? outgoingIndex : incomingIndex).add(row);
+    }
+  }
+
+  @Override
+  public List<EasyTCPacket> getPackets() {
+    return new PacketList(order);
+  }
+
+  @Override
+  public List<EasyTCPacket> getPackets(boolean outgoing) {
+    synchronized (writeLock) {
+      return new PacketList(getIndex(outgoing).rows);
+    }
+  }
+
+  @Override
+  public List<EasyTCPacket> findPacketsWithSeqNum(long seq, boolean outgoing) {
+    synchronized (writeLock) {
+      return materialize(getIndex(outgoing).rowsWithSequence(seq));
+    }
+  }
+
+  @Override
+  public List<EasyTCPacket> findPacketsWithSeqNum(long seq) {
+    synchronized (writeLock) {
+      var rows = getIndex(true).rowsWithSequence(seq);
+      rows.addAll(getIndex(false).rowsWithSequence(seq));
+      return materialize(rows);
+    }
+  }
+
+  @Override
+  public Optional<EasyTCPacket> findLatestPacketWithSeqNumberLessThan(long ackNumber, boolean outgoing) {
+    synchronized (writeLock) {
+      var row = getIndex(outgoing).latestRowBelow(ackNumber);
+      return row < 0 ? Optional.empty() : Optional.of(columns.materialize(row));
+    }
+  }
+
+  @Override
+  public Optional<EasyTCPacket> findPreviousPacketReceived(EasyTCPacket pkt) {
+    RowOrder otherDirection;
+    synchronized (writeLock) {
+      otherDirection = getIndex(!pkt.getOutgoingPacket()).rows;
+    }
+    var timestamp = pkt.getTimestampNanos();
+    var rows = otherDirection.rows;
+    //binary search for the last packet sent strictly before this one
+    var low = 0;
+    var high = otherDirection.size;
+    while (low < high) {
+      var mid = (low + high) >>> 1;
+      if (columns.timestamp(rows[mid]) < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    if (low == 0) {
+      return Optional.empty();
+    }
+    //when several packets share the latest timestamp, the first of them is returned
+    var previous = low - 1;
+    while (previous > 0 && columns.timestamp(rows[previous - 1]) == columns.timestamp(rows[previous])) {
+      previous--;
+    }
+    return Optional.of(columns.materialize(rows[previous]));
+  }
+
+  @Override
+  public List<TcpOptionKind> getUniqueTcpOptions(boolean outgoing) {
+    var current = order;
+    var direction = outgoing ? PacketColumns.OUTGOING : PacketColumns.INCOMING;
+    //the option lists are few, so they are collected by id before looking at their kinds
+    var seen = new BitSet();
+    var kinds = new LinkedHashSet<TcpOptionKind>();
+    for (int i = 0; i < current.size; i++) {
+      var row = current.rows[i];
+      if (columns.direction(row) != direction) {
+        continue;
+      }
+      var optionsId = columns.optionsId(row);
+      if (optionsId != 0 && !seen.get(optionsId)) {
+        seen.set(optionsId);
+        columns.options(optionsId).getKinds()
+          .stream()
+          .filter(kind -> !kind.equals(TcpOptionKind.NO_OPERATION))
+          .forEach(kinds::add);
+      }
+    }
+    return List.copyOf(kinds);
+  }
+
+  @Override
+  public List<EasyTCPacket> getAllPacketsWithoutFlag(TCPFlag flag, boolean outgoing) {
+    var current = order;
+    var direction = outgoing ? PacketColumns.OUTGOING : PacketColumns.INCOMING;
+    var flagBits = flagBits(flag);
+    var result = new ArrayList<EasyTCPacket>();
+    for (int i = 0; i < current.size; i++) {
+      var row = current.rows[i];
+      if ((columns.flags(row) & flagBits) == 0 && columns.direction(row) == direction) {
+        result.add(columns.materialize(row));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Map<Boolean, List<EasyTCPacket>> findPacketsWithFlagOutGoingOrNot(TCPFlag flag) {
+    var current = order;
+    var flagBits = flagBits(flag);
+    var outgoing = new ArrayList<EasyTCPacket>();
+    var incoming = new ArrayList<EasyTCPacket>();
+    for (int i = 0; i < current.size; i++) {
+      var row = current.rows[i];
+      if ((columns.flags(row) & flagBits) != 0) {
+        var direction = columns.direction(row);
+        if (direction == PacketColumns.OUTGOING) {
+          outgoing.add(columns.materialize(row));
+        } else if (direction == PacketColumns.INCOMING) {
+          incoming.add(columns.materialize(row));
+        }
+      }
+    }
+    return Map.of(true, outgoing, false, incoming);
+  }
+
+  @Override
+  public long getBytesSentOrReceived(boolean outgoing) {
+    var current = order;
+    return columns.sumPayloadLength(
+      current.rows, current.size, outgoing ? PacketColumns.OUTGOING : PacketColumns.INCOMING);
+  }
+
+  private static int flagBits(TCPFlag flag) {
+    return 1 << flag.ordinal();
+  }
+
+  private List<EasyTCPacket> materialize(List<Integer> rows) {
+    return rows.stream().map(columns::materialize).toList();
+  }
+
+  /* An immutable view of the first size rows of the backing array, those rows are never modified once published.
+   */
+  private record RowOrder(int[] rows, int size) {}
+
+  /* A read-only list over rows, creating the packet objects as they are read.
+   */
+  private final class PacketList extends AbstractList<EasyTCPacket> implements RandomAccess {
+    private final RowOrder rowOrder;
+
+    private PacketList(RowOrder rowOrder) {
+      this.rowOrder = rowOrder;
+    }
+
+    @Override
+    public EasyTCPacket get(int index) {
+      Objects.checkIndex(index, rowOrder.size);
+      return columns.materialize(rowOrder.rows[index]);
+    }
+
+    @Override
+    public int size() {
+      return rowOrder.size;
+    }
+  }
+
+  /* Lookup structures for the rows sent in one direction, the primitive array counterparts of the heap store's
+   * index. Rows with the same unwrapped sequence number are chained through the order they were added in.
+   */
+  private final class DirectionIndex {
+    private RowOrder rows = new RowOrder(new int[0], 0);
+    //the rows in the order they were added, and for each the previously added one with the same sequence number
+    private int[] addedRows = new int[INITIAL_CAPACITY];
+    private int[] previousWithSequence = new int[INITIAL_CAPACITY];
+    private int added;
+    private final LongIntHashMap lastAddedWithSequence = new LongIntHashMap();
+    //the rows which are the latest one below some sequence number, their sequence numbers increase with time
+    private long[] latestBelowSequences = new long[INITIAL_CAPACITY];
+    private int[] latestBelowRows = new int[INITIAL_CAPACITY];
+    private int latestBelowSize;
+    private final SequenceUnwrapper unwrapper = new SequenceUnwrapper();
+
+    private void add(int row) {
+      var late = isLate(rows, row);
+      rows = insert(rows, row);
+      var sequence = unwrapper.unwrap(columns.sequenceNumber(row));
+      if (added == addedRows.length) {
+        addedRows = Arrays.copyOf(addedRows, added * 2);
+        previousWithSequence = Arrays.copyOf(previousWithSequence, added * 2);
+      }
+      addedRows[added] = row;
+      previousWithSequence[added] = lastAddedWithSequence.get(sequence);
+      lastAddedWithSequence.put(sequence, added);
+      added++;
+      if (late) {
+        //rare, the row may be hidden by or hide rows on either side of it, so the chain is rebuilt
+        latestBelowSize = 0;
+        for (int i = 0; i < rows.size; i++) {
+          var earlierRow = rows.rows[i];
+          pushLatestBelow(unwrapper.unwrap(columns.sequenceNumber(earlierRow)), earlierRow);
+        }
+      } else {
+        unwrapper.setReference(sequence);
+        pushLatestBelow(sequence, row);
+      }
+    }
+
+    private void pushLatestBelow(long sequence, int row) {
+      //earlier rows with a sequence number at or above this one can never be the latest one below a number again
+      while (latestBelowSize > 0 && latestBelowSequences[latestBelowSize - 1] >= sequence) {
+        latestBelowSize--;
+      }
+      if (latestBelowSize == latestBelowSequences.length) {
+        latestBelowSequences = Arrays.copyOf(latestBelowSequences, latestBelowSize * 2);
+        latestBelowRows = Arrays.copyOf(latestBelowRows, latestBelowSize * 2);
+      }
+      latestBelowSequences[latestBelowSize] = sequence;
+      latestBelowRows[latestBelowSize] = row;
+      latestBelowSize++;
+    }
+
+    private int latestRowBelow(long sequenceNumber) {
+      var sequence = unwrapper.unwrap(sequenceNumber);
+      //binary search for the last entry with a sequence number below the one given
+      var low = 0;
+      var high = latestBelowSize;
+      while (low < high) {
+        var mid = (low + high) >>> 1;
+        if (latestBelowSequences[mid] < sequence) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low == 0 ? -1 : latestBelowRows[low - 1];
+    }
+
+    private List<Integer> rowsWithSequence(long sequenceNumber) {
+      var result = new ArrayList<Integer>();
+      for (int i = lastAddedWithSequence.get(unwrapper.unwrap(sequenceNumber)); i >= 0; i = previousWithSequence[i]) {
+        result.add(addedRows[i]);
+      }
+      //in timestamp order, then in the order they were added
+      result.sort(Comparator.<Integer>comparingLong(columns::timestamp).thenComparing(Comparator.naturalOrder()));
+      return result;
+    }
+  }
+
+  /* A map from long keys to non-negative int values using open addressing, returning -1 for missing keys.
+   */
+  private static final class LongIntHashMap {
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private long[] keys = newKeys(INITIAL_CAPACITY);
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private static long[] newKeys(int capacity) {
+      var keys = new long[capacity];
+      Arrays.fill(keys, EMPTY_KEY);
+      return keys;
+    }
+
+    private int slot(long key, long[] table) {
+      var mask = table.length - 1;
+      var hash = key * 0x9E3779B97F4A7C15L;
+      var slot = (int) (hash ^ (hash >>> 32)) & mask;
+      while (table[slot] != EMPTY_KEY && table[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private int get(long key) {
+      var slot = slot(key, keys);
+      return keys[slot] == key ? values[slot] : -1;
+    }
+
+    private void put(long key, int value) {
+      var slot = slot(key, keys);
+      if (keys[slot] != key) {
+        keys[slot] = key;
+        size++;
+      }
+      values[slot] = value;
+      if (size * 2 > keys.length) {
+        resize();
+      }
+    }
+
+    private void resize() {
+      var oldKeys = keys;
+      var oldValues = values;
+      keys = newKeys(oldKeys.length * 2);
+      values = new int[keys.length];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != EMPTY_KEY) {
+          var slot = slot(oldKeys[i], keys);
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+        }
+      }
+    }
+  }
+}
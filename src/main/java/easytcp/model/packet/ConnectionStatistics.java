@@ -0,0 +1,83 @@
+package easytcp.model.packet;
+
+import easytcp.model.TCPFlag;
+import org.pcap4j.packet.namednumber.TcpOptionKind;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/* Running totals for each direction of a connection, updated as every packet is added to its container:
+ * the number of packets and payload bytes, how many packets carried each flag and the option kinds seen.
+ * Displaying a connection reads these rather than going through its packets.
+ */
+public final class ConnectionStatistics {
+  private static final TCPFlag[] FLAGS = TCPFlag.values();
+  private final long[] packetCounts = new long[2];
+  private final long[] byteCounts = new long[2];
+  private final long[][] flagCounts = new long[2][FLAGS.length];
+  //option kinds in the order they were first seen, without NOP which only pads the other options
+  private final List<List<TcpOptionKind>> optionKinds = List.of(new ArrayList<>(), new ArrayList<>());
+  //option lists are shared between packets, so each distinct list only needs to be looked at once
+  private final List<Set<TcpOptions>> optionListsSeen = List.of(new HashSet<>(), new HashSet<>());
+
+  public ConnectionStatistics() {
+  }
+
+  public ConnectionStatistics(ConnectionStatistics statistics) {
+    synchronized (statistics) {
+      for (int direction = 0; direction < 2; direction++) {
+        packetCounts[direction] = statistics.packetCounts[direction];
+        byteCounts[direction] = statistics.byteCounts[direction];
+        System.arraycopy(statistics.flagCounts[direction], 0, flagCounts[direction], 0, FLAGS.length);
+        optionKinds.get(direction).addAll(statistics.optionKinds.get(direction));
+        optionListsSeen.get(direction).addAll(statistics.optionListsSeen.get(direction));
+      }
+    }
+  }
+
+  public synchronized void record(EasyTCPacket packet) {
+    var direction = directionOf(Boolean.TRUE.equals(packet.getOutgoingPacket()));
+    packetCounts[direction]++;
+    byteCounts[direction] += packet.getDataPayloadLength();
+    for (var flag : FLAGS) {
+      if (packet.hasFlag(flag)) {
+        flagCounts[direction][flag.ordinal()]++;
+      }
+    }
+    var options = packet.getTcpOptions();
+    if (options != null && !options.isEmpty() && optionListsSeen.get(direction).add(options)) {
+      var kinds = optionKinds.get(direction);
+      for (var kind : options.getKinds()) {
+        if (!kind.equals(TcpOptionKind.NO_OPERATION) && !kinds.contains(kind)) {
+          kinds.add(kind);
+        }
+      }
+    }
+  }
+
+  public synchronized long getPacketCount(boolean outgoing) {
+    return packetCounts[directionOf(outgoing)];
+  }
+
+  public synchronized long getPacketCount() {
+    return packetCounts[0] + packetCounts[1];
+  }
+
+  public synchronized long getBytes(boolean outgoing) {
+    return byteCounts[directionOf(outgoing)];
+  }
+
+  public synchronized long getFlagCount(TCPFlag flag, boolean outgoing) {
+    return flagCounts[directionOf(outgoing)][flag.ordinal()];
+  }
+
+  public synchronized List<TcpOptionKind> getOptionKinds(boolean outgoing) {
+    return List.copyOf(optionKinds.get(directionOf(outgoing)));
+  }
+
+  private static int directionOf(boolean outgoing) {
+    return outgoing ? 0 : 1;
+  }
+}
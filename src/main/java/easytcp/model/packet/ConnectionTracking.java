@@ -0,0 +1,185 @@
+package easytcp.model.packet;
+
+import easytcp.model.TCPFlag;
+
+/* Compact state of each direction of a connection, updated as every packet of the connection arrives.
+ * It holds enough to tell which segment an acknowledgement refers to, and the direction of the first packet,
+ * so the status of a connection is worked out in constant time per packet rather than by searching its packets.
+ */
+public final class ConnectionTracking {
+  //returned when no segment sent in the other direction is acknowledged
+  public static final int NOT_ACKNOWLEDGED = -1;
+  private final Direction outgoing;
+  private final Direction incoming;
+  private InternetAddress firstPacketDestination;
+  private boolean firstPacketOutgoing;
+
+  public ConnectionTracking() {
+    this.outgoing = new Direction();
+    this.incoming = new Direction();
+  }
+
+  public ConnectionTracking(ConnectionTracking tracking) {
+    this.outgoing = new Direction(tracking.outgoing);
+    this.incoming = new Direction(tracking.incoming);
+    this.firstPacketDestination = tracking.firstPacketDestination;
+    this.firstPacketOutgoing = tracking.firstPacketOutgoing;
+  }
+
+  /* Updates the state of the direction the packet was sent in, its direction must already be known.
+   */
+  public void record(EasyTCPacket packet) {
+    if (firstPacketDestination == null) {
+      firstPacketDestination = packet.getDestinationAddress();
+      firstPacketOutgoing = packet.getOutgoingPacket();
+    }
+    getDirection(packet.getOutgoingPacket()).record(packet);
+  }
+
+  /* Gets the flags of the segment acknowledged by the packet, being the segment sent the other way with the
+   * highest sequence number below the packet's acknowledgement number, or NOT_ACKNOWLEDGED if there is none.
+   */
+  public int acknowledgedFlags(EasyTCPacket packet) {
+    return getDirection(!packet.getOutgoingPacket()).acknowledgedFlags(packet.getAckNumber());
+  }
+
+  public static boolean hasFlag(int flagBits, TCPFlag flag) {
+    return flagBits != NOT_ACKNOWLEDGED && (flagBits & (1 << flag.ordinal())) != 0;
+  }
+
+  public Direction getDirection(boolean outgoingPacket) {
+    return outgoingPacket ? outgoing : incoming;
+  }
+
+  //the destination of the first packet of the connection, or null before any packet is recorded
+  public InternetAddress getFirstPacketDestination() {
+    return firstPacketDestination;
+  }
+
+  public boolean isFirstPacketOutgoing() {
+    return firstPacketOutgoing;
+  }
+
+  /* The segments sent one way on a connection. Sequence numbers are unwrapped to 64 bits relative to the
+   * latest one, so comparisons keep working after they wrap around.
+   */
+  public static final class Direction {
+    private static final long SEQUENCE_MASK = (1L << 32) - 1;
+    private static final int ACK_ONLY = 1 << TCPFlag.ACK.ordinal();
+    private final SequenceUnwrapper unwrapper = new SequenceUnwrapper();
+    private boolean seen;
+    private long initialSequenceNumber;
+    private long lastSequenceNumber;
+    private long lastAckNumber;
+    private long highestSequenceNumber;
+    private byte highestFlags;
+    private boolean synSent;
+    private long synSequenceNumber;
+    private byte synFlags;
+    private boolean finSent;
+    private long finSequenceNumber;
+
+    private Direction() {
+    }
+
+    private Direction(Direction direction) {
+      this.seen = direction.seen;
+      this.initialSequenceNumber = direction.initialSequenceNumber;
+      this.lastSequenceNumber = direction.lastSequenceNumber;
+      this.lastAckNumber = direction.lastAckNumber;
+      this.highestSequenceNumber = direction.highestSequenceNumber;
+      this.highestFlags = direction.highestFlags;
+      this.synSent = direction.synSent;
+      this.synSequenceNumber = direction.synSequenceNumber;
+      this.synFlags = direction.synFlags;
+      this.finSent = direction.finSent;
+      this.finSequenceNumber = direction.finSequenceNumber;
+      if (seen) {
+        unwrapper.setReference(lastSequenceNumber);
+      }
+    }
+
+    private void record(EasyTCPacket packet) {
+      var seq = unwrapper.unwrap(packet.getSequenceNumber());
+      unwrapper.setReference(seq);
+      var flags = packet.getTcpFlagBits();
+      if (!seen || seq >= highestSequenceNumber) {
+        //a later packet with the same sequence number replaces the earlier one, as a pure ack shares it with the next data
+        highestSequenceNumber = seq;
+        highestFlags = flags;
+      }
+      if (!seen || seq < initialSequenceNumber) {
+        initialSequenceNumber = seq;
+      }
+      seen = true;
+      lastSequenceNumber = seq;
+      lastAckNumber = packet.getAckNumber();
+      if (packet.hasFlag(TCPFlag.SYN)) {
+        //a new handshake on the same addresses starts the direction again
+        synSent = true;
+        synSequenceNumber = seq;
+        synFlags = flags;
+        initialSequenceNumber = seq;
+        finSent = false;
+      }
+      if (packet.hasFlag(TCPFlag.FIN)) {
+        finSent = true;
+        finSequenceNumber = seq;
+      }
+    }
+
+    private int acknowledgedFlags(long ackNumber) {
+      if (!seen) {
+        return NOT_ACKNOWLEDGED;
+      }
+      var ack = unwrapper.unwrap(ackNumber);
+      if (highestSequenceNumber < ack) {
+        return highestFlags;
+      } else if (synSent && ack == synSequenceNumber + 1) {
+        return synFlags;
+      } else if (initialSequenceNumber < ack) {
+        //a segment between the first and the highest, which carry an ack once a connection is open
+        return ACK_ONLY;
+      }
+      return NOT_ACKNOWLEDGED;
+    }
+
+    public boolean hasSentPackets() {
+      return seen;
+    }
+
+    public long getInitialSequenceNumber() {
+      return initialSequenceNumber & SEQUENCE_MASK;
+    }
+
+    public long getLastSequenceNumber() {
+      return lastSequenceNumber & SEQUENCE_MASK;
+    }
+
+    public long getLastAckNumber() {
+      return lastAckNumber;
+    }
+
+    //whether a SYN has been sent, and its sequence number has not been acknowledged by the other direction
+    public boolean isSynOutstanding(Direction otherDirection) {
+      return synSent && !otherDirection.acknowledges(synSequenceNumber, unwrapper);
+    }
+
+    //whether a FIN has been sent, and its sequence number has not been acknowledged by the other direction
+    public boolean isFinOutstanding(Direction otherDirection) {
+      return finSent && !otherDirection.acknowledges(finSequenceNumber, unwrapper);
+    }
+
+    private boolean acknowledges(long sequenceNumber, SequenceUnwrapper senderUnwrapper) {
+      return seen && senderUnwrapper.unwrap(lastAckNumber) > sequenceNumber;
+    }
+
+    public long getSynSequenceNumber() {
+      return synSequenceNumber & SEQUENCE_MASK;
+    }
+
+    public long getFinSequenceNumber() {
+      return finSequenceNumber & SEQUENCE_MASK;
+    }
+  }
+}
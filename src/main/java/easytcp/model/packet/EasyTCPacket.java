@@ -5,36 +5,106 @@ import easytcp.model.TCPFlag;
 import org.pcap4j.packet.TcpPacket;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
-/*Represents a single TCP packet alongside some IP header information
+/*Represents a single TCP packet alongside some IP header information.
+ * The header fields are kept as primitives, the flags as one bit per flag and the timestamp as nanoseconds since
+ * the epoch, so a packet is a small object with no boxed values hanging off it. The flag map, the timestamp
+ * and the options are handed out as views over that state, the flag maps and option lists being shared instances.
  */
 public class EasyTCPacket {
-  private Timestamp timestamp;
+  static final long NO_TIMESTAMP = Long.MIN_VALUE;
+  private static final byte UNKNOWN_DIRECTION = -1;
+  private static final int FLAG_COMBINATIONS = 1 << TCPFlag.values().length;
+  private static final List<Map<TCPFlag, Boolean>> FLAG_MAPS;
+  private static final String[] FLAGS_DISPLAYABLE = new String[FLAG_COMBINATIONS];
+  private long timestamp = NO_TIMESTAMP;
   private IPprotocol iPprotocol;
   private InternetAddress sourceAddress;
   private InternetAddress destinationAddress;
-  private Long sequenceNumber;
-  private Long ackNumber;
-  private Integer windowSize;
-  private Integer dataPayloadLength;
-  private Integer headerPayloadLength;
-  private Map<TCPFlag, Boolean> tcpFlags;
-  private List<TcpPacket.TcpOption> tcpOptions;
+  private long sequenceNumber;
+  private long ackNumber;
+  private int windowSize;
+  private int dataPayloadLength;
+  private int headerPayloadLength;
+  private byte tcpFlags;
+  private TcpOptions tcpOptions = TcpOptions.NONE;
   private TCPConnection tcpConnection;
-  private Boolean outgoingPacket;
+  private byte outgoingPacket = UNKNOWN_DIRECTION;
   private boolean selectedPacket;
   private ConnectionStatus tcpConnectionStatusAsOfPacket;
+  //the row holding this packet when packets are stored in columns, null when they are held as objects
+  private PacketColumns storedColumns;
+  private int storedRow;
+
+  static {
+    //there are only 64 combinations of flags, so every map and display string is built once up front
+    var flagMaps = new ArrayList<Map<TCPFlag, Boolean>>(FLAG_COMBINATIONS);
+    for (int bits = 0; bits < FLAG_COMBINATIONS; bits++) {
+      var flags = new EnumMap<TCPFlag, Boolean>(TCPFlag.class);
+      for (var flag : TCPFlag.values()) {
+        flags.put(flag, (bits & flagBit(flag)) != 0);
+      }
+      flagMaps.add(Map.copyOf(flags));
+      //Prints flags eg 'P.'
+      FLAGS_DISPLAYABLE[bits] = flags.entrySet()
+        .stream()
+        .filter(Map.Entry::getValue)
+        .map(flag -> flag.getKey().getDisplayName())
+        .sorted()
+        .collect(Collectors.joining());
+    }
+    FLAG_MAPS = List.copyOf(flagMaps);
+  }
+
+  private static int flagBit(TCPFlag flag) {
+    return 1 << flag.ordinal();
+  }
+
+  /* Packs the flags into the form stored on the packet, one bit per flag.
+   */
+  public static byte toFlagBits(boolean urg, boolean ack, boolean psh, boolean rst, boolean syn, boolean fin) {
+    var bits = 0;
+    bits |= urg ? flagBit(TCPFlag.URG) : 0;
+    bits |= ack ? flagBit(TCPFlag.ACK) : 0;
+    bits |= psh ? flagBit(TCPFlag.PSH) : 0;
+    bits |= rst ? flagBit(TCPFlag.RST) : 0;
+    bits |= syn ? flagBit(TCPFlag.SYN) : 0;
+    bits |= fin ? flagBit(TCPFlag.FIN) : 0;
+    return (byte) bits;
+  }
 
   public Timestamp getTimestamp() {
-    return timestamp;
+    if (timestamp == NO_TIMESTAMP) {
+      return null;
+    }
+    var result = new Timestamp(Math.floorDiv(timestamp, 1_000_000_000L) * 1000);
+    result.setNanos((int) Math.floorMod(timestamp, 1_000_000_000L));
+    return result;
   }
 
   public void setTimestamp(Timestamp timestamp) {
-    this.timestamp = timestamp;
+    this.timestamp = timestamp == null
+      ? NO_TIMESTAMP
+      : Math.floorDiv(timestamp.getTime(), 1000) * 1_000_000_000L + timestamp.getNanos();
+  }
+
+  //the timestamp as nanoseconds since the epoch, compared without creating a Timestamp
+  public long getTimestampNanos() {
+    return timestamp;
+  }
+
+  public void setTimestampNanos(long timestampNanos) {
+    this.timestamp = timestampNanos;
+  }
+
+  public boolean hasTimestamp() {
+    return timestamp != NO_TIMESTAMP;
   }
 
   public IPprotocol getiPprotocol() {
@@ -45,35 +115,35 @@ public class EasyTCPacket {
     this.iPprotocol = iPprotocol;
   }
 
-  public Long getSequenceNumber() {
+  public long getSequenceNumber() {
     return sequenceNumber;
   }
 
-  public void setSequenceNumber(Long sequenceNumber) {
+  public void setSequenceNumber(long sequenceNumber) {
     this.sequenceNumber = sequenceNumber;
   }
 
-  public Long getAckNumber() {
+  public long getAckNumber() {
     return ackNumber;
   }
 
-  public void setAckNumber(Long ackNumber) {
+  public void setAckNumber(long ackNumber) {
     this.ackNumber = ackNumber;
   }
 
-  public Integer getWindowSize() {
+  public int getWindowSize() {
     return windowSize;
   }
 
-  public void setWindowSize(Integer windowSize) {
+  public void setWindowSize(int windowSize) {
     this.windowSize = windowSize;
   }
 
-  public Integer getDataPayloadLength() {
+  public int getDataPayloadLength() {
     return dataPayloadLength;
   }
 
-  public void setDataPayloadLength(Integer dataPayloadLength) {
+  public void setDataPayloadLength(int dataPayloadLength) {
     this.dataPayloadLength = dataPayloadLength;
   }
 
@@ -93,28 +163,51 @@ public class EasyTCPacket {
     this.destinationAddress = destinationAddress;
   }
 
+  //an immutable map holding every flag, shared between all packets with the same flags set
   public Map<TCPFlag, Boolean> getTcpFlags() {
-    return tcpFlags;
+    return FLAG_MAPS.get(tcpFlags);
   }
 
   public void setTcpFlags(Map<TCPFlag, Boolean> tcpFlags) {
-    this.tcpFlags = tcpFlags;
+    var bits = 0;
+    for (var flag : tcpFlags.entrySet()) {
+      if (Boolean.TRUE.equals(flag.getValue())) {
+        bits |= flagBit(flag.getKey());
+      }
+    }
+    this.tcpFlags = (byte) bits;
   }
 
-  public Integer getHeaderPayloadLength() {
+  public boolean hasFlag(TCPFlag flag) {
+    return (tcpFlags & flagBit(flag)) != 0;
+  }
+
+  public byte getTcpFlagBits() {
+    return tcpFlags;
+  }
+
+  public void setTcpFlagBits(byte tcpFlagBits) {
+    this.tcpFlags = (byte) (tcpFlagBits & (FLAG_COMBINATIONS - 1));
+  }
+
+  public int getHeaderPayloadLength() {
     return headerPayloadLength;
   }
 
-  public void setHeaderPayloadLength(Integer headerPayloadLength) {
+  public void setHeaderPayloadLength(int headerPayloadLength) {
     this.headerPayloadLength = headerPayloadLength;
   }
 
-  public List<TcpPacket.TcpOption> getTcpOptions() {
+  public TcpOptions getTcpOptions() {
     return tcpOptions;
   }
 
+  public void setTcpOptions(TcpOptions tcpOptions) {
+    this.tcpOptions = tcpOptions == null ? TcpOptions.NONE : tcpOptions;
+  }
+
   public void setTcpOptions(List<TcpPacket.TcpOption> tcpOptions) {
-    this.tcpOptions = tcpOptions;
+    this.tcpOptions = TcpOptions.fromPcap4j(tcpOptions);
   }
 
   @Override
@@ -124,7 +217,7 @@ public class EasyTCPacket {
       
       """
         .formatted(
-        timestamp.toString(),
+        getTimestamp(),
       iPprotocol.getDisplayName(),
       sourceAddress.getAddressString(),
       destinationAddress.getAddressString(),
@@ -139,19 +232,19 @@ public class EasyTCPacket {
 
   public String getTcpFlagsDisplayable() {
     //Prints flags eg 'P.'
-    return tcpFlags.entrySet()
-      .stream()
-      .filter(Map.Entry::getValue)
-      .map(flag -> flag.getKey().getDisplayName())
-      .sorted()
-      .collect(Collectors.joining());
+    return FLAGS_DISPLAYABLE[tcpFlags];
   }
 
   public String getTcpOptionsDisplayable() {
     //shows prints options eg [1, 5, 1]
-    return tcpOptions.stream()
-      .map(option -> option.getKind().valueAsString())
-      .collect(Collectors.joining(", "));
+    var sb = new StringBuilder();
+    for (int i = 0; i < tcpOptions.size(); i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(tcpOptions.getKind(i) & 0xFF);
+    }
+    return sb.toString();
   }
 
   public TCPConnection getTcpConnection() {
@@ -163,11 +256,11 @@ public class EasyTCPacket {
   }
 
   public Boolean getOutgoingPacket() {
-    return outgoingPacket;
+    return outgoingPacket == UNKNOWN_DIRECTION ? null : outgoingPacket == 1;
   }
 
   public void setOutgoingPacket(Boolean outgoingPacket) {
-    this.outgoingPacket = outgoingPacket;
+    this.outgoingPacket = outgoingPacket == null ? UNKNOWN_DIRECTION : (byte) (outgoingPacket ? 1 : 0);
   }
 
   public ConnectionStatus getTcpConnectionStatusAsOfPacket() {
@@ -176,6 +269,10 @@ public class EasyTCPacket {
 
   public void setTcpConnectionStatusAsOfPacket(ConnectionStatus tcpConnectionStatusAsOfPacket) {
     this.tcpConnectionStatusAsOfPacket = tcpConnectionStatusAsOfPacket;
+    if (storedColumns != null) {
+      //kept on the row, so it is still there the next time the row is read
+      storedColumns.setStatus(storedRow, tcpConnectionStatusAsOfPacket);
+    }
   }
 
   @Override
@@ -183,7 +280,7 @@ public class EasyTCPacket {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     EasyTCPacket that = (EasyTCPacket) o;
-    return Objects.equals(timestamp, that.timestamp) && iPprotocol == that.iPprotocol && Objects.equals(sourceAddress, that.sourceAddress) && Objects.equals(destinationAddress, that.destinationAddress) && Objects.equals(sequenceNumber, that.sequenceNumber) && Objects.equals(ackNumber, that.ackNumber) && Objects.equals(windowSize, that.windowSize) && Objects.equals(dataPayloadLength, that.dataPayloadLength) && Objects.equals(headerPayloadLength, that.headerPayloadLength) && Objects.equals(tcpFlags, that.tcpFlags) && Objects.equals(tcpOptions, that.tcpOptions) && Objects.equals(tcpConnection, that.tcpConnection) && Objects.equals(outgoingPacket, that.outgoingPacket);
+    return timestamp == that.timestamp && iPprotocol == that.iPprotocol && Objects.equals(sourceAddress, that.sourceAddress) && Objects.equals(destinationAddress, that.destinationAddress) && sequenceNumber == that.sequenceNumber && ackNumber == that.ackNumber && windowSize == that.windowSize && dataPayloadLength == that.dataPayloadLength && headerPayloadLength == that.headerPayloadLength && tcpFlags == that.tcpFlags && Objects.equals(tcpOptions, that.tcpOptions) && Objects.equals(tcpConnection, that.tcpConnection) && outgoingPacket == that.outgoingPacket;
   }
 
   @Override
@@ -193,6 +290,22 @@ public class EasyTCPacket {
 
   public void setSelectedPacket(boolean selected) {
     this.selectedPacket = selected;
+    if (storedColumns != null) {
+      storedColumns.setSelected(storedRow, selected);
+    }
+  }
+
+  PacketColumns getStoredColumns() {
+    return storedColumns;
+  }
+
+  int getStoredRow() {
+    return storedRow;
+  }
+
+  void setStoredRow(PacketColumns storedColumns, int storedRow) {
+    this.storedColumns = storedColumns;
+    this.storedRow = storedRow;
   }
 
   public boolean getSelectedPacket() {
@@ -0,0 +1,273 @@
+package easytcp.model.packet;
+
+import java.util.*;
+
+/*
+ * Packet store holding the packet objects themselves.
+ * Packets are kept in timestamp order in an append-only array. Readers work on an immutable snapshot
+ * of the array, so they never need to copy it or take a lock, while writers append in O(1) when
+ * packets arrive in order and fall back to a binary search insert into a fresh copy for late packets.
+ * The sequence number lookups are answered from per-direction indexes, which are built on the first lookup.
+ */
+final class HeapPacketStore implements PacketStore {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final Snapshot EMPTY = new Snapshot(new EasyTCPacket[0], 0);
+  private final Object writeLock = new Object();
+  private volatile Snapshot snapshot = EMPTY;
+  //per-direction indexes, null until a lookup needs them, guarded by the write lock
+  private DirectionIndex outgoingIndex;
+  private DirectionIndex incomingIndex;
+
+  HeapPacketStore() {
+  }
+
+  private HeapPacketStore(Snapshot other) {
+    //copies the array, as in place appends on a shared array would overwrite each other
+    this.snapshot = new Snapshot(Arrays.copyOf(other.items(), other.size()), other.size());
+  }
+
+  @Override
+  public PacketStore copy() {
+    return new HeapPacketStore(snapshot);
+  }
+
+  @Override
+  public List<EasyTCPacket> findPacketsWithSeqNum(long seq, boolean outgoing) {
+    synchronized (writeLock) {
+      var index = getIndex(outgoing);
+      var packetsWithSeq = index.bySequence.get(index.unwrapper.unwrap(seq));
+      return packetsWithSeq == null ? List.of() : List.copyOf(packetsWithSeq);
+    }
+  }
+
+  @Override
+  public List<EasyTCPacket> findPacketsWithSeqNum(long seq) {
+    var result = new ArrayList<EasyTCPacket>();
+    synchronized (writeLock) {
+      for (var index : List.of(getIndex(true), getIndex(false))) {
+        var packetsWithSeq = index.bySequence.get(index.unwrapper.unwrap(seq));
+        if (packetsWithSeq != null) {
+          result.addAll(packetsWithSeq);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Optional<EasyTCPacket> findLatestPacketWithSeqNumberLessThan(long ackNumber, boolean outgoing) {
+    synchronized (writeLock) {
+      var index = getIndex(outgoing);
+      var latest = index.latestBelow.lowerEntry(index.unwrapper.unwrap(ackNumber));
+      return latest == null ? Optional.empty() : Optional.of(latest.getValue());
+    }
+  }
+
+  @Override
+  public Optional<EasyTCPacket> findPreviousPacketReceived(EasyTCPacket pkt) {
+    List<EasyTCPacket> otherDirection;
+    synchronized (writeLock) {
+      otherDirection = getIndex(!pkt.getOutgoingPacket()).packets;
+    }
+    //binary search for the last packet sent strictly before this one
+    var low = 0;
+    var high = otherDirection.size();
+    while (low < high) {
+      var mid = (low + high) >>> 1;
+      if (otherDirection.get(mid).getTimestampNanos() < pkt.getTimestampNanos()) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    if (low == 0) {
+      return Optional.empty();
+    }
+    //when several packets share the latest timestamp, the first of them is returned
+    var previous = low - 1;
+    while (previous > 0
+      && otherDirection.get(previous - 1).getTimestampNanos() == otherDirection.get(previous).getTimestampNanos()) {
+      previous--;
+    }
+    return Optional.of(otherDirection.get(previous));
+  }
+
+  @Override
+  public boolean add(EasyTCPacket easyTCPacket) {
+    synchronized (writeLock) {
+      var appended = !isLate(snapshot, easyTCPacket);
+      snapshot = insert(snapshot, easyTCPacket);
+      if (outgoingIndex != null) {
+        addToIndex(easyTCPacket);
+      }
+      return appended;
+    }
+  }
+
+  @Override
+  public int removeConnections(Set<TCPConnection> connections) {
+    synchronized (writeLock) {
+      var current = snapshot;
+      var kept = new EasyTCPacket[current.size()];
+      var size = 0;
+      for (var easyTCPacket : current) {
+        if (!connections.contains(easyTCPacket.getTcpConnection())) {
+          kept[size++] = easyTCPacket;
+        }
+      }
+      var removed = current.size() - size;
+      if (removed > 0) {
+        //a fresh, trimmed array so the memory of the removed packets can be freed, readers keep their snapshots
+        snapshot = new Snapshot(Arrays.copyOf(kept, Math.max(INITIAL_CAPACITY, size)), size);
+        //rebuilt from the remaining packets on the next lookup
+        outgoingIndex = null;
+        incomingIndex = null;
+      }
+      return removed;
+    }
+  }
+
+  /* Returns a snapshot with the packet added in timestamp order, the given snapshot is left unchanged.
+   */
+  private static Snapshot insert(Snapshot current, EasyTCPacket easyTCPacket) {
+    var items = current.items();
+    var size = current.size();
+    if (!isLate(current, easyTCPacket)) {
+      //fast path, packets almost always arrive in timestamp order so they are appended in place,
+      // slots past the current size are never visible to readers of older snapshots
+      if (size == items.length) {
+        items = Arrays.copyOf(items, Math.max(INITIAL_CAPACITY, size * 2));
+      }
+      items[size] = easyTCPacket;
+    } else {
+      //late packet, inserted after any packets with an equal timestamp to keep insertion order stable.
+      //A fresh array is used so snapshots already handed out to readers are not shifted underneath them.
+      var insertAt = findInsertionPoint(items, size, easyTCPacket);
+      var copy = new EasyTCPacket[size == items.length ? size * 2 : items.length];
+      System.arraycopy(items, 0, copy, 0, insertAt);
+      copy[insertAt] = easyTCPacket;
+      System.arraycopy(items, insertAt, copy, insertAt + 1, size - insertAt);
+      items = copy;
+    }
+    return new Snapshot(items, size + 1);
+  }
+
+  private static boolean isLate(Snapshot current, EasyTCPacket easyTCPacket) {
+    return current.size() > 0 && isBefore(easyTCPacket, current.get(current.size() - 1));
+  }
+
+  private static int findInsertionPoint(EasyTCPacket[] items, int size, EasyTCPacket easyTCPacket) {
+    var low = 0;
+    var high = size;
+    while (low < high) {
+      var mid = (low + high) >>> 1;
+      if (isBefore(easyTCPacket, items[mid])) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static boolean isBefore(EasyTCPacket packet, EasyTCPacket other) {
+    //packets without a timestamp are treated as being in order
+    return packet.hasTimestamp()
+      && other.hasTimestamp()
+      && packet.getTimestampNanos() < other.getTimestampNanos();
+  }
+
+  /* Gets the index for a direction, building both indexes from the current packets on first use.
+   * Must be called while holding the write lock.
+   */
+  private DirectionIndex getIndex(boolean outgoing) {
+    if (outgoingIndex == null) {
+      outgoingIndex = new DirectionIndex();
+      incomingIndex = new DirectionIndex();
+      snapshot.forEach(this::addToIndex);
+    }
+    return outgoing ? outgoingIndex : incomingIndex;
+  }
+
+  private void addToIndex(EasyTCPacket easyTCPacket) {
+    //packets missing the direction are only kept in the time ordered list
+    if (easyTCPacket.getOutgoingPacket() != null) {
+      (easyTCPacket.getOutgoingPacket() ? outgoingIndex : incomingIndex).add(easyTCPacket);
+    }
+  }
+
+  @Override
+  public List<EasyTCPacket> getPackets() {
+    return snapshot;
+  }
+
+  @Override
+  public List<EasyTCPacket> getPackets(boolean outgoing) {
+    synchronized (writeLock) {
+      return getIndex(outgoing).packets;
+    }
+  }
+
+  /* Lookup structures for the packets sent in one direction of the connection. Sequence numbers are unwrapped
+   * to 64 bits relative to the most recent packet, so comparisons stay correct across the 32-bit wraparound.
+   */
+  private static final class DirectionIndex {
+    private Snapshot packets = EMPTY;
+    private final NavigableMap<Long, List<EasyTCPacket>> bySequence = new TreeMap<>();
+    //the packets which are the latest one below some sequence number, their sequence numbers increase with time
+    private final NavigableMap<Long, EasyTCPacket> latestBelow = new TreeMap<>();
+    private final SequenceUnwrapper unwrapper = new SequenceUnwrapper();
+
+    private void add(EasyTCPacket easyTCPacket) {
+      var late = isLate(packets, easyTCPacket);
+      packets = insert(packets, easyTCPacket);
+      var sequence = unwrapper.unwrap(easyTCPacket.getSequenceNumber());
+      var packetsWithSeq = bySequence.computeIfAbsent(sequence, k -> new ArrayList<>(1));
+      packetsWithSeq.add(easyTCPacket);
+      if (late) {
+        //rare, the packet may be hidden by or hide packets on either side of it, so the chain is rebuilt
+        packetsWithSeq.sort(Comparator.comparingLong(EasyTCPacket::getTimestampNanos));
+        latestBelow.clear();
+        packets.forEach(pkt -> pushLatestBelow(unwrapper.unwrap(pkt.getSequenceNumber()), pkt));
+      } else {
+        unwrapper.setReference(sequence);
+        pushLatestBelow(sequence, easyTCPacket);
+      }
+    }
+
+    private void pushLatestBelow(long sequence, EasyTCPacket easyTCPacket) {
+      //earlier packets with a sequence number at or above this one can never be the latest one below a number again
+      while (!latestBelow.isEmpty() && latestBelow.lastKey() >= sequence) {
+        latestBelow.pollLastEntry();
+      }
+      latestBelow.put(sequence, easyTCPacket);
+    }
+  }
+
+  /* An immutable view of the first size elements of the backing array, those elements are never modified once published.
+   */
+  private static final class Snapshot extends AbstractList<EasyTCPacket> implements RandomAccess {
+    private final EasyTCPacket[] items;
+    private final int size;
+
+    private Snapshot(EasyTCPacket[] items, int size) {
+      this.items = items;
+      this.size = size;
+    }
+
+    private EasyTCPacket[] items() {
+      return items;
+    }
+
+    @Override
+    public EasyTCPacket get(int index) {
+      Objects.checkIndex(index, size);
+      return items[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
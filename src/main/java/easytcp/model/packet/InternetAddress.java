@@ -8,10 +8,20 @@ import java.util.Objects;
 /*Represents a host internet address, alongside the port its on
  */
 public class InternetAddress {
+  //IPv4 addresses are packed as IPv4-mapped IPv6 addresses, ::ffff:a.b.c.d
+  private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
   private String alphanumericalAddress;
-  private String hostName;
+  //set by the resolver thread once the hostname is known
+  private volatile String hostName;
+  //when the resolver may next be asked for the hostname, so the packets of an address which is being looked up or
+  //could not be resolved do not each ask for it again
+  private volatile boolean hostNameRequested;
+  private volatile long nextHostNameRequestAt;
   private InetAddress pcap4jAddress;
   private Integer port;
+  //the address as a 128 bit number, so it can be compared and hashed without formatting or copying it
+  private long addressHigh;
+  private long addressLow;
 
   public InternetAddress(
     String alphanumericalAddress, String hostName, InetAddress addressPcap4j, Integer tcpPort) {
@@ -19,6 +29,33 @@ public class InternetAddress {
     this.hostName = hostName;
     this.pcap4jAddress = addressPcap4j;
     this.port = tcpPort;
+    packAddress();
+  }
+
+  private void packAddress() {
+    if (pcap4jAddress == null) {
+      //only addresses made up for tests have no pcap4j address, they are told apart by their text
+      addressHigh = 0;
+      addressLow = alphanumericalAddress == null ? 0 : Integer.toUnsignedLong(alphanumericalAddress.hashCode());
+      return;
+    }
+    var bytes = pcap4jAddress.getAddress();
+    if (bytes.length == 4) {
+      addressHigh = 0;
+      addressLow = IPV4_MAPPED_PREFIX | Integer.toUnsignedLong(
+        (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF));
+    } else {
+      addressHigh = toLong(bytes, 0);
+      addressLow = toLong(bytes, 8);
+    }
+  }
+
+  private static long toLong(byte[] bytes, int offset) {
+    var value = 0L;
+    for (int i = offset; i < offset + Long.BYTES; i++) {
+      value = value << 8 | (bytes[i] & 0xFF);
+    }
+    return value;
   }
 
   public InetAddress getPcap4jAddress() {
@@ -27,16 +64,38 @@ public class InternetAddress {
 
   public void setPcap4jAddress(InetAddress pcap4jAddress) {
     this.pcap4jAddress = pcap4jAddress;
+    packAddress();
   }
 
   public void setAlphanumericalAddress(String alphanumericalAddress) {
     this.alphanumericalAddress = alphanumericalAddress;
+    packAddress();
+  }
+
+  //the upper 64 bits of the address as an IPv6 address
+  public long getAddressHigh() {
+    return addressHigh;
+  }
+
+  //the lower 64 bits of the address as an IPv6 address
+  public long getAddressLow() {
+    return addressLow;
   }
 
   public void setHostName(String hostName) {
     this.hostName = hostName;
   }
 
+  //whether the hostname may be asked for again, at the given time of the resolver's clock
+  public boolean isHostNameRequestDue(long now) {
+    return !hostNameRequested || now - nextHostNameRequestAt >= 0;
+  }
+
+  public void setNextHostNameRequestAt(long nextHostNameRequestAt) {
+    this.nextHostNameRequestAt = nextHostNameRequestAt;
+    this.hostNameRequested = true;
+  }
+
   public String getAddressString() {
     //gets hostname if available, else gets the numeric address
     return !Strings.isEmpty(hostName) ? hostName : alphanumericalAddress;
@@ -60,7 +119,9 @@ public class InternetAddress {
 
   @Override
   public int hashCode() {
-    return Objects.hash(alphanumericalAddress, port, pcap4jAddress);
+    var result = Long.hashCode(addressHigh);
+    result = 31 * result + Long.hashCode(addressLow);
+    return 31 * result + Objects.hashCode(port);
   }
 
   @Override
@@ -68,9 +129,10 @@ public class InternetAddress {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     InternetAddress that = (InternetAddress) o;
-    return Objects.equals(alphanumericalAddress, that.alphanumericalAddress)
-      && Objects.equals(pcap4jAddress.getHostAddress(), that.pcap4jAddress.getHostAddress())
-      && Objects.equals(port, that.port);
+    return addressHigh == that.addressHigh
+      && addressLow == that.addressLow
+      && Objects.equals(port, that.port)
+      && Objects.equals(alphanumericalAddress, that.alphanumericalAddress);
   }
 
   @Override
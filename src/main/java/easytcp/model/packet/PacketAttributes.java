@@ -0,0 +1,111 @@
+package easytcp.model.packet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/* Values derived from the packets of a connection, kept beside them in a table with a row for each packet in
+ * timestamp order: the time since the first segment and the status of the connection as of the packet.
+ * The table is extended as packets are appended to the connection and only worked out again from the start
+ * when a packet is inserted before ones already in it, so views read these values rather than deriving them.
+ */
+public final class PacketAttributes {
+  private static final ConnectionStatus[] STATUSES = ConnectionStatus.values();
+  private List<EasyTCPacket> packets = List.of();
+  private long orderVersion = -1;
+  private int size;
+  private long firstTimestampNanos;
+  private long[] relativeNanos = new long[16];
+  private byte[] statuses = new byte[16];
+
+  /* Extends the table with the packets added to the container since it was last brought up to date, working out
+   * the status as of each packet from the status as of the one before it.
+   */
+  public synchronized void update(PacketContainer packetContainer,
+                                  BiFunction<ConnectionStatus, EasyTCPacket, ConnectionStatus> nextStatus) {
+    var version = packetContainer.getOrderVersion();
+    var allPackets = packetContainer.getPackets();
+    if (version != orderVersion || allPackets.size() < size) {
+      //packets have moved, so the rows no longer line up with them
+      orderVersion = version;
+      size = 0;
+    } else if (allPackets.size() == size) {
+      return;
+    }
+    if (allPackets.size() > relativeNanos.length) {
+      var capacity = Math.max(relativeNanos.length * 2, allPackets.size());
+      relativeNanos = Arrays.copyOf(relativeNanos, capacity);
+      statuses = Arrays.copyOf(statuses, capacity);
+    }
+    if (!allPackets.isEmpty()) {
+      firstTimestampNanos = allPackets.get(0).getTimestampNanos();
+    }
+    var status = size == 0 ? ConnectionStatus.UNKNOWN : STATUSES[statuses[size - 1]];
+    for (int i = size; i < allPackets.size(); i++) {
+      var pkt = allPackets.get(i);
+      status = nextStatus.apply(status, pkt);
+      relativeNanos[i] = pkt.getTimestampNanos() - firstTimestampNanos;
+      statuses[i] = (byte) status.ordinal();
+    }
+    size = allPackets.size();
+    packets = allPackets;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized EasyTCPacket getPacket(int position) {
+    return packets.get(position);
+  }
+
+  //segments are numbered from one in timestamp order
+  public synchronized int getSegmentNumber(int position) {
+    checkPosition(position);
+    return position + 1;
+  }
+
+  public synchronized long getRelativeNanos(int position) {
+    checkPosition(position);
+    return relativeNanos[position];
+  }
+
+  public synchronized ConnectionStatus getStatus(int position) {
+    checkPosition(position);
+    return STATUSES[statuses[position]];
+  }
+
+  //the timestamp of the first segment of the connection, which relative times are measured from
+  public synchronized long getFirstTimestampNanos() {
+    return firstTimestampNanos;
+  }
+
+  /* Finds the row of the packet by binary searching the timestamps, or returns -1 if it is not in the table.
+   */
+  public synchronized int indexOf(EasyTCPacket pkt) {
+    var timestamp = pkt.getTimestampNanos();
+    var low = 0;
+    var high = size;
+    while (low < high) {
+      var mid = (low + high) >>> 1;
+      if (packets.get(mid).getTimestampNanos() < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    //several packets can share a timestamp
+    for (int i = low; i < size && packets.get(i).getTimestampNanos() == timestamp; i++) {
+      if (packets.get(i).equals(pkt)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void checkPosition(int position) {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("Position %s out of bounds for %s packets".formatted(position, size));
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package easytcp.model.packet;
+
+import easytcp.model.IPprotocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/* Off-heap columns holding the fields of packets, one row per packet in the order they were added.
+ * Memory is allocated in direct buffers of CHUNK_ROWS rows, each laid out column after column, so
+ * reading one field of many packets touches one contiguous run of memory. Rows never move once written.
+ * Fields which refer to objects, such as the addresses, connection and options, are stored as ids into
+ * small dictionaries, as a capture has far fewer of them than packets.
+ * The stores of a capture share one set of columns, a packet added to several of them is written once.
+ * Rows are added under the columns' lock, readers may read any row which a store has published to them.
+ */
+final class PacketColumns {
+  private static final int CHUNK_SHIFT = 16;
+  static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+  private static final int ROW_MASK = CHUNK_ROWS - 1;
+  //column offsets within a chunk, the widest columns come first so every value is aligned
+  private static final int TIMESTAMP = 0;
+  private static final int SEQUENCE = TIMESTAMP + Long.BYTES * CHUNK_ROWS;
+  private static final int ACK = SEQUENCE + Integer.BYTES * CHUNK_ROWS;
+  private static final int PAYLOAD_LENGTH = ACK + Integer.BYTES * CHUNK_ROWS;
+  private static final int CONNECTION = PAYLOAD_LENGTH + Integer.BYTES * CHUNK_ROWS;
+  private static final int SOURCE = CONNECTION + Integer.BYTES * CHUNK_ROWS;
+  private static final int DESTINATION = SOURCE + Integer.BYTES * CHUNK_ROWS;
+  private static final int OPTIONS = DESTINATION + Integer.BYTES * CHUNK_ROWS;
+  private static final int WINDOW = OPTIONS + Integer.BYTES * CHUNK_ROWS;
+  private static final int HEADER_LENGTH = WINDOW + Character.BYTES * CHUNK_ROWS;
+  private static final int FLAGS = HEADER_LENGTH + Short.BYTES * CHUNK_ROWS;
+  private static final int DIRECTION = FLAGS + CHUNK_ROWS;
+  private static final int PROTOCOL = DIRECTION + CHUNK_ROWS;
+  private static final int STATUS = PROTOCOL + CHUNK_ROWS;
+  private static final int SELECTED = STATUS + CHUNK_ROWS;
+  private static final int CHUNK_BYTES = SELECTED + CHUNK_ROWS;
+  static final byte INCOMING = 0;
+  static final byte OUTGOING = 1;
+  static final byte UNKNOWN_DIRECTION = -1;
+  private static final IPprotocol[] PROTOCOLS = IPprotocol.values();
+  private static final ConnectionStatus[] STATUSES = ConnectionStatus.values();
+  private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+  private int rowCount;
+  private final Dictionary<InternetAddress> addresses = new Dictionary<>(new HashMap<>());
+  private final Dictionary<TCPConnection> connections = new Dictionary<>(new IdentityHashMap<>());
+  private final Dictionary<TcpOptions> options = new Dictionary<>(new HashMap<>());
+
+  /* Returns the row holding the packet, writing it to a new row if it is not in these columns yet.
+   */
+  synchronized int append(EasyTCPacket packet) {
+    if (packet.getStoredColumns() == this) {
+      return packet.getStoredRow();
+    }
+    var row = rowCount;
+    var chunk = chunkForWrite(row);
+    var i = row & ROW_MASK;
+    chunk.putLong(TIMESTAMP + i * Long.BYTES, packet.getTimestampNanos());
+    //sequence and ack numbers are 32-bit on the wire, they are kept as unsigned ints
+    chunk.putInt(SEQUENCE + i * Integer.BYTES, (int) packet.getSequenceNumber());
+    chunk.putInt(ACK + i * Integer.BYTES, (int) packet.getAckNumber());
+    chunk.putInt(PAYLOAD_LENGTH + i * Integer.BYTES, packet.getDataPayloadLength());
+    chunk.putInt(CONNECTION + i * Integer.BYTES, connections.idOf(packet.getTcpConnection()));
+    chunk.putInt(SOURCE + i * Integer.BYTES, addresses.idOf(packet.getSourceAddress()));
+    chunk.putInt(DESTINATION + i * Integer.BYTES, addresses.idOf(packet.getDestinationAddress()));
+    chunk.putInt(OPTIONS + i * Integer.BYTES, options.idOf(packet.getTcpOptions()));
+    chunk.putChar(WINDOW + i * Character.BYTES, (char) packet.getWindowSize());
+    chunk.putShort(HEADER_LENGTH + i * Short.BYTES, (short) packet.getHeaderPayloadLength());
+    chunk.put(FLAGS + i, packet.getTcpFlagBits());
+    var outgoing = packet.getOutgoingPacket();
+    chunk.put(DIRECTION + i, outgoing == null ? UNKNOWN_DIRECTION : outgoing ? OUTGOING : INCOMING);
+    chunk.put(PROTOCOL + i, ordinalOf(packet.getiPprotocol()));
+    chunk.put(STATUS + i, ordinalOf(packet.getTcpConnectionStatusAsOfPacket()));
+    chunk.put(SELECTED + i, (byte) (packet.getSelectedPacket() ? 1 : 0));
+    rowCount++;
+    packet.setStoredRow(this, row);
+    return row;
+  }
+
+  /* Creates a packet object from a row. Changes to its connection status and selection are written back to the row.
+   */
+  EasyTCPacket materialize(int row) {
+    var packet = new EasyTCPacket();
+    packet.setTimestampNanos(timestamp(row));
+    packet.setiPprotocol(protocol(row));
+    packet.setSourceAddress(sourceAddress(row));
+    packet.setDestinationAddress(destinationAddress(row));
+    packet.setSequenceNumber(sequenceNumber(row));
+    packet.setAckNumber(ackNumber(row));
+    packet.setWindowSize(windowSize(row));
+    packet.setDataPayloadLength(dataPayloadLength(row));
+    packet.setHeaderPayloadLength(headerPayloadLength(row));
+    packet.setTcpFlagBits(flags(row));
+    packet.setTcpOptions(options(optionsId(row)));
+    packet.setTcpConnection(connection(row));
+    var direction = direction(row);
+    packet.setOutgoingPacket(direction == UNKNOWN_DIRECTION ? null : direction == OUTGOING);
+    packet.setTcpConnectionStatusAsOfPacket(status(row));
+    packet.setSelectedPacket(selected(row));
+    packet.setStoredRow(this, row);
+    return packet;
+  }
+
+  private ByteBuffer chunkForWrite(int row) {
+    var current = chunks;
+    var chunkIndex = row >>> CHUNK_SHIFT;
+    if (chunkIndex == current.length) {
+      var grown = Arrays.copyOf(current, current.length + 1);
+      grown[chunkIndex] = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder());
+      chunks = grown;
+      current = grown;
+    }
+    return current[chunkIndex];
+  }
+
+  private static byte ordinalOf(Enum<?> value) {
+    //0 is kept for null
+    return (byte) (value == null ? 0 : value.ordinal() + 1);
+  }
+
+  private ByteBuffer chunk(int row) {
+    return chunks[row >>> CHUNK_SHIFT];
+  }
+
+  long timestamp(int row) {
+    return chunk(row).getLong(TIMESTAMP + (row & ROW_MASK) * Long.BYTES);
+  }
+
+  long sequenceNumber(int row) {
+    return chunk(row).getInt(SEQUENCE + (row & ROW_MASK) * Integer.BYTES) & 0xFFFFFFFFL;
+  }
+
+  long ackNumber(int row) {
+    return chunk(row).getInt(ACK + (row & ROW_MASK) * Integer.BYTES) & 0xFFFFFFFFL;
+  }
+
+  int dataPayloadLength(int row) {
+    return chunk(row).getInt(PAYLOAD_LENGTH + (row & ROW_MASK) * Integer.BYTES);
+  }
+
+  TCPConnection connection(int row) {
+    return connections.get(chunk(row).getInt(CONNECTION + (row & ROW_MASK) * Integer.BYTES));
+  }
+
+  InternetAddress sourceAddress(int row) {
+    return addresses.get(chunk(row).getInt(SOURCE + (row & ROW_MASK) * Integer.BYTES));
+  }
+
+  InternetAddress destinationAddress(int row) {
+    return addresses.get(chunk(row).getInt(DESTINATION + (row & ROW_MASK) * Integer.BYTES));
+  }
+
+  int optionsId(int row) {
+    return chunk(row).getInt(OPTIONS + (row & ROW_MASK) * Integer.BYTES);
+  }
+
+  TcpOptions options(int id) {
+    return options.get(id);
+  }
+
+  int windowSize(int row) {
+    return chunk(row).getChar(WINDOW + (row & ROW_MASK) * Character.BYTES);
+  }
+
+  int headerPayloadLength(int row) {
+    return chunk(row).getShort(HEADER_LENGTH + (row & ROW_MASK) * Short.BYTES);
+  }
+
+  byte flags(int row) {
+    return chunk(row).get(FLAGS + (row & ROW_MASK));
+  }
+
+  byte direction(int row) {
+    return chunk(row).get(DIRECTION + (row & ROW_MASK));
+  }
+
+  IPprotocol protocol(int row) {
+    var ordinal = chunk(row).get(PROTOCOL + (row & ROW_MASK));
+    return ordinal == 0 ? null : PROTOCOLS[ordinal - 1];
+  }
+
+  ConnectionStatus status(int row) {
+    var ordinal = chunk(row).get(STATUS + (row & ROW_MASK));
+    return ordinal == 0 ? null : STATUSES[ordinal - 1];
+  }
+
+  void setStatus(int row, ConnectionStatus status) {
+    chunk(row).put(STATUS + (row & ROW_MASK), ordinalOf(status));
+  }
+
+  boolean selected(int row) {
+    return chunk(row).get(SELECTED + (row & ROW_MASK)) != 0;
+  }
+
+  void setSelected(int row, boolean selected) {
+    chunk(row).put(SELECTED + (row & ROW_MASK), (byte) (selected ? 1 : 0));
+  }
+
+  /* The off-heap memory taken by the columns. Rows never move, so this is only freed with the columns themselves.
+   */
+  long allocatedBytes() {
+    return (long) chunks.length * CHUNK_BYTES;
+  }
+
+  /* Sums the payload lengths of the given rows which were sent in one direction, reading only the two columns involved.
+   */
+  long sumPayloadLength(int[] rows, int count, byte direction) {
+    var current = chunks;
+    var sum = 0L;
+    for (int j = 0; j < count; j++) {
+      var row = rows[j];
+      var chunk = current[row >>> CHUNK_SHIFT];
+      var i = row & ROW_MASK;
+      if (chunk.get(DIRECTION + i) == direction) {
+        sum += chunk.getInt(PAYLOAD_LENGTH + i * Integer.BYTES);
+      }
+    }
+    return sum;
+  }
+
+  /* Values numbered in the order they were first seen, id 0 being null. Ids are only assigned by the writer,
+   * readers look values up through an array which is replaced rather than modified when it grows.
+   */
+  private static final class Dictionary<T> {
+    private final Map<T, Integer> ids;
+    private volatile Object[] values = new Object[8];
+    private int size = 1;
+
+    private Dictionary(Map<T, Integer> ids) {
+      this.ids = ids;
+    }
+
+    private int idOf(T value) {
+      if (value == null) {
+        return 0;
+      }
+      var id = ids.get(value);
+      if (id == null) {
+        id = size;
+        var current = values;
+        if (id == current.length) {
+          current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = value;
+        values = current;
+        ids.put(value, id);
+        size++;
+      }
+      return id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T get(int id) {
+      return (T) values[id];
+    }
+  }
+}
@@ -1,122 +1,159 @@
 package easytcp.model.packet;
 
+import easytcp.model.PacketStoreBackend;
 import easytcp.model.TCPFlag;
-import org.pcap4j.packet.TcpPacket;
+import easytcp.model.application.ApplicationStatus;
 import org.pcap4j.packet.namednumber.TcpOptionKind;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  * A wrapper around a list of packets providing helper methods and handling concurrency issues.
+ * The packets are held by a store, either as objects on the heap or, for very large captures, in off-heap
+ * columns, chosen from the application status when the container is created or cleared.
+ * Either way packets are kept in timestamp order, readers work on immutable snapshots without taking a lock,
+ * and the sequence number lookups are answered from per-direction indexes built on the first lookup.
+ * Running statistics of the packets are kept up to date as each one is added.
  */
 public class PacketContainer {
-  private final List<EasyTCPacket> packets = new ArrayList<>();
+  //the columns shared by the containers of the current capture, so a packet in several containers is stored once
+  private static PacketColumns sharedColumns = new PacketColumns();
+  private volatile PacketStore store;
+  private volatile ConnectionStatistics statistics = new ConnectionStatistics();
+  //changed whenever packets already in the container may have moved, so views built from their positions are stale
+  private final AtomicLong orderVersion = new AtomicLong();
 
   public PacketContainer() {
+    this(ApplicationStatus.getStatus().getPacketStoreBackend());
+  }
+
+  public PacketContainer(PacketStoreBackend packetStoreBackend) {
+    this.store = newStore(packetStoreBackend);
   }
 
   public PacketContainer(PacketContainer packetContainer) {
-    this.packets.addAll(packetContainer.getPackets());
+    this.store = packetContainer.store.copy();
+    this.statistics = new ConnectionStatistics(packetContainer.statistics);
+  }
+
+  private static PacketStore newStore(PacketStoreBackend packetStoreBackend) {
+    return packetStoreBackend == PacketStoreBackend.OFF_HEAP_COLUMNAR
+      ? new ColumnarPacketStore(getSharedColumns())
+      : new HeapPacketStore();
+  }
+
+  private static synchronized PacketColumns getSharedColumns() {
+    return sharedColumns;
+  }
+
+  /* Starts new shared columns for the next capture, the old ones are freed once no container refers to them.
+   */
+  public static synchronized void resetSharedColumns() {
+    sharedColumns = new PacketColumns();
   }
 
   public List<EasyTCPacket> findPacketsWithSeqNum(Long seq, boolean outgoing) {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(pkt -> seq.equals(pkt.getSequenceNumber()) && pkt.getOutgoingPacket() == outgoing)
-      .toList();
+    return store.findPacketsWithSeqNum(seq, outgoing);
   }
 
   //Gets the unique options found inside the packet container
   public List<TcpOptionKind> getUniqueTcpOptions(boolean outgoingPacket) {
-    var tempArr = outgoingPacket ? new ArrayList<>(getOutgoingPackets()) : new ArrayList<>(getIncomingPackets());
-
-    return tempArr
-      .stream()
-      .filter(pkt -> !pkt.getTcpOptions().isEmpty())
-      .flatMap(pkt -> pkt.getTcpOptions().stream().filter(i -> !i.getKind().equals(TcpOptionKind.NO_OPERATION)))
-      .map(TcpPacket.TcpOption::getKind)
-      .distinct()
-      .toList();
+    return store.getUniqueTcpOptions(outgoingPacket);
   }
 
   //Finds a packet with a sequence number less than the given number, on an outgoing or incoming packet.
+  //Sequence numbers are compared as 32-bit serial numbers, so this keeps working after they wrap around.
   public Optional<EasyTCPacket> findLatestPacketWithSeqNumberLessThan(Long ackNumber, boolean outgoing) {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(pkt -> ackNumber > pkt.getSequenceNumber() && pkt.getOutgoingPacket() == outgoing)
-      .max(Comparator.comparing(EasyTCPacket::getTimestamp));
+    return store.findLatestPacketWithSeqNumberLessThan(ackNumber, outgoing);
   }
 
   //Finds the previously received packet
   public Optional<EasyTCPacket> findPreviousPacketReceived(EasyTCPacket pkt) {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(other -> !(pkt.getOutgoingPacket().equals(other.getOutgoingPacket()))
-        && other.getTimestamp().before(pkt.getTimestamp()))
-      .max(Comparator.comparing(EasyTCPacket::getTimestamp));
+    return store.findPreviousPacketReceived(pkt);
   }
 
   //Adds the packet to the container while ensuring its sorted by timestamp and prevents concurrency issues.
   public void addPacketToContainer(EasyTCPacket easyTCPacket) {
-    synchronized (packets) {
-      packets.add(easyTCPacket);
-      packets.sort(Comparator.comparing(EasyTCPacket::getTimestamp));
+    if (!store.add(easyTCPacket)) {
+      orderVersion.incrementAndGet();
     }
+    statistics.record(easyTCPacket);
+  }
+
+  /* Removes the packets of the connections, to free their memory. The running statistics are left as they are,
+   * so they still describe every packet which was added to the container.
+   */
+  public int evictPacketsOf(Set<TCPConnection> connections) {
+    var evicted = store.removeConnections(connections);
+    if (evicted > 0) {
+      orderVersion.incrementAndGet();
+    }
+    return evicted;
+  }
+
+  //the off-heap memory of the columns the packets are kept in, which evicting packets does not free
+  public long getOffHeapBytes() {
+    return store instanceof ColumnarPacketStore columnar ? columnar.offHeapBytes() : 0;
+  }
+
+  public PacketStoreBackend getBackend() {
+    return store instanceof ColumnarPacketStore ? PacketStoreBackend.OFF_HEAP_COLUMNAR : PacketStoreBackend.HEAP;
+  }
+
+  //Gets the running totals of the packets in the container, which do not need to go through the packets
+  public ConnectionStatistics getStatistics() {
+    return statistics;
+  }
+
+  /* Returns a number which stays the same for as long as packets are only added after the ones already in the
+   * container, so a view of the first packets can be extended with the new ones rather than rebuilt.
+   */
+  public long getOrderVersion() {
+    return orderVersion.get();
   }
 
   public List<EasyTCPacket> getAllPacketsWithoutFlag(TCPFlag flag, boolean outgoing) {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(pkt -> !pkt.getTcpFlags().get(flag) && outgoing == pkt.getOutgoingPacket())
-      .toList();
+    return store.getAllPacketsWithoutFlag(flag, outgoing);
   }
 
   public Map<Boolean, List<EasyTCPacket>> findPacketsWithFlagOutGoingOrNot(TCPFlag flag) {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(pkt -> pkt.getTcpFlags().get(flag))
-      .collect(Collectors.partitioningBy(EasyTCPacket::getOutgoingPacket));
+    return store.findPacketsWithFlagOutGoingOrNot(flag);
   }
 
+  //Returns a read-only, timestamp ordered view of the packets currently in the container, without copying them
   public List<EasyTCPacket> getPackets() {
-    return new ArrayList<>(packets);
+    return store.getPackets();
   }
 
   public List<EasyTCPacket> getOutgoingPackets() {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(EasyTCPacket::getOutgoingPacket)
-      .toList();
+    return store.getPackets(true);
   }
 
   public List<EasyTCPacket> getIncomingPackets() {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(pkt -> !pkt.getOutgoingPacket())
-      .toList();
+    return store.getPackets(false);
   }
 
-  public synchronized void clearPackets() {
-    this.packets.clear();
+  //Clears the packets, switching to the store chosen in the application status if that has changed
+  public void clearPackets() {
+    store = newStore(ApplicationStatus.getStatus().getPacketStoreBackend());
+    statistics = new ConnectionStatistics();
+    orderVersion.incrementAndGet();
   }
 
   public Long getBytesSentOrReceived(boolean outGoing) {
-    return new ArrayList<>(packets)
-      .stream()
-      .filter(pkt -> pkt.getOutgoingPacket() == outGoing)
-      .mapToLong(EasyTCPacket::getDataPayloadLength)
-      .sum();
+    return store.getBytesSentOrReceived(outGoing);
   }
 
   //Finds a packet matching the arguments provided to the method in the packet container
   public Optional<EasyTCPacket> findPacketWith(Long seq, Long ack, Integer payloadLen, String tcpFlagsDisplayable) {
-    return new ArrayList<>(packets)
+    //the earliest matching packet is the one which would be found first in the time ordered list
+    return store.findPacketsWithSeqNum(seq)
       .stream()
-      .filter(pkt -> seq.equals(pkt.getSequenceNumber())
-        && pkt.getAckNumber().equals(ack)
+      .filter(pkt -> pkt.getAckNumber() == ack
         && pkt.getTcpFlagsDisplayable().equals(tcpFlagsDisplayable)
-        && pkt.getDataPayloadLength().equals(payloadLen))
-      .findFirst();
+        && pkt.getDataPayloadLength() == payloadLen)
+      //packets without a timestamp hold the lowest value, so they still come first
+      .min(Comparator.comparingLong(EasyTCPacket::getTimestampNanos));
   }
 }
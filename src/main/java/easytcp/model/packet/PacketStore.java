@@ -0,0 +1,72 @@
+package easytcp.model.packet;
+
+import easytcp.model.TCPFlag;
+import org.pcap4j.packet.namednumber.TcpOptionKind;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/* The storage behind a PacketContainer. The queries which only need to look at every packet once have
+ * default implementations over the packet lists, stores which can answer them more cheaply override them.
+ */
+interface PacketStore {
+
+  //returns false when the packet was inserted before packets already in the store, rather than at the end
+  boolean add(EasyTCPacket easyTCPacket);
+
+  //a read-only, timestamp ordered view of the packets
+  List<EasyTCPacket> getPackets();
+
+  List<EasyTCPacket> getPackets(boolean outgoing);
+
+  List<EasyTCPacket> findPacketsWithSeqNum(long seq, boolean outgoing);
+
+  Optional<EasyTCPacket> findLatestPacketWithSeqNumberLessThan(long ackNumber, boolean outgoing);
+
+  Optional<EasyTCPacket> findPreviousPacketReceived(EasyTCPacket pkt);
+
+  List<EasyTCPacket> findPacketsWithSeqNum(long seq);
+
+  //a store with the same packets, which can be added to without affecting this one
+  PacketStore copy();
+
+  //removes the packets belonging to any of the connections, which must be an identity set, returns how many were removed
+  int removeConnections(Set<TCPConnection> connections);
+
+  default List<TcpOptionKind> getUniqueTcpOptions(boolean outgoing) {
+    return getPackets(outgoing)
+      .stream()
+      .map(EasyTCPacket::getTcpOptions)
+      .filter(options -> !options.isEmpty())
+      //packets share option instances, so each distinct list of options only needs to be looked at once
+      .distinct()
+      .flatMap(options -> options.getKinds().stream().filter(i -> !i.equals(TcpOptionKind.NO_OPERATION)))
+      .distinct()
+      .toList();
+  }
+
+  default List<EasyTCPacket> getAllPacketsWithoutFlag(TCPFlag flag, boolean outgoing) {
+    return getPackets()
+      .stream()
+      .filter(pkt -> !pkt.hasFlag(flag) && outgoing == pkt.getOutgoingPacket())
+      .toList();
+  }
+
+  default Map<Boolean, List<EasyTCPacket>> findPacketsWithFlagOutGoingOrNot(TCPFlag flag) {
+    return getPackets()
+      .stream()
+      .filter(pkt -> pkt.hasFlag(flag))
+      .collect(Collectors.partitioningBy(EasyTCPacket::getOutgoingPacket));
+  }
+
+  default long getBytesSentOrReceived(boolean outgoing) {
+    return getPackets()
+      .stream()
+      .filter(pkt -> pkt.getOutgoingPacket() == outgoing)
+      .mapToLong(EasyTCPacket::getDataPayloadLength)
+      .sum();
+  }
+}
@@ -0,0 +1,31 @@
+package easytcp.model.packet;
+
+/* Unwraps 32-bit TCP sequence numbers to 64 bits relative to a reference, normally the most recent
+ * sequence number seen, so that comparisons stay correct across the 32-bit wraparound.
+ */
+final class SequenceUnwrapper {
+  private static final long SEQUENCE_SPACE = 1L << 32;
+  private static final long HALF_SEQUENCE_SPACE = 1L << 31;
+  private boolean hasReference;
+  private long reference;
+
+  long unwrap(long sequenceNumber) {
+    var raw = sequenceNumber & (SEQUENCE_SPACE - 1);
+    if (!hasReference) {
+      return raw;
+    }
+    //picks the 64-bit value closest to the reference which has the same lower 32 bits
+    var unwrapped = (reference & -SEQUENCE_SPACE) | raw;
+    if (unwrapped - reference > HALF_SEQUENCE_SPACE) {
+      unwrapped -= SEQUENCE_SPACE;
+    } else if (reference - unwrapped > HALF_SEQUENCE_SPACE) {
+      unwrapped += SEQUENCE_SPACE;
+    }
+    return unwrapped;
+  }
+
+  void setReference(long reference) {
+    this.reference = reference;
+    this.hasReference = true;
+  }
+}
@@ -1,6 +1,7 @@
 package easytcp.model.packet;
 
 import easytcp.model.application.FiltersForm;
+import easytcp.model.application.PacketFilter;
 
 import java.util.Objects;
 
@@ -8,22 +9,27 @@ import java.util.Objects;
  */
 public class TCPConnection {
   private ConnectionStatus connectionStatus;
-  private ConnectionStatus statusAsOfPacketTraversal; //keeps track of current status when looping through packets on the connection
   private ConnectionAddresses connectionAddresses;
   private PacketContainer packetContainer = new PacketContainer();
+  private final ConnectionTracking tracking; //per-direction state used to work out the status of the connection
+  private final PacketAttributes packetAttributes = new PacketAttributes(); //values derived from each packet, for display
+  private final TcpBehaviourAnalysis behaviourAnalysis = new TcpBehaviourAnalysis(); //evidence of tcp features
   private Long maximumSegmentSizeClient;
   private Long maximumSegmentSizeServer;
   private Integer windowScaleClient;
   private Integer windowScaleServer;
   private boolean fullConnection; // indicates weather a TCP handshake was captured
+  private volatile PacketFilter.ConnectionMatch filterMatch; //whether the connection matched the latest filters
 
   public TCPConnection() {
+    this.tracking = new ConnectionTracking();
   }
 
   public TCPConnection(TCPConnection connection) {
     this.connectionStatus = connection.getConnectionStatus();
     this.connectionAddresses = connection.getConnectionAddresses();
     this.packetContainer = new PacketContainer(connection.getPacketContainer());
+    this.tracking = new ConnectionTracking(connection.getTracking());
     this.fullConnection = connection.isFullConnection();
     this.maximumSegmentSizeClient = connection.getMaximumSegmentSizeClient();
     this.maximumSegmentSizeServer = connection.getMaximumSegmentSizeServer();
@@ -47,6 +53,31 @@ public class TCPConnection {
     this.packetContainer = packetContainer;
   }
 
+  //the running totals of the packets on the connection
+  public ConnectionStatistics getStatistics() {
+    return packetContainer.getStatistics();
+  }
+
+  public ConnectionTracking getTracking() {
+    return tracking;
+  }
+
+  public PacketAttributes getPacketAttributes() {
+    return packetAttributes;
+  }
+
+  public TcpBehaviourAnalysis getBehaviourAnalysis() {
+    return behaviourAnalysis;
+  }
+
+  public PacketFilter.ConnectionMatch getFilterMatch() {
+    return filterMatch;
+  }
+
+  public void setFilterMatch(PacketFilter.ConnectionMatch filterMatch) {
+    this.filterMatch = filterMatch;
+  }
+
   public boolean isFullConnection() {
     return fullConnection;
   }
@@ -87,14 +118,6 @@ public class TCPConnection {
     this.windowScaleServer = windowScaleServer;
   }
 
-  public ConnectionStatus getStatusAsOfPacketTraversal() {
-    return statusAsOfPacketTraversal;
-  }
-
-  public void setStatusAsOfPacketTraversal(ConnectionStatus statusAsOfPacketTraversal) {
-    this.statusAsOfPacketTraversal = statusAsOfPacketTraversal;
-  }
-
   public ConnectionAddresses getConnectionAddresses() {
     return connectionAddresses;
   }
@@ -0,0 +1,233 @@
+package easytcp.model.packet;
+
+import easytcp.model.TCPFlag;
+import easytcp.model.TcpStrategyDetection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/* Evidence of Nagle's algorithm, delayed acks and slow start on each side of a connection, for every detection
+ * sensitivity at once. Each packet is looked at once, in timestamp order, as the analysis is brought up to date
+ * with the packets added since, so switching sensitivity or redisplaying a connection reads the counters only.
+ * It starts again from the first packet when a packet is inserted before ones already looked at, or when the
+ * segment sizes or window scales the evidence was worked out with change.
+ */
+public final class TcpBehaviourAnalysis {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TcpBehaviourAnalysis.class);
+  private static final TcpStrategyDetection[] LEVELS = TcpStrategyDetection.values();
+  private PacketContainer packetContainer;
+  private long orderVersion = -1;
+  private Settings settings;
+  private int analysed; // the number of packets looked at, in timestamp order
+  //the remaining state is indexed by direction, 0 for outgoing and 1 for incoming, and by sensitivity level
+  private final int[] packetsInDirection = new int[2];
+  private final EasyTCPacket[] previousInDirection = new EasyTCPacket[2];
+  private final int[][] nagleNearMss = new int[LEVELS.length][2];
+  private final int[] nagleSentAfterAck = new int[2];
+  private final int[][] ackCounters = new int[LEVELS.length][2];
+  private final int[][] delayedAckPossibilities = new int[LEVELS.length][2];
+  private final SlowStart[] slowStarts = new SlowStart[LEVELS.length];
+
+  /* The evidence found on one side of the connection for a sensitivity level
+   */
+  public record Evidence(int naglePossibility, int delayedAckPossibility, int slowStartPossibility) {
+  }
+
+  //the values of the connection which the evidence depends on, learnt from the handshake
+  private record Settings(Long maximumSegmentSizeClient,
+                          Long maximumSegmentSizeServer,
+                          Integer windowScaleClient,
+                          Integer windowScaleServer) {
+    private static Settings of(TCPConnection tcpConnection) {
+      return new Settings(tcpConnection.getMaximumSegmentSizeClient(), tcpConnection.getMaximumSegmentSizeServer(),
+        tcpConnection.getWindowScaleClient(), tcpConnection.getWindowScaleServer());
+    }
+  }
+
+  public TcpBehaviourAnalysis() {
+    reset();
+  }
+
+  /* Looks at the packets added to the connection since the analysis was last brought up to date.
+   */
+  public synchronized void update(TCPConnection tcpConnection) {
+    var container = tcpConnection.getPacketContainer();
+    var version = container.getOrderVersion();
+    var currentSettings = Settings.of(tcpConnection);
+    var packets = container.getPackets();
+    if (container != packetContainer
+      || version != orderVersion
+      || !Objects.equals(currentSettings, settings)
+      || packets.size() < analysed) {
+      reset();
+      packetContainer = container;
+      orderVersion = version;
+      settings = currentSettings;
+    }
+    for (int i = analysed; i < packets.size(); i++) {
+      analyse(packets.get(i), container);
+    }
+    analysed = packets.size();
+  }
+
+  public synchronized Evidence getEvidence(TcpStrategyDetection level, boolean outgoing) {
+    var direction = directionOf(outgoing);
+    var slowStart = slowStarts[level.ordinal()];
+    return new Evidence(nagleNearMss[level.ordinal()][direction] + nagleSentAfterAck[direction],
+      delayedAckPossibilities[level.ordinal()][direction],
+      outgoing ? slowStart.possibilitySending : slowStart.possibilityReceiving);
+  }
+
+  private void reset() {
+    analysed = 0;
+    for (int direction = 0; direction < 2; direction++) {
+      packetsInDirection[direction] = 0;
+      previousInDirection[direction] = null;
+      nagleSentAfterAck[direction] = 0;
+      for (var level : LEVELS) {
+        nagleNearMss[level.ordinal()][direction] = 0;
+        ackCounters[level.ordinal()][direction] = 0;
+        delayedAckPossibilities[level.ordinal()][direction] = 0;
+      }
+    }
+    for (var level : LEVELS) {
+      slowStarts[level.ordinal()] = new SlowStart(level.getSlowStartThreshold());
+    }
+  }
+
+  private void analyse(EasyTCPacket pkt, PacketContainer container) {
+    var outgoing = pkt.getOutgoingPacket();
+    var direction = directionOf(outgoing);
+    var position = packetsInDirection[direction]++;
+    analyseNagle(pkt, container, direction, position);
+    analyseDelayedAck(pkt, container, direction);
+    for (var slowStart : slowStarts) {
+      slowStart.analyse(pkt);
+    }
+    previousInDirection[direction] = pkt;
+  }
+
+  /* Checks for signs of nagle on a packet, the payload being near the MSS of the receiver and the packet only
+   * being sent after the previous packet from the host was acked.
+   */
+  private void analyseNagle(EasyTCPacket pkt, PacketContainer container, int direction, int position) {
+    var outgoing = pkt.getOutgoingPacket();
+    var windowSizeScale = outgoing ? settings.windowScaleServer() : settings.windowScaleClient();
+    if (windowSizeScale == null) {
+      windowSizeScale = 1;
+    }
+    //the mss that can be sent
+    var receivingMss = outgoing ? settings.maximumSegmentSizeServer() : settings.maximumSegmentSizeClient();
+    var recentAckedPkt = container.findLatestPacketWithSeqNumberLessThan(pkt.getAckNumber(), !outgoing);
+    //if mss is null, when the packet for it hasn't been captured, there is no possibility of detecting nagle
+    // through checking the payload
+    if (recentAckedPkt.isPresent() && receivingMss != null) {
+      var windowSize = windowSizeScale * recentAckedPkt.get().getWindowSize();
+      for (var level : LEVELS) {
+        var nagleThreshold = receivingMss * level.getNagleThresholdModifier();
+        if (nagleThreshold > 0
+          && windowSize >= pkt.getDataPayloadLength()
+          && pkt.getDataPayloadLength() >= nagleThreshold) { //if sending near MSS, likely nagle enabled
+          nagleNearMss[level.ordinal()][direction]++;
+        }
+      }
+    }
+    if ((position - 1) > 0) {
+      //checks if previous packet sent by the host has been acked before the current packet has been sent
+      var previousPkt = previousInDirection[direction];
+      var previousPktAckSeq = previousPkt.getAckNumber() + previousPkt.getDataPayloadLength();
+      var acksForPreviousPacket = container.findPacketsWithSeqNum(previousPktAckSeq, !outgoing);
+      if (!acksForPreviousPacket.isEmpty()
+        && pkt.getTimestampNanos() > acksForPreviousPacket.get(0).getTimestampNanos()) {
+        nagleSentAfterAck[direction]++;
+        LOGGER.debug("current packet checked timestamp {}, ack for previous outgoing packet timestamp {}",
+          pkt.getTimestamp(), acksForPreviousPacket.get(0).getTimestamp());
+      }
+    }
+  }
+
+  /* Checks for signs of delayed acks on a packet, acks only being sent after several data packets were received
+   * or after a timeout.
+   */
+  private void analyseDelayedAck(EasyTCPacket pkt, PacketContainer container, int direction) {
+    var packetBeingAcked = container.findLatestPacketWithSeqNumberLessThan(
+      pkt.getAckNumber() - pkt.getDataPayloadLength(), !pkt.getOutgoingPacket());
+    var lastReceivedPkt = container.findPreviousPacketReceived(pkt);
+    var ackDelayMillis = packetBeingAcked
+      .map(acked -> Duration.ofNanos(pkt.getTimestampNanos() - acked.getTimestampNanos()).toMillis());
+    for (var level : LEVELS) {
+      var counters = ackCounters[level.ordinal()];
+      if (lastReceivedPkt.isPresent()) {
+        //it should look if there were multiple data packets before an ack was sent
+        if (pkt.hasFlag(TCPFlag.ACK)
+          && pkt.getDataPayloadLength() > 0
+          && lastReceivedPkt.get().getDataPayloadLength() > 0) {
+          counters[direction]++;
+          if (counters[direction] >= level.getDelayedAckCountThreshold()) {
+            //only restarts the count, reaching the threshold is too likely to be down to other factors to count
+            counters[direction] = 0;
+          }
+        }
+      } else {
+        counters[direction] = 0;
+      }
+      if (ackDelayMillis.isPresent() && ackDelayMillis.get() >= level.getDelayedAckCountMsThreshold()) {
+        //checks if the delay before sending an ack is greater than the timeout threshold
+        delayedAckPossibilities[level.ordinal()][direction]++;
+      }
+    }
+  }
+
+  private static int directionOf(boolean outgoing) {
+    return outgoing ? 0 : 1;
+  }
+
+  /* Follows the payload sent by each host before hearing back from the other, which grows quickly while
+   * slow start is enabled.
+   */
+  private static final class SlowStart {
+    private final double slowStartThreshold;
+    private int possibilitySending;
+    private int possibilityReceiving;
+    private int currentSendingWindowSize;
+    private int currentReceivingWindowSize;
+    private int consecutivePacketsSent;
+    private int consecutivePacketsRcvd;
+
+    private SlowStart(double slowStartThreshold) {
+      this.slowStartThreshold = slowStartThreshold;
+    }
+
+    private void analyse(EasyTCPacket pkt) {
+      if (pkt.getOutgoingPacket()) {
+        currentReceivingWindowSize = 0;
+        consecutivePacketsRcvd = 0;
+        consecutivePacketsSent++;
+        var previousSendingWindow = currentSendingWindowSize;
+        currentSendingWindowSize += pkt.getDataPayloadLength();
+        //checks for increasing window size, which is the payload sent before receiving an acknowledgement
+        if (isIncrease(consecutivePacketsSent, previousSendingWindow, currentSendingWindowSize)) {
+          possibilitySending += 2; //gets incremented by 2 since this won't be detected on every packet
+        }
+      } else {
+        currentSendingWindowSize = 0;
+        consecutivePacketsRcvd++;
+        consecutivePacketsSent = 0;
+        var previousReceivingWindow = currentReceivingWindowSize;
+        currentReceivingWindowSize += pkt.getDataPayloadLength();
+        if (isIncrease(consecutivePacketsRcvd, previousReceivingWindow, currentReceivingWindowSize)) {
+          possibilityReceiving += 2;
+        }
+      }
+    }
+
+    private boolean isIncrease(int consecutivePackets, int previousWindow, int currentWindow) {
+      return consecutivePackets > 1
+        && currentWindow > previousWindow * slowStartThreshold
+        && currentWindow > 0
+        && previousWindow > 0;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package easytcp.model.packet;
+
+import org.pcap4j.packet.TcpMaximumSegmentSizeOption;
+import org.pcap4j.packet.TcpPacket;
+import org.pcap4j.packet.TcpWindowScaleOption;
+import org.pcap4j.packet.namednumber.TcpOptionKind;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* The TCP options of a packet, decoded to the option kinds in the order they appeared plus the two values
+ * the application reads from them, the maximum segment size and the window scale.
+ * Instances are immutable and shared, almost every packet of a capture carries one of a handful of option lists,
+ * so the packets of a capture point at the same few instances rather than each holding a list of option objects.
+ */
+public final class TcpOptions {
+  public static final TcpOptions NONE = new TcpOptions(new byte[0], -1, -1);
+  private static final byte END_OF_OPTION_LIST = 0;
+  private static final byte NO_OPERATION = 1;
+  private static final byte MAXIMUM_SEGMENT_SIZE = 2;
+  private static final byte WINDOW_SCALE = 3;
+  //stops caching once a capture has shown an unusual number of distinct option lists
+  private static final int MAX_SHARED_INSTANCES = 4096;
+  private static final ConcurrentHashMap<TcpOptions, TcpOptions> SHARED_INSTANCES = new ConcurrentHashMap<>();
+  private final byte[] kinds;
+  private final int maximumSegmentSize; // -1 when not present
+  private final int windowScale; // -1 when not present
+  private final int hashCode;
+  private List<TcpOptionKind> optionKinds;
+
+  private TcpOptions(byte[] kinds, int maximumSegmentSize, int windowScale) {
+    this.kinds = kinds;
+    this.maximumSegmentSize = maximumSegmentSize;
+    this.windowScale = windowScale;
+    this.hashCode = 31 * (31 * Arrays.hashCode(kinds) + maximumSegmentSize) + windowScale;
+  }
+
+  public static TcpOptions fromPcap4j(List<TcpPacket.TcpOption> options) {
+    if (options == null || options.isEmpty()) {
+      return NONE;
+    }
+    var kinds = new byte[options.size()];
+    var maximumSegmentSize = -1;
+    var windowScale = -1;
+    for (int i = 0; i < kinds.length; i++) {
+      var option = options.get(i);
+      if (option instanceof TcpMaximumSegmentSizeOption mss) {
+        kinds[i] = MAXIMUM_SEGMENT_SIZE;
+        maximumSegmentSize = mss.getMaxSegSizeAsInt();
+      } else if (option instanceof TcpWindowScaleOption ws) {
+        kinds[i] = WINDOW_SCALE;
+        windowScale = ws.getShiftCountAsInt();
+      } else {
+        kinds[i] = option.getKind().value();
+      }
+    }
+    return share(new TcpOptions(kinds, maximumSegmentSize, windowScale));
+  }
+
+  /* Decodes the options straight from the raw bytes of a TCP header, stopping at the end of the option list
+   * or at the first malformed option.
+   */
+  public static TcpOptions decode(ByteBuffer buffer, int offset, int length) {
+    if (length <= 0) {
+      return NONE;
+    }
+    var kinds = new byte[length];
+    var count = 0;
+    var maximumSegmentSize = -1;
+    var windowScale = -1;
+    var i = 0;
+    while (i < length) {
+      var kind = buffer.get(offset + i);
+      var optionLength = kind == END_OF_OPTION_LIST || kind == NO_OPERATION
+        ? 1 : (i + 1 < length ? buffer.get(offset + i + 1) & 0xFF : 0);
+      if (optionLength < 1 || i + optionLength > length) {
+        break;
+      }
+      kinds[count++] = kind;
+      if (kind == MAXIMUM_SEGMENT_SIZE && optionLength == 4) {
+        maximumSegmentSize = buffer.getShort(offset + i + 2) & 0xFFFF;
+      } else if (kind == WINDOW_SCALE && optionLength == 3) {
+        windowScale = buffer.get(offset + i + 2) & 0xFF;
+      } else if (kind == END_OF_OPTION_LIST) {
+        break;
+      }
+      i += optionLength;
+    }
+    return count == 0 ? NONE : share(new TcpOptions(Arrays.copyOf(kinds, count), maximumSegmentSize, windowScale));
+  }
+
+  private static TcpOptions share(TcpOptions tcpOptions) {
+    var shared = SHARED_INSTANCES.get(tcpOptions);
+    if (shared != null) {
+      return shared;
+    }
+    if (SHARED_INSTANCES.size() >= MAX_SHARED_INSTANCES) {
+      return tcpOptions;
+    }
+    shared = SHARED_INSTANCES.putIfAbsent(tcpOptions, tcpOptions);
+    return shared == null ? tcpOptions : shared;
+  }
+
+  public boolean isEmpty() {
+    return kinds.length == 0;
+  }
+
+  public int size() {
+    return kinds.length;
+  }
+
+  public byte getKind(int i) {
+    return kinds[i];
+  }
+
+  //the option kinds in the order they appeared on the packet
+  public List<TcpOptionKind> getKinds() {
+    var result = optionKinds;
+    if (result == null) {
+      var list = new ArrayList<TcpOptionKind>(kinds.length);
+      for (var kind : kinds) {
+        list.add(TcpOptionKind.getInstance(kind));
+      }
+      //safe to race on, every thread builds an equal immutable list
+      result = List.copyOf(list);
+      optionKinds = result;
+    }
+    return result;
+  }
+
+  public OptionalInt getMaximumSegmentSize() {
+    return maximumSegmentSize < 0 ? OptionalInt.empty() : OptionalInt.of(maximumSegmentSize);
+  }
+
+  public OptionalInt getWindowScale() {
+    return windowScale < 0 ? OptionalInt.empty() : OptionalInt.of(windowScale);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TcpOptions that = (TcpOptions) o;
+    return maximumSegmentSize == that.maximumSegmentSize && windowScale == that.windowScale && Arrays.equals(kinds, that.kinds);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+}
@@ -49,6 +49,7 @@ public class ArrowDiagramMouseListener implements MouseListener {
             this.selectedPacket = selectedConnection.getPacketContainer().getPackets().get(positionInList);
             this.selectedPacket.setSelectedPacket(true);
             arrowDiagram.setSelectedPacket(selectedPacket, false);
+            packetLog.getPacketTableModel().setSelectedPacket(selectedPacket);
             packetLog.refreshPacketLog(true);
         }
 
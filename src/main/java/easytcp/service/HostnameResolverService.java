@@ -0,0 +1,184 @@
+package easytcp.service;
+
+import easytcp.model.packet.InternetAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/* Resolves the hostnames of addresses in the background, for display alongside their numeric address.
+ * Lookups run on a small fixed pool of daemon threads fed by a bounded queue, and are limited to a number per
+ * second, so a burst of new peers cannot flood the application with threads or the network with DNS queries.
+ * Concurrent requests for the same address share one lookup. Results are cached for a while, including failed
+ * lookups which are cached for a shorter time, and the cache is bounded, evicting the least recently used entry.
+ * The cache is kept across captures. Addresses seen on packets remember when they were last asked for, so an
+ * address without a hostname only reaches the cache once per negative time to live rather than once per packet.
+ */
+public class HostnameResolverService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HostnameResolverService.class);
+  private static final int DEFAULT_WORKER_COUNT = 4;
+  private static final int DEFAULT_LOOKUPS_PER_SECOND = 50;
+  private static final int DEFAULT_MAX_CACHED_HOSTNAMES = 10_000;
+  private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(30);
+  private static final Duration DEFAULT_NEGATIVE_TIME_TO_LIVE = Duration.ofMinutes(2);
+  //lookups beyond this are dropped, they are requested again when the address is next due
+  private static final int MAX_QUEUED_LOOKUPS = 1024;
+  private final Function<InetAddress, String> lookup;
+  private final LongSupplier nanoClock;
+  private final long timeToLiveNanos;
+  private final long negativeTimeToLiveNanos;
+  private final long nanosPerLookup;
+  private final Map<String, CachedHostname> cache;
+  private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor executor;
+  private long nextLookupAt;
+
+  //a null hostname marks an address which could not be resolved
+  private record CachedHostname(String hostName, long expiresAt) {}
+
+  public HostnameResolverService() {
+    this(DEFAULT_WORKER_COUNT, DEFAULT_LOOKUPS_PER_SECOND, DEFAULT_MAX_CACHED_HOSTNAMES,
+      DEFAULT_TIME_TO_LIVE, DEFAULT_NEGATIVE_TIME_TO_LIVE, InetAddress::getHostName, System::nanoTime);
+  }
+
+  HostnameResolverService(int workerCount,
+                          int lookupsPerSecond,
+                          int maxCachedHostnames,
+                          Duration timeToLive,
+                          Duration negativeTimeToLive,
+                          Function<InetAddress, String> lookup,
+                          LongSupplier nanoClock) {
+    this.lookup = lookup;
+    this.nanoClock = nanoClock;
+    this.timeToLiveNanos = timeToLive.toNanos();
+    this.negativeTimeToLiveNanos = negativeTimeToLive.toNanos();
+    this.nanosPerLookup = TimeUnit.SECONDS.toNanos(1) / lookupsPerSecond;
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedHostname> eldest) {
+        return size() > maxCachedHostnames;
+      }
+    };
+    var threadCount = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(workerCount, workerCount, 30, TimeUnit.SECONDS,
+      new ArrayBlockingQueue<>(MAX_QUEUED_LOOKUPS), runnable -> {
+        var thread = new Thread(runnable, "hostname-resolver-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    //the workers are only kept while there are lookups to do
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /* Sets the hostname on the internet address once it is known, straight away if it is cached.
+   * Addresses which cannot be resolved are left showing their numeric address.
+   */
+  public CompletableFuture<Void> resolve(InternetAddress internetAddress) {
+    return resolve(internetAddress.getPcap4jAddress()).thenAccept(hostName -> {
+      if (hostName != null) {
+        internetAddress.setHostName(hostName);
+      }
+    });
+  }
+
+  /* Asks for the hostname of an address seen on a packet, unless it was asked for within the negative time to live.
+   * The check is made on the address itself, without taking a lock or creating a future.
+   */
+  public void resolveWhenDue(InternetAddress internetAddress) {
+    var now = nanoClock.getAsLong();
+    if (!internetAddress.isHostNameRequestDue(now)) {
+      return;
+    }
+    internetAddress.setNextHostNameRequestAt(now + negativeTimeToLiveNanos);
+    resolve(internetAddress);
+  }
+
+  /* Returns the hostname of the address, completing with null when it cannot be resolved.
+   */
+  public CompletableFuture<String> resolve(InetAddress address) {
+    var key = address.getHostAddress();
+    var cached = getCached(key);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached.hostName());
+    }
+    var result = new CompletableFuture<String>();
+    var existing = inFlight.putIfAbsent(key, result);
+    if (existing != null) {
+      return existing;
+    }
+    try {
+      executor.execute(() -> lookUp(key, address, result));
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Too many hostnames waiting to be resolved, skipping %s".formatted(key));
+      inFlight.remove(key, result);
+      result.complete(null);
+    }
+    return result;
+  }
+
+  /* Gets the hostname of the address if it has already been resolved, without resolving it.
+   */
+  public String getCachedHostname(String address) {
+    var cached = getCached(address);
+    return cached == null ? null : cached.hostName();
+  }
+
+  /* The number of addresses waiting for or in the middle of a lookup.
+   */
+  public int getBacklog() {
+    return inFlight.size();
+  }
+
+  private CachedHostname getCached(String key) {
+    synchronized (cache) {
+      var cached = cache.get(key);
+      if (cached != null && nanoClock.getAsLong() - cached.expiresAt() >= 0) {
+        cache.remove(key);
+        return null;
+      }
+      return cached;
+    }
+  }
+
+  private void lookUp(String key, InetAddress address, CompletableFuture<String> result) {
+    String hostName = null;
+    try {
+      awaitLookupBudget();
+      var resolved = lookup.apply(address);
+      //the numeric address is returned when the reverse lookup fails
+      hostName = resolved == null || resolved.equals(key) ? null : resolved;
+    } catch (RuntimeException e) {
+      LOGGER.debug("Failed to resolve the hostname of %s".formatted(key), e);
+    }
+    var expiresAt = nanoClock.getAsLong() + (hostName != null ? timeToLiveNanos : negativeTimeToLiveNanos);
+    synchronized (cache) {
+      cache.put(key, new CachedHostname(hostName, expiresAt));
+    }
+    inFlight.remove(key, result);
+    result.complete(hostName);
+  }
+
+  /* Spaces the lookups out evenly, so there are never more than the configured number in a second.
+   */
+  private void awaitLookupBudget() {
+    long lookupAt;
+    synchronized (this) {
+      var now = nanoClock.getAsLong();
+      lookupAt = nextLookupAt - now > 0 ? nextLookupAt : now;
+      nextLookupAt = lookupAt + nanosPerLookup;
+    }
+    var wait = lookupAt - nanoClock.getAsLong();
+    while (wait > 0) {
+      LockSupport.parkNanos(wait);
+      wait = lookupAt - nanoClock.getAsLong();
+    }
+  }
+}
@@ -1,14 +1,11 @@
 package easytcp.service;
 
 import easytcp.model.TCPFlag;
-import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.FiltersForm;
 import easytcp.model.packet.ConnectionStatus;
 import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.PacketAttributes;
 import easytcp.model.packet.TCPConnection;
-import org.apache.logging.log4j.util.Strings;
-import org.pcap4j.packet.TcpMaximumSegmentSizeOption;
-import org.pcap4j.packet.TcpWindowScaleOption;
 import org.pcap4j.packet.namednumber.TcpOptionKind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,121 +15,76 @@ import java.time.Duration;
 public class PacketDisplayService {
   private static final Logger LOGGER = LoggerFactory.getLogger(PacketDisplayService.class);
 
-  //checks if packet matches filters
+  //checks if packet matches filters, using the filters compiled from the form
   public boolean isVisible(EasyTCPacket packet, FiltersForm filtersForm) {
-    var matchesFilter = true;
-
-    switch (packet.getiPprotocol()) {
-      case IPV4 ->
-        matchesFilter = filtersForm.isShowIpv4();
-      case IPV6 ->
-        matchesFilter = filtersForm.isShowIpv6();
-    }
-
-    if (filtersForm.getSelectedConnection() != null
-      && !(filtersForm.getSelectedConnection().getConnectionAddresses().equals(packet.getTcpConnection().getConnectionAddresses()))) {
-      return false;
-    }
-
-    if (!Strings.isBlank(filtersForm.getHostSelected())) {
-      //filter by text ip/host
-      var temp = filtersForm.getHostSelected().replace(" ", "").replace("/", "");
-      matchesFilter = packet.getDestinationAddress().getAddressString().contains(temp)
-        || packet.getSourceAddress().getAddressString().contains(temp)
-        || packet.getDestinationAddress().getAlphanumericalAddress().contains(temp)
-        || packet.getSourceAddress().getAlphanumericalAddress().contains(temp);
-    }
-
-    if (!Strings.isBlank(filtersForm.getPortRangeSelected())) {
-      var temp = filtersForm.getPortRangeSelected().replace(" ", "");
-      var twoPorts = temp.split("-");
-      var dstPort = packet.getDestinationAddress().getPort();
-      var srcPort = packet.getSourceAddress().getPort();
-      try {
-        if (twoPorts.length == 2) {
-          //allows for port ranges eg 80-150, which includes all ports from 80 to 150
-          var minPort = Integer.parseInt(twoPorts[0]);
-          var maxPort = Integer.parseInt(twoPorts[1]);
-          matchesFilter = (dstPort <= maxPort && dstPort >= minPort)
-            || (srcPort <= maxPort && srcPort >= minPort);
-        } else if (twoPorts.length == 1) {
-          //single port number, on destination or source.
-          var selectedPort = Integer.parseInt(twoPorts[0]);
-          matchesFilter = (dstPort == selectedPort)
-            || (srcPort == selectedPort);
-        }
-      } catch (Exception e) {
-        LOGGER.error("Text input into the port field");
-      }
-    }
-
-    return matchesFilter;
+    return filtersForm.getPacketFilter().test(packet);
   }
 
   /*
-   *Creates a paragraph HTML element for the packet on the packet log text pane,
-   * encodes the packet information in a link href to allow the hyper link listener to identify the packet clicked.
-   * And returns a string in a tcpdump-like format.
+   * Formats the packet as a row of the packet log, in a tcpdump-like layout of
+   * time, protocol, source, destination, flags, seq, ack, window, options and length.
    */
-  public String prettyPrintPacket(EasyTCPacket packet, FiltersForm filtersForm) {
-    return "<p>%s <a href=\"%s:%s:%s:%s:%s\"> %s %s %s:%s > %s:%s: Flags [%s], seq %s, ack %s, win %s, options [%s], length %s </a>%s</p>"
-      .formatted(
-        //inserts a styled span when a packet had been selected, making the packet text blue on the packet log
-        packet.getSelectedPacket() ? "<span>" : "",
-        packet.getSequenceNumber(),
-        packet.getDataPayloadLength(),
-        packet.getAckNumber(), packet.getTcpFlagsDisplayable(), packet.getTcpConnection().getConnectionAddresses(),
-        packet.getTimestamp().toString(),
-        packet.getiPprotocol().getDisplayName(),
-        //gets hostname if the display filter is toggled and available or just numeric address
-        filtersForm.isResolveHostnames() ? packet.getSourceAddress().getAddressString() : packet.getSourceAddress().getAlphanumericalAddress(),
-        packet.getSourceAddress().getPort(),
-        filtersForm.isResolveHostnames() ?  packet.getDestinationAddress().getAddressString() : packet.getDestinationAddress().getAlphanumericalAddress(),
-        packet.getDestinationAddress().getPort(),
-        packet.getTcpFlagsDisplayable(),
-        packet.getSequenceNumber(),
-        packet.getAckNumber(),
-        packet.getWindowSize(),
-        packet.getTcpOptionsDisplayable(),
-        packet.getDataPayloadLength(),
-        //closes inserted span
-        packet.getSelectedPacket() ? "</span>" : ""
-      );
+  public String[] toLogRow(EasyTCPacket packet, FiltersForm filtersForm) {
+    return new String[] {
+      packet.getTimestamp().toString(),
+      packet.getiPprotocol().getDisplayName(),
+      //gets hostname if the display filter is toggled and available or just numeric address
+      "%s:%s".formatted(filtersForm.isResolveHostnames()
+        ? packet.getSourceAddress().getAddressString()
+        : packet.getSourceAddress().getAlphanumericalAddress(), packet.getSourceAddress().getPort()),
+      "%s:%s".formatted(filtersForm.isResolveHostnames()
+        ? packet.getDestinationAddress().getAddressString()
+        : packet.getDestinationAddress().getAlphanumericalAddress(), packet.getDestinationAddress().getPort()),
+      packet.getTcpFlagsDisplayable(),
+      String.valueOf(packet.getSequenceNumber()),
+      String.valueOf(packet.getAckNumber()),
+      String.valueOf(packet.getWindowSize()),
+      "[%s]".formatted(packet.getTcpOptionsDisplayable()),
+      String.valueOf(packet.getDataPayloadLength())
+    };
   }
 
   /* Gets the TCP connection status for the packet pkt at the stage where it was sent/received.
    */
   public ConnectionStatus getStatusForPacket(EasyTCPacket pkt, TCPConnection tcpConnection) {
-    if (!ApplicationStatus.getStatus().isLiveCapturing().get() && pkt.getTcpConnectionStatusAsOfPacket() != null) {
-      return pkt.getTcpConnectionStatusAsOfPacket();
-    }
+    var attributes = getPacketAttributes(tcpConnection);
+    var position = attributes.indexOf(pkt);
+    return position >= 0 ? attributes.getStatus(position) : ConnectionStatus.UNKNOWN;
+  }
+
+  /* Gets the values derived from the packets of the connection, first extending them with any new packets.
+   */
+  public PacketAttributes getPacketAttributes(TCPConnection tcpConnection) {
+    var attributes = tcpConnection.getPacketAttributes();
+    attributes.update(tcpConnection.getPacketContainer(),
+      (currentStatus, pkt) -> getNextStatus(currentStatus, pkt, tcpConnection));
+    return attributes;
+  }
+
+  /* Gets the status of the connection following the packet pkt, given the status before it.
+   */
+  private ConnectionStatus getNextStatus(ConnectionStatus currentStatus, EasyTCPacket pkt, TCPConnection tcpConnection) {
     var packetBeingAcked =
       tcpConnection.getPacketContainer()
         .findLatestPacketWithSeqNumberLessThan(pkt.getAckNumber()+pkt.getDataPayloadLength(), !pkt.getOutgoingPacket());
     var currentPacketFlags = pkt.getTcpFlags();
-    if (tcpConnection.getStatusAsOfPacketTraversal() == null) {
-      tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.UNKNOWN);
+    if (currentStatus == null) {
+      currentStatus = ConnectionStatus.UNKNOWN;
       LOGGER.debug("Null status, setting unknown as default");
     }
 
     if (currentPacketFlags.get(TCPFlag.RST)) {
-      tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.REJECTED);
-      pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.REJECTED);
       return ConnectionStatus.REJECTED;
     }
 
     //TCP connection state transitions, similar to the ones on the PacketTransformerService
-    switch (tcpConnection.getStatusAsOfPacketTraversal()) {
+    switch (currentStatus) {
       case CLOSED -> {
         //determine initial connection status
         if (currentPacketFlags.get(TCPFlag.SYN) && !currentPacketFlags.get(TCPFlag.ACK)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_SENT);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_SENT);
           return ConnectionStatus.SYN_SENT;
         } else if (currentPacketFlags.get(TCPFlag.SYN)
           && currentPacketFlags.get(TCPFlag.ACK)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_RECEIVED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_RECEIVED);
           return ConnectionStatus.SYN_RECEIVED;
         }
       }
@@ -142,20 +94,14 @@ public class PacketDisplayService {
           && currentPacketFlags.get(TCPFlag.ACK)
           && packetBeingAcked.isPresent()
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.SYN)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_RECEIVED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_RECEIVED);
           return ConnectionStatus.SYN_RECEIVED;
         } else if (currentPacketFlags.get(TCPFlag.SYN)) {
           // simultaneous open
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_RECEIVED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_RECEIVED);
           return ConnectionStatus.SYN_RECEIVED;
         } else if (currentPacketFlags.get(TCPFlag.ACK)
           && packetBeingAcked.isPresent()
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.SYN)
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.ESTABLISHED);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.ESTABLISHED);
           return ConnectionStatus.ESTABLISHED;
         }
       }
@@ -163,9 +109,6 @@ public class PacketDisplayService {
         LOGGER.debug("SYN received");
         if (packetBeingAcked.isPresent()
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.ESTABLISHED);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.ESTABLISHED);
-
           return ConnectionStatus.ESTABLISHED;
         }
       }
@@ -173,17 +116,11 @@ public class PacketDisplayService {
         LOGGER.debug("Established");
         if (!pkt.getOutgoingPacket()
           && currentPacketFlags.get(TCPFlag.FIN)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.CLOSE_WAIT);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.CLOSE_WAIT);
           return ConnectionStatus.CLOSE_WAIT;
         } else if (pkt.getOutgoingPacket()
           && currentPacketFlags.get(TCPFlag.FIN)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.FIN_WAIT_1);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.FIN_WAIT_1);
           return ConnectionStatus.FIN_WAIT_1;
         } else if (packetBeingAcked.isPresent() && packetBeingAcked.get().getDataPayloadLength() > 0) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.ESTABLISHED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.ESTABLISHED);
           return ConnectionStatus.ESTABLISHED;
         }
       }
@@ -191,8 +128,6 @@ public class PacketDisplayService {
         LOGGER.debug("close wait");
         if (pkt.getOutgoingPacket()
           && currentPacketFlags.get(TCPFlag.FIN)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.LAST_ACK);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.LAST_ACK);
           return ConnectionStatus.LAST_ACK;
         }
       }
@@ -202,18 +137,11 @@ public class PacketDisplayService {
           && currentPacketFlags.get(TCPFlag.ACK)
           && packetBeingAcked.isPresent()
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.CLOSED);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.CLOSED);
           return ConnectionStatus.CLOSED;
         } else if (currentPacketFlags.get(TCPFlag.SYN) && !currentPacketFlags.get(TCPFlag.ACK)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_SENT);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_SENT);
           return ConnectionStatus.SYN_SENT;
         } else if (currentPacketFlags.get(TCPFlag.SYN)
                 && currentPacketFlags.get(TCPFlag.ACK)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_RECEIVED);
-
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_RECEIVED);
           return ConnectionStatus.SYN_RECEIVED;
         }
       }
@@ -225,21 +153,15 @@ public class PacketDisplayService {
           && packetBeingAcked.isPresent()
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)
           && !packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.CLOSING);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.CLOSING);
           return ConnectionStatus.CLOSING;
         } else if (pkt.getOutgoingPacket()
           && currentPacketFlags.get(TCPFlag.ACK)
           && packetBeingAcked.isPresent()
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.TIME_WAIT);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.TIME_WAIT);
           return ConnectionStatus.TIME_WAIT;
         } else if (!pkt.getOutgoingPacket()
           && currentPacketFlags.get(TCPFlag.ACK)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.FIN_WAIT_2);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.FIN_WAIT_2);
           return ConnectionStatus.FIN_WAIT_2;
         }
       }
@@ -249,57 +171,40 @@ public class PacketDisplayService {
           && currentPacketFlags.get(TCPFlag.ACK)
           && packetBeingAcked.isPresent()
           && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.TIME_WAIT);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.TIME_WAIT);
           return ConnectionStatus.TIME_WAIT;
         }
       }
       case TIME_WAIT -> {
         LOGGER.debug("Time wait");
-        tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.CLOSED);
-        pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.CLOSED);
+        return ConnectionStatus.CLOSED;
       }
       case UNKNOWN -> {
         LOGGER.debug("unknown");
         if (pkt.getTcpFlags().get(TCPFlag.FIN)) {
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.CLOSED);
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.CLOSED);
           return ConnectionStatus.CLOSED;
         } else if (packetBeingAcked.isPresent() && packetBeingAcked.get().getTcpFlags().get(TCPFlag.SYN)
           && currentPacketFlags.get(TCPFlag.SYN)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_RECEIVED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_RECEIVED);
           return ConnectionStatus.SYN_RECEIVED;
         } else if (currentPacketFlags.get(TCPFlag.SYN)
           && currentPacketFlags.get(TCPFlag.ACK)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_RECEIVED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_RECEIVED);
           return ConnectionStatus.SYN_RECEIVED;
         } else if (currentPacketFlags.get(TCPFlag.SYN)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_SENT);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_SENT);
           return ConnectionStatus.SYN_SENT;
         } else if (packetBeingAcked.isPresent()) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.ESTABLISHED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.ESTABLISHED);
           return ConnectionStatus.ESTABLISHED;
         }
       }
       case REJECTED -> {
         if (pkt.getOutgoingPacket()
           && currentPacketFlags.get(TCPFlag.SYN)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_RECEIVED);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_RECEIVED);
           return ConnectionStatus.SYN_RECEIVED;
         } else if (currentPacketFlags.get(TCPFlag.SYN)) {
-          pkt.setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_SENT);
-          tcpConnection.setStatusAsOfPacketTraversal(ConnectionStatus.SYN_SENT);
           return ConnectionStatus.SYN_SENT;
         }
       }
     }
     //returns the same status if no transition has been made
-    return tcpConnection.getStatusAsOfPacketTraversal();
+    return currentStatus;
   }
 
   /* Generates a string for TCP flags present on the packet
@@ -377,17 +282,14 @@ public class PacketDisplayService {
     }
     if (filtersForm.isShowTcpOptions()) { //shows TCP options on the arrow
       sb.append("<");
-      options.forEach(opt -> {
-        var kind = opt.getKind();
+      options.getKinds().forEach(kind -> {
         if (kind.equals(TcpOptionKind.MAXIMUM_SEGMENT_SIZE)) {
-          var mss = (TcpMaximumSegmentSizeOption) opt;
-          sb.append("MSS %s bytes".formatted(mss.getMaxSegSize()));
+          sb.append("MSS %s bytes".formatted(options.getMaximumSegmentSize().orElse(0)));
         } else if(kind.equals(TcpOptionKind.WINDOW_SCALE)) {
-          var ws = (TcpWindowScaleOption) opt;
-          sb.append("Window scale %s".formatted(ws.getLength()));
+          sb.append("Window scale %s".formatted(options.getWindowScale().orElse(0)));
         } else if (!kind.equals(TcpOptionKind.NO_OPERATION)
             && !kind.equals(TcpOptionKind.END_OF_OPTION_LIST)) {
-          sb.append(opt.getKind().name());
+          sb.append(kind.name());
         }
         sb.append(" ");
       });
@@ -401,11 +303,14 @@ public class PacketDisplayService {
   /* Gets a timestamp string relative to the first segment sent/received on the connection.
    */
   public String getConnectionTimestampForPacket(EasyTCPacket pkt) {
-    var con = pkt.getTcpConnection();
-    var firstPacket = con.getPacketContainer()
-      .getPackets().get(0); // earliest packet should be the first packet in the container
+    var attributes = getPacketAttributes(pkt.getTcpConnection());
+    return getConnectionTimestamp(pkt.getTimestampNanos() - attributes.getFirstTimestampNanos());
+  }
 
-    var duration = Duration.between(firstPacket.getTimestamp().toInstant(), pkt.getTimestamp().toInstant());
+  /* Formats a time relative to the first segment of a connection, as read from its packet attributes.
+   */
+  public String getConnectionTimestamp(long relativeNanos) {
+    var duration = Duration.ofNanos(relativeNanos);
     var nanos = duration.getSeconds() + (duration.getNano() / 1e+9);
 
     return "%f (%.04f)".formatted(nanos, nanos);
@@ -414,11 +319,14 @@ public class PacketDisplayService {
   /* Gets the segment number for the packet
    */
   public String getSegmentLabel(EasyTCPacket pkt) {
-    var con = pkt.getTcpConnection();
-    var indexOf = con.getPacketContainer()
-      .getPackets()
-      .indexOf(pkt);
+    var indexOf = getPacketAttributes(pkt.getTcpConnection()).indexOf(pkt);
 
-    return "Segment %s".formatted(indexOf+1);
+    return getSegmentLabel(indexOf);
+  }
+
+  /* Gets the segment label for the packet at the given position in its connection, for when it is already known.
+   */
+  public String getSegmentLabel(int positionInConnection) {
+    return "Segment %s".formatted(positionInConnection+1);
   }
 }
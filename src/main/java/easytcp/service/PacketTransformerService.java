@@ -1,33 +1,33 @@
 package easytcp.service;
 
-import easytcp.model.CaptureStatus;
 import easytcp.model.IPprotocol;
 import easytcp.model.PcapCaptureData;
 import easytcp.model.TCPFlag;
-import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
 import easytcp.model.packet.*;
 import org.pcap4j.packet.IpPacket;
-import org.pcap4j.packet.TcpMaximumSegmentSizeOption;
 import org.pcap4j.packet.TcpPacket;
-import org.pcap4j.packet.TcpWindowScaleOption;
 import org.pcap4j.packet.namednumber.IpVersion;
-import org.pcap4j.packet.namednumber.TcpOptionKind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetAddress;
 import java.sql.Timestamp;
 import java.util.*;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 public class PacketTransformerService {
   private static final Logger LOGGER = LoggerFactory.getLogger(PacketTransformerService.class);
-  private static AtomicInteger threadsInProgress = new AtomicInteger(0);
   private static final ArrayList<PcapCaptureData> pcapCaptureData = new ArrayList<>();
+  private final HostnameResolverService hostnameResolverService;
+
+  public PacketTransformerService() {
+    this(ServiceProvider.getInstance().getHostnameResolverService());
+  }
+
+  public PacketTransformerService(HostnameResolverService hostnameResolverService) {
+    this.hostnameResolverService = hostnameResolverService;
+  }
 
   /* Transforms the Pcap4j objects into an EasyTCP packet, connection and other data
    */
@@ -47,149 +47,161 @@ public class PacketTransformerService {
     }
     var tcpHeader = tcpPacket.getHeader();
     easyTcpPacket.setAckNumber(tcpHeader.getAcknowledgmentNumberAsLong());
-    easyTcpPacket.setTcpFlags(
-      Map.ofEntries(
-        Map.entry(TCPFlag.URG, tcpHeader.getUrg()),
-        Map.entry(TCPFlag.PSH, tcpHeader.getPsh()),
-        Map.entry(TCPFlag.RST, tcpHeader.getRst()),
-        Map.entry(TCPFlag.ACK, tcpHeader.getAck()),
-        Map.entry(TCPFlag.FIN, tcpHeader.getFin()),
-        Map.entry(TCPFlag.SYN, tcpHeader.getSyn())
-      ));
-    setAddressesAndHostnames(
-      ipHeader, tcpHeader, easyTcpPacket, captureData.getResolvedHostnames());
+    easyTcpPacket.setTcpFlagBits(EasyTCPacket.toFlagBits(
+      tcpHeader.getUrg(), tcpHeader.getAck(), tcpHeader.getPsh(),
+      tcpHeader.getRst(), tcpHeader.getSyn(), tcpHeader.getFin()));
     easyTcpPacket.setTimestamp(timestamp);
     easyTcpPacket.setSequenceNumber(tcpHeader.getSequenceNumberAsLong());
     easyTcpPacket.setWindowSize(tcpHeader.getWindowAsInt());
     easyTcpPacket.setTcpOptions(tcpHeader.getOptions());
     easyTcpPacket.setHeaderPayloadLength(tcpHeader.length());
     easyTcpPacket.setDataPayloadLength(tcpPacket.getRawData().length - tcpHeader.length());
-    setTcpConnection(easyTcpPacket, captureData.getTcpConnectionMap(), filtersForm);
+    return fromDecodedPacket(easyTcpPacket, ipHeader.getSrcAddr(), tcpHeader.getSrcPort().valueAsInt(),
+      ipHeader.getDstAddr(), tcpHeader.getDstPort().valueAsInt(), captureData, filtersForm);
+  }
+
+  /* Completes a packet whose header fields have already been decoded, by setting its addresses and connection.
+   * Used by readers which decode the headers themselves rather than through pcap4j.
+   */
+  public EasyTCPacket fromDecodedPacket(EasyTCPacket easyTcpPacket,
+                                        InetAddress sourceAddress,
+                                        int sourcePort,
+                                        InetAddress destinationAddress,
+                                        int destinationPort,
+                                        CaptureData captureData,
+                                        FiltersForm filtersForm) {
+    setAddressesAndHostnames(sourceAddress, sourcePort, destinationAddress, destinationPort, easyTcpPacket);
+    setTcpConnection(easyTcpPacket, captureData, filtersForm);
 
     return easyTcpPacket;
   }
 
   /*
-   * Sets up a tcp connection on the packet and the hashmap, needs to be synchronised due to this being
-   * done in parallel, and so the same tcp connection isn't created multiple times.
+   * Sets up a tcp connection on the packet and the connection table. Packets of different connections are set up
+   * in parallel, the connection is only created once by the table, and the packets of a connection are set up one at
+   * a time while holding the lock of the connection.
    */
-  private synchronized void setTcpConnection(EasyTCPacket easyTcpPacket,
-                                             ConcurrentMap<ConnectionAddresses, TCPConnection> tcpConnectionHashMap,
-                                             FiltersForm filtersForm) {
-    List<String> interfaceAddresses;
-    // extracts the capturing device interface address
-    if (ApplicationStatus.getStatus().getMethodOfCapture() == CaptureStatus.LIVE_CAPTURE) {
-      interfaceAddresses = filtersForm.getSelectedInterface() != null
-        ? filtersForm.getSelectedInterface().getAddresses().stream()
-        .map(pcapAddress ->  pcapAddress.getAddress().getHostAddress()).collect(Collectors.toList())
-        : new ArrayList<>();
-    } else {
-      interfaceAddresses = new ArrayList<>();
-    }
-
-    // when reading a file, interface address is not known from the .pcap file, though usually it begins with 192 or 172
-    if (easyTcpPacket.getSourceAddress().getAlphanumericalAddress().startsWith("192") //private address ranges
-      || easyTcpPacket.getSourceAddress().getAlphanumericalAddress().startsWith("172")) {
-      interfaceAddresses.add(easyTcpPacket.getSourceAddress().getAddressString());
-    }
-    if (easyTcpPacket.getDestinationAddress().getAlphanumericalAddress().startsWith("192") //private address ranges
-      || easyTcpPacket.getDestinationAddress().getAlphanumericalAddress().startsWith("172")) {
-      interfaceAddresses.add(easyTcpPacket.getDestinationAddress().getAddressString());
-    } else {
-      LOGGER.debug("Unclear which is the interface address %s or %s".formatted(
-        easyTcpPacket.getDestinationAddress(), easyTcpPacket.getSourceAddress()));
+  private void setTcpConnection(EasyTCPacket easyTcpPacket,
+                                CaptureData captureData,
+                                FiltersForm filtersForm) {
+    //retrieves an existing connection or creates a new one
+    var tcpConnection = captureData.getOrAddTcpConnection(
+      easyTcpPacket.getSourceAddress(), easyTcpPacket.getDestinationAddress());
+    synchronized (tcpConnection) {
+      setTcpConnection(easyTcpPacket, tcpConnection, captureData, filtersForm);
     }
+  }
 
-    var addressOfConnection = new ConnectionAddresses(easyTcpPacket.getSourceAddress(), easyTcpPacket.getDestinationAddress());
-    //retrieves an existing connection or creates a new one
-    final var tcpConnection = tcpConnectionHashMap.getOrDefault(addressOfConnection, new TCPConnection());
+  private void setTcpConnection(EasyTCPacket easyTcpPacket,
+                                TCPConnection tcpConnection,
+                                CaptureData captureData,
+                                FiltersForm filtersForm) {
+    //packets of a connection share its two address objects, rather than each holding its own copies
+    var existingAddresses = tcpConnection.getConnectionAddresses();
+    easyTcpPacket.setSourceAddress(intern(existingAddresses, easyTcpPacket.getSourceAddress()));
+    easyTcpPacket.setDestinationAddress(intern(existingAddresses, easyTcpPacket.getDestinationAddress()));
+    resolveHostname(easyTcpPacket.getSourceAddress());
+    resolveHostname(easyTcpPacket.getDestinationAddress());
 
-    tcpConnection.setConnectionAddresses(addressOfConnection);
+    //the addresses of the capturing machine and its networks, to tell which end of the connection is local
+    var localAddresses = captureData.getLocalAddressClassifier(filtersForm);
+    var sourceLocal = localAddresses.isLocal(easyTcpPacket.getSourceAddress());
+    var destinationLocal = localAddresses.isLocal(easyTcpPacket.getDestinationAddress());
+    if (!sourceLocal && !destinationLocal) {
+      LOGGER.debug("Unclear which is the interface address {} or {}",
+        easyTcpPacket.getDestinationAddress(), easyTcpPacket.getSourceAddress());
+    }
 
     //determines if its an outgoing or incoming packet
     //this checks if both addresses are suspected of being client interface addresses
-    if (interfaceAddresses.contains(easyTcpPacket.getDestinationAddress().getAddressString())
-        && interfaceAddresses.contains(easyTcpPacket.getSourceAddress().getAddressString())) {
-      if (tcpConnection.getPacketContainer().getPackets().size() > 0) {
-        if (tcpConnection.getPacketContainer().getPackets().get(0).getDestinationAddress().equals(easyTcpPacket.getDestinationAddress())) {
-          easyTcpPacket.setOutgoingPacket(tcpConnection.getPacketContainer().getPackets().get(0).getOutgoingPacket());
+    if (destinationLocal && sourceLocal) {
+      //the direction is decided relative to the first packet of the connection
+      var tracking = tcpConnection.getTracking();
+      if (tracking.getFirstPacketDestination() != null) {
+        if (tracking.getFirstPacketDestination().equals(easyTcpPacket.getDestinationAddress())) {
+          easyTcpPacket.setOutgoingPacket(tracking.isFirstPacketOutgoing());
         } else {
-          easyTcpPacket.setOutgoingPacket(!tcpConnection.getPacketContainer().getPackets().get(0).getOutgoingPacket());
+          easyTcpPacket.setOutgoingPacket(!tracking.isFirstPacketOutgoing());
         }
       } else {
         easyTcpPacket.setOutgoingPacket(true);
       }
-    } else if (interfaceAddresses.contains(easyTcpPacket.getDestinationAddress().getAddressString())) {
-      addressOfConnection = new ConnectionAddresses(easyTcpPacket.getSourceAddress(), easyTcpPacket.getDestinationAddress());
-      //retrieves an existing connection or creates a new one
-      tcpConnection.setConnectionAddresses(addressOfConnection);
+      setConnectionAddresses(tcpConnection, easyTcpPacket.getSourceAddress(), easyTcpPacket.getDestinationAddress());
+    } else if (destinationLocal) {
+      setConnectionAddresses(tcpConnection, easyTcpPacket.getSourceAddress(), easyTcpPacket.getDestinationAddress());
       easyTcpPacket.setOutgoingPacket(false);
     } else {
-      addressOfConnection = new ConnectionAddresses(easyTcpPacket.getDestinationAddress(), easyTcpPacket.getSourceAddress());
       easyTcpPacket.setOutgoingPacket(true);
-      tcpConnection.setConnectionAddresses(addressOfConnection);
+      setConnectionAddresses(tcpConnection, easyTcpPacket.getDestinationAddress(), easyTcpPacket.getSourceAddress());
     }
 
     //sets handshake-specific information on the connection
-    if (easyTcpPacket.getTcpFlags().get(TCPFlag.SYN) && easyTcpPacket.getOutgoingPacket()) {
+    if (easyTcpPacket.hasFlag(TCPFlag.SYN) && easyTcpPacket.getOutgoingPacket()) {
       var mssClient = getMssFromPkt(easyTcpPacket);
       var windowScale = getWindowScaleFromPkt(easyTcpPacket);
       mssClient.ifPresent(integer -> tcpConnection.setMaximumSegmentSizeClient((long) integer));
       windowScale.ifPresent(tcpConnection::setWindowScaleClient);
-    } else if (easyTcpPacket.getTcpFlags().get(TCPFlag.SYN)) {
+    } else if (easyTcpPacket.hasFlag(TCPFlag.SYN)) {
       var mssServer = getMssFromPkt(easyTcpPacket);
       var windowScale = getWindowScaleFromPkt(easyTcpPacket);
       mssServer.ifPresent(integer -> tcpConnection.setMaximumSegmentSizeServer((long) integer));
       windowScale.ifPresent(tcpConnection::setWindowScaleServer);
     }
 
+    //adds the connection reference to the packet itself, before it is stored as it is part of what is stored
+    easyTcpPacket.setTcpConnection(tcpConnection);
     //stores the packet in the tcp connection
     tcpConnection.getPacketContainer().addPacketToContainer(easyTcpPacket);
-    //stores the tcp connection in a hashmap of address-connection
-    tcpConnectionHashMap.put(addressOfConnection, tcpConnection);
-    //adds the connection reference to the packet itself
-    easyTcpPacket.setTcpConnection(tcpConnection);
     //determines the current status of connection following the adding of this packet
     determineStatusOfConnection(tcpConnection, easyTcpPacket);
   }
 
-  private Optional<Integer> getMssFromPkt(EasyTCPacket easyTcpPacket) {
-    return easyTcpPacket.getTcpOptions()
-      .stream()
-      .filter(opt -> opt.getKind().equals(TcpOptionKind.MAXIMUM_SEGMENT_SIZE))
-      .map(opt -> ((TcpMaximumSegmentSizeOption) opt).getMaxSegSizeAsInt())
-      .findFirst();
+  //only replaces the addresses of the connection when they are the other way round, which the first packets can change
+  private static void setConnectionAddresses(TCPConnection tcpConnection,
+                                             InternetAddress addressOne,
+                                             InternetAddress addressTwo) {
+    var current = tcpConnection.getConnectionAddresses();
+    if (current.addressOne() != addressOne || current.addressTwo() != addressTwo) {
+      tcpConnection.setConnectionAddresses(new ConnectionAddresses(addressOne, addressTwo));
+    }
   }
 
-  private Optional<Integer> getWindowScaleFromPkt(EasyTCPacket easyTcpPacket) {
-    return easyTcpPacket.getTcpOptions()
-      .stream()
-      .filter(opt -> opt.getKind().equals(TcpOptionKind.WINDOW_SCALE))
-      .map(opt -> ((TcpWindowScaleOption) opt).getShiftCountAsInt())
-      .findFirst();
+  private static InternetAddress intern(ConnectionAddresses connectionAddresses, InternetAddress address) {
+    if (address.equals(connectionAddresses.addressOne())) {
+      return connectionAddresses.addressOne();
+    } else if (address.equals(connectionAddresses.addressTwo())) {
+      return connectionAddresses.addressTwo();
+    }
+    return address;
   }
 
-  /* Determines the status of the connection as of the latest packet
-   */
-  private synchronized void determineStatusOfConnection(
-    TCPConnection tcpConnection, EasyTCPacket easyTCPacket) {
-
-    var packetList = tcpConnection.getPacketContainer().getPackets();
-    var i = 1;
-
-    // gets latest packet for the purpose of seeing if it had changed the connection,
-    // rather than checking the packet just added - due to this being done asynchronously,
-    // its not always the current packet that is the latest
-    var latestPacket = packetList.get(packetList.size() - i);
+  private OptionalInt getMssFromPkt(EasyTCPacket easyTcpPacket) {
+    return easyTcpPacket.getTcpOptions().getMaximumSegmentSize();
+  }
 
-    if (!easyTCPacket.equals(latestPacket)) {
-      LOGGER.debug("Latest packet is not the current packet unfortunately");
-    }
+  private OptionalInt getWindowScaleFromPkt(EasyTCPacket easyTcpPacket) {
+    return easyTcpPacket.getTcpOptions().getWindowScale();
+  }
 
-    var packetBeingAcked =
-      tcpConnection.getPacketContainer()
-        .findLatestPacketWithSeqNumberLessThan(latestPacket.getAckNumber(), !latestPacket.getOutgoingPacket());
-    var latestPacketFlags = latestPacket.getTcpFlags();
+  /* Determines the status of the connection following the packet, from the packet and the tracked state of
+   * the connection, so it takes the same time however many packets the connection already has.
+   */
+  private void determineStatusOfConnection(
+    TCPConnection tcpConnection, EasyTCPacket latestPacket) {
+    var tracking = tcpConnection.getTracking();
+    //the flags of the segment sent the other way which this packet acknowledges
+    var ackedFlags = tracking.acknowledgedFlags(latestPacket);
+    var ackedPresent = ackedFlags != ConnectionTracking.NOT_ACKNOWLEDGED;
+    var ackedSyn = ConnectionTracking.hasFlag(ackedFlags, TCPFlag.SYN);
+    var ackedAck = ConnectionTracking.hasFlag(ackedFlags, TCPFlag.ACK);
+    var ackedFin = ConnectionTracking.hasFlag(ackedFlags, TCPFlag.FIN);
+    var ackedRst = ConnectionTracking.hasFlag(ackedFlags, TCPFlag.RST);
+    var syn = latestPacket.hasFlag(TCPFlag.SYN);
+    var ack = latestPacket.hasFlag(TCPFlag.ACK);
+    var fin = latestPacket.hasFlag(TCPFlag.FIN);
+    var rst = latestPacket.hasFlag(TCPFlag.RST);
+    var outgoing = latestPacket.getOutgoingPacket();
+    tracking.record(latestPacket);
 
     //default status is unknown
     if (tcpConnection.getConnectionStatus() == null) {
@@ -204,132 +216,98 @@ public class PacketTransformerService {
     //it determines if the status had been changed based on the latest packet and sets it if so
     switch (tcpConnection.getConnectionStatus()) {
       case CLOSED -> {
-        if (latestPacketFlags.get(TCPFlag.SYN)) {
+        if (syn) {
           tcpConnection.setFullConnection(true);
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_SENT);
-        } else if (latestPacketFlags.get(TCPFlag.SYN)
-          && latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.SYN)) {
+        } else if (syn && ack && ackedSyn) {
           tcpConnection.setFullConnection(true);
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_RECEIVED);
-        } else if (latestPacketFlags.get(TCPFlag.RST)) {
+        } else if (rst) {
           tcpConnection.setConnectionStatus(ConnectionStatus.REJECTED);
         }
       }
       case SYN_SENT -> {
         tcpConnection.setFullConnection(true);
         LOGGER.debug("SYN SENT");
-        if (latestPacketFlags.get(TCPFlag.SYN)
-          && latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.SYN)) {
+        if (syn && ack && ackedSyn) {
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_RECEIVED);
-        } else if (latestPacketFlags.get(TCPFlag.SYN)) {
+        } else if (syn) {
           // simultaneous open
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_RECEIVED);
-        } else if (latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.SYN)
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
+        } else if (ack && ackedSyn && ackedAck) {
           tcpConnection.setConnectionStatus(ConnectionStatus.ESTABLISHED);
         }
       }
       case SYN_RECEIVED -> {
         tcpConnection.setFullConnection(true);
         LOGGER.debug("SYN received");
-        if (!latestPacket.getOutgoingPacket()
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
+        if (!outgoing && ackedAck) {
           tcpConnection.setConnectionStatus(ConnectionStatus.ESTABLISHED);
         }
       }
       case ESTABLISHED -> {
         LOGGER.debug("Established");
-        if (!latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.FIN)) {
+        if (!outgoing && fin) {
           tcpConnection.setConnectionStatus(ConnectionStatus.CLOSE_WAIT);
-        } else if (latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.FIN)) {
+        } else if (outgoing && fin) {
           tcpConnection.setConnectionStatus(ConnectionStatus.FIN_WAIT_1);
-        } else if (latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)) {
+        } else if (ack && ackedFin) {
           tcpConnection.setConnectionStatus(ConnectionStatus.CLOSE_WAIT);
         }
       }
       case CLOSE_WAIT -> {
         LOGGER.debug("close wait");
 
-        if (latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.FIN)) {
+        if (outgoing && fin) {
           tcpConnection.setConnectionStatus(ConnectionStatus.LAST_ACK);
         }
       }
       case LAST_ACK -> {
         LOGGER.debug("last ack");
-        if (!latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)) {
+        if (!outgoing && ack && ackedFin) {
           tcpConnection.setConnectionStatus(ConnectionStatus.CLOSED);
-        } else if (latestPacketFlags.get(TCPFlag.SYN) && !latestPacketFlags.get(TCPFlag.ACK)) {
+        } else if (syn && !ack) {
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_SENT);
-        } else if (latestPacketFlags.get(TCPFlag.SYN)
-                && latestPacketFlags.get(TCPFlag.ACK)) {
+        } else if (syn && ack) {
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_RECEIVED);
-        } else if (packetBeingAcked.isPresent()
-                && packetBeingAcked.get().getTcpFlags().get(TCPFlag.RST)) {
+        } else if (ackedRst) {
           tcpConnection.setConnectionStatus(ConnectionStatus.REJECTED);
         }
       }
       case FIN_WAIT_1 -> {
         LOGGER.debug("fin wait");
 
-        if (latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)
-          && !packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
+        if (outgoing && ack && ackedFin && !ackedAck) {
           tcpConnection.setConnectionStatus(ConnectionStatus.CLOSING);
-        } else if (latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.ACK)) {
+        } else if (outgoing && ack && ackedFin && ackedAck) {
           tcpConnection.setConnectionStatus(ConnectionStatus.TIME_WAIT);
-        } else if (!latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.ACK)) {
+        } else if (!outgoing && ack) {
           tcpConnection.setConnectionStatus(ConnectionStatus.FIN_WAIT_2);
         }
       }
       case FIN_WAIT_2 -> {
         LOGGER.debug("fin wait 2");
 
-        if (latestPacket.getOutgoingPacket()
-          && latestPacketFlags.get(TCPFlag.ACK)
-          && packetBeingAcked.isPresent()
-          && packetBeingAcked.get().getTcpFlags().get(TCPFlag.FIN)) {
+        if (outgoing && ack && ackedFin) {
           tcpConnection.setConnectionStatus(ConnectionStatus.TIME_WAIT);
         }
       }
       case TIME_WAIT -> LOGGER.debug("time wait");
       case UNKNOWN -> {
         LOGGER.debug("unknown");
-        if (latestPacketFlags.get(TCPFlag.FIN)) {
+        if (fin) {
           tcpConnection.setConnectionStatus(ConnectionStatus.CLOSED);
-        } else if (latestPacketFlags.get(TCPFlag.RST)) {
+        } else if (rst) {
           tcpConnection.setConnectionStatus(ConnectionStatus.REJECTED);
-        } else if (latestPacketFlags.get(TCPFlag.SYN) && !latestPacketFlags.get(TCPFlag.ACK)) {
+        } else if (syn && !ack) {
           tcpConnection.setFullConnection(true);
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_SENT);
-        } else if (latestPacketFlags.get(TCPFlag.SYN)
-          && latestPacketFlags.get(TCPFlag.ACK)) {
+        } else if (syn && ack) {
           tcpConnection.setFullConnection(true);
           tcpConnection.setConnectionStatus(ConnectionStatus.SYN_RECEIVED);
-        } else if (packetBeingAcked.isPresent() && packetBeingAcked.get().getTcpFlags().get(TCPFlag.RST)) {
+        } else if (ackedRst) {
           tcpConnection.setConnectionStatus(ConnectionStatus.REJECTED);
-        } else if (packetBeingAcked.isPresent()) {
+        } else if (ackedPresent) {
           tcpConnection.setConnectionStatus(ConnectionStatus.ESTABLISHED);
         }
       }
@@ -342,66 +320,75 @@ public class PacketTransformerService {
    * otherwise it would be very slow to resolve them after the user toggled the display.
    * Packet is printed immediately with IP, once the resolved hostname is available, it prints that (if filter is enabled).
    */
-  private synchronized void setAddressesAndHostnames(
-      IpPacket.IpHeader ipHeader, TcpPacket.TcpHeader tcpHeader, EasyTCPacket packet, ConcurrentMap<String, String> resolvedHostNames) {
-
-    var destHostName = resolvedHostNames.get(String.valueOf(ipHeader.getDstAddr().getHostAddress()));
-    var destinationAddress = new InternetAddress(
-      ipHeader.getDstAddr().getHostAddress(), destHostName, ipHeader.getDstAddr(), tcpHeader.getDstPort().valueAsInt());
+  private void setAddressesAndHostnames(
+      InetAddress srcAddr, int srcPort, InetAddress dstAddr, int dstPort, EasyTCPacket packet) {
+    var destinationAddress = new InternetAddress(dstAddr.getHostAddress(), null, dstAddr, dstPort);
     packet.setDestinationAddress(destinationAddress);
-    if (destHostName == null) {
-      var executor = Executors.newSingleThreadExecutor();
-      executor.execute(() -> {
-        // resolving a hostname is a heavy operation so it needs to be done on another thread
-        // to not hang the application
-        threadsInProgress.incrementAndGet();
-        var resolvedHostname = ipHeader.getDstAddr().getHostName();
-        // is added to a hashmap to allow it to retrieve it from there rather than doing another
-        // slow DNS call or cache lookup through pcap4j's .getHostName()
-        // when doing another capture and the same address is spotted
-        resolvedHostNames.put(String.valueOf(ipHeader.getDstAddr().getHostAddress()), resolvedHostname);
-        destinationAddress.setHostName(resolvedHostname);
-        threadsInProgress.decrementAndGet();
-      });
-      executor.shutdown();
-    }
-    var srcHostName = resolvedHostNames.get(String.valueOf(ipHeader.getSrcAddr().getHostAddress()));
-    var sourceAddress = new InternetAddress(
-      ipHeader.getSrcAddr().getHostAddress(), srcHostName, ipHeader.getSrcAddr(), tcpHeader.getSrcPort().valueAsInt());
+    var sourceAddress = new InternetAddress(srcAddr.getHostAddress(), null, srcAddr, srcPort);
     packet.setSourceAddress(sourceAddress);
-    if (srcHostName == null) {
-      var executor = Executors.newSingleThreadExecutor();
-      executor.execute(() -> {
-        threadsInProgress.incrementAndGet();
-        var resolvedHostname = ipHeader.getSrcAddr().getHostName();
-        resolvedHostNames.put(String.valueOf(ipHeader.getSrcAddr().getHostAddress()), resolvedHostname);
-        sourceAddress.setHostName(resolvedHostname);
-        threadsInProgress.decrementAndGet();
-        LOGGER.debug("thread count %s".formatted(threadsInProgress.get()));
-      });
-      executor.shutdown();
+  }
+
+  /* Resolving a hostname is a heavy operation so it is done by the resolver in the background, which sets it on the
+   * address straight away when it has been resolved before. Only the addresses shared by the packets of a connection
+   * are resolved, until they have a hostname, and an address which could not be resolved is only asked for again
+   * once the resolver would look it up again.
+   */
+  private void resolveHostname(InternetAddress internetAddress) {
+    if (internetAddress.getHostName() == null) {
+      hostnameResolverService.resolveWhenDue(internetAddress);
     }
   }
+
   /* Stores pcap4j packets, for later conversion, when file reading.
   */
-  public synchronized void storePcap4jPackets(IpPacket ipPacket, TcpPacket tcpPacket, Timestamp timestamp) {
-    pcapCaptureData.add(new PcapCaptureData(tcpPacket, ipPacket, timestamp));
+  public void storePcap4jPackets(IpPacket ipPacket, TcpPacket tcpPacket, Timestamp timestamp) {
+    storePcap4jPackets(ipPacket, tcpPacket, timestamp, null);
+  }
+
+  public void storePcap4jPackets(IpPacket ipPacket,
+                                 TcpPacket tcpPacket,
+                                 Timestamp timestamp,
+                                 TCPConnection tcpConnection) {
+    var pcap = new PcapCaptureData(tcpPacket, ipPacket, timestamp, tcpConnection);
+    synchronized (pcapCaptureData) {
+      pcapCaptureData.add(pcap);
+    }
   }
 
-  /*Transforms pcap file packet data sequentially in timestamp order
+  /* Lets go of the stored pcap4j packets of the connections, which must be an identity set.
+   * Returns how many were removed, those packets are then left out when the capture is saved.
    */
-  public void transformCapturedPackets() {
-    var ff = FiltersForm.getInstance();
-    var captureData = CaptureData.getInstance();
-    pcapCaptureData.sort(Comparator.comparing(PcapCaptureData::timestamp));
-    for (PcapCaptureData pcapCaptureDataItem : pcapCaptureData) {
-      captureData.getPackets().addPacketToContainer(
-        fromPackets(pcapCaptureDataItem.ipPacket(), pcapCaptureDataItem.tcpPacket(),
-          pcapCaptureDataItem.timestamp(), captureData, ff));
+  public int evictPcap4jPacketsOf(Set<TCPConnection> connections) {
+    synchronized (pcapCaptureData) {
+      var sizeBefore = pcapCaptureData.size();
+      pcapCaptureData.removeIf(pcap -> pcap.tcpConnection() != null && connections.contains(pcap.tcpConnection()));
+      var removed = sizeBefore - pcapCaptureData.size();
+      if (removed > 0) {
+        pcapCaptureData.trimToSize();
+      }
+      return removed;
+    }
+  }
+
+  public int countPcap4jPackets() {
+    synchronized (pcapCaptureData) {
+      return pcapCaptureData.size();
     }
   }
 
+  /* A copy of the stored pcap4j packets, so they can be gone through while a live capture adds and evicts packets.
+   * The list is shared by every instance of the service, so it is locked on itself.
+   */
   public static List<PcapCaptureData> getPcapCaptureData() {
-    return pcapCaptureData;
+    synchronized (pcapCaptureData) {
+      return new ArrayList<>(pcapCaptureData);
+    }
+  }
+
+  public static void clearPcapCaptureData() {
+    synchronized (pcapCaptureData) {
+      pcapCaptureData.clear();
+      pcapCaptureData.trimToSize();
+    }
   }
 }
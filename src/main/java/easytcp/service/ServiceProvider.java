@@ -1,8 +1,10 @@
 package easytcp.service;
 
+import easytcp.model.application.CaptureData;
 import easytcp.service.capture.CaptureSaveService;
 import easytcp.service.capture.LiveCaptureService;
 import easytcp.service.capture.PcapFileReaderService;
+import easytcp.service.metrics.CaptureMetrics;
 
 /* A service provider for the different singleton services used throughout the application.
  */
@@ -13,6 +15,8 @@ public class ServiceProvider {
   private static ConnectionDisplayService connectionDisplayService;
   private static LiveCaptureService liveCaptureService;
   private static CaptureSaveService captureSaveService;
+  private static HostnameResolverService hostnameResolverService;
+  private static CaptureMetrics captureMetrics;
   private static ServiceProvider serviceProvider;
 
   public synchronized static ServiceProvider getInstance() {
@@ -24,7 +28,7 @@ public class ServiceProvider {
 
   public synchronized PacketTransformerService getPacketTransformerService() {
     if (packetTransformerService == null) {
-      packetTransformerService = new PacketTransformerService();
+      packetTransformerService = new PacketTransformerService(getHostnameResolverService());
     }
     return packetTransformerService;
   }
@@ -63,4 +67,19 @@ public class ServiceProvider {
     }
     return captureSaveService;
   }
+
+  public synchronized HostnameResolverService getHostnameResolverService() {
+    if (hostnameResolverService == null) {
+      hostnameResolverService = new HostnameResolverService();
+    }
+    return hostnameResolverService;
+  }
+
+  public synchronized CaptureMetrics getCaptureMetrics() {
+    if (captureMetrics == null) {
+      captureMetrics = new CaptureMetrics(getHostnameResolverService(), CaptureData.getInstance());
+      captureMetrics.register();
+    }
+    return captureMetrics;
+  }
 }
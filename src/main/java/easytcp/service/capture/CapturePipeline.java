@@ -0,0 +1,257 @@
+package easytcp.service.capture;
+
+import easytcp.model.PcapCaptureData;
+import easytcp.model.application.ApplicationStatus;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.service.PacketTransformerService;
+import easytcp.service.ServiceProvider;
+import easytcp.service.metrics.CaptureMetrics;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.TcpPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/* Staged pipeline for live captured packets, with a fixed number of threads and bounded buffers between stages.
+ * The capture thread hands each packet to one of the decode workers chosen by its connection, so packets of a
+ * connection are always transformed in the order they were captured. A single aggregation stage then adds the
+ * transformed packets to the capture data, so the shared packet container only ever has one writer.
+ * When a decode worker falls behind, the capture thread waits briefly and then drops the packet, leaving
+ * the kernel capture buffer to absorb bursts. Drops are counted rather than hidden.
+ */
+public class CapturePipeline implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CapturePipeline.class);
+  private static final int DECODE_BUFFER_CAPACITY = 8192;
+  private static final int AGGREGATION_BUFFER_CAPACITY = 16384;
+  //how long the capture thread waits for space before dropping a packet
+  private static final long MAX_OFFER_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long IDLE_WAIT_MILLIS = 10;
+  //how many packets are added between checks of the memory budget
+  private static final int EVICTION_CHECK_INTERVAL = 1024;
+  private final PacketTransformerService packetTransformerService;
+  private final CaptureData captureData;
+  private final FiltersForm filtersForm;
+  private final Consumer<EasyTCPacket> onPacketAdded;
+  private final CaptureMetrics captureMetrics;
+  private final PacketEvictionService packetEvictionService;
+  private final List<RingBuffer<PcapCaptureData>> decodeBuffers;
+  private final RingBuffer<AggregationItem> aggregationBuffer;
+  private final ExecutorService executorService;
+  private final AtomicInteger runningDecoders;
+  private final LongAdder capturedCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+  private final LongAdder processedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private volatile boolean accepting = true;
+  private volatile boolean keepPcap4jPackets = true;
+
+  private record AggregationItem(EasyTCPacket easyTCPacket, PcapCaptureData pcapCaptureData) {}
+
+  public CapturePipeline(PacketTransformerService packetTransformerService,
+                         CaptureData captureData,
+                         FiltersForm filtersForm,
+                         Consumer<EasyTCPacket> onPacketAdded) {
+    this(packetTransformerService, captureData, filtersForm, onPacketAdded, defaultDecoderCount());
+  }
+
+  public CapturePipeline(PacketTransformerService packetTransformerService,
+                         CaptureData captureData,
+                         FiltersForm filtersForm,
+                         Consumer<EasyTCPacket> onPacketAdded,
+                         int decoderCount) {
+    this(packetTransformerService, captureData, filtersForm, onPacketAdded, decoderCount,
+      ServiceProvider.getInstance().getCaptureMetrics());
+  }
+
+  public CapturePipeline(PacketTransformerService packetTransformerService,
+                         CaptureData captureData,
+                         FiltersForm filtersForm,
+                         Consumer<EasyTCPacket> onPacketAdded,
+                         int decoderCount,
+                         CaptureMetrics captureMetrics) {
+    this.packetTransformerService = packetTransformerService;
+    this.captureData = captureData;
+    this.filtersForm = filtersForm;
+    this.onPacketAdded = onPacketAdded;
+    this.captureMetrics = captureMetrics;
+    this.packetEvictionService = new PacketEvictionService(packetTransformerService, captureData);
+    this.decodeBuffers = new ArrayList<>(decoderCount);
+    for (int i = 0; i < decoderCount; i++) {
+      decodeBuffers.add(new RingBuffer<>(DECODE_BUFFER_CAPACITY));
+    }
+    this.aggregationBuffer = new RingBuffer<>(AGGREGATION_BUFFER_CAPACITY);
+    this.runningDecoders = new AtomicInteger(decoderCount);
+    this.executorService = Executors.newFixedThreadPool(decoderCount + 1);
+    decodeBuffers.forEach(buffer -> executorService.execute(() -> decode(buffer)));
+    executorService.execute(this::aggregate);
+  }
+
+  private static int defaultDecoderCount() {
+    //leaves a core for the capture thread and one for the aggregation stage and UI
+    return Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+  }
+
+  /* Called from the capture thread, returns false if the packet had to be dropped.
+   */
+  public boolean offer(IpPacket ipPacket, TcpPacket tcpPacket, Timestamp timestamp) {
+    capturedCount.increment();
+    if (!accepting) {
+      droppedCount.increment();
+      return false;
+    }
+    var buffer = decodeBuffers.get(Math.floorMod(connectionHash(ipPacket, tcpPacket), decodeBuffers.size()));
+    var item = new PcapCaptureData(tcpPacket, ipPacket, timestamp);
+    if (buffer.offer(item)) {
+      return true;
+    }
+    //the worker is behind, gives it a moment to catch up before dropping
+    var deadline = System.nanoTime() + MAX_OFFER_WAIT_NANOS;
+    while (System.nanoTime() < deadline) {
+      Thread.onSpinWait();
+      if (buffer.offer(item)) {
+        return true;
+      }
+    }
+    droppedCount.increment();
+    return false;
+  }
+
+  /* Hash of the address and port pairs which is the same for both directions of a connection.
+   */
+  static int connectionHash(IpPacket ipPacket, TcpPacket tcpPacket) {
+    var ipHeader = ipPacket.getHeader();
+    var tcpHeader = tcpPacket.getHeader();
+    var source = 31 * ipHeader.getSrcAddr().hashCode() + tcpHeader.getSrcPort().valueAsInt();
+    var destination = 31 * ipHeader.getDstAddr().hashCode() + tcpHeader.getDstPort().valueAsInt();
+    var hash = source + destination;
+    return hash ^ (hash >>> 16);
+  }
+
+  private void decode(RingBuffer<PcapCaptureData> buffer) {
+    try {
+      while (accepting || !buffer.isEmpty()) {
+        var item = buffer.poll(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        if (item == null) {
+          continue;
+        }
+        try {
+          var startedAt = System.nanoTime();
+          var easyTCPacket = packetTransformerService.fromPackets(
+            item.ipPacket(), item.tcpPacket(), item.timestamp(), captureData, filtersForm);
+          captureMetrics.recordTransform(System.nanoTime() - startedAt);
+          var aggregationItem = new AggregationItem(easyTCPacket, item);
+          //the aggregation stage applies backpressure here rather than losing transformed packets
+          while (!aggregationBuffer.offer(aggregationItem)) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+          }
+        } catch (Exception e) {
+          failedCount.increment();
+          LOGGER.debug("Error transforming packet " + e.getMessage());
+        }
+      }
+    } finally {
+      runningDecoders.decrementAndGet();
+    }
+  }
+
+  private void aggregate() {
+    var addedSinceEvictionCheck = 0;
+    while (runningDecoders.get() > 0 || !aggregationBuffer.isEmpty()) {
+      var item = aggregationBuffer.poll(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      if (item == null) {
+        continue;
+      }
+      try {
+        var pcap = item.pcapCaptureData();
+        if (keepPcap4jPackets) {
+          //stores the packets in their pcap4j format - allowing for later saving if needed.
+          packetTransformerService.storePcap4jPackets(pcap.ipPacket(), pcap.tcpPacket(), pcap.timestamp(),
+            item.easyTCPacket().getTcpConnection());
+        }
+        captureData.getPackets().addPacketToContainer(item.easyTCPacket());
+        processedCount.increment();
+        onPacketAdded.accept(item.easyTCPacket());
+      } catch (Exception e) {
+        failedCount.increment();
+        LOGGER.debug("Error adding packet " + e.getMessage());
+      }
+      if (++addedSinceEvictionCheck >= EVICTION_CHECK_INTERVAL) {
+        addedSinceEvictionCheck = 0;
+        enforceMemoryBudget();
+      }
+    }
+  }
+
+  /* Evicts packets when the capture is over the memory budget, this stage being the only one adding to the
+   * capture's packets.
+   */
+  private void enforceMemoryBudget() {
+    try {
+      packetEvictionService.enforce(ApplicationStatus.getStatus().getMemoryBudgetBytes());
+    } catch (Exception e) {
+      LOGGER.debug("Error evicting packets " + e.getMessage());
+    }
+  }
+
+  public long getCapturedCount() {
+    return capturedCount.sum();
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  public long getProcessedCount() {
+    return processedCount.sum();
+  }
+
+  public long getFailedCount() {
+    return failedCount.sum();
+  }
+
+  /* Whether the pcap4j packets are kept for saving the capture, which is not needed when the frames are
+   * written to capture files as they arrive.
+   */
+  public void setKeepPcap4jPackets(boolean keepPcap4jPackets) {
+    this.keepPcap4jPackets = keepPcap4jPackets;
+  }
+
+  public CaptureMetrics getCaptureMetrics() {
+    return captureMetrics;
+  }
+
+  public int getQueuedCount() {
+    return decodeBuffers.stream().mapToInt(RingBuffer::size).sum() + aggregationBuffer.size();
+  }
+
+  /* Stops accepting packets and waits for the ones already accepted to reach the capture data.
+   */
+  @Override
+  public void close() {
+    accepting = false;
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
+        LOGGER.debug("Capture pipeline did not drain in time");
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    LOGGER.info("Capture pipeline closed, captured: %s, processed: %s, dropped: %s, failed: %s"
+      .formatted(getCapturedCount(), getProcessedCount(), getDroppedCount(), getFailedCount()));
+  }
+}
@@ -1,13 +1,25 @@
 package easytcp.service.capture;
 
 import easytcp.model.PcapCaptureData;
+import easytcp.model.application.CaptureData;
 import easytcp.service.PacketTransformerService;
+import easytcp.service.ServiceProvider;
 import easytcp.view.ArrowDiagram;
+import org.pcap4j.core.BpfProgram;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PacketListener;
+import org.pcap4j.core.PcapDumper;
 import org.pcap4j.core.Pcaps;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.TcpPacket;
 import org.pcap4j.packet.namednumber.DataLinkType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
 //Service used for saving an image for the arrows diagram or a capture file
 public class CaptureSaveService {
   private static final Logger LOGGER = LoggerFactory.getLogger(CaptureSaveService.class);
@@ -17,11 +29,25 @@ public class CaptureSaveService {
   }
 
   public void saveCapture(String fileName) {
-
+    var captureWriter = ServiceProvider.getInstance().getLiveCaptureService().getCaptureWriter();
+    if (captureWriter != null) {
+      //the live capture was written to capture files as it went, so they only need joining into one
+      try {
+        captureWriter.copyTo(Path.of(fileName));
+      } catch (IOException e) {
+        LOGGER.debug("Error saving file " + e.getMessage());
+      }
+      return;
+    }
     var capturedPackets = PacketTransformerService.getPcapCaptureData();
+    var captureData = CaptureData.getInstance();
     //opens a raw data link and dumps the packets onto the file specified by fileName.
     try (var handleOpened = Pcaps.openDead(DataLinkType.RAW, Integer.MAX_VALUE);
          var dumper = handleOpened.dumpOpen(fileName)) {
+      if (captureData.getSourceFile() != null) {
+        //packets read from a file are not kept in their pcap4j format, so they are copied from the file again
+        dumpSourceFile(captureData.getSourceFile(), captureData.getSourceFilter(), dumper);
+      }
       for (PcapCaptureData pcapData : capturedPackets) {
         dumper.dump(pcapData.ipPacket());
       }
@@ -29,4 +55,23 @@ public class CaptureSaveService {
       LOGGER.debug("Error saving file");
     }
   }
+
+  private void dumpSourceFile(File sourceFile, String sourceFilter, PcapDumper dumper) throws Exception {
+    var handle = PcapFileReaderService.openOffline(sourceFile);
+    try {
+      handle.setFilter(sourceFilter, BpfProgram.BpfCompileMode.OPTIMIZE);
+      handle.loop(Integer.MAX_VALUE, (PacketListener) packet -> {
+        var ipPacket = packet.get(IpPacket.class);
+        if (ipPacket != null && ipPacket.get(TcpPacket.class) != null) {
+          try {
+            dumper.dump(ipPacket, handle.getTimestamp());
+          } catch (NotOpenException e) {
+            LOGGER.debug(e.getMessage());
+          }
+        }
+      });
+    } finally {
+      handle.close();
+    }
+  }
 }
@@ -1,5 +1,7 @@
 package easytcp.service.capture;
 
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
 import easytcp.service.PacketTransformerService;
 import org.pcap4j.core.PacketListener;
 import org.pcap4j.core.PcapHandle;
@@ -7,27 +9,58 @@ import org.pcap4j.packet.IpPacket;
 import org.pcap4j.packet.Packet;
 import org.pcap4j.packet.TcpPacket;
 
-/*This is the listener which gets called for each packet captured or read from a file
+import java.util.function.LongConsumer;
+
+/*This is the listener which gets called for each packet read from a file, in the order they are in the file
  */
 public class FilePacketListener implements PacketListener {
+  //each record in a pcap file is preceded by a 16 byte header
+  static final int RECORD_HEADER_LENGTH = 16;
   private final PacketTransformerService packetTransformerService;
   private final PcapHandle pcapHandle;
+  private final CaptureData captureData;
+  private final FiltersForm filtersForm;
+  private final LongConsumer progressListener;
+  private long bytesRead;
+  private long packetsRead;
 
-  public FilePacketListener(PacketTransformerService packetTransformerService, PcapHandle pcapHandle) {
+  public FilePacketListener(PacketTransformerService packetTransformerService,
+                            PcapHandle pcapHandle,
+                            CaptureData captureData,
+                            FiltersForm filtersForm,
+                            LongConsumer progressListener) {
     this.packetTransformerService = packetTransformerService;
     this.pcapHandle = pcapHandle;
+    this.captureData = captureData;
+    this.filtersForm = filtersForm;
+    this.progressListener = progressListener;
   }
 
   @Override
   public void gotPacket(Packet packet) {
+    bytesRead += RECORD_HEADER_LENGTH + packet.length();
     //extracts the IP and TCP packets from the raw packet
     var ipPacket = packet.get(IpPacket.class);
     if (ipPacket != null) {
       var tcpPacket = ipPacket.get(TcpPacket.class);
       if (tcpPacket != null) {
-        //stores each packet to be transformed later
-        packetTransformerService.storePcap4jPackets(ipPacket, tcpPacket, pcapHandle.getTimestamp());
+        //transforms each packet straight away, the pcap4j packets are not kept once this returns
+        var easyTCPacket = packetTransformerService.fromPackets(
+          ipPacket, tcpPacket, pcapHandle.getTimestamp(), captureData, filtersForm);
+        captureData.getPackets().addPacketToContainer(easyTCPacket);
+        packetsRead++;
       }
     }
+    progressListener.accept(bytesRead);
+  }
+
+  /* Approximate number of bytes of the file read so far, excluding packets rejected by the filter
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  public long getPacketsRead() {
+    return packetsRead;
   }
 }
@@ -1,13 +1,15 @@
 package easytcp.service.capture;
 
+import easytcp.model.CaptureFileSettings;
 import easytcp.model.CaptureStatus;
 import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
 import easytcp.model.packet.EasyTCPacket;
-import easytcp.service.PacketDisplayService;
 import easytcp.service.PacketTransformerService;
 import easytcp.service.ServiceProvider;
+import easytcp.view.ArrowDiagram;
+import easytcp.view.PacketLogTableModel;
 import easytcp.view.options.OptionsPanel;
 import org.pcap4j.core.BpfProgram;
 import org.pcap4j.core.PcapHandle;
@@ -17,11 +19,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
 
 /* This service is used for live capturing packets
  */
@@ -30,18 +30,18 @@ public class LiveCaptureService {
   private final static int SNAPSHOT_LENGTH = 65536;
   private final CaptureData captureData;
   private final PacketTransformerService packetTransformerService;
-  private final PacketDisplayService packetDisplayService;
   private AtomicBoolean isSettingText;
+  private volatile CapturePipeline capturePipeline;
+  private volatile RotatingPcapWriter captureWriter;
 
   public LiveCaptureService(ServiceProvider serviceProvider) {
     this.captureData = CaptureData.getInstance();
     this.packetTransformerService = serviceProvider.getPacketTransformerService();
-    this.packetDisplayService = serviceProvider.getPacketDisplayService();
   }
 
   public PcapHandle startCapture(PcapNetworkInterface networkInterface,
                                  FiltersForm filtersForm,
-                                 JTextPane textPane,
+                                 PacketLogTableModel packetLogModel,
                                  OptionsPanel optionsPanel) throws PcapNativeException {
     LOGGER.info("Beginning capture on " + networkInterface);
     var appStatus = ApplicationStatus.getStatus();
@@ -51,49 +51,107 @@ public class LiveCaptureService {
     final PcapHandle handle =
       networkInterface.openLive(SNAPSHOT_LENGTH, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, 10);
     LOGGER.debug("Began live capture");
+    final var writer = openCaptureWriter(appStatus.getCaptureFileSettings(), handle);
+    this.captureWriter = writer;
     //begins the capture on another thread
     var executor = Executors.newSingleThreadExecutor();
     this.isSettingText = new AtomicBoolean();
     isSettingText.set(false);
     executor.execute(() -> {
-      //each packet captured is handled on a separate thread from the cached thread pool
-      var threadPool = Executors.newCachedThreadPool();
+      //packets are transformed by the pipeline's fixed set of workers, the capture thread only hands them over
+      var pipeline = new CapturePipeline(packetTransformerService, captureData, filtersForm,
+        easyTCPacket -> refreshViews(easyTCPacket, filtersForm, packetLogModel, optionsPanel));
+      this.capturePipeline = pipeline;
+      pipeline.getCaptureMetrics().startLiveCapture(handle, pipeline);
+      //the frames are already kept on disk, so there is no need for a copy of each in memory
+      pipeline.setKeepPcap4jPackets(writer == null);
       try {
         int maxPackets = Integer.MAX_VALUE;
         //sets the filters on the handle object itself by converting the form to a Bfp expression - so only packets matching the filters will be captured
         handle.setFilter(filtersForm.toBfpExpression(), BpfProgram.BpfCompileMode.OPTIMIZE);
-        handle.loop(maxPackets, new LivePacketListener(handle, packetTransformerService, captureData,
-          filtersForm, isSettingText, textPane, packetDisplayService, optionsPanel), threadPool);
+        handle.loop(maxPackets, new LivePacketListener(handle, pipeline, writer));
       } catch (Exception e) {
         LOGGER.debug(e.getMessage());
         LOGGER.debug("Error sniffing packet");
       } finally {
-        //makes sure the threadpool is shutdown after the work is done so resources can be released
-        threadPool.shutdown();
+        //makes sure the packets already captured are processed and the workers are released
+        pipeline.close();
+        if (writer != null) {
+          writer.close();
+        }
       }
     });
     executor.shutdown();
     return handle;
   }
 
-  public static void setLogTextPane(FiltersForm filtersForm,
-                                    JTextPane textPane,
-                                    CaptureData captureData,
-                                    PacketDisplayService packetDisplayService,
-                                    OptionsPanel optionsPanel) {
-    //sets the packet log text pane, in html format due to the packet hyperlinks
-    textPane.setText("<html>" + new ArrayList<>(captureData
-      .getPackets().getPackets())
-      .stream()
-      .filter(pkt -> packetDisplayService.isVisible(pkt, filtersForm))
-      .sorted(Comparator.comparing(EasyTCPacket::getTimestamp))
-      .map(pkt -> packetDisplayService.prettyPrintPacket(pkt, filtersForm))
-      .collect(Collectors.joining()) + "</html>");
-    textPane.setContentType("text/html");
-    textPane.revalidate();
-    textPane.repaint();
+  private static RotatingPcapWriter openCaptureWriter(CaptureFileSettings settings, PcapHandle handle) {
+    if (settings == null) {
+      return null;
+    }
+    try {
+      return new RotatingPcapWriter(settings, handle.getDlt().value(), SNAPSHOT_LENGTH);
+    } catch (IOException | RuntimeException e) {
+      //the capture goes ahead, keeping the packets in memory for saving as it does without capture files
+      LOGGER.error("Could not open the capture files in %s: %s".formatted(settings.directory(), e.getMessage()));
+      return null;
+    }
+  }
+
+  private void refreshViews(EasyTCPacket easyTCPacket,
+                            FiltersForm filtersForm,
+                            PacketLogTableModel packetLogModel,
+                            OptionsPanel optionsPanel) {
+    if (!isSettingText.get()) {
+      //ensures the text is being set only once at the same time, preventing the UI from freezing up from constant updates
+      isSettingText.set(true);
+      //invoked on the swing UI thread
+      SwingUtilities.invokeLater(() -> {
+        updatePacketLog(filtersForm, packetLogModel, captureData, optionsPanel);
+        var arrowDiagram = ArrowDiagram.getInstance();
+        if (arrowDiagram.getSelectedConnection() != null
+                && arrowDiagram.getSelectedConnection().equals(easyTCPacket.getTcpConnection())) {
+          //update diagram if a packet is added to the selected connection.
+          arrowDiagram.repaint();
+          arrowDiagram.revalidate();
+        }
+        isSettingText.set(false);
+      });
+    }
+  }
+
+  /* The pipeline of the current or most recent live capture, null if there has not been one
+   */
+  public CapturePipeline getCapturePipeline() {
+    return capturePipeline;
+  }
+
+  /* The writer of the capture files of the current or most recent live capture, null if it did not write any
+   */
+  public RotatingPcapWriter getCaptureWriter() {
+    return captureWriter;
+  }
+
+  /* Forgets the capture files of the last live capture, when its packets are cleared. The files are left on disk.
+   */
+  public void discardCaptureWriter() {
+    var writer = captureWriter;
+    captureWriter = null;
+    if (writer != null) {
+      writer.close();
+    }
+  }
+
+  public static void updatePacketLog(FiltersForm filtersForm,
+                                     PacketLogTableModel packetLogModel,
+                                     CaptureData captureData,
+                                     OptionsPanel optionsPanel) {
+    var startedAt = System.nanoTime();
+    //adds rows to the packet log for the packets which arrived since the last update
+    packetLogModel.update(captureData, filtersForm);
     //updates other text based displays
     optionsPanel.getMiddleRow().setConnectionStatusLabel(captureData);
     optionsPanel.getCaptureDescriptionPanel().updateCaptureStats(captureData);
+    ServiceProvider.getInstance().getCaptureMetrics().recordUiRefresh(System.nanoTime() - startedAt);
   }
 }
@@ -1,12 +1,7 @@
 package easytcp.service.capture;
 
 import easytcp.model.application.ApplicationStatus;
-import easytcp.model.application.CaptureData;
-import easytcp.model.application.FiltersForm;
-import easytcp.service.PacketDisplayService;
-import easytcp.service.PacketTransformerService;
-import easytcp.view.ArrowDiagram;
-import easytcp.view.options.OptionsPanel;
+import easytcp.service.metrics.CaptureMetrics;
 import org.pcap4j.core.NotOpenException;
 import org.pcap4j.core.PacketListener;
 import org.pcap4j.core.PcapHandle;
@@ -16,68 +11,46 @@ import org.pcap4j.packet.TcpPacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-
-import static easytcp.service.capture.LiveCaptureService.setLogTextPane;
-
 //Listener which handles a packet arriving at an interface when live capturing
 public class LivePacketListener implements PacketListener {
   private static final Logger LOGGER = LoggerFactory.getLogger(LivePacketListener.class);
   private final PcapHandle handle;
-  private final PacketTransformerService packetTransformerService;
-  private final CaptureData captureData;
-  private final FiltersForm filtersForm;
-  private final AtomicBoolean isSettingForm;
-  private final JTextPane textPane;
-  private final PacketDisplayService packetDisplayService;
-  private final OptionsPanel optionsPanel;
+  private final CapturePipeline capturePipeline;
+  private final CaptureMetrics captureMetrics;
+  private final RotatingPcapWriter captureWriter;
 
-  public LivePacketListener(
-    PcapHandle handle, PacketTransformerService packetTransformerService,
-    CaptureData captureData, FiltersForm filtersForm,
-    AtomicBoolean isSettingForm, JTextPane textPane, PacketDisplayService packetDisplayService, OptionsPanel optionsPanel) {
+  public LivePacketListener(PcapHandle handle, CapturePipeline capturePipeline) {
+    this(handle, capturePipeline, null);
+  }
+
+  /* The capture writer is null when the frames are not written to capture files.
+   */
+  public LivePacketListener(PcapHandle handle, CapturePipeline capturePipeline, RotatingPcapWriter captureWriter) {
     this.handle = handle;
-    this.packetTransformerService = packetTransformerService;
-    this.captureData = captureData;
-    this.filtersForm = filtersForm;
-    this.isSettingForm = isSettingForm;
-    this.textPane = textPane;
-    this.packetDisplayService = packetDisplayService;
-    this.optionsPanel = optionsPanel;
+    this.capturePipeline = capturePipeline;
+    this.captureMetrics = capturePipeline.getCaptureMetrics();
+    this.captureWriter = captureWriter;
   }
 
   @Override
   public void gotPacket(Packet packet) {
+    var startedAt = System.nanoTime();
+    if (captureWriter != null) {
+      //the whole frame is written, as it was captured, whether or not it is decoded
+      var originalLength = handle.getOriginalLength();
+      captureWriter.offer(packet.getRawData(), originalLength == null ? 0 : originalLength, handle.getTimestamp());
+    }
     //extracts IP and TCP information from the raw packet.
     var ipPacket = packet.get(IpPacket.class);
     if (ipPacket != null) {
       var tcpPacket = ipPacket.get(TcpPacket.class);
       if (tcpPacket != null) {
+        //the timestamp is only valid while the handle is on this packet, so it is read on the capture thread
         var timestamp = handle.getTimestamp();
-        //transforms the pcap4j library packets
-        var easyTCPacket = packetTransformerService.fromPackets(
-          ipPacket, tcpPacket, timestamp, captureData, filtersForm);
-        //stores the packets in their pcap4j format - allowing for later saving if needed.
-        packetTransformerService.storePcap4jPackets(ipPacket, tcpPacket, timestamp);
-        //Adds transformed packet to a container
-        captureData.getPackets().addPacketToContainer(easyTCPacket);
-        if (!isSettingForm.get()) {
-          //ensures the text is being set only once at the same time, preventing the UI from freezing up from constant updates
-          isSettingForm.set(true);
-          //invoked on the swing UI thread
-          SwingUtilities.invokeLater(() -> {
-            setLogTextPane(filtersForm, textPane, captureData, packetDisplayService, optionsPanel);
-            var arrowDiagram = ArrowDiagram.getInstance();
-            if (arrowDiagram.getSelectedConnection() != null
-                    && arrowDiagram.getSelectedConnection().equals(easyTCPacket.getTcpConnection())) {
-              //update diagram if a packet is added to the selected connection.
-              ArrowDiagram.getInstance().repaint();
-              ArrowDiagram.getInstance().revalidate();
-            }
-            isSettingForm.set(false);
-          });
-        }
+        //hands the packet to the pipeline which transforms and stores it off the capture thread
+        capturePipeline.offer(ipPacket, tcpPacket, timestamp);
+        //includes any wait for the pipeline, which is where a slow transform stage shows up on the capture thread
+        captureMetrics.recordDecode(System.nanoTime() - startedAt);
       }
     }
     if(!ApplicationStatus.getStatus().isLiveCapturing().get()) {
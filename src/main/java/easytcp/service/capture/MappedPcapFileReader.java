@@ -0,0 +1,519 @@
+package easytcp.service.capture;
+
+import easytcp.model.IPprotocol;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.TcpOptions;
+import easytcp.service.PacketTransformerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/* Reads pcap and pcapng files without libpcap, by memory mapping the file and decoding the link, IP and TCP
+ * headers straight from the mapped bytes into EasyTCP packets. No pcap4j packet objects are created, the TCP
+ * options are decoded from the mapped bytes as well.
+ * Supports classic pcap with microsecond or nanosecond timestamps in either byte order, and pcapng with any
+ * timestamp resolution. Ethernet (with VLAN tags), raw IP, Linux cooked and loopback link types are decoded.
+ * BPF filters are not available without libpcap, so only the IP version filters are applied while reading,
+ * the host and port filters are applied when the packets are displayed.
+ */
+public class MappedPcapFileReader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MappedPcapFileReader.class);
+  //the file is mapped in windows, since a single mapping cannot be larger than 2GB
+  private static final long MAPPING_WINDOW = 1L << 28;
+  private static final int PCAP_MAGIC_MICRO = 0xa1b2c3d4;
+  private static final int PCAP_MAGIC_NANO = 0xa1b23c4d;
+  private static final int PCAP_FILE_HEADER_LENGTH = 24;
+  private static final int PCAP_RECORD_HEADER_LENGTH = 16;
+  private static final int PCAPNG_SECTION_HEADER = 0x0A0D0D0A;
+  private static final int PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+  private static final int PCAPNG_INTERFACE_DESCRIPTION = 0x00000001;
+  private static final int PCAPNG_PACKET = 0x00000002;
+  private static final int PCAPNG_SIMPLE_PACKET = 0x00000003;
+  private static final int PCAPNG_ENHANCED_PACKET = 0x00000006;
+  private static final int PCAPNG_OPTION_TIMESTAMP_RESOLUTION = 9;
+  private static final int PCAPNG_OPTION_TIMESTAMP_OFFSET = 14;
+  private static final int LINKTYPE_NULL = 0;
+  private static final int LINKTYPE_ETHERNET = 1;
+  private static final int LINKTYPE_RAW_BSD = 12;
+  private static final int LINKTYPE_RAW_OPENBSD = 14;
+  private static final int LINKTYPE_RAW = 101;
+  private static final int LINKTYPE_LOOP = 108;
+  private static final int LINKTYPE_LINUX_SLL = 113;
+  private static final int LINKTYPE_IPV4 = 228;
+  private static final int LINKTYPE_IPV6 = 229;
+  private static final int LINKTYPE_LINUX_SLL2 = 276;
+  private static final int ETHERTYPE_IPV4 = 0x0800;
+  private static final int ETHERTYPE_IPV6 = 0x86DD;
+  private static final int ETHERTYPE_VLAN = 0x8100;
+  private static final int ETHERTYPE_QINQ = 0x88A8;
+  private static final int ETHERTYPE_QINQ_OLD = 0x9100;
+  private static final int PROTOCOL_TCP = 6;
+  private static final int TCP_HEADER_LENGTH = 20;
+  private static final long[] POWERS_OF_TEN = {
+    1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+    10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+    1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L};
+  private final PacketTransformerService packetTransformerService;
+
+  /* Timestamp resolution and link type of an interface in a pcapng file
+   */
+  private record InterfaceDescription(int linkType, boolean binaryResolution, int resolution, long offsetSeconds) {}
+
+  /* Where the IP and TCP headers of a frame were found, and what they contained
+   */
+  private record DecodedAddresses(IPprotocol protocol, InetAddress source, InetAddress destination,
+                                  int tcpOffset, int tcpLength) {}
+
+  public MappedPcapFileReader(PacketTransformerService packetTransformerService) {
+    this.packetTransformerService = packetTransformerService;
+  }
+
+  /* Reads every TCP packet of the file into the capture data, in file order.
+   * The progress listener is given the number of bytes of the file read so far, returns the number of packets read.
+   */
+  public long readFile(File file,
+                       CaptureData captureData,
+                       FiltersForm filtersForm,
+                       LongConsumer progressListener) throws IOException {
+    try (var mappedFile = new MappedFile(file)) {
+      var decoder = new FrameDecoder(captureData, filtersForm);
+      if (mappedFile.size() < 4) {
+        throw new IOException("File is too short to be a capture file");
+      }
+      var firstWord = mappedFile.bigEndianView(0, 4).getInt(mappedFile.offsetOf(0));
+      if (firstWord == PCAPNG_SECTION_HEADER) {
+        readPcapng(mappedFile, decoder, progressListener);
+      } else {
+        readPcap(mappedFile, decoder, progressListener);
+      }
+      LOGGER.debug("Read %s packets from %s".formatted(decoder.packetsRead, file));
+      return decoder.packetsRead;
+    }
+  }
+
+  private void readPcap(MappedFile mappedFile, FrameDecoder decoder, LongConsumer progressListener) throws IOException {
+    var header = mappedFile.bigEndianView(0, PCAP_FILE_HEADER_LENGTH);
+    var magic = header.getInt(mappedFile.offsetOf(0));
+    if (magic == PCAP_MAGIC_MICRO || magic == PCAP_MAGIC_NANO) {
+      mappedFile.setOrder(ByteOrder.BIG_ENDIAN);
+    } else if (Integer.reverseBytes(magic) == PCAP_MAGIC_MICRO || Integer.reverseBytes(magic) == PCAP_MAGIC_NANO) {
+      mappedFile.setOrder(ByteOrder.LITTLE_ENDIAN);
+      magic = Integer.reverseBytes(magic);
+    } else {
+      throw new IOException("Not a pcap or pcapng file");
+    }
+    var nanosecondResolution = magic == PCAP_MAGIC_NANO;
+    header = mappedFile.view(0, PCAP_FILE_HEADER_LENGTH);
+    //the upper bits of the link type field can hold frame check sequence information
+    var linkType = header.getInt(mappedFile.offsetOf(20)) & 0xFFFF;
+
+    var position = (long) PCAP_FILE_HEADER_LENGTH;
+    while (position + PCAP_RECORD_HEADER_LENGTH <= mappedFile.size()) {
+      var recordHeader = mappedFile.view(position, PCAP_RECORD_HEADER_LENGTH);
+      var offset = mappedFile.offsetOf(position);
+      var seconds = recordHeader.getInt(offset) & 0xFFFFFFFFL;
+      var fraction = recordHeader.getInt(offset + 4) & 0xFFFFFFFFL;
+      var capturedLength = recordHeader.getInt(offset + 8);
+      var dataPosition = position + PCAP_RECORD_HEADER_LENGTH;
+      if (capturedLength < 0 || dataPosition + capturedLength > mappedFile.size()) {
+        LOGGER.debug("Truncated record at %s".formatted(position));
+        break;
+      }
+      var timestamp = toTimestampNanos(seconds, nanosecondResolution ? fraction : fraction * 1_000);
+      var frame = mappedFile.bigEndianView(dataPosition, capturedLength);
+      decoder.decode(frame, mappedFile.offsetOf(dataPosition), capturedLength, linkType, timestamp);
+      position = dataPosition + capturedLength;
+      progressListener.accept(position);
+    }
+  }
+
+  private void readPcapng(MappedFile mappedFile, FrameDecoder decoder, LongConsumer progressListener) throws IOException {
+    var interfaces = new ArrayList<InterfaceDescription>();
+    //simple packets read before any timestamped packet are given the epoch
+    var lastTimestamp = 0L;
+    var position = 0L;
+    while (position + 12 <= mappedFile.size()) {
+      //the section header block type reads the same in either byte order
+      var blockType = mappedFile.view(position, 4).getInt(mappedFile.offsetOf(position));
+      if (blockType == PCAPNG_SECTION_HEADER) {
+        //each section sets its own byte order and interfaces
+        var byteOrderMagic = mappedFile.bigEndianView(position + 8, 4).getInt(mappedFile.offsetOf(position + 8));
+        if (byteOrderMagic == PCAPNG_BYTE_ORDER_MAGIC) {
+          mappedFile.setOrder(ByteOrder.BIG_ENDIAN);
+        } else if (Integer.reverseBytes(byteOrderMagic) == PCAPNG_BYTE_ORDER_MAGIC) {
+          mappedFile.setOrder(ByteOrder.LITTLE_ENDIAN);
+        } else {
+          throw new IOException("Invalid pcapng section header");
+        }
+        interfaces.clear();
+      }
+      var blockLength = mappedFile.view(position + 4, 4).getInt(mappedFile.offsetOf(position + 4)) & 0xFFFFFFFFL;
+      if (blockLength < 12 || position + blockLength > mappedFile.size()) {
+        LOGGER.debug("Truncated block at %s".formatted(position));
+        break;
+      }
+      var block = mappedFile.view(position, (int) blockLength);
+      var offset = mappedFile.offsetOf(position);
+      switch (blockType) {
+        case PCAPNG_INTERFACE_DESCRIPTION -> interfaces.add(readInterfaceDescription(block, offset, (int) blockLength));
+        case PCAPNG_ENHANCED_PACKET, PCAPNG_PACKET -> {
+          int interfaceId;
+          if (blockType == PCAPNG_ENHANCED_PACKET) {
+            interfaceId = block.getInt(offset + 8);
+          } else {
+            interfaceId = block.getShort(offset + 8) & 0xFFFF;
+          }
+          if (interfaceId < 0 || interfaceId >= interfaces.size()) {
+            LOGGER.debug("Packet for unknown interface %s".formatted(interfaceId));
+            break;
+          }
+          var interfaceDescription = interfaces.get(interfaceId);
+          var timestampValue = ((block.getInt(offset + 12) & 0xFFFFFFFFL) << 32) | (block.getInt(offset + 16) & 0xFFFFFFFFL);
+          var capturedLength = Math.min(block.getInt(offset + 20), (int) blockLength - 32);
+          lastTimestamp = toTimestampNanos(timestampValue, interfaceDescription);
+          var frame = mappedFile.bigEndianView(position, (int) blockLength);
+          decoder.decode(frame, offset + 28, capturedLength, interfaceDescription.linkType(), lastTimestamp);
+        }
+        case PCAPNG_SIMPLE_PACKET -> {
+          //simple packets carry no timestamp, they are given the timestamp of the packet before them
+          if (interfaces.isEmpty()) {
+            break;
+          }
+          var capturedLength = Math.min(block.getInt(offset + 8), (int) blockLength - 16);
+          var frame = mappedFile.bigEndianView(position, (int) blockLength);
+          decoder.decode(frame, offset + 12, capturedLength, interfaces.get(0).linkType(), lastTimestamp);
+        }
+        default -> {
+          //other blocks such as statistics and name resolution are not needed
+        }
+      }
+      position += blockLength;
+      progressListener.accept(position);
+    }
+  }
+
+  private InterfaceDescription readInterfaceDescription(ByteBuffer block, int offset, int blockLength) {
+    var linkType = block.getShort(offset + 8) & 0xFFFF;
+    //timestamps default to microseconds
+    var binaryResolution = false;
+    var resolution = 6;
+    var offsetSeconds = 0L;
+    var optionOffset = offset + 16;
+    var end = offset + blockLength - 4;
+    while (optionOffset + 4 <= end) {
+      var code = block.getShort(optionOffset) & 0xFFFF;
+      var length = block.getShort(optionOffset + 2) & 0xFFFF;
+      if (code == 0 || optionOffset + 4 + length > end) {
+        break;
+      }
+      if (code == PCAPNG_OPTION_TIMESTAMP_RESOLUTION && length == 1) {
+        var value = block.get(optionOffset + 4);
+        //the top bit says whether the rest is a negative power of two or of ten
+        binaryResolution = (value & 0x80) != 0;
+        resolution = value & 0x7F;
+      } else if (code == PCAPNG_OPTION_TIMESTAMP_OFFSET && length == 8) {
+        offsetSeconds = block.getLong(optionOffset + 4);
+      }
+      //option values are padded to 32 bits
+      optionOffset += 4 + ((length + 3) & ~3);
+    }
+    return new InterfaceDescription(linkType, binaryResolution, resolution, offsetSeconds);
+  }
+
+  private static long toTimestampNanos(long timestampValue, InterfaceDescription interfaceDescription) {
+    long seconds;
+    long nanos;
+    var resolution = interfaceDescription.resolution();
+    if (interfaceDescription.binaryResolution()) {
+      var shift = Math.min(resolution, 62);
+      seconds = timestampValue >>> shift;
+      nanos = (long) ((timestampValue & ((1L << shift) - 1)) * 1e9 / (1L << shift));
+    } else {
+      var exponent = Math.min(resolution, POWERS_OF_TEN.length - 1);
+      var unitsPerSecond = POWERS_OF_TEN[exponent];
+      seconds = Long.divideUnsigned(timestampValue, unitsPerSecond);
+      var fraction = Long.remainderUnsigned(timestampValue, unitsPerSecond);
+      nanos = exponent <= 9 ? fraction * POWERS_OF_TEN[9 - exponent] : fraction / POWERS_OF_TEN[exponent - 9];
+    }
+    return toTimestampNanos(seconds + interfaceDescription.offsetSeconds(), nanos);
+  }
+
+  //packets keep their timestamp as nanoseconds since the epoch, so no Timestamp object is created per packet
+  static long toTimestampNanos(long seconds, long nanos) {
+    return seconds * 1_000_000_000L + nanos;
+  }
+
+  /* Decodes the frames of a single file, keeping one address object per distinct address
+   */
+  private class FrameDecoder {
+    private final CaptureData captureData;
+    private final FiltersForm filtersForm;
+    private final boolean readIpv4;
+    private final boolean readIpv6;
+    private final Map<Integer, InetAddress> ipv4Addresses = new HashMap<>();
+    private final Map<ByteBuffer, InetAddress> ipv6Addresses = new HashMap<>();
+    private long packetsRead;
+
+    private FrameDecoder(CaptureData captureData, FiltersForm filtersForm) {
+      this.captureData = captureData;
+      this.filtersForm = filtersForm;
+      //mirrors the IP version part of the BPF expression, where neither box selected means both
+      var noneSelected = !filtersForm.isShowIpv4() && !filtersForm.isShowIpv6();
+      this.readIpv4 = filtersForm.isShowIpv4() || noneSelected;
+      this.readIpv6 = filtersForm.isShowIpv6() || noneSelected;
+    }
+
+    /* Decodes the frame at offset in the big endian buffer, skipping it if it is not a TCP packet
+     */
+    private void decode(ByteBuffer frame, int offset, int length, int linkType, long timestamp) {
+      try {
+        var ipOffset = findIpHeader(frame, offset, length, linkType);
+        if (ipOffset < 0) {
+          return;
+        }
+        var addresses = decodeIpHeader(frame, ipOffset, offset + length);
+        if (addresses == null) {
+          return;
+        }
+        decodeTcpHeader(frame, addresses, timestamp);
+      } catch (IndexOutOfBoundsException | UnknownHostException e) {
+        LOGGER.debug("Could not decode frame " + e.getMessage());
+      }
+    }
+
+    /* Returns the offset of the IP header, or -1 if the frame does not contain an IP packet
+     */
+    private int findIpHeader(ByteBuffer frame, int offset, int length, int linkType) {
+      var end = offset + length;
+      switch (linkType) {
+        case LINKTYPE_ETHERNET -> {
+          var typeOffset = offset + 12;
+          if (typeOffset + 2 > end) {
+            return -1;
+          }
+          var etherType = frame.getShort(typeOffset) & 0xFFFF;
+          //skips any VLAN tags
+          while (etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ || etherType == ETHERTYPE_QINQ_OLD) {
+            typeOffset += 4;
+            if (typeOffset + 2 > end) {
+              return -1;
+            }
+            etherType = frame.getShort(typeOffset) & 0xFFFF;
+          }
+          return isIpEtherType(etherType) ? typeOffset + 2 : -1;
+        }
+        case LINKTYPE_RAW, LINKTYPE_RAW_BSD, LINKTYPE_RAW_OPENBSD, LINKTYPE_IPV4, LINKTYPE_IPV6 -> {
+          return offset;
+        }
+        case LINKTYPE_LINUX_SLL -> {
+          return offset + 16 <= end && isIpEtherType(frame.getShort(offset + 14) & 0xFFFF) ? offset + 16 : -1;
+        }
+        case LINKTYPE_LINUX_SLL2 -> {
+          return offset + 20 <= end && isIpEtherType(frame.getShort(offset) & 0xFFFF) ? offset + 20 : -1;
+        }
+        case LINKTYPE_NULL, LINKTYPE_LOOP -> {
+          //the address family, which the version in the IP header already tells apart
+          return offset + 4 <= end ? offset + 4 : -1;
+        }
+        default -> {
+          return -1;
+        }
+      }
+    }
+
+    private boolean isIpEtherType(int etherType) {
+      return etherType == ETHERTYPE_IPV4 || etherType == ETHERTYPE_IPV6;
+    }
+
+    private DecodedAddresses decodeIpHeader(ByteBuffer frame, int ipOffset, int end) throws UnknownHostException {
+      if (ipOffset >= end) {
+        return null;
+      }
+      var version = (frame.get(ipOffset) & 0xF0) >> 4;
+      if (version == 4 && readIpv4) {
+        var headerLength = (frame.get(ipOffset) & 0x0F) * 4;
+        if (headerLength < 20 || ipOffset + headerLength > end
+          || (frame.get(ipOffset + 9) & 0xFF) != PROTOCOL_TCP) {
+          return null;
+        }
+        var flagsAndFragmentOffset = frame.getShort(ipOffset + 6) & 0xFFFF;
+        if ((flagsAndFragmentOffset & 0x3FFF) != 0) {
+          //fragments are not reassembled
+          return null;
+        }
+        //the total length excludes any ethernet padding after the packet
+        var totalLength = frame.getShort(ipOffset + 2) & 0xFFFF;
+        var packetEnd = totalLength >= headerLength ? Math.min(end, ipOffset + totalLength) : end;
+        var source = ipv4Address(frame.getInt(ipOffset + 12));
+        var destination = ipv4Address(frame.getInt(ipOffset + 16));
+        var tcpOffset = ipOffset + headerLength;
+        return new DecodedAddresses(IPprotocol.IPV4, source, destination, tcpOffset, packetEnd - tcpOffset);
+      } else if (version == 6 && readIpv6) {
+        if (ipOffset + 40 > end) {
+          return null;
+        }
+        var payloadLength = frame.getShort(ipOffset + 4) & 0xFFFF;
+        var packetEnd = payloadLength > 0 ? Math.min(end, ipOffset + 40 + payloadLength) : end;
+        var nextHeader = frame.get(ipOffset + 6) & 0xFF;
+        var headerOffset = ipOffset + 40;
+        //walks the extension headers until the TCP header
+        while (nextHeader != PROTOCOL_TCP) {
+          if (headerOffset + 2 > packetEnd) {
+            return null;
+          }
+          switch (nextHeader) {
+            case 0, 43, 60 -> { //hop by hop, routing and destination options
+              var extensionLength = ((frame.get(headerOffset + 1) & 0xFF) + 1) * 8;
+              nextHeader = frame.get(headerOffset) & 0xFF;
+              headerOffset += extensionLength;
+            }
+            case 51 -> { //authentication header
+              var extensionLength = ((frame.get(headerOffset + 1) & 0xFF) + 2) * 4;
+              nextHeader = frame.get(headerOffset) & 0xFF;
+              headerOffset += extensionLength;
+            }
+            default -> {
+              //fragments and other protocols
+              return null;
+            }
+          }
+        }
+        var source = ipv6Address(frame, ipOffset + 8);
+        var destination = ipv6Address(frame, ipOffset + 24);
+        return new DecodedAddresses(IPprotocol.IPV6, source, destination, headerOffset, packetEnd - headerOffset);
+      }
+      return null;
+    }
+
+    private void decodeTcpHeader(ByteBuffer frame, DecodedAddresses addresses, long timestamp) {
+      var tcpOffset = addresses.tcpOffset();
+      var tcpLength = addresses.tcpLength();
+      if (tcpLength < TCP_HEADER_LENGTH) {
+        return;
+      }
+      var headerLength = ((frame.get(tcpOffset + 12) & 0xF0) >> 4) * 4;
+      if (headerLength < TCP_HEADER_LENGTH || headerLength > tcpLength) {
+        return;
+      }
+      var flags = frame.get(tcpOffset + 13);
+      var easyTcpPacket = new EasyTCPacket();
+      easyTcpPacket.setiPprotocol(addresses.protocol());
+      easyTcpPacket.setSequenceNumber(frame.getInt(tcpOffset + 4) & 0xFFFFFFFFL);
+      easyTcpPacket.setAckNumber(frame.getInt(tcpOffset + 8) & 0xFFFFFFFFL);
+      easyTcpPacket.setTcpFlagBits(EasyTCPacket.toFlagBits(
+        (flags & 0x20) != 0, (flags & 0x10) != 0, (flags & 0x08) != 0,
+        (flags & 0x04) != 0, (flags & 0x02) != 0, (flags & 0x01) != 0));
+      easyTcpPacket.setWindowSize(frame.getShort(tcpOffset + 14) & 0xFFFF);
+      easyTcpPacket.setTcpOptions(
+        TcpOptions.decode(frame, tcpOffset + TCP_HEADER_LENGTH, headerLength - TCP_HEADER_LENGTH));
+      easyTcpPacket.setHeaderPayloadLength(headerLength);
+      easyTcpPacket.setDataPayloadLength(tcpLength - headerLength);
+      easyTcpPacket.setTimestampNanos(timestamp);
+      var sourcePort = frame.getShort(tcpOffset) & 0xFFFF;
+      var destinationPort = frame.getShort(tcpOffset + 2) & 0xFFFF;
+      packetTransformerService.fromDecodedPacket(easyTcpPacket, addresses.source(), sourcePort,
+        addresses.destination(), destinationPort, captureData, filtersForm);
+      captureData.getPackets().addPacketToContainer(easyTcpPacket);
+      packetsRead++;
+    }
+
+    private InetAddress ipv4Address(int address) throws UnknownHostException {
+      var cached = ipv4Addresses.get(address);
+      if (cached == null) {
+        cached = InetAddress.getByAddress(ByteBuffer.allocate(4).putInt(address).array());
+        ipv4Addresses.put(address, cached);
+      }
+      return cached;
+    }
+
+    private InetAddress ipv6Address(ByteBuffer frame, int offset) throws UnknownHostException {
+      var bytes = new byte[16];
+      frame.get(offset, bytes);
+      var key = ByteBuffer.wrap(bytes);
+      var cached = ipv6Addresses.get(key);
+      if (cached == null) {
+        cached = InetAddress.getByAddress(bytes);
+        ipv6Addresses.put(key, cached);
+      }
+      return cached;
+    }
+  }
+
+  /* A file mapped into memory a window at a time, with a view in the file's byte order
+   * and a big endian view for reading network headers.
+   */
+  private static class MappedFile implements AutoCloseable {
+    private final FileChannel channel;
+    private final long size;
+    private ByteOrder order = ByteOrder.BIG_ENDIAN;
+    private ByteBuffer fileOrderView;
+    private ByteBuffer bigEndianView;
+    private long windowStart;
+    private long windowEnd;
+
+    private MappedFile(File file) throws IOException {
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      this.size = channel.size();
+    }
+
+    private long size() {
+      return size;
+    }
+
+    private void setOrder(ByteOrder order) {
+      this.order = order;
+      if (fileOrderView != null) {
+        fileOrderView.order(order);
+      }
+    }
+
+    /* Ensures the bytes are mapped, returning a view in the file's byte order
+     */
+    private ByteBuffer view(long position, int length) throws IOException {
+      ensureMapped(position, length);
+      return fileOrderView;
+    }
+
+    private ByteBuffer bigEndianView(long position, int length) throws IOException {
+      ensureMapped(position, length);
+      return bigEndianView;
+    }
+
+    /* The offset into the current views of a position in the file, only valid after it has been mapped
+     */
+    private int offsetOf(long position) {
+      return (int) (position - windowStart);
+    }
+
+    private void ensureMapped(long position, int length) throws IOException {
+      if (fileOrderView != null && position >= windowStart && position + length <= windowEnd) {
+        return;
+      }
+      var mappingLength = Math.min(size - position, Math.max(MAPPING_WINDOW, length));
+      var mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, mappingLength);
+      this.fileOrderView = mapped.duplicate().order(order);
+      this.bigEndianView = mapped.duplicate().order(ByteOrder.BIG_ENDIAN);
+      this.windowStart = position;
+      this.windowEnd = position + mappingLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package easytcp.service.capture;
+
+import easytcp.model.PacketStoreBackend;
+import easytcp.model.application.CaptureData;
+import easytcp.model.packet.ConnectionStatus;
+import easytcp.model.packet.TCPConnection;
+import easytcp.service.PacketTransformerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/* Keeps a live capture within its memory budget by letting go of the packets of the connections which have been
+ * quiet the longest, connections which are over (closed, in time wait or rejected) going before any others.
+ * A connection whose packets are evicted stays in the capture with its status and statistics, so it is still
+ * listed and summarised, only its packets no longer appear in the log and the diagram.
+ * The memory of the packets is estimated from how many are stored rather than measured, as the heap in use also
+ * holds garbage which has not been collected yet. Packets are evicted until the estimate is back under a share of
+ * the budget, so once the budget is reached eviction runs now and then rather than on every packet.
+ * Packets kept in off-heap columns have their columns counted as they are allocated. Rows never move, so evicting
+ * packets does not free the columns, and once they alone fill the budget nothing is evicted and a warning is logged.
+ */
+public class PacketEvictionService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PacketEvictionService.class);
+  //a packet object with its place in the capture and connection lists and their indexes
+  static final long ESTIMATED_PACKET_BYTES = 300;
+  //a packet kept in off-heap columns only has its row numbers on the heap, the columns are counted separately
+  static final long ESTIMATED_COLUMNAR_PACKET_BYTES = 24;
+  //the pcap4j IP and TCP packets kept for saving the capture, with their headers and raw data
+  static final long ESTIMATED_PCAP4J_PACKET_BYTES = 1500;
+  private static final double EVICT_TO_BUDGET_SHARE = 0.9;
+  private static final Set<ConnectionStatus> FINISHED_STATUSES =
+    EnumSet.of(ConnectionStatus.CLOSED, ConnectionStatus.TIME_WAIT, ConnectionStatus.REJECTED);
+  private final PacketTransformerService packetTransformerService;
+  private final CaptureData captureData;
+  private boolean warnedOffHeapOverBudget;
+
+  //a connection which can be evicted, with when it last had a packet
+  private record Candidate(TCPConnection connection, boolean finished, long lastPacketAt, int packets) {}
+
+  public PacketEvictionService(PacketTransformerService packetTransformerService, CaptureData captureData) {
+    this.packetTransformerService = packetTransformerService;
+    this.captureData = captureData;
+  }
+
+  public long estimateBytes() {
+    var packets = captureData.getPackets();
+    var packetBytes = packets.getBackend() == PacketStoreBackend.OFF_HEAP_COLUMNAR
+      ? ESTIMATED_COLUMNAR_PACKET_BYTES
+      : ESTIMATED_PACKET_BYTES;
+    return packets.getPackets().size() * packetBytes
+      + packets.getOffHeapBytes()
+      + packetTransformerService.countPcap4jPackets() * ESTIMATED_PCAP4J_PACKET_BYTES;
+  }
+
+  /* Evicts packets if the capture is estimated to be over the budget, returns how many packets were evicted.
+   * A budget of 0 or less means there is no budget. Must be called by the only thread adding to the capture's packets.
+   */
+  public long enforce(long budgetBytes) {
+    if (budgetBytes <= 0) {
+      return 0;
+    }
+    var storedPackets = captureData.getPackets().getPackets().size();
+    var estimatedBytes = estimateBytes();
+    if (estimatedBytes <= budgetBytes || storedPackets == 0) {
+      return 0;
+    }
+    var targetBytes = (long) (budgetBytes * EVICT_TO_BUDGET_SHARE);
+    var offHeapBytes = captureData.getPackets().getOffHeapBytes();
+    if (offHeapBytes >= targetBytes) {
+      if (!warnedOffHeapOverBudget) {
+        warnedOffHeapOverBudget = true;
+        LOGGER.warn("The off-heap packet columns take %s bytes of the %s byte memory budget, evicting cannot free them"
+          .formatted(offHeapBytes, budgetBytes));
+      }
+      return 0;
+    }
+    //only what evicting frees is shared out between the packets
+    var bytesPerPacket = Math.max(1, (estimatedBytes - offHeapBytes) / storedPackets);
+    var bytesToFree = estimatedBytes - targetBytes;
+    var packetsToFree = (bytesToFree + bytesPerPacket - 1) / bytesPerPacket;
+    //compared by identity, connections are equal to others between the same addresses
+    var evicted = Collections.newSetFromMap(new IdentityHashMap<TCPConnection, Boolean>());
+    long packetsFreed = 0;
+    for (var candidate : evictionOrder()) {
+      if (packetsFreed >= packetsToFree) {
+        break;
+      }
+      evicted.add(candidate.connection());
+      packetsFreed += candidate.packets();
+    }
+    if (evicted.isEmpty()) {
+      return 0;
+    }
+    evicted.forEach(connection -> connection.getPacketContainer().evictPacketsOf(evicted));
+    var evictedPackets = captureData.getPackets().evictPacketsOf(evicted);
+    packetTransformerService.evictPcap4jPacketsOf(evicted);
+    captureData.recordEviction(evicted.size(), evictedPackets);
+    LOGGER.debug("Evicted %s packets of %s connections to stay within the memory budget"
+      .formatted(evictedPackets, evicted.size()));
+    return evictedPackets;
+  }
+
+  /* The connections which still have packets, the finished ones first, each from the longest quiet.
+   */
+  private List<Candidate> evictionOrder() {
+    var candidates = new ArrayList<Candidate>();
+    for (var connection : captureData.getTcpConnections()) {
+      var packets = connection.getPacketContainer().getPackets();
+      if (!packets.isEmpty()) {
+        candidates.add(new Candidate(connection, FINISHED_STATUSES.contains(connection.getConnectionStatus()),
+          packets.get(packets.size() - 1).getTimestampNanos(), packets.size()));
+      }
+    }
+    candidates.sort(Comparator.comparing((Candidate candidate) -> !candidate.finished())
+      .thenComparingLong(Candidate::lastPacketAt));
+    return candidates;
+  }
+}
@@ -1,12 +1,12 @@
 package easytcp.service.capture;
 
 import easytcp.model.CaptureStatus;
+import easytcp.model.FileReaderBackend;
 import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
-import easytcp.service.PacketDisplayService;
 import easytcp.service.PacketTransformerService;
-import easytcp.service.ServiceProvider;
+import easytcp.view.PacketLogTableModel;
 import easytcp.view.options.OptionsPanel;
 import org.pcap4j.core.BpfProgram;
 import org.pcap4j.core.PcapHandle;
@@ -18,74 +18,104 @@ import org.slf4j.LoggerFactory;
 import javax.swing.*;
 import java.io.File;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
 
 //Service used for reading packet capture files
 public class PcapFileReaderService {
   private static final Logger LOGGER = LoggerFactory.getLogger(PcapFileReaderService.class);
+  //the length of the header at the start of a pcap file
+  private static final int FILE_HEADER_LENGTH = 24;
+  //minimum time between updates of the views while a file is being read
+  private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
   private final PacketTransformerService packetTransformerService;
-  private final PacketDisplayService packetDisplayService;
   private final CaptureData captureData;
+  private final MappedPcapFileReader mappedPcapFileReader;
   private AtomicBoolean isSettingText;
 
   public PcapFileReaderService(PacketTransformerService packetTransformerService) {
     this.packetTransformerService = packetTransformerService;
-    this.packetDisplayService = ServiceProvider.getInstance().getPacketDisplayService();
     this.captureData = CaptureData.getInstance();
+    this.mappedPcapFileReader = new MappedPcapFileReader(packetTransformerService);
   }
 
   public CaptureData readPacketFile(File packetFile, FiltersForm filtersForm,
-                                    JTextPane textPane, OptionsPanel optionsPanel) {
+                                    PacketLogTableModel packetLogModel, OptionsPanel optionsPanel) {
     var executor = Executors.newSingleThreadExecutor();
     captureData.clear(); //clears captured data
+    var appStatus = ApplicationStatus.getStatus();
+    appStatus.setMethodOfCapture(CaptureStatus.READING_FROM_FILE);
+    appStatus.setLoadingProgress(0);
+    appStatus.setLoading(true);
+    this.isSettingText = new AtomicBoolean();
+    isSettingText.set(false);
 
     //opens file on a new thread, to not freeze the UI.
     executor.execute(() -> {
-      PcapHandle handle;
       try {
-        handle = Pcaps.openOffline(packetFile.getPath(), PcapHandle.TimestampPrecision.MICRO);
-      } catch (PcapNativeException e) {
-        try {
-          handle = Pcaps.openOffline(packetFile.getPath() + ".pcap");
-        } catch (PcapNativeException ex) {
-          throw new RuntimeException(ex);
+        var fileLength = Math.max(1, packetFile.length() - FILE_HEADER_LENGTH);
+        var lastProgressUpdate = new long[] {System.nanoTime()};
+        LongConsumer progressListener = bytesRead -> {
+          var now = System.nanoTime();
+          if (now - lastProgressUpdate[0] >= PROGRESS_INTERVAL_NANOS) {
+            lastProgressUpdate[0] = now;
+            //never reports completion until the whole file has been read
+            appStatus.setLoadingProgress((int) Math.min(99, bytesRead * 100 / fileLength));
+            publishProgress(filtersForm, packetLogModel, optionsPanel);
+          }
+        };
+        var filter = filtersForm.toBfpExpression();
+        captureData.setSource(packetFile, filter);
+        if (appStatus.getFileReaderBackend() == FileReaderBackend.MEMORY_MAPPED) {
+          mappedPcapFileReader.readFile(packetFile, captureData, filtersForm, progressListener);
+        } else {
+          var handle = openOffline(packetFile);
+          try {
+            handle.setFilter(filter, BpfProgram.BpfCompileMode.OPTIMIZE);
+            //the file is read and transformed in a single pass on this thread, in the order the packets are in the file
+            int maxPackets = Integer.MAX_VALUE;
+            handle.loop(maxPackets,
+              new FilePacketListener(packetTransformerService, handle, captureData, filtersForm, progressListener));
+          } finally {
+            handle.close();
+          }
         }
-      }
-
-      var appStatus = ApplicationStatus.getStatus();
-      appStatus.setMethodOfCapture(CaptureStatus.READING_FROM_FILE);
-      appStatus.setLoading(true);
-      try {
-        this.isSettingText = new AtomicBoolean();
-        isSettingText.set(false);
-        //each packet read from the file is read on a thread from the thread pool.
-        var threadPool = Executors.newCachedThreadPool();
-        int maxPackets = Integer.MAX_VALUE;
-        handle.setFilter(filtersForm.toBfpExpression(), BpfProgram.BpfCompileMode.OPTIMIZE);
-        handle.loop(maxPackets, new FilePacketListener(packetTransformerService, handle), threadPool);
-        //ensures the thread pool is shut down, to save resources
-        Thread.sleep(2000);
-        threadPool.shutdown();
-        //thread pool will terminate when the whole file has been read
-        while (!threadPool.isTerminated()) {
-          Thread.sleep(1000);
-        }
-        //once the thread-pool is terminated, we know the file has been entirely read,
-        // we can then transform the captured pcap4j packets
-        packetTransformerService.transformCapturedPackets();
-        //updates the text displays on the UI thread
-        SwingUtilities.invokeLater(() -> {
-          LiveCaptureService.setLogTextPane(filtersForm, textPane, captureData, packetDisplayService, optionsPanel);
-          isSettingText.set(false);
-        });
       } catch (Exception e) {
         LOGGER.debug(e.getMessage());
-        LOGGER.debug("Error sniffing packet");
+        LOGGER.debug("Error reading packet file");
       } finally {
+        appStatus.setLoadingProgress(100);
         appStatus.setLoading(false);
+        //updates the text displays on the UI thread, once everything has been read
+        SwingUtilities.invokeLater(() -> {
+          LiveCaptureService.updatePacketLog(filtersForm, packetLogModel, captureData, optionsPanel);
+          isSettingText.set(false);
+        });
       }
     });
     executor.shutdown();
     return captureData;
   }
+
+  /* Shows the packets read so far, skipped if the previous update has not been displayed yet
+   */
+  private void publishProgress(FiltersForm filtersForm, PacketLogTableModel packetLogModel, OptionsPanel optionsPanel) {
+    if (isSettingText.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(() -> {
+        LiveCaptureService.updatePacketLog(filtersForm, packetLogModel, captureData, optionsPanel);
+        isSettingText.set(false);
+      });
+    }
+  }
+
+  /* Opens a capture file for reading, trying with a .pcap extension if the path as given cannot be opened
+   */
+  public static PcapHandle openOffline(File packetFile) throws PcapNativeException {
+    try {
+      return Pcaps.openOffline(packetFile.getPath(), PcapHandle.TimestampPrecision.MICRO);
+    } catch (PcapNativeException e) {
+      return Pcaps.openOffline(packetFile.getPath() + ".pcap");
+    }
+  }
 }
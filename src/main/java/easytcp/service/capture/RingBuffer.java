@@ -0,0 +1,109 @@
+package easytcp.service.capture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/* A bounded, lock-free ring buffer for many producers and a single consumer.
+ * Each slot carries a sequence number telling producers and the consumer whose turn it is to use it,
+ * so neither side ever takes a lock and a full buffer is reported to the producer instead of blocking it.
+ */
+public class RingBuffer<T> {
+  private final int mask;
+  private final AtomicReferenceArray<T> items;
+  private final AtomicLongArray slotSequences;
+  private final AtomicLong tail = new AtomicLong(); // next position producers claim
+  private final AtomicLong head = new AtomicLong(); // next position the consumer reads
+  private volatile Thread waitingConsumer;
+
+  public RingBuffer(int capacity) {
+    //rounds the capacity up to a power of two, so the slot can be found with a mask
+    var size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = size - 1;
+    this.items = new AtomicReferenceArray<>(size);
+    this.slotSequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      slotSequences.set(i, i);
+    }
+  }
+
+  /* Adds the item if there is space, returns false when the buffer is full.
+   */
+  public boolean offer(T item) {
+    var position = tail.get();
+    while (true) {
+      var slot = (int) (position & mask);
+      var difference = slotSequences.get(slot) - position;
+      if (difference == 0) {
+        //the slot is free for this position, claims it
+        if (tail.compareAndSet(position, position + 1)) {
+          items.set(slot, item);
+          slotSequences.set(slot, position + 1);
+          var consumer = waitingConsumer;
+          if (consumer != null) {
+            LockSupport.unpark(consumer);
+          }
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        //the consumer has not freed this slot yet, the buffer is full
+        return false;
+      } else {
+        //another producer claimed the position first
+        position = tail.get();
+      }
+    }
+  }
+
+  /* Removes the next item, or returns null when the buffer is empty. Only one thread may consume.
+   */
+  public T poll() {
+    var position = head.get();
+    var slot = (int) (position & mask);
+    if (slotSequences.get(slot) != position + 1) {
+      return null;
+    }
+    var item = items.get(slot);
+    items.set(slot, null);
+    //frees the slot for the producer which wraps around to it
+    slotSequences.set(slot, position + mask + 1);
+    head.set(position + 1);
+    return item;
+  }
+
+  /* Removes the next item, waiting up to the timeout for one to arrive, returns null if none did.
+   */
+  public T poll(long timeout, TimeUnit unit) {
+    var item = poll();
+    if (item != null) {
+      return item;
+    }
+    waitingConsumer = Thread.currentThread();
+    try {
+      //checks again after registering, in case an item arrived in between
+      item = poll();
+      if (item == null) {
+        LockSupport.parkNanos(this, unit.toNanos(timeout));
+        item = poll();
+      }
+    } finally {
+      waitingConsumer = null;
+    }
+    return item;
+  }
+
+  public int size() {
+    return (int) Math.max(0, tail.get() - head.get());
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+}
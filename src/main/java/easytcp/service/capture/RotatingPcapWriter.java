@@ -0,0 +1,336 @@
+package easytcp.service.capture;
+
+import easytcp.model.CaptureFileSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/* Writes live captured frames to a ring of pcap files as they arrive, like tcpdump -w with -C, -G and -W.
+ * The capture thread only copies each frame into a bounded buffer, a single writer thread takes them off in batches
+ * and writes them through a large buffer to a file channel, so the disk is written in big sequential chunks.
+ * When the writer falls behind and the buffer fills up, frames are dropped and counted rather than blocking the
+ * capture. Since the frames are on disk, saving the capture is only a copy of the files in the ring.
+ */
+public class RotatingPcapWriter implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RotatingPcapWriter.class);
+  private static final int QUEUE_CAPACITY = 16384;
+  private static final int WRITE_BUFFER_CAPACITY = 1 << 20;
+  private static final int PCAP_MAGIC_MICRO = 0xa1b2c3d4;
+  private static final int PCAP_FILE_HEADER_LENGTH = 24;
+  private static final int PCAP_RECORD_HEADER_LENGTH = 16;
+  private static final long IDLE_WAIT_MILLIS = 10;
+  private static final long FLUSH_TIMEOUT_SECONDS = 30;
+  private final CaptureFileSettings settings;
+  private final int linkType;
+  private final int snapshotLength;
+  private final LongSupplier nanoClock;
+  private final RingBuffer<Frame> queue = new RingBuffer<>(QUEUE_CAPACITY);
+  private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+  private final ExecutorService executorService;
+  private final LongAdder writtenCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+  //the files of the ring which have been written to, oldest first
+  private final Deque<Path> files = new ArrayDeque<>();
+  //held while a file of the ring is overwritten, and while the ring is being saved so none are overwritten mid copy
+  private final Object rotationLock = new Object();
+  //the number of files opened, guarded by the rotation lock
+  private long rotations;
+  private volatile boolean accepting = true;
+  //only used by the writer thread
+  private FileChannel channel;
+  private int fileIndex = -1;
+  private long fileBytes;
+  private long fileOpenedAt;
+
+  /* A captured frame, or a request to flush which carries no frame
+   */
+  private record Frame(byte[] data, int originalLength, long seconds, int micros,
+                       CompletableFuture<List<CaptureFile>> flushed) {}
+
+  /* A file of the ring, and how much of it had been written when it was listed
+   */
+  public record CaptureFile(Path path, long length) {}
+
+  public RotatingPcapWriter(CaptureFileSettings settings, int linkType, int snapshotLength) throws IOException {
+    this(settings, linkType, snapshotLength, System::nanoTime);
+  }
+
+  RotatingPcapWriter(CaptureFileSettings settings, int linkType, int snapshotLength, LongSupplier nanoClock)
+    throws IOException {
+    if (snapshotLength <= 0 || snapshotLength > WRITE_BUFFER_CAPACITY - PCAP_RECORD_HEADER_LENGTH) {
+      throw new IllegalArgumentException("Snapshot length out of range");
+    }
+    this.settings = settings;
+    this.linkType = linkType;
+    this.snapshotLength = snapshotLength;
+    this.nanoClock = nanoClock;
+    Files.createDirectories(settings.directory());
+    //the first file is opened straight away, so a directory which cannot be written to fails the capture start
+    openNextFile();
+    this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+      var thread = new Thread(runnable, "capture-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executorService.execute(this::write);
+  }
+
+  /* Called from the capture thread, returns false if the frame had to be dropped.
+   */
+  public boolean offer(byte[] frame, int originalLength, Timestamp timestamp) {
+    if (!accepting) {
+      droppedCount.increment();
+      return false;
+    }
+    var data = frame.length > snapshotLength ? Arrays.copyOf(frame, snapshotLength) : frame;
+    var millis = timestamp.getTime();
+    var item = new Frame(data, Math.max(originalLength, frame.length),
+      Math.floorDiv(millis, 1000), timestamp.getNanos() / 1000, null);
+    if (queue.offer(item)) {
+      return true;
+    }
+    droppedCount.increment();
+    return false;
+  }
+
+  private void write() {
+    try {
+      while (accepting || !queue.isEmpty()) {
+        var frame = queue.poll(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        if (frame == null) {
+          //nothing arrived for a while, so what has been batched up so far goes to disk
+          flushBuffer();
+        } else if (frame.flushed() != null) {
+          flushBuffer();
+          frame.flushed().complete(listFiles());
+        } else {
+          writeFrame(frame);
+        }
+      }
+      flushBuffer();
+    } catch (IOException e) {
+      accepting = false;
+      LOGGER.error("Stopped writing the capture files " + e.getMessage());
+    } finally {
+      closeChannel();
+      //answers any flush which is still waiting, rather than leaving it to time out
+      Frame frame;
+      while ((frame = queue.poll()) != null) {
+        if (frame.flushed() != null) {
+          frame.flushed().complete(listFiles());
+        }
+      }
+    }
+  }
+
+  private void writeFrame(Frame frame) throws IOException {
+    var recordLength = PCAP_RECORD_HEADER_LENGTH + frame.data().length;
+    var maxFileBytes = settings.maxFileBytes();
+    var rotationInterval = settings.rotationInterval().toNanos();
+    //a file always gets at least one frame, so a frame larger than the size limit cannot rotate forever
+    if (fileBytes > PCAP_FILE_HEADER_LENGTH
+      && ((maxFileBytes > 0 && fileBytes + recordLength > maxFileBytes)
+      || (rotationInterval > 0 && nanoClock.getAsLong() - fileOpenedAt >= rotationInterval))) {
+      flushBuffer();
+      closeChannel();
+      openNextFile();
+    }
+    if (writeBuffer.remaining() < recordLength) {
+      flushBuffer();
+    }
+    writeBuffer.putInt((int) frame.seconds());
+    writeBuffer.putInt(frame.micros());
+    writeBuffer.putInt(frame.data().length);
+    writeBuffer.putInt(frame.originalLength());
+    writeBuffer.put(frame.data());
+    fileBytes += recordLength;
+    writtenCount.increment();
+  }
+
+  private void openNextFile() throws IOException {
+    fileIndex = (fileIndex + 1) % settings.fileCount();
+    var path = settings.fileAt(fileIndex);
+    synchronized (rotationLock) {
+      channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      rotations++;
+      synchronized (files) {
+        //the file being overwritten becomes the newest of the ring
+        files.remove(path);
+        files.addLast(path);
+      }
+    }
+    writeBuffer.putInt(PCAP_MAGIC_MICRO);
+    writeBuffer.putShort((short) 2);
+    writeBuffer.putShort((short) 4);
+    writeBuffer.putInt(0); // time zone offset
+    writeBuffer.putInt(0); // timestamp accuracy
+    writeBuffer.putInt(snapshotLength);
+    writeBuffer.putInt(linkType);
+    flushBuffer();
+    fileBytes = PCAP_FILE_HEADER_LENGTH;
+    fileOpenedAt = nanoClock.getAsLong();
+  }
+
+  private void flushBuffer() throws IOException {
+    writeBuffer.flip();
+    while (writeBuffer.hasRemaining()) {
+      channel.write(writeBuffer);
+    }
+    writeBuffer.clear();
+  }
+
+  private void closeChannel() {
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Error closing capture file " + e.getMessage());
+    }
+  }
+
+  private List<CaptureFile> listFiles() {
+    var captureFiles = new ArrayList<CaptureFile>();
+    synchronized (files) {
+      for (var path : files) {
+        try {
+          captureFiles.add(new CaptureFile(path, Files.size(path)));
+        } catch (IOException e) {
+          LOGGER.debug("Capture file is gone " + path);
+        }
+      }
+    }
+    return captureFiles;
+  }
+
+  /* Writes out the frames captured so far, and lists the files of the ring holding them, oldest first.
+   */
+  public List<CaptureFile> flush() throws IOException {
+    if (executorService.isTerminated()) {
+      return listFiles();
+    }
+    var flushed = new CompletableFuture<List<CaptureFile>>();
+    var request = new Frame(null, 0, 0, 0, flushed);
+    var deadline = nanoClock.getAsLong() + TimeUnit.SECONDS.toNanos(FLUSH_TIMEOUT_SECONDS);
+    while (!queue.offer(request)) {
+      if (nanoClock.getAsLong() - deadline > 0 || executorService.isTerminated()) {
+        throw new IOException("Capture writer did not accept the flush in time");
+      }
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    while (true) {
+      try {
+        return flushed.get(IDLE_WAIT_MILLIS * 10, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (executorService.isTerminated()) {
+          //the writer stopped before getting to the request, the files are complete as they are
+          return listFiles();
+        }
+        if (nanoClock.getAsLong() - deadline > 0) {
+          throw new IOException("Capture writer did not flush in time", e);
+        }
+      } catch (ExecutionException e) {
+        throw new IOException("Capture writer did not flush", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while flushing the capture files", e);
+      }
+    }
+  }
+
+  /* Saves the capture by joining the files of the ring into one pcap file.
+   * Files still being written are copied up to what had been written when this was called.
+   * The ring cannot move on to its next file while the copy runs, so the writer only keeps adding to the current one,
+   * and if it moved on while the files were being listed they are listed again.
+   */
+  public void copyTo(Path target) throws IOException {
+    var deadline = nanoClock.getAsLong() + TimeUnit.SECONDS.toNanos(FLUSH_TIMEOUT_SECONDS);
+    while (true) {
+      long rotationsBefore;
+      synchronized (rotationLock) {
+        rotationsBefore = rotations;
+      }
+      //the writer thread may need the lock to get to the flush, so it is only taken once the files are listed
+      var captureFiles = flush();
+      synchronized (rotationLock) {
+        if (rotations == rotationsBefore) {
+          copyFiles(captureFiles, target);
+          return;
+        }
+      }
+      if (nanoClock.getAsLong() - deadline > 0) {
+        throw new IOException("Capture files kept rotating while being saved");
+      }
+    }
+  }
+
+  private void copyFiles(List<CaptureFile> captureFiles, Path target) throws IOException {
+    try (var out = FileChannel.open(target,
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      var first = true;
+      for (var captureFile : captureFiles) {
+        //every file starts with the same header, which is only needed once
+        var position = first ? 0 : PCAP_FILE_HEADER_LENGTH;
+        try (var in = FileChannel.open(captureFile.path(), StandardOpenOption.READ)) {
+          while (position < captureFile.length()) {
+            var transferred = in.transferTo(position, captureFile.length() - position, out);
+            if (transferred <= 0) {
+              break;
+            }
+            position += transferred;
+          }
+        }
+        first = false;
+      }
+    }
+  }
+
+  public long getWrittenCount() {
+    return writtenCount.sum();
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  /* Stops accepting frames and waits for the ones already accepted to be written.
+   */
+  @Override
+  public void close() {
+    accepting = false;
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOGGER.debug("Capture writer did not finish in time");
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    LOGGER.info("Capture writer closed, written: %s, dropped: %s".formatted(getWrittenCount(), getDroppedCount()));
+  }
+}
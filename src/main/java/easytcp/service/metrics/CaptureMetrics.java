@@ -0,0 +1,279 @@
+package easytcp.service.metrics;
+
+import easytcp.model.application.CaptureData;
+import easytcp.service.HostnameResolverService;
+import easytcp.service.capture.CapturePipeline;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/* Measures each stage of a live capture, so a slowdown can be put down to the capture, transform or render stage:
+ * the kernel's own packet counts, how long packets take to be decoded on the capture thread and transformed by the
+ * pipeline, how far behind the pipeline and hostname resolver are, how long the views take to refresh, and how
+ * much heap each stored packet costs. Recording is lock-free, the counts of the kernel, pipeline and heap are only
+ * read when the metrics are.
+ */
+public class CaptureMetrics implements CaptureMetricsMXBean {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CaptureMetrics.class);
+  public static final String OBJECT_NAME = "easytcp:type=CaptureMetrics";
+  //the packet rate is averaged over at least this long, so reading it often does not make it jumpy
+  private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private final HostnameResolverService hostnameResolverService;
+  private final CaptureData captureData;
+  private final LongSupplier nanoClock;
+  private final LongSupplier heapUsed;
+  private final LatencyHistogram decodeLatency = new LatencyHistogram();
+  private final LatencyHistogram transformLatency = new LatencyHistogram();
+  private final LatencyHistogram uiRefreshDuration = new LatencyHistogram();
+  private final LongAdder packetsTransformed = new LongAdder();
+  private volatile PcapHandle pcapHandle;
+  private volatile CapturePipeline capturePipeline;
+  private long kernelPacketsReceived;
+  private long kernelPacketsDropped;
+  private long interfacePacketsDropped;
+  private long rateSampledAt;
+  private long rateSampledCount;
+  private double packetsPerSecond;
+
+  public CaptureMetrics(HostnameResolverService hostnameResolverService, CaptureData captureData) {
+    this(hostnameResolverService, captureData, System::nanoTime,
+      () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+  }
+
+  CaptureMetrics(HostnameResolverService hostnameResolverService,
+                 CaptureData captureData,
+                 LongSupplier nanoClock,
+                 LongSupplier heapUsed) {
+    this.hostnameResolverService = hostnameResolverService;
+    this.captureData = captureData;
+    this.nanoClock = nanoClock;
+    this.heapUsed = heapUsed;
+    this.rateSampledAt = nanoClock.getAsLong();
+  }
+
+  /* Registers the metrics with the platform MBean server, so they can be watched with jconsole or any JMX client.
+   */
+  public void register() {
+    try {
+      var mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      var objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException e) {
+      LOGGER.debug("Could not register the capture metrics " + e.getMessage());
+    }
+  }
+
+  /* Starts measuring a new live capture, the measurements of the previous one are discarded.
+   */
+  public void startLiveCapture(PcapHandle pcapHandle, CapturePipeline capturePipeline) {
+    reset();
+    this.pcapHandle = pcapHandle;
+    this.capturePipeline = capturePipeline;
+  }
+
+  public void recordDecode(long nanos) {
+    decodeLatency.record(nanos);
+  }
+
+  public void recordTransform(long nanos) {
+    transformLatency.record(nanos);
+    packetsTransformed.increment();
+  }
+
+  public void recordUiRefresh(long nanos) {
+    uiRefreshDuration.record(nanos);
+  }
+
+  @Override
+  public long getKernelPacketsReceived() {
+    refreshKernelStats();
+    synchronized (this) {
+      return kernelPacketsReceived;
+    }
+  }
+
+  @Override
+  public long getKernelPacketsDropped() {
+    refreshKernelStats();
+    synchronized (this) {
+      return kernelPacketsDropped;
+    }
+  }
+
+  @Override
+  public long getInterfacePacketsDropped() {
+    refreshKernelStats();
+    synchronized (this) {
+      return interfacePacketsDropped;
+    }
+  }
+
+  /* Reads the counts from libpcap while the handle is open, the last counts read are kept once it is closed.
+   */
+  private void refreshKernelStats() {
+    var handle = pcapHandle;
+    if (handle == null || !handle.isOpen()) {
+      return;
+    }
+    try {
+      var stats = handle.getStats();
+      if (stats != null) {
+        synchronized (this) {
+          kernelPacketsReceived = stats.getNumPacketsReceived();
+          kernelPacketsDropped = stats.getNumPacketsDropped();
+          interfacePacketsDropped = stats.getNumPacketsDroppedByIf();
+        }
+      }
+    } catch (PcapNativeException | NotOpenException | UnsupportedOperationException e) {
+      LOGGER.debug("Could not read the capture statistics " + e.getMessage());
+    }
+  }
+
+  @Override
+  public long getPacketsCaptured() {
+    var pipeline = capturePipeline;
+    return pipeline == null ? 0 : pipeline.getCapturedCount();
+  }
+
+  @Override
+  public long getPacketsDropped() {
+    var pipeline = capturePipeline;
+    return pipeline == null ? 0 : pipeline.getDroppedCount();
+  }
+
+  @Override
+  public long getPacketsFailed() {
+    var pipeline = capturePipeline;
+    return pipeline == null ? 0 : pipeline.getFailedCount();
+  }
+
+  @Override
+  public long getPacketsTransformed() {
+    return packetsTransformed.sum();
+  }
+
+  /* The packets transformed per second, since the rate was last worked out at least a second ago.
+   */
+  @Override
+  public synchronized double getPacketsPerSecond() {
+    var now = nanoClock.getAsLong();
+    var elapsed = now - rateSampledAt;
+    if (elapsed >= RATE_INTERVAL_NANOS) {
+      var transformed = packetsTransformed.sum();
+      packetsPerSecond = (transformed - rateSampledCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+      rateSampledAt = now;
+      rateSampledCount = transformed;
+    }
+    return packetsPerSecond;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    var pipeline = capturePipeline;
+    return pipeline == null ? 0 : pipeline.getQueuedCount();
+  }
+
+  @Override
+  public int getHostnameResolverBacklog() {
+    return hostnameResolverService.getBacklog();
+  }
+
+  @Override
+  public long getDecodeLatencyP50() {
+    return decodeLatency.getPercentile(50);
+  }
+
+  @Override
+  public long getDecodeLatencyP99() {
+    return decodeLatency.getPercentile(99);
+  }
+
+  @Override
+  public long getDecodeLatencyMax() {
+    return decodeLatency.getMax();
+  }
+
+  @Override
+  public long getTransformLatencyP50() {
+    return transformLatency.getPercentile(50);
+  }
+
+  @Override
+  public long getTransformLatencyP99() {
+    return transformLatency.getPercentile(99);
+  }
+
+  @Override
+  public long getTransformLatencyMax() {
+    return transformLatency.getMax();
+  }
+
+  @Override
+  public long getUiRefreshDurationP50() {
+    return uiRefreshDuration.getPercentile(50);
+  }
+
+  @Override
+  public long getUiRefreshDurationP99() {
+    return uiRefreshDuration.getPercentile(99);
+  }
+
+  @Override
+  public long getUiRefreshDurationMax() {
+    return uiRefreshDuration.getMax();
+  }
+
+  @Override
+  public long getHeapUsedBytes() {
+    return heapUsed.getAsLong();
+  }
+
+  @Override
+  public long getStoredPackets() {
+    return captureData.getPackets().getPackets().size();
+  }
+
+  /* The whole heap in use divided by the packets stored, which includes the rest of the application,
+   * so it is only meaningful once many packets have been captured.
+   */
+  @Override
+  public long getHeapBytesPerStoredPacket() {
+    var storedPackets = getStoredPackets();
+    return storedPackets == 0 ? 0 : getHeapUsedBytes() / storedPackets;
+  }
+
+  @Override
+  public long getEvictedPackets() {
+    return captureData.getEvictedPackets();
+  }
+
+  @Override
+  public long getEvictedConnections() {
+    return captureData.getEvictedConnections();
+  }
+
+  @Override
+  public synchronized void reset() {
+    decodeLatency.reset();
+    transformLatency.reset();
+    uiRefreshDuration.reset();
+    packetsTransformed.reset();
+    kernelPacketsReceived = 0;
+    kernelPacketsDropped = 0;
+    interfacePacketsDropped = 0;
+    rateSampledAt = nanoClock.getAsLong();
+    rateSampledCount = 0;
+    packetsPerSecond = 0;
+  }
+}
@@ -0,0 +1,59 @@
+package easytcp.service.metrics;
+
+/* The capture metrics as they are exposed over JMX, under the name easytcp:type=CaptureMetrics.
+ * Durations are in nanoseconds and apply to the current or most recent live capture.
+ */
+public interface CaptureMetricsMXBean {
+  //as counted by libpcap for the capture handle
+  long getKernelPacketsReceived();
+
+  long getKernelPacketsDropped();
+
+  long getInterfacePacketsDropped();
+
+  //as counted by the capture pipeline
+  long getPacketsCaptured();
+
+  long getPacketsDropped();
+
+  long getPacketsFailed();
+
+  long getPacketsTransformed();
+
+  double getPacketsPerSecond();
+
+  int getQueueDepth();
+
+  int getHostnameResolverBacklog();
+
+  long getDecodeLatencyP50();
+
+  long getDecodeLatencyP99();
+
+  long getDecodeLatencyMax();
+
+  long getTransformLatencyP50();
+
+  long getTransformLatencyP99();
+
+  long getTransformLatencyMax();
+
+  long getUiRefreshDurationP50();
+
+  long getUiRefreshDurationP99();
+
+  long getUiRefreshDurationMax();
+
+  long getHeapUsedBytes();
+
+  long getStoredPackets();
+
+  long getHeapBytesPerStoredPacket();
+
+  //let go of to keep the capture within its memory budget
+  long getEvictedPackets();
+
+  long getEvictedConnections();
+
+  void reset();
+}
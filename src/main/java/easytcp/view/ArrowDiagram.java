@@ -2,11 +2,9 @@ package easytcp.view;
 
 import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.FiltersForm;
-import easytcp.model.packet.ConnectionStatus;
 import easytcp.model.packet.EasyTCPacket;
 import easytcp.model.packet.TCPConnection;
 import easytcp.service.ArrowDiagramMouseListener;
-import easytcp.service.PacketDisplayService;
 import easytcp.service.ServiceProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,15 +22,18 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class ArrowDiagram extends ScrollableJPanel {
   private static final Logger LOGGER = LoggerFactory.getLogger(ArrowDiagram.class);
-  private static final int INITIAL_VERTICAL_POSITION = 100; // the Y axis coordinate of the start of the first arrow
-  private int currentVerticalPosition; // the current Y position to which everything is relative
   private int leftXPos = ApplicationStatus.getStatus().getFrameDimension().width / 10; //this is the left X axis coordinate
   private int arrowDiagramWidth = (ApplicationStatus.getStatus().getFrameDimension().width / 2) - 60; // this is the width of the arrows diagram
   private int rightXPos = arrowDiagramWidth - leftXPos;
   private int rightXLabelPos = rightXPos + 5; //this is the X axis position of the right label
   private int leftXLabelPos = leftXPos - 100;
-  private final PacketDisplayService packetDisplayService;
+  private final ArrowDiagramLayout layout;
   private TCPConnection selectedConnection;
+  //fonts for the labels, created again only when the font of the panel changes
+  private String labelFontName;
+  private Font labelFont;
+  private Font outgoingArrowFont;
+  private Font incomingArrowFont;
 
   private JScrollPane scrollPane;
   private FiltersForm filtersForm;
@@ -56,8 +57,7 @@ public class ArrowDiagram extends ScrollableJPanel {
 
   private ArrowDiagram() {
     super(true);
-    this.packetDisplayService = ServiceProvider.getInstance().getPacketDisplayService();
-    this.currentVerticalPosition = INITIAL_VERTICAL_POSITION; //initial position of the start of the arrow
+    this.layout = new ArrowDiagramLayout(ServiceProvider.getInstance().getPacketDisplayService());
     currentHeight = 500;
     this.arrowDiagramMouseListener = new ArrowDiagramMouseListener(this, PacketLog.getPacketLog(
         FiltersForm.getInstance(), ServiceProvider.getInstance()));
@@ -68,17 +68,12 @@ public class ArrowDiagram extends ScrollableJPanel {
   /* Sets the TCP connection to be drawn
    */
   public void setTcpConnection(TCPConnection tcpConnection, FiltersForm filtersForm) {
-    this.currentVerticalPosition = INITIAL_VERTICAL_POSITION;
     this.currentHeight = 500;
     this.filtersForm = filtersForm;
     if (selectedConnection != null && !selectedConnection.equals(tcpConnection) && !setViewportToSelectedPkt.get()) {
       scrollPane.getViewport().setViewPosition(new Point(0, 0));
     }
     this.selectedConnection = tcpConnection;
-    //sets the initial status
-    if (selectedConnection != null) {
-      selectedConnection.setStatusAsOfPacketTraversal(ConnectionStatus.UNKNOWN);
-    }
     arrowDiagramMouseListener.setSelectedConnection(selectedConnection);
     repaint();
     revalidate();
@@ -131,115 +126,96 @@ public class ArrowDiagram extends ScrollableJPanel {
       //draws the arrows and their labels
       drawArrows(g2d);
     }
-    //resets vertical position
-    currentVerticalPosition = INITIAL_VERTICAL_POSITION;
 
     g2d.dispose();
   }
 
   /*
-   * Draws arrows and labels
+   * Draws the arrows and labels within the area being painted, from the layout of the connection
    */
   private void drawArrows(Graphics2D g2d) {
-    selectedConnection.getPacketContainer()
-      .getPackets()
-      .forEach(pkt -> {
-        if (!packetDisplayService.isVisible(pkt, FiltersForm.getInstance())) {
-          return;
-        }
+    layout.update(selectedConnection, FiltersForm.getInstance());
+    if (currentHeight != layout.getHeight()) {
+      //increases the height of the scroll panel as arrows are drawn past the bottom of it
+      currentHeight = layout.getHeight();
+      revalidate();
+    }
+    createFonts(g2d.getFont().getFontName());
+    if (setViewportToSelectedPkt.get() && selectedPkt != null) {
+      //once a packet has been clicked in the log, this moves the viewport to the clicked packet
+      var selectedIndex = layout.indexOf(selectedPkt);
+      if (selectedIndex >= 0) {
+        selectedPktYPos = layout.get(selectedIndex).top() - ArrowDiagramLayout.ARROW_HEIGHT;
+        scrollPane.getViewport().setViewPosition(new Point(0, selectedPktYPos));
+      }
+      setViewportToSelectedPkt.set(false);
+    }
 
-        var leftPoint = new Point();
-        var rightPoint = new Point();
-        if (selectedPkt != null
-          && selectedPkt.equals(pkt)) {
-          //highlight selected packet in blue
-          g2d.setColor(Color.BLUE);
+    var clip = g2d.getClipBounds();
+    var first = clip == null ? 0 : layout.firstIndexAt(clip.y);
+    var end = clip == null ? layout.size() : layout.endIndexAt(clip.y + clip.height);
+    g2d.setFont(labelFont);
+    for (int i = first; i < end; i++) {
+      var arrow = layout.get(i);
+      var labels = layout.getLabels(i);
+      if (selectedPkt != null
+        && selectedPkt.equals(arrow.packet())) {
+        //highlight selected packet in blue
+        g2d.setColor(Color.BLUE);
+      }
+      var top = arrow.top();
+      var bottom = top + ArrowDiagramLayout.ARROW_HEIGHT;
+      var leftPoint = new Point(leftXPos, arrow.outgoing() ? top : bottom);
+      var rightPoint = new Point(rightXPos, arrow.outgoing() ? bottom : top);
+      var midpoint = midpoint(leftPoint, rightPoint); //middle of the arrow
+      if (arrow.outgoing()) {
+        // if outgoing the arrow is from left to right
+        if (arrow.statusLabel() != null) {
+          // if status changed, draws the status label
+          g2d.drawString(arrow.statusLabel(), leftXLabelPos, bottom - 65);
         }
-        if (pkt.getOutgoingPacket()) {
-          // if outgoing the arrow is from left to right
-          leftPoint.x = leftXPos;
-          leftPoint.y = currentVerticalPosition;
-          currentVerticalPosition = currentVerticalPosition + 70;
-          rightPoint.x = rightXPos;
-          rightPoint.y = currentVerticalPosition;
-          var currentStatus = selectedConnection.getStatusAsOfPacketTraversal();
-          var nextStatus = packetDisplayService.getStatusForPacket(pkt, selectedConnection);
-          if (currentStatus != nextStatus) {
-            // if status changed, draws the status label
-            g2d.drawString(nextStatus.getDisplayText(), leftXLabelPos, currentVerticalPosition - 65);
-          }
-          g2d.drawString(packetDisplayService.getSegmentLabel(pkt), leftXLabelPos, currentVerticalPosition-76);
-          g2d.drawString(
-            packetDisplayService.getConnectionTimestampForPacket(pkt), leftXLabelPos-10, currentVerticalPosition-90);
-
-          drawArrow(g2d, leftPoint, rightPoint);
-          currentVerticalPosition = currentVerticalPosition + 70;
-          var midpoint = midpoint(leftPoint, rightPoint); //middle of the arrow
-          g2d.setFont(new Font(g2d.getFont().getFontName(), Font.PLAIN, 11));
-          var lineLabel = packetDisplayService.getTcpFlagsForPacket(pkt, filtersForm);
-          //rotates the text, to place it on the arrow
-          var affineTransform = new AffineTransform();
-          affineTransform.rotate(0.15);
-          var defaultFont = g2d.getFont();
-          var font = new Font(g2d.getFont().getFontName(), Font.PLAIN, 12).deriveFont(affineTransform);
-          g2d.setFont(font);
-          var tcpOptionsAndWinSize = packetDisplayService.getTcpOptionsForPacket(pkt, filtersForm);
-          //if tcp options are very long, moves them slightly to the left
-          if (tcpOptionsAndWinSize.length() < 30) {
-            g2d.drawString(tcpOptionsAndWinSize, midpoint.x - 80, midpoint.y + 10);
-          } else {
-            g2d.drawString(tcpOptionsAndWinSize, midpoint.x - 150, midpoint.y);
-          }
-          g2d.drawString(lineLabel, midpoint.x-80, midpoint.y-20);
-          //resets the font back to default, so its not rotated anymore
-          g2d.setFont(defaultFont);
+        g2d.drawString(labels.segmentLabel(), leftXLabelPos, bottom - 76);
+        g2d.drawString(labels.timestampLabel(), leftXLabelPos - 10, bottom - 90);
+        drawArrow(g2d, leftPoint, rightPoint);
+        //rotates the text, to place it on the arrow
+        g2d.setFont(outgoingArrowFont);
+        //if tcp options are very long, moves them slightly to the left
+        if (labels.optionsLabel().length() < 30) {
+          g2d.drawString(labels.optionsLabel(), midpoint.x - 80, midpoint.y + 10);
         } else {
-          //similarly to above for incoming packet, right to left arrow
-          leftPoint.x = leftXPos;
-          rightPoint.y = currentVerticalPosition;
-          currentVerticalPosition = currentVerticalPosition + 70;
-          leftPoint.y = currentVerticalPosition;
-          rightPoint.x = rightXPos;
-          g2d.drawString(packetDisplayService.getStatusForPacket(pkt, selectedConnection).getDisplayText(), rightXLabelPos, currentVerticalPosition-65);
-          g2d.drawString(packetDisplayService.getSegmentLabel(pkt), rightXLabelPos, currentVerticalPosition-76);
-          g2d.drawString(
-            packetDisplayService.getConnectionTimestampForPacket(pkt), rightXLabelPos, currentVerticalPosition-90);
-
-          drawArrow(g2d, rightPoint, leftPoint);
-          currentVerticalPosition = currentVerticalPosition + 70;
-          var midpoint = midpoint(leftPoint, rightPoint);
-          var tempFont = g2d.getFont();
-          var affineTransform = new AffineTransform();
-          affineTransform.rotate(-0.15);
-          g2d.setFont(new Font(g2d.getFont().getFontName(), Font.PLAIN, 12).deriveFont(affineTransform));
-          var lineLabel = packetDisplayService.getTcpFlagsForPacket(pkt, filtersForm);
-          var tcpOptionsAndWinSize = packetDisplayService.getTcpOptionsForPacket(pkt, filtersForm);
-          g2d.drawString(lineLabel, midpoint.x-80, midpoint.y);
-          if (tcpOptionsAndWinSize.length() < 30) {
-            g2d.drawString(tcpOptionsAndWinSize, midpoint.x - 70, midpoint.y + 30);
-          } else {
-            g2d.drawString(tcpOptionsAndWinSize, midpoint.x - 150, midpoint.y + 40);
-          }
-          g2d.setFont(tempFont);
-        }
-
-        if (currentVerticalPosition >= currentHeight) {
-          currentHeight += 200;
-          //once arrows start being drawn outside of the visible area, increases height of the scroll panel
+          g2d.drawString(labels.optionsLabel(), midpoint.x - 150, midpoint.y);
         }
-        if(selectedPkt != null
-          && selectedPkt.equals(pkt)) {
-          selectedPktYPos = currentVerticalPosition - 210;
-          if (setViewportToSelectedPkt.get()) {
-            //once a packet has been clicked in the log, this moves the viewport to the clicked packet
-            scrollPane.getViewport().setViewPosition(new Point(0, selectedPktYPos));
-            setViewportToSelectedPkt.set(false);
-          }
+        g2d.drawString(labels.flagsLabel(), midpoint.x - 80, midpoint.y - 20);
+      } else {
+        //similarly to above for incoming packet, right to left arrow
+        g2d.drawString(arrow.statusLabel(), rightXLabelPos, bottom - 65);
+        g2d.drawString(labels.segmentLabel(), rightXLabelPos, bottom - 76);
+        g2d.drawString(labels.timestampLabel(), rightXLabelPos, bottom - 90);
+        drawArrow(g2d, rightPoint, leftPoint);
+        g2d.setFont(incomingArrowFont);
+        g2d.drawString(labels.flagsLabel(), midpoint.x - 80, midpoint.y);
+        if (labels.optionsLabel().length() < 30) {
+          g2d.drawString(labels.optionsLabel(), midpoint.x - 70, midpoint.y + 30);
+        } else {
+          g2d.drawString(labels.optionsLabel(), midpoint.x - 150, midpoint.y + 40);
         }
-        g2d.setColor(Color.BLACK);
-      });
-    //sets the default status, so the packet connection traversal can happen again on repaint.
-    selectedConnection.setStatusAsOfPacketTraversal(ConnectionStatus.UNKNOWN);
+      }
+      //resets the font back to default, so its not rotated anymore
+      g2d.setFont(labelFont);
+      g2d.setColor(Color.BLACK);
+    }
+  }
+
+  /* Creates the label fonts, including the ones rotated to lie along the arrows
+   */
+  private void createFonts(String fontName) {
+    if (fontName.equals(labelFontName)) {
+      return;
+    }
+    labelFontName = fontName;
+    labelFont = new Font(fontName, Font.PLAIN, 11);
+    outgoingArrowFont = new Font(fontName, Font.PLAIN, 12).deriveFont(AffineTransform.getRotateInstance(0.15));
+    incomingArrowFont = new Font(fontName, Font.PLAIN, 12).deriveFont(AffineTransform.getRotateInstance(-0.15));
   }
 
   /* Draws an arrow between two points.
@@ -285,17 +261,8 @@ public class ArrowDiagram extends ScrollableJPanel {
     revalidate();
 
     if (pkt != null && setViewport) {
-      var packets = pkt.getTcpConnection().getPacketContainer().getPackets();
-      var packetLocY = INITIAL_VERTICAL_POSITION - 70;
-      //gets the y position of the selected packet
-      for (EasyTCPacket currentPacket : packets) {
-        if (currentPacket.equals(selectedPkt)) {
-          setViewportToSelectedPkt.set(true);
-          this.selectedPktYPos = packetLocY;
-          break;
-        }
-        packetLocY += 140;
-      }
+      //the position of the selected packet is found from the layout when the diagram is next painted
+      setViewportToSelectedPkt.set(true);
     }
   }
 
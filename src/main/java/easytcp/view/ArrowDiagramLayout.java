@@ -0,0 +1,201 @@
+package easytcp.view;
+
+import easytcp.model.application.ApplicationStatus;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.ConnectionStatus;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.PacketAttributes;
+import easytcp.model.packet.TCPConnection;
+import easytcp.service.PacketDisplayService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* The arrows of the diagram for a connection, with the position of each arrow worked out once, its status read
+ * from the packet attributes of the connection and its labels formatted once when it is first drawn.
+ * Painting only draws the arrows which are on screen from here. Arrows for new packets are appended and the layout
+ * is only rebuilt when the connection or filters change, or a packet is inserted before ones laid out.
+ */
+final class ArrowDiagramLayout {
+  static final int INITIAL_VERTICAL_POSITION = 100; // the Y axis coordinate of the start of the first arrow
+  static final int ARROW_HEIGHT = 70; // the vertical distance an arrow covers
+  static final int ARROW_SPACING = ARROW_HEIGHT * 2; // the vertical distance from the start of one arrow to the next
+  private static final int LABEL_HEIGHT_ABOVE_ARROW = 40;
+  private static final int MINIMUM_HEIGHT = 500;
+  private final PacketDisplayService packetDisplayService;
+  private final List<Arrow> arrows = new ArrayList<>();
+  //the labels of each arrow, null until it is first drawn
+  private final List<Labels> labels = new ArrayList<>();
+  private TCPConnection connection;
+  private FiltersForm filtersForm;
+  private PacketAttributes attributes;
+  private DisplayState displayState;
+  //the number of packets of the connection which have been laid out
+  private int laidOut;
+  private long orderVersion = -1;
+
+  /* An arrow of the diagram, top being the Y axis coordinate where it starts. The status label is null when the
+   * status is not drawn next to the arrow.
+   */
+  record Arrow(EasyTCPacket packet,
+               boolean outgoing,
+               int top,
+               String statusLabel,
+               int positionInConnection) {
+  }
+
+  /* The text drawn next to and along an arrow
+   */
+  record Labels(String segmentLabel,
+                String timestampLabel,
+                String flagsLabel,
+                String optionsLabel) {
+  }
+
+  /* The filters which decide which arrows are drawn and what their labels say
+   */
+  private record DisplayState(long packetFilterVersion,
+                              boolean showAckAndSeqNumbers,
+                              boolean showHeaderFlags,
+                              boolean showWindowSize,
+                              boolean showLength,
+                              boolean showTcpOptions,
+                              boolean liveCapturing) {
+    private static DisplayState of(FiltersForm filtersForm) {
+      return new DisplayState(filtersForm.getPacketFilter().getVersion(), filtersForm.isShowAckAndSeqNumbers(),
+        filtersForm.isShowHeaderFlags(), filtersForm.isShowWindowSize(), filtersForm.isShowLength(),
+        filtersForm.isShowTcpOptions(), ApplicationStatus.getStatus().isLiveCapturing().get());
+    }
+
+    private boolean matches(DisplayState other) {
+      return equals(other);
+    }
+  }
+
+  ArrowDiagramLayout(PacketDisplayService packetDisplayService) {
+    this.packetDisplayService = packetDisplayService;
+  }
+
+  /* Brings the layout up to date with the connection, returning true if any arrow was added or moved.
+   */
+  boolean update(TCPConnection tcpConnection, FiltersForm filtersForm) {
+    if (tcpConnection == null) {
+      var changed = connection != null;
+      clear();
+      connection = null;
+      return changed;
+    }
+    var version = tcpConnection.getPacketContainer().getOrderVersion();
+    var packetAttributes = packetDisplayService.getPacketAttributes(tcpConnection);
+    var state = DisplayState.of(filtersForm);
+    if (tcpConnection != connection
+      || version != orderVersion
+      || packetAttributes.size() < laidOut
+      || !state.matches(displayState)) {
+      clear();
+      connection = tcpConnection;
+      orderVersion = version;
+      displayState = state;
+      this.filtersForm = filtersForm;
+    } else if (packetAttributes.size() == laidOut) {
+      return false;
+    }
+    attributes = packetAttributes;
+    layOut(filtersForm);
+    return true;
+  }
+
+  private void clear() {
+    arrows.clear();
+    labels.clear();
+    attributes = null;
+    laidOut = 0;
+    displayState = null;
+    orderVersion = -1;
+  }
+
+  /* Lays out the visible packets which have not been laid out yet, reading their statuses from the packet
+   * attributes of the connection.
+   */
+  private void layOut(FiltersForm filtersForm) {
+    var size = attributes.size();
+    for (int i = laidOut; i < size; i++) {
+      var pkt = attributes.getPacket(i);
+      if (!packetDisplayService.isVisible(pkt, filtersForm)) {
+        continue;
+      }
+      var previousStatus = i == 0 ? ConnectionStatus.UNKNOWN : attributes.getStatus(i - 1);
+      var status = attributes.getStatus(i);
+      //outgoing arrows only show the status when it changed, incoming arrows always show it
+      var statusLabel = !pkt.getOutgoingPacket() || previousStatus != status
+        ? status.getDisplayText()
+        : null;
+      arrows.add(new Arrow(pkt,
+        pkt.getOutgoingPacket(),
+        INITIAL_VERTICAL_POSITION + arrows.size() * ARROW_SPACING,
+        statusLabel,
+        i));
+      labels.add(null);
+    }
+    laidOut = size;
+  }
+
+  int size() {
+    return arrows.size();
+  }
+
+  Arrow get(int index) {
+    return arrows.get(index);
+  }
+
+  /* Gets the labels of an arrow, formatting them the first time it is drawn.
+   */
+  Labels getLabels(int index) {
+    var arrowLabels = labels.get(index);
+    if (arrowLabels == null) {
+      var arrow = arrows.get(index);
+      arrowLabels = new Labels(packetDisplayService.getSegmentLabel(arrow.positionInConnection()),
+        packetDisplayService.getConnectionTimestamp(attributes.getRelativeNanos(arrow.positionInConnection())),
+        packetDisplayService.getTcpFlagsForPacket(arrow.packet(), filtersForm),
+        packetDisplayService.getTcpOptionsForPacket(arrow.packet(), filtersForm));
+      labels.set(index, arrowLabels);
+    }
+    return arrowLabels;
+  }
+
+  /* Gets the index of the first arrow which may be drawn at or below the Y axis coordinate, the rotated labels
+   * of an arrow reach below the start of the next one.
+   */
+  int firstIndexAt(int y) {
+    var index = Math.floorDiv(y - INITIAL_VERTICAL_POSITION, ARROW_SPACING) - 1;
+    return Math.max(0, Math.min(index, arrows.size()));
+  }
+
+  /* Gets the index after the last arrow which may be drawn at or above the Y axis coordinate, the labels of an
+   * arrow start above it.
+   */
+  int endIndexAt(int y) {
+    var index = Math.floorDiv(y - INITIAL_VERTICAL_POSITION + LABEL_HEIGHT_ABOVE_ARROW, ARROW_SPACING) + 1;
+    return Math.max(0, Math.min(index, arrows.size()));
+  }
+
+  /* Gets the index of the arrow for the packet, or -1 if it is not drawn.
+   */
+  int indexOf(EasyTCPacket pkt) {
+    for (int i = 0; i < arrows.size(); i++) {
+      if (arrows.get(i).packet().equals(pkt)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /* Gets the height of the diagram, growing in steps of 200 pixels past the last arrow.
+   */
+  int getHeight() {
+    var bottom = INITIAL_VERTICAL_POSITION + arrows.size() * ARROW_SPACING;
+    return bottom < MINIMUM_HEIGHT
+      ? MINIMUM_HEIGHT
+      : MINIMUM_HEIGHT + ((bottom - MINIMUM_HEIGHT) / 200 + 1) * 200;
+  }
+}
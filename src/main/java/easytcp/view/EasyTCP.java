@@ -57,12 +57,14 @@ public class EasyTCP extends JFrame {
 
         this.getContentPane().add(firstRow);
 
-        var packetViewScroll = new JScrollPane(packetLogger.getPacketTextPane());
+        var packetViewScroll = new JScrollPane(packetLogger.getPacketTable());
         packetLogger.setScrollPane(packetViewScroll);
         packetViewScroll.setVerticalScrollBarPolicy(JScrollPane. VERTICAL_SCROLLBAR_AS_NEEDED);
 
         var menuToolbar = new MenuToolbar();
         menuToolbar.addNewMenuItemListener((actionEvent) -> packetLogger.newLog());
+        menuToolbar.addShowMetricsMenuItemListener(actionEvent ->
+          optionsPanel.getCaptureMetricsPanel().setShown(menuToolbar.isShowMetricsSelected()));
         var fileChooser = new JFileChooser();
         fileChooser.addActionListener(actionEvent -> {
             var fileSelected = fileChooser.getSelectedFile();
@@ -10,7 +10,6 @@ import easytcp.service.capture.LiveCaptureService;
 import easytcp.service.capture.PcapFileReaderService;
 import easytcp.view.options.MiddleRow;
 import easytcp.view.options.OptionsPanel;
-import org.apache.logging.log4j.util.Strings;
 import org.pcap4j.core.NotOpenException;
 import org.pcap4j.core.PcapHandle;
 import org.pcap4j.core.PcapNativeException;
@@ -19,25 +18,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
-import javax.swing.event.HyperlinkEvent;
-import javax.swing.text.DefaultCaret;
-import javax.swing.text.html.HTMLEditorKit;
-import javax.swing.text.html.StyleSheet;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.io.File;
+import java.util.Optional;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
-import static easytcp.service.capture.LiveCaptureService.setLogTextPane;
+import static easytcp.service.capture.LiveCaptureService.updatePacketLog;
 
-/*Class for displaying the text based capture log.
+/*Class for displaying the capture log, a table with a row per packet in a tcpdump-like format.
  */
 public class PacketLog {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(PacketLog.class);
   private static PacketLog packetLog;
   private final FiltersForm filtersForm;
-  private final JTextPane logTextPane;
+  private final PacketLogTableModel logTableModel;
+  private final JTable logTable;
   private final PcapFileReaderService pcapFileReaderService;
   private final PacketDisplayService packetDisplayService;
   private final LiveCaptureService liveCaptureService;
@@ -45,14 +43,17 @@ public class PacketLog {
   private final CaptureData captureData;
   private final ApplicationStatus appStatus;
   private JScrollPane scrollPane;
+  //set while the table's selection is changed to match the selected packet, rather than by the user
+  private boolean selectingPacketRow;
 
   public PacketLog(FiltersForm filtersForm, ServiceProvider serviceProvider) {
     this.filtersForm = filtersForm;
     this.captureData = CaptureData.getInstance();
-    this.logTextPane = getTextPane();
     this.appStatus = ApplicationStatus.getStatus();
     this.pcapFileReaderService = serviceProvider.getPcapFileReaderService();
     this.packetDisplayService = serviceProvider.getPacketDisplayService();
+    this.logTableModel = new PacketLogTableModel(packetDisplayService);
+    this.logTable = getTable();
     this.liveCaptureService = serviceProvider.getLiveCaptureService();
     packetLog = this;
   }
@@ -67,11 +68,12 @@ public class PacketLog {
         optionsPanel.getPanel(), "Error, cannot read file while " +
           "already live capturing packets, please stop the capture first.");
     } else {
+      liveCaptureService.discardCaptureWriter();
       var executor = Executors.newSingleThreadExecutor();
       //runs the file reading on another thread to not hang the Swing UI thread which calls readSelectedFile.
       executor
         .execute(() -> this.pcapFileReaderService.readPacketFile(
-          selectedFile, filtersForm, logTextPane, optionsPanel));
+          selectedFile, filtersForm, logTableModel, optionsPanel));
       executor.shutdown(); //This ensures the thread is shutdown after the work on it is done, to not hog system resources.
     }
   }
@@ -89,7 +91,7 @@ public class PacketLog {
         ArrowDiagram.getInstance().revalidate();
       });
       this.pcapHandle = liveCaptureService.startCapture(
-        networkInterface, filtersForm, logTextPane, optionsPanel);
+        networkInterface, filtersForm, logTableModel, optionsPanel);
     } else if (this.pcapHandle != null) {
       // this stops the live capture while its in progress
       pcapHandle.breakLoop();
@@ -98,7 +100,7 @@ public class PacketLog {
       ApplicationStatus.getStatus().setLiveCapturing(false);
       //this updates the views one last time after capture has stopped.
       SwingUtilities.invokeLater(() -> {
-        setLogTextPane(filtersForm, logTextPane, captureData, packetDisplayService, optionsPanel);
+        updatePacketLog(filtersForm, logTableModel, captureData, optionsPanel);
         MiddleRow.getInstance().addConnectionOptions(captureData);
       });
       this.pcapHandle = null;
@@ -109,7 +111,8 @@ public class PacketLog {
    */
   public void newLog() {
     captureData.clear();
-    PacketTransformerService.getPcapCaptureData().clear();
+    PacketTransformerService.clearPcapCaptureData();
+    liveCaptureService.discardCaptureWriter();
     if (pcapHandle != null && pcapHandle.isOpen()) {
       try {
         pcapHandle.breakLoop();
@@ -128,63 +131,30 @@ public class PacketLog {
       var arrowDiagram = ArrowDiagram.getInstance();
       arrowDiagram.setTcpConnection(null, filtersForm);
       refilterPackets();
-      logTextPane.setText("");
-      logTextPane.revalidate();
-      logTextPane.repaint();
     });
   }
 
-  /* This handles the filter button click, by re-setting the packet text.
+  /* This handles the filter button click, by re-setting the packets shown.
    */
   public void refilterPackets() {
-    var packetText = getPacketText();
+    //the filters have changed so the rows are found again, here rather than on the UI thread
+    var index = logTableModel.buildIndex(captureData, filtersForm);
 
     SwingUtilities.invokeLater(() -> {
       ArrowDiagram.getInstance().setFilters(filtersForm);
       ArrowDiagram.getInstance().repaint();
       ArrowDiagram.getInstance().revalidate();
-      ((DefaultCaret) packetLog.getPacketTextPane().getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
-      logTextPane.setContentType("text/html");
-      if (Strings.isBlank(packetText)) {
-        logTextPane.setText("<html> No packets matching your search criteria found, try changing your filters.</html>");
-      } else {
-        logTextPane.setText(packetText);
-      }
-      logTextPane.repaint();
-      logTextPane.revalidate();
-      ((DefaultCaret) packetLog.getPacketTextPane().getCaret()).setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
+      logTableModel.apply(index);
+      selectPacketRow(false);
     });
   }
 
   //packet can be null
   public void refreshPacketLog(boolean setViewport) {
-    var caret = (DefaultCaret) logTextPane.getCaret();
-    var packetText = getPacketText();
     SwingUtilities.invokeLater(() -> {
-      caret.setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
-      logTextPane.setContentType("text/html");
-      if (Strings.isBlank(packetText)) {
-        logTextPane.setText("<html> No packets matching your search criteria found, try changing your filters.</html>");
-      } else {
-        logTextPane.setText(packetText);
-      }
-
-      if (setViewport) {
-        caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
-        int i = 0;
-        //scrolls to the selected packet
-        for (String line : logTextPane.getText().split("<p>")) {
-          if (!Strings.isBlank(line) && line.contains("<span>")) {
-            if (i < 5) {
-              scrollPane.getViewport().setViewPosition(new Point(0, 0));
-            } else {
-              scrollPane.getViewport().setViewPosition(new Point(0, i * 30));
-            }
-            break;
-          }
-          i++;
-        }
-      }
+      logTableModel.update(captureData, filtersForm);
+      selectPacketRow(setViewport);
+      logTable.repaint();
     });
   }
 
@@ -192,96 +162,77 @@ public class PacketLog {
     return captureData;
   }
 
-  public JTextPane getPacketTextPane() {
-    return this.logTextPane;
+  public JTable getPacketTable() {
+    return this.logTable;
   }
 
-  /* This returns html text for the packet log after applying the filters.
-   */
-  private String getPacketText() {
-    var sb = new StringBuilder();
-    sb.append("<html>");
-
-    sb.append(captureData.getPackets().getPackets()
-      .stream()
-      .filter(packet -> packetDisplayService.isVisible(packet, filtersForm))
-      .map(packet -> packetDisplayService.prettyPrintPacket(packet, filtersForm))
-      .collect(Collectors.joining()));
-    sb.append("</html>");
-    return sb.toString();
+  public PacketLogTableModel getPacketTableModel() {
+    return logTableModel;
   }
 
-  private void handlePacketClick(HyperlinkEvent e) {
-    //if hyperlink is clicked
-    if (e.getEventType().equals(HyperlinkEvent.EventType.ACTIVATED)) {
-      var url = e.getDescription().split(":"); //the separator between the values in the href
-      var sequenceNumber = url[0];
-      var payloadLength = url[1];
-      var ackNumber = url[2];
-      var tcpFlagsDisplayable = url[3];
-      var tcpConnectionHostAddress = url[4];
-
-      //extracts the address from the url and looks through the map of tcp connections
-      //to find the object for it.
-      var addressOpt = this.captureData.getTcpConnectionMap().keySet()
-        .stream()
-        .filter(addr -> addr.toString().equals(tcpConnectionHostAddress))
-        .findFirst();
-
-      if (addressOpt.isPresent()) {
-        var tcpConnectionOfPacket = captureData
-          .getTcpConnectionMap()
-          .get(addressOpt.get());
-        //gets the selected packet object from the connection
-        var selectedPkt = tcpConnectionOfPacket.getPacketContainer()
-          .findPacketWith(
-            Long.parseLong(sequenceNumber),
-            Long.parseLong(ackNumber),
-            Integer.parseInt(payloadLength),
-            tcpFlagsDisplayable);
-        selectedPkt.ifPresent(packet ->
-          //if packet found, updates the arrow diagram and selects the connection on the UI thread
-          SwingUtilities.invokeLater(() -> {
-            var mr = MiddleRow.getInstance();
-            mr.setConnectionInformation(tcpConnectionOfPacket);
-            ArrowDiagram.getInstance().setTcpConnection(tcpConnectionOfPacket, filtersForm);
-            ArrowDiagram.getInstance().setSelectedPacket(packet, true);
-            refreshPacketLog(false);
-          }));
+  /* Selects the row of the selected packet, scrolling to it if setViewport is set.
+   */
+  private void selectPacketRow(boolean setViewport) {
+    var row = logTableModel.getSelectedPacketRow();
+    selectingPacketRow = true;
+    try {
+      if (row < 0) {
+        logTable.clearSelection();
       } else {
-        var packetOpt = this.captureData.getPackets().findPacketWith(
-          Long.valueOf(sequenceNumber), Long.valueOf(ackNumber), Integer.valueOf(payloadLength), tcpFlagsDisplayable);
-        packetOpt.ifPresent(packet ->
-          //if packet found, updates the arrow diagram and selects the connection on the UI thread
-          SwingUtilities.invokeLater(() -> {
-            ArrowDiagram.getInstance().setTcpConnection(packet.getTcpConnection(), filtersForm);
-            ArrowDiagram.getInstance().setSelectedPacket(packet, true);
-            var mr = MiddleRow.getInstance();
-            mr.setConnectionInformation(packetOpt.get().getTcpConnection());
-            refreshPacketLog(false);
-          }));
+        logTable.setRowSelectionInterval(row, row);
+        if (setViewport) {
+          logTable.scrollRectToVisible(logTable.getCellRect(row, 0, true));
+        }
       }
+    } finally {
+      selectingPacketRow = false;
+    }
+  }
+
+  private void handlePacketClick(ListSelectionEvent e) {
+    var row = logTable.getSelectedRow();
+    if (e.getValueIsAdjusting() || selectingPacketRow || row < 0) {
+      return;
     }
+    //the row holds the packet itself, so its connection is known without searching for it
+    var packet = logTableModel.getPacketAt(row);
+    var tcpConnectionOfPacket = packet.getTcpConnection();
+    //the connection's own copy of the packet is selected, so the arrows diagram highlights it
+    var selectedPkt = tcpConnectionOfPacket == null
+      ? Optional.of(packet)
+      : tcpConnectionOfPacket.getPacketContainer().findPacketWith(packet.getSequenceNumber(),
+      packet.getAckNumber(), packet.getDataPayloadLength(), packet.getTcpFlagsDisplayable());
+    selectedPkt.ifPresent(pkt -> {
+      var mr = MiddleRow.getInstance();
+      mr.setConnectionInformation(tcpConnectionOfPacket);
+      ArrowDiagram.getInstance().setTcpConnection(tcpConnectionOfPacket, filtersForm);
+      ArrowDiagram.getInstance().setSelectedPacket(pkt, true);
+      logTableModel.setSelectedPacket(pkt);
+      logTable.repaint();
+    });
   }
 
-  private JTextPane getTextPane() {
-    var textPane = new JTextPane();
-    textPane.setEditable(false);
-    textPane.setContentType("text/html");
-    var hed = new HTMLEditorKit();
-    var defaultStyle = hed.getStyleSheet();
-    var style = new StyleSheet();
-    style.addStyleSheet(defaultStyle);
-    //adds css to the packet log text
-    style.addRule("body {font-family:\"Monospaced\"; font-size:10px;}");
-    style.addRule("a {color:#000000; text-decoration: none;}");
-    style.addRule("span {color:#0000ff; text-decoration: none;}");
-    //Ensures capture log packets are correctly read as html and edits the default hyperlink styling.
-    hed.setStyleSheet(style);
-    textPane.setEditorKit(hed);
-    textPane.setDocument(hed.createDefaultDocument());
-    textPane.addHyperlinkListener(this::handlePacketClick);
-    return textPane;
+  private JTable getTable() {
+    var table = new JTable(logTableModel);
+    table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    table.setFillsViewportHeight(true);
+    table.setShowGrid(false);
+    table.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 2);
+    //selected packets are shown in blue, as on the arrows diagram
+    table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+      @Override
+      public Component getTableCellRendererComponent(
+        JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+        var component = super.getTableCellRendererComponent(table, value, isSelected, false, row, column);
+        if (!isSelected) {
+          component.setForeground(logTableModel.isSelectedRow(row) ? Color.BLUE : table.getForeground());
+        }
+        return component;
+      }
+    });
+    table.getSelectionModel().addListSelectionListener(this::handlePacketClick);
+    return table;
   }
 
   public static PacketLog getPacketLog(FiltersForm filtersForm, ServiceProvider serviceProvider) {
@@ -0,0 +1,311 @@
+package easytcp.view;
+
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.application.PacketFilter;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.TCPConnection;
+import easytcp.service.PacketDisplayService;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+
+/* Table model for the packet log, one row per packet matching the filters.
+ * The model only holds the position of each visible packet in the capture's timestamp ordered packet list,
+ * rows are formatted when the table paints them and only a bounded number of formatted rows are cached,
+ * so memory does not grow with the text of the packets. Packets which arrived since the last update are
+ * appended to the index, it is only rebuilt when the filters change or packets were inserted before ones
+ * already shown. When the filters select particular connections, the index is built from the packets of those
+ * connections alone. Apart from building an index, all methods must be called on the Swing UI thread.
+ */
+public class PacketLogTableModel extends AbstractTableModel {
+  private static final String[] COLUMN_NAMES =
+    {"Time", "Protocol", "Source", "Destination", "Flags", "Seq", "Ack", "Win", "Options", "Length"};
+  //enough rows for a few screens of the log
+  private static final int MAX_CACHED_ROWS = 512;
+  private final PacketDisplayService packetDisplayService;
+  private FiltersForm filtersForm;
+  private List<EasyTCPacket> packets = List.of();
+  //the position in the packet list of the packet on each row
+  private int[] rows = new int[0];
+  private int rowCount;
+  //how far into the packet list the index has been built
+  private int packetsSeen;
+  private long orderVersion = -1;
+  private FilterState filterState;
+  //the connections with a packet on a row, kept up to date with the rows so they never need counting again
+  private Set<TCPConnection> visibleConnections = newConnectionSet();
+  //the packet selected on the log or the arrows diagram, and its position in the packet list or -1 if it is not in it
+  private EasyTCPacket selectedPacket;
+  private int selectedPosition = -1;
+  private final Map<Integer, String[]> formattedRows = new LinkedHashMap<>(MAX_CACHED_ROWS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+      return size() > MAX_CACHED_ROWS;
+    }
+  };
+
+  /* The filters which decide which packets are shown and how they are printed
+   */
+  private record FilterState(long packetFilterVersion,
+                             boolean resolveHostnames) {
+    private static FilterState of(FiltersForm filtersForm) {
+      return new FilterState(filtersForm.getPacketFilter().getVersion(), filtersForm.isResolveHostnames());
+    }
+
+    private boolean matches(FilterState other) {
+      return equals(other);
+    }
+  }
+
+  /* The visible packets of a capture, which can be found off the Swing UI thread and applied later.
+   */
+  public static final class Index {
+    private final List<EasyTCPacket> packets;
+    private final int[] rows;
+    private final int rowCount;
+    private final Set<TCPConnection> visibleConnections;
+    private final long orderVersion;
+    private final FiltersForm filtersForm;
+    private final FilterState filterState;
+
+    private Index(List<EasyTCPacket> packets, int[] rows, int rowCount, Set<TCPConnection> visibleConnections,
+                  long orderVersion, FiltersForm filtersForm, FilterState filterState) {
+      this.packets = packets;
+      this.rows = rows;
+      this.rowCount = rowCount;
+      this.visibleConnections = visibleConnections;
+      this.orderVersion = orderVersion;
+      this.filtersForm = filtersForm;
+      this.filterState = filterState;
+    }
+  }
+
+  public PacketLogTableModel(PacketDisplayService packetDisplayService) {
+    this.packetDisplayService = packetDisplayService;
+  }
+
+  /* Finds the packets of the capture matching the filters, this only reads the packets so can be done on any thread.
+   */
+  public Index buildIndex(CaptureData captureData, FiltersForm filtersForm) {
+    var filterState = FilterState.of(filtersForm);
+    var container = captureData.getPackets();
+    var version = container.getOrderVersion();
+    var allPackets = container.getPackets();
+    var packetFilter = filtersForm.getPacketFilter();
+    var connections = captureData.findConnectionsMatching(packetFilter);
+    var visibleConnections = newConnectionSet();
+    if (connections.isPresent()) {
+      var visible = findVisibleRows(allPackets, connections.get(), packetFilter, visibleConnections);
+      return new Index(allPackets, visible, visible.length, visibleConnections, version, filtersForm, filterState);
+    }
+    var visible = new int[Math.max(16, Math.min(allPackets.size(), 1024))];
+    var count = appendVisible(allPackets, 0, filtersForm, visible, 0, visibleConnections);
+    if (count < 0) {
+      visible = Arrays.copyOf(visible, allPackets.size());
+      count = appendVisible(allPackets, 0, filtersForm, visible, 0, visibleConnections);
+    }
+    return new Index(allPackets, visible, count, visibleConnections, version, filtersForm, filterState);
+  }
+
+  /* Finds the positions in the packet list of the visible packets of the connections the filter selected, looking up
+   * each of their packets by its timestamp rather than going through every packet of the capture.
+   */
+  private static int[] findVisibleRows(List<EasyTCPacket> allPackets,
+                                       Collection<TCPConnection> connections,
+                                       PacketFilter packetFilter,
+                                       Set<TCPConnection> visibleConnections) {
+    var candidates = new ArrayList<EasyTCPacket>();
+    for (var connection : connections) {
+      for (var pkt : connection.getPacketContainer().getPackets()) {
+        if (packetFilter.test(pkt)) {
+          candidates.add(pkt);
+        }
+      }
+    }
+    candidates.sort(Comparator.comparingLong(EasyTCPacket::getTimestampNanos));
+    var rows = new int[candidates.size()];
+    var count = 0;
+    //positions already taken by a packet with the current timestamp, so equal packets each get their own row
+    var taken = new HashSet<Integer>();
+    var currentTimestamp = Long.MIN_VALUE;
+    for (var pkt : candidates) {
+      var timestamp = pkt.getTimestampNanos();
+      if (timestamp != currentTimestamp) {
+        taken.clear();
+        currentTimestamp = timestamp;
+      }
+      var position = findPosition(allPackets, pkt, taken);
+      //packets still being added to the capture are found when the table next updates
+      if (position >= 0) {
+        taken.add(position);
+        rows[count++] = position;
+        addConnection(visibleConnections, pkt);
+      }
+    }
+    rows = Arrays.copyOf(rows, count);
+    Arrays.sort(rows);
+    return rows;
+  }
+
+  private static int findPosition(List<EasyTCPacket> allPackets, EasyTCPacket pkt, Set<Integer> taken) {
+    var timestamp = pkt.getTimestampNanos();
+    var low = 0;
+    var high = allPackets.size();
+    while (low < high) {
+      var mid = (low + high) >>> 1;
+      if (allPackets.get(mid).getTimestampNanos() < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    //several packets can share a timestamp
+    for (int i = low; i < allPackets.size(); i++) {
+      var other = allPackets.get(i);
+      if (other.getTimestampNanos() != timestamp) {
+        break;
+      }
+      if (!taken.contains(i) && other.getTcpConnection() == pkt.getTcpConnection() && other.equals(pkt)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /* Replaces the rows of the table with an index.
+   */
+  public void apply(Index index) {
+    packets = index.packets;
+    rows = index.rows;
+    rowCount = index.rowCount;
+    visibleConnections = index.visibleConnections;
+    packetsSeen = index.packets.size();
+    orderVersion = index.orderVersion;
+    filtersForm = index.filtersForm;
+    filterState = index.filterState;
+    //the packets may have been reordered or evicted, so the selected packet is looked up again
+    selectedPosition = selectedPacket == null ? -1 : findPosition(packets, selectedPacket, Set.of());
+    formattedRows.clear();
+    fireTableDataChanged();
+  }
+
+  /* Brings the table up to date with the capture, adding rows for the new packets when it can rather than rebuilding it.
+   */
+  public void update(CaptureData captureData, FiltersForm filtersForm) {
+    var container = captureData.getPackets();
+    //read before the packets, so packets reordered in between are caught by the next update
+    var version = container.getOrderVersion();
+    var allPackets = container.getPackets();
+    if (version != orderVersion
+      || allPackets.size() < packetsSeen
+      || !FilterState.of(filtersForm).matches(filterState)) {
+      apply(buildIndex(captureData, filtersForm));
+      return;
+    }
+    packets = allPackets;
+    //rows already on screen are formatted again, so hostnames resolved since they were shown appear
+    formattedRows.clear();
+    var firstNewRow = rowCount;
+    var newRowCount = appendVisible(allPackets, packetsSeen, filtersForm, rows, rowCount, visibleConnections);
+    if (newRowCount < 0) {
+      rows = Arrays.copyOf(rows, Math.max(rows.length * 2, rowCount + allPackets.size() - packetsSeen));
+      newRowCount = appendVisible(allPackets, packetsSeen, filtersForm, rows, rowCount, visibleConnections);
+    }
+    rowCount = newRowCount;
+    packetsSeen = allPackets.size();
+    if (rowCount > firstNewRow) {
+      fireTableRowsInserted(firstNewRow, rowCount - 1);
+    } else if (rowCount > 0) {
+      fireTableRowsUpdated(0, rowCount - 1);
+    }
+  }
+
+  /* Adds the positions of the visible packets from the given position onwards, and their connections, returning the
+   * new row count, or -1 if they did not fit in the array.
+   */
+  private int appendVisible(List<EasyTCPacket> allPackets, int from, FiltersForm filtersForm, int[] into, int count,
+                            Set<TCPConnection> connections) {
+    var size = allPackets.size();
+    for (int i = from; i < size; i++) {
+      var pkt = allPackets.get(i);
+      if (packetDisplayService.isVisible(pkt, filtersForm)) {
+        if (count == into.length) {
+          return -1;
+        }
+        into[count++] = i;
+        addConnection(connections, pkt);
+      }
+    }
+    return count;
+  }
+
+  //compared by identity, as the hash of a connection changes with its status
+  private static Set<TCPConnection> newConnectionSet() {
+    return Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  private static void addConnection(Set<TCPConnection> connections, EasyTCPacket pkt) {
+    if (pkt.getTcpConnection() != null) {
+      connections.add(pkt.getTcpConnection());
+    }
+  }
+
+  //the number of connections with a packet shown, counted as the rows are added
+  public int getVisibleConnectionCount() {
+    return visibleConnections.size();
+  }
+
+  public EasyTCPacket getPacketAt(int row) {
+    return packets.get(rows[row]);
+  }
+
+  /* Remembers where the selected packet is in the packet list, so its row can be found without going through the rows.
+   * The packet can be the copy held by its connection, null when no packet is selected.
+   */
+  public void setSelectedPacket(EasyTCPacket packet) {
+    selectedPacket = packet;
+    selectedPosition = packet == null ? -1 : findPosition(packets, packet, Set.of());
+  }
+
+  /* Gets the row of the selected packet, or -1 if it is not shown.
+   */
+  public int getSelectedPacketRow() {
+    if (selectedPosition < 0 || !selectedPacket.getSelectedPacket()) {
+      return -1;
+    }
+    //the rows are in the order of the packet list
+    var row = Arrays.binarySearch(rows, 0, rowCount, selectedPosition);
+    return row < 0 ? -1 : row;
+  }
+
+  public boolean isSelectedRow(int row) {
+    return selectedPosition >= 0 && rows[row] == selectedPosition && selectedPacket.getSelectedPacket();
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    //formatted when the row is first painted, the table only asks for the rows on screen
+    var formatted = formattedRows.get(row);
+    if (formatted == null) {
+      formatted = packetDisplayService.toLogRow(getPacketAt(row), filtersForm);
+      formattedRows.put(row, formatted);
+    }
+    return formatted[column];
+  }
+}
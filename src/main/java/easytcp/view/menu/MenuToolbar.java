@@ -1,21 +1,37 @@
 package easytcp.view.menu;
 
+import easytcp.model.CaptureFileSettings;
+import easytcp.model.FileReaderBackend;
+import easytcp.model.PacketStoreBackend;
+import easytcp.model.application.ApplicationStatus;
+import easytcp.model.application.LocalAddressClassifier;
 import easytcp.service.ServiceProvider;
 import easytcp.view.menu.help.AboutTCPHelpScreen;
 import easytcp.view.menu.help.GeneralHelpScreen;
 
 import javax.swing.*;
+import java.awt.*;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 
 /* This is the top left corner menu toolbar
  */
 public class MenuToolbar {
+  //evicting packets does not free off-heap columns, so a memory budget could not be kept
+  private static final String OFF_HEAP_BUDGET_MESSAGE =
+    "A memory budget cannot be kept while packets are stored off-heap, "
+      + "their memory is only freed when the capture is cleared";
   private final JMenuBar menuBar;
   private final JMenuItem newMenuItem = new JMenuItem("New");
   private final JMenuItem openMenuItem =  new JMenuItem("Open");
   private final JMenuItem savePcapMenuItem = new JMenuItem("Save capture file");
   private final JMenuItem saveCaptureDiagramMenuItem = new JMenuItem("Save arrows diagram");
+  private final JCheckBoxMenuItem fastFileReaderMenuItem = new JCheckBoxMenuItem("Fast file reader");
+  private final JCheckBoxMenuItem offHeapStoreMenuItem = new JCheckBoxMenuItem("Store packets off-heap");
+  private final JCheckBoxMenuItem showMetricsMenuItem = new JCheckBoxMenuItem("Show capture metrics");
 
   public MenuToolbar() {
     super();
@@ -39,6 +55,36 @@ public class MenuToolbar {
     fileMenu.add(savePcapMenuItem);
     fileMenu.add(saveCaptureDiagramMenuItem);
     fileMenu.addSeparator();
+    //reads files without libpcap, the host and port filters then only apply to the display
+    fastFileReaderMenuItem.setToolTipText("Read capture files by memory mapping them, for large files");
+    fastFileReaderMenuItem.setSelected(
+      ApplicationStatus.getStatus().getFileReaderBackend() == FileReaderBackend.MEMORY_MAPPED);
+    addItemListener(fastFileReaderMenuItem, i -> ApplicationStatus.getStatus().setFileReaderBackend(
+      fastFileReaderMenuItem.isSelected() ? FileReaderBackend.MEMORY_MAPPED : FileReaderBackend.LIBPCAP));
+    fileMenu.add(fastFileReaderMenuItem);
+    //takes effect from the next capture, as the packets of the current one are already stored
+    offHeapStoreMenuItem.setToolTipText("Keep packets in off-heap columns, for captures with millions of packets");
+    offHeapStoreMenuItem.setSelected(
+      ApplicationStatus.getStatus().getPacketStoreBackend() == PacketStoreBackend.OFF_HEAP_COLUMNAR);
+    addItemListener(offHeapStoreMenuItem, i -> selectPacketStore());
+    fileMenu.add(offHeapStoreMenuItem);
+    //also takes effect from the next capture, the direction of the packets already read stays as it is
+    var localNetworksMenuItem = new JMenuItem("Local networks...");
+    localNetworksMenuItem.setToolTipText("The networks whose packets are outgoing, besides the capturing interface");
+    addItemListener(localNetworksMenuItem, i -> editLocalNetworks());
+    fileMenu.add(localNetworksMenuItem);
+    //takes effect from the next live capture
+    var captureFilesMenuItem = new JMenuItem("Capture files...");
+    captureFilesMenuItem.setToolTipText("Write live captures to a ring of files as the packets arrive");
+    addItemListener(captureFilesMenuItem, i -> editCaptureFiles());
+    fileMenu.add(captureFilesMenuItem);
+    var memoryBudgetMenuItem = new JMenuItem("Memory budget...");
+    memoryBudgetMenuItem.setToolTipText("Evict the packets of the quietest connections when a live capture grows past this");
+    addItemListener(memoryBudgetMenuItem, i -> editMemoryBudget());
+    fileMenu.add(memoryBudgetMenuItem);
+    showMetricsMenuItem.setToolTipText("Show the capture, transform and refresh measurements next to the packet count");
+    fileMenu.add(showMetricsMenuItem);
+    fileMenu.addSeparator();
     fileMenu.add(exitMenuItem);
     var general = new JMenuItem("General");
     addItemListener(general, i -> new GeneralHelpScreen());
@@ -85,6 +131,97 @@ public class MenuToolbar {
 
   }
 
+  private void editLocalNetworks() {
+    var input = JOptionPane.showInputDialog(menuBar, "Local networks, separated by commas (e.g. 10.0.0.0/8, fc00::/7)",
+      String.join(", ", ApplicationStatus.getStatus().getLocalNetworks()));
+    if (input == null) {
+      return;
+    }
+    var localNetworks = Arrays.stream(input.split(","))
+      .map(String::trim)
+      .filter(network -> !network.isEmpty())
+      .toList();
+    try {
+      localNetworks.forEach(LocalAddressClassifier::validateNetwork);
+    } catch (IllegalArgumentException e) {
+      JOptionPane.showMessageDialog(menuBar, e.getMessage(), "Invalid network", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    ApplicationStatus.getStatus().setLocalNetworks(localNetworks);
+  }
+
+  private void selectPacketStore() {
+    if (offHeapStoreMenuItem.isSelected() && ApplicationStatus.getStatus().getMemoryBudgetBytes() > 0) {
+      offHeapStoreMenuItem.setSelected(false);
+      JOptionPane.showMessageDialog(menuBar, OFF_HEAP_BUDGET_MESSAGE, "Off-heap store", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    ApplicationStatus.getStatus().setPacketStoreBackend(
+      offHeapStoreMenuItem.isSelected() ? PacketStoreBackend.OFF_HEAP_COLUMNAR : PacketStoreBackend.HEAP);
+  }
+
+  private void editMemoryBudget() {
+    var input = JOptionPane.showInputDialog(menuBar, "Memory for the packets of a live capture in MB, 0 for no limit",
+      ApplicationStatus.getStatus().getMemoryBudgetBytes() / 1_000_000);
+    if (input == null) {
+      return;
+    }
+    try {
+      var megabytes = Long.parseLong(input.trim());
+      if (megabytes < 0) {
+        throw new NumberFormatException("Memory budget cannot be negative");
+      }
+      if (megabytes > 0 && ApplicationStatus.getStatus().getPacketStoreBackend() == PacketStoreBackend.OFF_HEAP_COLUMNAR) {
+        JOptionPane.showMessageDialog(menuBar, OFF_HEAP_BUDGET_MESSAGE, "Invalid memory budget",
+          JOptionPane.ERROR_MESSAGE);
+        return;
+      }
+      ApplicationStatus.getStatus().setMemoryBudgetBytes(megabytes * 1_000_000);
+    } catch (NumberFormatException e) {
+      JOptionPane.showMessageDialog(menuBar, e.getMessage(), "Invalid memory budget", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  private void editCaptureFiles() {
+    var current = ApplicationStatus.getStatus().getCaptureFileSettings();
+    var enabled = new JCheckBox("Write live captures to files", current != null);
+    var directory = new JTextField(current != null
+      ? current.directory().toString() : Path.of(System.getProperty("user.dir"), "captures").toString());
+    var maxFileMegabytes = new JTextField(current != null ? String.valueOf(current.maxFileBytes() / 1_000_000) : "100");
+    var rotationMinutes = new JTextField(current != null ? String.valueOf(current.rotationInterval().toMinutes()) : "0");
+    var fileCount = new JTextField(current != null ? String.valueOf(current.fileCount()) : "10");
+    var form = new JPanel(new GridLayout(0, 2, 5, 5));
+    form.add(enabled);
+    form.add(new JLabel());
+    form.add(new JLabel("Directory"));
+    form.add(directory);
+    form.add(new JLabel("Maximum file size (MB, 0 for no limit)"));
+    form.add(maxFileMegabytes);
+    form.add(new JLabel("New file every (minutes, 0 for never)"));
+    form.add(rotationMinutes);
+    form.add(new JLabel("Files kept"));
+    form.add(fileCount);
+    var option = JOptionPane.showConfirmDialog(
+      menuBar, form, "Capture files", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+    if (option != JOptionPane.OK_OPTION) {
+      return;
+    }
+    if (!enabled.isSelected()) {
+      ApplicationStatus.getStatus().setCaptureFileSettings(null);
+      return;
+    }
+    try {
+      ApplicationStatus.getStatus().setCaptureFileSettings(new CaptureFileSettings(
+        Path.of(directory.getText().trim()), CaptureFileSettings.DEFAULT_FILE_NAME_PREFIX,
+        Long.parseLong(maxFileMegabytes.getText().trim()) * 1_000_000,
+        Duration.ofMinutes(Long.parseLong(rotationMinutes.getText().trim())),
+        Integer.parseInt(fileCount.getText().trim())));
+    } catch (IllegalArgumentException e) {
+      //also catches the numbers which could not be parsed, and directories which are not valid paths
+      JOptionPane.showMessageDialog(menuBar, e.getMessage(), "Invalid capture files", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
   public void addItemListener(JMenuItem menuItem, ActionListener actionListener) {
     menuItem.addActionListener(actionListener);
   }
@@ -97,6 +234,14 @@ public class MenuToolbar {
     openMenuItem.addActionListener(actionListener);
   }
 
+  public void addShowMetricsMenuItemListener(ActionListener actionListener) {
+    showMetricsMenuItem.addActionListener(actionListener);
+  }
+
+  public boolean isShowMetricsSelected() {
+    return showMetricsMenuItem.isSelected();
+  }
+
   public JMenuBar getMenuBar() {
     return this.menuBar;
   }
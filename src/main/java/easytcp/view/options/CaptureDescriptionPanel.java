@@ -1,44 +1,53 @@
 package easytcp.view.options;
 
+import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
-import easytcp.model.application.FiltersForm;
-import easytcp.model.packet.EasyTCPacket;
-import easytcp.service.PacketDisplayService;
-import easytcp.service.ServiceProvider;
+import easytcp.view.PacketLogTableModel;
 
 import javax.swing.*;
 import java.awt.*;
 
-/* This is the small capture description panel in the corner of the options panel
+/* This is the small capture description panel in the corner of the options panel.
+ * The packet and connection counts are those of the packet log, which keeps them as its rows are added,
+ * so they are up to date whenever the log changes and never need the packets counting again.
  */
 public class CaptureDescriptionPanel {
   private final JPanel descriptionPanel;
   private final JLabel connectionCountLabel;
   private final JLabel packetCountLabel;
-  private final PacketDisplayService packetDisplayService;
+  private final JLabel evictedCountLabel;
+  private final PacketLogTableModel packetLogTableModel;
 
-  public CaptureDescriptionPanel(CaptureData captureData) {
+  public CaptureDescriptionPanel(CaptureData captureData, PacketLogTableModel packetLogTableModel) {
+    this.packetLogTableModel = packetLogTableModel;
     this.descriptionPanel = new JPanel();
-    this.packetDisplayService = ServiceProvider.getInstance().getPacketDisplayService();
     var layout = new GridLayout();
-    layout.setRows(2);
+    layout.setRows(3);
     layout.setColumns(1);
     descriptionPanel.setLayout(layout);
     connectionCountLabel = new JLabel();
     connectionCountLabel.setName("connection count");
-    setConnectionCountLabel(captureData);
+    setConnectionCountLabel();
     descriptionPanel.add(connectionCountLabel);
     packetCountLabel = new JLabel();
     packetCountLabel.setName("packets count");
-    packetCountLabel.setText("%s packets captured".formatted(captureData.getPackets()
-      .getPackets().stream().filter(pkt -> packetDisplayService.isVisible(pkt, FiltersForm.getInstance())).count()));
+    setPacketCountLabel();
     descriptionPanel.add(packetCountLabel);
+    evictedCountLabel = new JLabel();
+    evictedCountLabel.setName("evicted count");
+    setEvictedCountLabel(captureData);
+    descriptionPanel.add(evictedCountLabel);
+    //the filters being applied changes the counts without a capture update
+    packetLogTableModel.addTableModelListener(event -> {
+      setConnectionCountLabel();
+      setPacketCountLabel();
+    });
   }
 
   public void updateCaptureStats(CaptureData captureData) {
-    setConnectionCountLabel(captureData);
-    packetCountLabel.setText("%s packets captured".formatted(captureData.getPackets()
-      .getPackets().stream().filter(pkt -> packetDisplayService.isVisible(pkt, FiltersForm.getInstance())).count()));
+    setConnectionCountLabel();
+    setPacketCountLabel();
+    setEvictedCountLabel(captureData);
     descriptionPanel.revalidate();
     descriptionPanel.repaint();
   }
@@ -47,15 +56,27 @@ public class CaptureDescriptionPanel {
     return descriptionPanel;
   }
 
-  private void setConnectionCountLabel(CaptureData captureData) {
+  //only shown once packets have been evicted to keep the capture within its memory budget
+  private void setEvictedCountLabel(CaptureData captureData) {
+    var evictedPackets = captureData.getEvictedPackets();
+    evictedCountLabel.setText(evictedPackets == 0 ? "" : "%s packets of %s connections evicted".formatted(
+      evictedPackets, captureData.getEvictedConnections()));
+  }
+
+  private void setPacketCountLabel() {
+    var packetCount = packetLogTableModel.getRowCount();
+    var appStatus = ApplicationStatus.getStatus();
+    if (appStatus.isLoading().get()) {
+      //shows how much of the file has been read while it is still loading
+      packetCountLabel.setText("%s packets read (%s%%)".formatted(packetCount, appStatus.getLoadingProgress()));
+    } else {
+      packetCountLabel.setText("%s packets captured".formatted(packetCount));
+    }
+  }
+
+  private void setConnectionCountLabel() {
     SwingUtilities.invokeLater(() -> connectionCountLabel.setText("""
     %s TCP connections
-    """.formatted(captureData.getPackets()
-      .getPackets()
-      .stream()
-      .filter(pkt -> packetDisplayService.isVisible(pkt, FiltersForm.getInstance()))
-      .map(EasyTCPacket::getTcpConnection)
-      .distinct()
-      .count())));
+    """.formatted(packetLogTableModel.getVisibleConnectionCount())));
   }
 }
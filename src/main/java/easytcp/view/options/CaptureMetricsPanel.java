@@ -0,0 +1,79 @@
+package easytcp.view.options;
+
+import easytcp.service.metrics.CaptureMetrics;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/* This is the optional capture metrics panel next to the capture description panel,
+ * refreshed every second while it is shown.
+ */
+public class CaptureMetricsPanel {
+  private static final int REFRESH_INTERVAL_MILLIS = 1000;
+  private final CaptureMetrics captureMetrics;
+  private final JPanel metricsPanel;
+  private final JLabel kernelLabel;
+  private final JLabel pipelineLabel;
+  private final JLabel latencyLabel;
+  private final JLabel heapLabel;
+  private final Timer refreshTimer;
+
+  public CaptureMetricsPanel(CaptureMetrics captureMetrics) {
+    this.captureMetrics = captureMetrics;
+    this.metricsPanel = new JPanel();
+    var layout = new GridLayout();
+    layout.setRows(4);
+    layout.setColumns(1);
+    metricsPanel.setLayout(layout);
+    kernelLabel = new JLabel();
+    kernelLabel.setName("kernel metrics");
+    metricsPanel.add(kernelLabel);
+    pipelineLabel = new JLabel();
+    pipelineLabel.setName("pipeline metrics");
+    metricsPanel.add(pipelineLabel);
+    latencyLabel = new JLabel();
+    latencyLabel.setName("latency metrics");
+    metricsPanel.add(latencyLabel);
+    heapLabel = new JLabel();
+    heapLabel.setName("heap metrics");
+    metricsPanel.add(heapLabel);
+    metricsPanel.setVisible(false);
+    //the swing timer fires on the UI thread, so the labels can be set straight away
+    refreshTimer = new Timer(REFRESH_INTERVAL_MILLIS, event -> updateMetrics());
+  }
+
+  public void setShown(boolean shown) {
+    metricsPanel.setVisible(shown);
+    if (shown) {
+      updateMetrics();
+      refreshTimer.start();
+    } else {
+      refreshTimer.stop();
+    }
+    var parent = metricsPanel.getParent();
+    if (parent != null) {
+      parent.revalidate();
+      parent.repaint();
+    }
+  }
+
+  public void updateMetrics() {
+    kernelLabel.setText("Kernel: %s received, %s dropped, %s dropped by interface".formatted(
+      captureMetrics.getKernelPacketsReceived(), captureMetrics.getKernelPacketsDropped(),
+      captureMetrics.getInterfacePacketsDropped()));
+    pipelineLabel.setText("%.0f packets transformed/s, %s queued, %s dropped, %s lookups pending".formatted(
+      captureMetrics.getPacketsPerSecond(), captureMetrics.getQueueDepth(), captureMetrics.getPacketsDropped(),
+      captureMetrics.getHostnameResolverBacklog()));
+    latencyLabel.setText("p99 decode %s us, transform %s us, refresh %s ms".formatted(
+      TimeUnit.NANOSECONDS.toMicros(captureMetrics.getDecodeLatencyP99()),
+      TimeUnit.NANOSECONDS.toMicros(captureMetrics.getTransformLatencyP99()),
+      TimeUnit.NANOSECONDS.toMillis(captureMetrics.getUiRefreshDurationP99())));
+    heapLabel.setText("%s MB heap, %s bytes per packet".formatted(
+      captureMetrics.getHeapUsedBytes() / (1024 * 1024), captureMetrics.getHeapBytesPerStoredPacket()));
+  }
+
+  public JPanel getMetricsPanel() {
+    return metricsPanel;
+  }
+}
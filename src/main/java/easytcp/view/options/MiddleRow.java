@@ -13,7 +13,6 @@ import easytcp.service.DocumentUpdateListener;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ItemEvent;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Objects;
 import java.util.Set;
@@ -255,12 +254,11 @@ public class MiddleRow {
   /* Adds new connections captured to the connection selector
    */
   public synchronized void addConnectionOptions(CaptureData captureData) {
-    var connections = new ArrayList<>(captureData.getTcpConnectionMap().values());
+    var connections = captureData.getTcpConnections();
     if (model.getSize() != connections.size()) {
       model.removeAllElements();
 
-      model.addAll(new ArrayList<>(captureData.getTcpConnectionMap()
-        .values())
+      model.addAll(connections
         .stream()
         .filter(Objects::nonNull)
         .sorted(Comparator.comparing((TCPConnection con) -> con.getPacketContainer().getPackets().size())
@@ -4,6 +4,7 @@ import easytcp.model.CaptureStatus;
 import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
+import easytcp.service.ServiceProvider;
 import easytcp.view.ArrowDiagram;
 import easytcp.view.PacketLog;
 import org.pcap4j.core.PcapNativeException;
@@ -27,6 +28,7 @@ public class OptionsPanel {
   private final PacketLog packetLog;
   private final HashMap<String, PcapNetworkInterface> deviceNetworkInterfaceHashMap = new HashMap<>();
   private final CaptureDescriptionPanel captureDescriptionPanel;
+  private final CaptureMetricsPanel captureMetricsPanel;
   private JCheckBox ipv6Checkbox;
   private JCheckBox ipv4Checkbox;
   private JCheckBox resolveHostnames;
@@ -40,7 +42,9 @@ public class OptionsPanel {
   public OptionsPanel(FiltersForm filtersForm, PacketLog packetLog) {
     this.containerPanel = createContainerPanel();
     this.packetLog = packetLog;
-    this.captureDescriptionPanel= new CaptureDescriptionPanel(this.packetLog.getCaptureData());
+    this.captureDescriptionPanel= new CaptureDescriptionPanel(this.packetLog.getCaptureData(),
+      this.packetLog.getPacketTableModel());
+    this.captureMetricsPanel = new CaptureMetricsPanel(ServiceProvider.getInstance().getCaptureMetrics());
     this.filtersForm = filtersForm;
     var topRow = createTopRowPanel();
     containerPanel.add(topRow);
@@ -116,7 +120,11 @@ public class OptionsPanel {
 
   private void addButtons(JPanel row) {
     var defaultsBt = new JButton("Restore defaults");
-    row.add(captureDescriptionPanel.getDescriptionPanel());
+    //the metrics sit beside the description, taking no space while they are hidden
+    var descriptionContainer = new JPanel(new BorderLayout(10, 0));
+    descriptionContainer.add(captureDescriptionPanel.getDescriptionPanel(), BorderLayout.CENTER);
+    descriptionContainer.add(captureMetricsPanel.getMetricsPanel(), BorderLayout.EAST);
+    row.add(descriptionContainer);
     defaultsBt.setSize(200, 200);
     row.add(defaultsBt);
     defaultsBt.addActionListener(event ->
@@ -300,6 +308,10 @@ public class OptionsPanel {
     return this.captureDescriptionPanel;
   }
 
+  public CaptureMetricsPanel getCaptureMetricsPanel() {
+    return captureMetricsPanel;
+  }
+
   public MiddleRow getMiddleRow() {
     return middleRow;
   }
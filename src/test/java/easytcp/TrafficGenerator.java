@@ -0,0 +1,526 @@
+package easytcp;
+
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.Pcaps;
+import org.pcap4j.packet.EthernetPacket;
+import org.pcap4j.packet.IllegalRawDataException;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.TcpPacket;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/* Generates TCP traffic for load and scale tests, without a network or capture privileges.
+ * Each connection is a conversation between a client on a private network and a public server: a handshake with
+ * MSS and window scale options, a request, a bulk transfer from the server acknowledged by the client every second
+ * segment, occasional lost segments retransmitted after a duplicate ACK, and a FIN teardown from either end or an RST.
+ * A share of the connections are over IPv6. Conversations run a number at a time, their packets interleaved at
+ * random, and are generated as the packets are taken, so millions of connections need no more memory than a few.
+ * The same seed and settings always give the same packets.
+ *
+ * Run from the command line with ./gradlew generateTraffic --args="--connections 100000 --out capture.pcap",
+ * see usage() for the options.
+ */
+public class TrafficGenerator implements Iterable<TrafficGenerator.GeneratedPacket> {
+  public static final int MAX_CONNECTIONS = 1_000_000;
+  public static final int FIN = 0x01;
+  public static final int SYN = 0x02;
+  public static final int RST = 0x04;
+  public static final int PSH = 0x08;
+  public static final int ACK = 0x10;
+  private static final int MSS = 1460;
+  private static final int WINDOW_SCALE = 7;
+  private static final int SYN_WINDOW = 64240;
+  private static final int SCALED_WINDOW = 502;
+  private static final int CLIENT_HOSTS = 200;
+  private static final int EPHEMERAL_PORTS = 60_000;
+  private static final int FIRST_EPHEMERAL_PORT = 1024;
+  private static final int ETHERNET_HEADER_LENGTH = 14;
+  private static final int IPV4_HEADER_LENGTH = 20;
+  private static final int IPV6_HEADER_LENGTH = 40;
+  private static final int TCP_HEADER_LENGTH = 20;
+  //MSS, a NOP and the window scale, on the SYN and SYN-ACK
+  private static final int SYN_OPTIONS_LENGTH = 8;
+  private static final int PROTOCOL_TCP = 6;
+  private static final byte[] CLIENT_MAC = {2, 0, 0, 0, 0, 1};
+  private static final byte[] GATEWAY_MAC = {2, 0, 0, 0, 0, 2};
+  private long seed = 1;
+  private int connections = 1000;
+  private long maxPackets = Long.MAX_VALUE;
+  private int concurrentConnections = 64;
+  private int minBulkSegments = 2;
+  private int maxBulkSegments = 40;
+  private double ipv6Share = 0.25;
+  private double retransmissionRate = 0.01;
+  private double resetShare = 0.1;
+  private long startMicros = 1_600_000_000_000_000L;
+
+  /* A packet of the generated traffic, from which pcap4j packets or the raw bytes of its ethernet frame can be made.
+   * Flags are the bits of the TCP header, sequence and ack numbers are unsigned 32 bit values.
+   */
+  public record GeneratedPacket(int connection,
+                                boolean fromClient,
+                                long timestampMicros,
+                                InetAddress source,
+                                int sourcePort,
+                                InetAddress destination,
+                                int destinationPort,
+                                long sequenceNumber,
+                                long ackNumber,
+                                int flags,
+                                int window,
+                                int payloadLength) {
+
+    public Timestamp timestamp() {
+      var timestamp = new Timestamp(timestampMicros / 1000);
+      timestamp.setNanos((int) (timestampMicros % 1_000_000) * 1000);
+      return timestamp;
+    }
+
+    public boolean hasFlags(int flagBits) {
+      return (flags & flagBits) == flagBits;
+    }
+
+    public boolean isIpv6() {
+      return source instanceof Inet6Address;
+    }
+
+    public byte[] toFrame() {
+      return Frames.ethernetFrame(this);
+    }
+
+    public EthernetPacket toPcap4jPacket() {
+      var frame = toFrame();
+      try {
+        return EthernetPacket.newPacket(frame, 0, frame.length);
+      } catch (IllegalRawDataException e) {
+        throw new IllegalStateException("Generated frame could not be decoded", e);
+      }
+    }
+
+    public IpPacket ipPacket() {
+      return toPcap4jPacket().get(IpPacket.class);
+    }
+
+    public TcpPacket tcpPacket() {
+      return ipPacket().get(TcpPacket.class);
+    }
+  }
+
+  /* Generates the packets with seed 1 and the default settings, until changed with the setters below
+   */
+  public TrafficGenerator() {
+  }
+
+  public TrafficGenerator seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public TrafficGenerator connections(int connections) {
+    if (connections < 1 || connections > MAX_CONNECTIONS) {
+      throw new IllegalArgumentException("Connections must be between 1 and %s".formatted(MAX_CONNECTIONS));
+    }
+    this.connections = connections;
+    return this;
+  }
+
+  //stops after this many packets, even if some connections are not finished
+  public TrafficGenerator maxPackets(long maxPackets) {
+    if (maxPackets < 0) {
+      throw new IllegalArgumentException("Max packets cannot be negative");
+    }
+    this.maxPackets = maxPackets;
+    return this;
+  }
+
+  public TrafficGenerator concurrentConnections(int concurrentConnections) {
+    if (concurrentConnections < 1) {
+      throw new IllegalArgumentException("At least one connection must be open at a time");
+    }
+    this.concurrentConnections = concurrentConnections;
+    return this;
+  }
+
+  //the number of full sized segments of each bulk transfer, chosen evenly between the two
+  public TrafficGenerator bulkSegments(int minBulkSegments, int maxBulkSegments) {
+    if (minBulkSegments < 1 || maxBulkSegments < minBulkSegments) {
+      throw new IllegalArgumentException("Invalid bulk segments %s to %s".formatted(minBulkSegments, maxBulkSegments));
+    }
+    this.minBulkSegments = minBulkSegments;
+    this.maxBulkSegments = maxBulkSegments;
+    return this;
+  }
+
+  public TrafficGenerator ipv6Share(double ipv6Share) {
+    this.ipv6Share = checkShare(ipv6Share);
+    return this;
+  }
+
+  //the chance of each segment of a bulk transfer being lost and sent again
+  public TrafficGenerator retransmissionRate(double retransmissionRate) {
+    this.retransmissionRate = checkShare(retransmissionRate);
+    return this;
+  }
+
+  public TrafficGenerator resetShare(double resetShare) {
+    this.resetShare = checkShare(resetShare);
+    return this;
+  }
+
+  public TrafficGenerator startMicros(long startMicros) {
+    this.startMicros = startMicros;
+    return this;
+  }
+
+  private static double checkShare(double share) {
+    if (share < 0 || share > 1) {
+      throw new IllegalArgumentException("Share must be between 0 and 1, was " + share);
+    }
+    return share;
+  }
+
+  @Override
+  public Iterator<GeneratedPacket> iterator() {
+    return new PacketIterator();
+  }
+
+  public Stream<GeneratedPacket> packets() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+      Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  public List<GeneratedPacket> toList() {
+    var packets = new ArrayList<GeneratedPacket>();
+    forEach(packets::add);
+    return packets;
+  }
+
+  /* Writes the packets as an ethernet pcap file with microsecond timestamps, returns the number of packets written
+   */
+  public long writePcap(Path file) throws PcapNativeException, NotOpenException {
+    var packetsWritten = 0L;
+    try (var handle = Pcaps.openDead(DataLinkType.EN10MB, 65535, PcapHandle.TimestampPrecision.MICRO);
+         var dumper = handle.dumpOpen(file.toString())) {
+      for (var packet : this) {
+        dumper.dumpRaw(packet.toFrame(), packet.timestamp());
+        packetsWritten++;
+      }
+    }
+    return packetsWritten;
+  }
+
+  /* The packets of one connection in the order they are sent, without their timestamps
+   */
+  private record Segment(boolean fromClient, long sequenceNumber, long ackNumber, int flags, int window,
+                         int payloadLength) {}
+
+  private final class Conversation {
+    private final int connection;
+    private final InetAddress client;
+    private final int clientPort;
+    private final InetAddress server;
+    private final int serverPort;
+    private final List<Segment> segments = new ArrayList<>();
+    private int next;
+    private long clientSequence;
+    private long serverSequence;
+
+    private Conversation(int connection, Random random) {
+      this.connection = connection;
+      var ipv6 = random.nextDouble() < ipv6Share;
+      //each connection has its own client address and port, up to 12 million connections
+      this.client = clientAddress(connection % CLIENT_HOSTS, ipv6);
+      this.clientPort = FIRST_EPHEMERAL_PORT + (connection / CLIENT_HOSTS) % EPHEMERAL_PORTS;
+      this.server = serverAddress(random.nextInt(254), ipv6);
+      this.serverPort = random.nextInt(4) == 0 ? 80 : 443;
+      script(random);
+    }
+
+    private void script(Random random) {
+      clientSequence = random.nextInt() & 0xFFFFFFFFL;
+      serverSequence = random.nextInt() & 0xFFFFFFFFL;
+      //the handshake
+      send(true, clientSequence, 0, SYN, SYN_WINDOW, 0);
+      clientSequence = next(clientSequence, 1);
+      send(false, serverSequence, clientSequence, SYN | ACK, SYN_WINDOW, 0);
+      serverSequence = next(serverSequence, 1);
+      clientSent(ACK, 0);
+      //a request answered by a bulk transfer
+      clientSent(PSH | ACK, 100 + random.nextInt(400));
+      var bulkSegments = minBulkSegments + random.nextInt(maxBulkSegments - minBulkSegments + 1);
+      for (int i = 0; i < bulkSegments; i++) {
+        var last = i == bulkSegments - 1;
+        var payloadLength = last ? 1 + random.nextInt(MSS) : MSS;
+        var flags = last ? PSH | ACK : ACK;
+        var segmentSequence = serverSequence;
+        serverSent(flags, payloadLength);
+        if (random.nextDouble() < retransmissionRate) {
+          //lost on the way, the client asks for it again with a duplicate ACK and it is sent again
+          send(true, clientSequence, segmentSequence, ACK, SCALED_WINDOW, 0);
+          send(false, segmentSequence, clientSequence, flags, SCALED_WINDOW, payloadLength);
+          clientSent(ACK, 0);
+        } else if (i % 2 == 1 || last) {
+          //delayed ACKs, one for every second segment
+          clientSent(ACK, 0);
+        }
+      }
+      //the teardown
+      if (random.nextDouble() < resetShare) {
+        clientSent(RST | ACK, 0);
+      } else if (random.nextBoolean()) {
+        clientSent(FIN | ACK, 0);
+        clientSequence = next(clientSequence, 1);
+        serverSent(ACK, 0);
+        serverSent(FIN | ACK, 0);
+        serverSequence = next(serverSequence, 1);
+        clientSent(ACK, 0);
+      } else {
+        serverSent(FIN | ACK, 0);
+        serverSequence = next(serverSequence, 1);
+        clientSent(ACK, 0);
+        clientSent(FIN | ACK, 0);
+        clientSequence = next(clientSequence, 1);
+        serverSent(ACK, 0);
+      }
+    }
+
+    //sends the next data of the client, acknowledging everything the server sent so far
+    private void clientSent(int flags, int payloadLength) {
+      send(true, clientSequence, serverSequence, flags, SCALED_WINDOW, payloadLength);
+      clientSequence = next(clientSequence, payloadLength);
+    }
+
+    private void serverSent(int flags, int payloadLength) {
+      send(false, serverSequence, clientSequence, flags, SCALED_WINDOW, payloadLength);
+      serverSequence = next(serverSequence, payloadLength);
+    }
+
+    private void send(boolean fromClient, long sequenceNumber, long ackNumber, int flags, int window,
+                      int payloadLength) {
+      segments.add(new Segment(fromClient, sequenceNumber, ackNumber, flags, window, payloadLength));
+    }
+
+    private boolean hasNext() {
+      return next < segments.size();
+    }
+
+    private GeneratedPacket nextPacket(long timestampMicros) {
+      var segment = segments.get(next++);
+      return segment.fromClient()
+        ? new GeneratedPacket(connection, true, timestampMicros, client, clientPort, server, serverPort,
+        segment.sequenceNumber(), segment.ackNumber(), segment.flags(), segment.window(), segment.payloadLength())
+        : new GeneratedPacket(connection, false, timestampMicros, server, serverPort, client, clientPort,
+        segment.sequenceNumber(), segment.ackNumber(), segment.flags(), segment.window(), segment.payloadLength());
+    }
+  }
+
+  private static long next(long sequenceNumber, int length) {
+    return (sequenceNumber + length) & 0xFFFFFFFFL;
+  }
+
+  private final class PacketIterator implements Iterator<GeneratedPacket> {
+    private final Random random = new Random(seed);
+    private final List<Conversation> open = new ArrayList<>();
+    private int connectionsStarted;
+    private long packetsGenerated;
+    private long timestampMicros = startMicros;
+
+    private PacketIterator() {
+      fill();
+    }
+
+    //opens new conversations until as many as allowed are running, or every connection has been started
+    private void fill() {
+      while (open.size() < concurrentConnections && connectionsStarted < connections) {
+        open.add(new Conversation(connectionsStarted++, random));
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return packetsGenerated < maxPackets && !open.isEmpty();
+    }
+
+    @Override
+    public GeneratedPacket next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      var index = random.nextInt(open.size());
+      var conversation = open.get(index);
+      //a few microseconds to a few milliseconds apart
+      timestampMicros += 1 + random.nextInt(random.nextInt(20) == 0 ? 5000 : 50);
+      var packet = conversation.nextPacket(timestampMicros);
+      if (!conversation.hasNext()) {
+        //the last conversation takes the place of the finished one, which keeps removal constant time
+        open.set(index, open.get(open.size() - 1));
+        open.remove(open.size() - 1);
+        fill();
+      }
+      packetsGenerated++;
+      return packet;
+    }
+  }
+
+  private static InetAddress clientAddress(int host, boolean ipv6) {
+    return ipv6
+      ? address(new byte[] {(byte) 0xfd, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) (host + 2)})
+      : address(new byte[] {10, 0, 0, (byte) (host + 2)});
+  }
+
+  //documentation ranges, which are public addresses which never route anywhere
+  private static InetAddress serverAddress(int host, boolean ipv6) {
+    return ipv6
+      ? address(new byte[] {0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) (host + 1)})
+      : address(new byte[] {(byte) 198, 51, 100, (byte) (host + 1)});
+  }
+
+  private static InetAddress address(byte[] address) {
+    try {
+      return InetAddress.getByAddress(address);
+    } catch (UnknownHostException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /* Builds the bytes of the ethernet frames, with valid IP and TCP checksums so other tools accept the files
+   */
+  private static final class Frames {
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+
+    private static byte[] ethernetFrame(GeneratedPacket packet) {
+      var ipv6 = packet.isIpv6();
+      var ipHeaderLength = ipv6 ? IPV6_HEADER_LENGTH : IPV4_HEADER_LENGTH;
+      var tcpHeaderLength = TCP_HEADER_LENGTH + (packet.hasFlags(SYN) ? SYN_OPTIONS_LENGTH : 0);
+      var tcpLength = tcpHeaderLength + packet.payloadLength();
+      var frame = ByteBuffer.allocate(ETHERNET_HEADER_LENGTH + ipHeaderLength + tcpLength);
+      //destination then source
+      frame.put(packet.fromClient() ? GATEWAY_MAC : CLIENT_MAC).put(packet.fromClient() ? CLIENT_MAC : GATEWAY_MAC)
+        .putShort((short) (ipv6 ? ETHERTYPE_IPV6 : ETHERTYPE_IPV4));
+      var ipOffset = frame.position();
+      if (ipv6) {
+        frame.putInt(0x60000000).putShort((short) tcpLength).put((byte) PROTOCOL_TCP).put((byte) 64);
+      } else {
+        frame.put((byte) 0x45).put((byte) 0).putShort((short) (IPV4_HEADER_LENGTH + tcpLength))
+          .putShort((short) 0).putShort((short) 0x4000) //don't fragment
+          .put((byte) 64).put((byte) PROTOCOL_TCP).putShort((short) 0);
+      }
+      frame.put(packet.source().getAddress()).put(packet.destination().getAddress());
+      if (!ipv6) {
+        frame.putShort(ipOffset + 10, checksum(frame.array(), ipOffset, IPV4_HEADER_LENGTH, 0));
+      }
+      var tcpOffset = frame.position();
+      frame.putShort((short) packet.sourcePort()).putShort((short) packet.destinationPort())
+        .putInt((int) packet.sequenceNumber()).putInt((int) packet.ackNumber())
+        .put((byte) (tcpHeaderLength / 4 << 4)).put((byte) packet.flags()).putShort((short) packet.window())
+        .putInt(0);
+      if (packet.hasFlags(SYN)) {
+        frame.put((byte) 2).put((byte) 4).putShort((short) MSS)
+          .put((byte) 1)
+          .put((byte) 3).put((byte) 3).put((byte) WINDOW_SCALE);
+      }
+      //the payload is left as zeros
+      var pseudoHeader = pseudoHeaderSum(packet, tcpLength);
+      frame.putShort(tcpOffset + 16, checksum(frame.array(), tcpOffset, tcpLength, pseudoHeader));
+      return frame.array();
+    }
+
+    private static long pseudoHeaderSum(GeneratedPacket packet, int tcpLength) {
+      var sum = sum(packet.source().getAddress()) + sum(packet.destination().getAddress());
+      return sum + PROTOCOL_TCP + tcpLength;
+    }
+
+    private static long sum(byte[] bytes) {
+      var sum = 0L;
+      for (int i = 0; i < bytes.length; i += 2) {
+        sum += (bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF);
+      }
+      return sum;
+    }
+
+    //the ones' complement of the ones' complement sum of the 16 bit words, as IP and TCP use
+    private static short checksum(byte[] bytes, int offset, int length, long initialSum) {
+      var sum = initialSum;
+      for (int i = 0; i < length - 1; i += 2) {
+        sum += (bytes[offset + i] & 0xFF) << 8 | (bytes[offset + i + 1] & 0xFF);
+      }
+      if (length % 2 == 1) {
+        sum += (bytes[offset + length - 1] & 0xFF) << 8;
+      }
+      while (sum >>> 16 != 0) {
+        sum = (sum & 0xFFFF) + (sum >>> 16);
+      }
+      return (short) ~sum;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    var generator = new TrafficGenerator();
+    Path out = null;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        var value = i + 1 < args.length ? args[i + 1] : null;
+        switch (args[i]) {
+          case "--seed" -> generator.seed(Long.parseLong(value));
+          case "--connections" -> generator.connections(Integer.parseInt(value));
+          case "--packets" -> generator.maxPackets(Long.parseLong(value));
+          case "--concurrent" -> generator.concurrentConnections(Integer.parseInt(value));
+          case "--bulk-segments" -> {
+            var range = value.split("-");
+            generator.bulkSegments(Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1]));
+          }
+          case "--ipv6" -> generator.ipv6Share(Double.parseDouble(value));
+          case "--retransmissions" -> generator.retransmissionRate(Double.parseDouble(value));
+          case "--resets" -> generator.resetShare(Double.parseDouble(value));
+          case "--out" -> out = Path.of(value);
+          default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+        i++;
+      }
+      if (out == null) {
+        throw new IllegalArgumentException("No output file given");
+      }
+    } catch (RuntimeException e) {
+      System.err.println(e.getMessage());
+      System.err.println(usage());
+      System.exit(1);
+      return;
+    }
+    var start = System.nanoTime();
+    var packetsWritten = generator.writePcap(out);
+    System.out.printf("Wrote %,d packets of %,d connections to %s in %.1f s%n", packetsWritten, generator.connections,
+      out, (System.nanoTime() - start) / 1e9);
+  }
+
+  private static String usage() {
+    return """
+      Options:
+        --out <file>             the pcap file to write, required
+        --connections <n>        number of connections, 1 to 1000000 (default 1000)
+        --packets <n>            stop after this many packets (default no limit)
+        --seed <n>               seed of the random choices (default 1)
+        --concurrent <n>         connections open at a time (default 64)
+        --bulk-segments <a-b>    full sized segments of each transfer (default 2-40)
+        --ipv6 <share>           share of IPv6 connections (default 0.25)
+        --retransmissions <rate> chance of a segment being retransmitted (default 0.01)
+        --resets <share>         share of connections reset rather than closed (default 0.1)""";
+  }
+}
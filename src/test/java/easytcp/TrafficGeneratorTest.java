@@ -0,0 +1,94 @@
+package easytcp;
+
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.service.HostnameResolverService;
+import easytcp.service.PacketTransformerService;
+import easytcp.service.capture.MappedPcapFileReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pcap4j.packet.IpV6Packet;
+
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+import static easytcp.TrafficGenerator.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class TrafficGeneratorTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void packets_whenSameSeed_assertSameTraffic() {
+    var traffic = new TrafficGenerator().seed(3).connections(100).toList();
+
+    assertThat(new TrafficGenerator().seed(3).connections(100).toList()).isEqualTo(traffic);
+    assertThat(new TrafficGenerator().seed(4).connections(100).toList()).isNotEqualTo(traffic);
+  }
+
+  @Test
+  void packets_assertEveryConnectionOpenedAndClosed() {
+    var byConnection = new TrafficGenerator().seed(5).connections(200).retransmissionRate(0.1).packets()
+      .collect(Collectors.groupingBy(GeneratedPacket::connection));
+
+    assertThat(byConnection).hasSize(200);
+    assertThat(byConnection.values()).allSatisfy(packets -> {
+      assertThat(packets.get(0).flags()).isEqualTo(SYN);
+      assertThat(packets.get(0).fromClient()).isTrue();
+      assertThat(packets.get(1).flags()).isEqualTo(SYN | ACK);
+      var finCount = packets.stream().filter(packet -> packet.hasFlags(FIN)).count();
+      var resetCount = packets.stream().filter(packet -> packet.hasFlags(RST)).count();
+      assertThat(finCount == 2 || resetCount == 1).isTrue();
+      assertThat(packets).isSortedAccordingTo((one, two) -> Long.compare(one.timestampMicros(), two.timestampMicros()));
+    });
+  }
+
+  @Test
+  void packets_whenMaxPacketsAndIpv6Share() {
+    assertThat(new TrafficGenerator().connections(1000).maxPackets(500).packets().count()).isEqualTo(500);
+    assertThat(new TrafficGenerator().connections(50).ipv6Share(1).packets()).allMatch(GeneratedPacket::isIpv6);
+    assertThat(new TrafficGenerator().connections(50).ipv6Share(0).packets()).noneMatch(GeneratedPacket::isIpv6);
+    assertThatThrownBy(() -> new TrafficGenerator().connections(MAX_CONNECTIONS + 1))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void toPcap4jPacket_assertHeadersOfPacket() {
+    var synAck = new TrafficGenerator().connections(1).ipv6Share(1).toList().get(1);
+
+    var ipPacket = synAck.ipPacket();
+    var tcpHeader = synAck.tcpPacket().getHeader();
+
+    assertThat(ipPacket).isInstanceOf(IpV6Packet.class);
+    assertThat(ipPacket.getHeader().getSrcAddr()).isEqualTo(synAck.source());
+    assertThat(tcpHeader.getSyn()).isTrue();
+    assertThat(tcpHeader.getAck()).isTrue();
+    assertThat(tcpHeader.getSequenceNumberAsLong()).isEqualTo(synAck.sequenceNumber());
+    assertThat(tcpHeader.getAcknowledgmentNumberAsLong()).isEqualTo(synAck.ackNumber());
+    assertThat(tcpHeader.getDstPort().valueAsInt()).isEqualTo(synAck.destinationPort());
+    assertThat(tcpHeader.getOptions()).hasSize(3);
+  }
+
+  @Test
+  void writePcap_thenRead() throws Exception {
+    var file = tempDir.resolve("generated.pcap");
+    var generator = new TrafficGenerator().seed(9).connections(300);
+    var captureData = CaptureData.getInstance();
+    captureData.clear();
+    var filtersForm = FiltersForm.getInstance();
+    filtersForm.restoreDefaults();
+    filtersForm.setShowIpv6(true);
+
+    var packetsWritten = generator.writePcap(file);
+    //the generated addresses are never looked up, so the test stays offline
+    var packetTransformerService = new PacketTransformerService(mock(HostnameResolverService.class));
+    var packetsRead = new MappedPcapFileReader(packetTransformerService)
+      .readFile(file.toFile(), captureData, filtersForm, bytes -> {});
+
+    assertThat(packetsRead).isEqualTo(packetsWritten).isEqualTo(generator.toList().size());
+    assertThat(captureData.getTcpConnectionsEstablished()).isEqualTo(300);
+  }
+}
@@ -0,0 +1,61 @@
+package easytcp.model.application;
+
+import easytcp.TestUtils;
+import easytcp.model.packet.InternetAddress;
+import easytcp.model.packet.TCPConnection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionIndexTest {
+  private final ConnectionIndex underTest = new ConnectionIndex();
+  private TCPConnection webConnection;
+  private TCPConnection sshConnection;
+
+  @BeforeEach
+  void setUp() {
+    webConnection = TestUtils.createTCPConnection(true,
+      new InternetAddress("192.168.0.2", null, null, 50123),
+      new InternetAddress("10.1.2.3", "fish.com", null, 443));
+    sshConnection = TestUtils.createTCPConnection(true,
+      new InternetAddress("192.168.0.2", null, null, 50124),
+      new InternetAddress("10.1.2.30", null, null, 22));
+    underTest.add(webConnection);
+    underTest.add(sshConnection);
+  }
+
+  @Test
+  void findByPort() {
+    assertThat(underTest.findByPort(443, 443)).containsExactly(webConnection);
+    assertThat(underTest.findByPort(20, 450)).containsExactlyInAnyOrder(webConnection, sshConnection);
+    assertThat(underTest.findByPort(50124, 50124)).containsExactly(sshConnection);
+    assertThat(underTest.findByPort(450, 20)).isEmpty();
+  }
+
+  @Test
+  void findByHost_matchesPartOfTheAddressOrHostname() {
+    assertThat(underTest.findByHost("10.1.2.3")).containsExactlyInAnyOrder(webConnection, sshConnection);
+    assertThat(underTest.findByHost("10.1.2.30")).containsExactly(sshConnection);
+    assertThat(underTest.findByHost("fish")).containsExactly(webConnection);
+    assertThat(underTest.findByHost("192.168")).containsExactlyInAnyOrder(webConnection, sshConnection);
+    assertThat(underTest.findByHost("172")).isEmpty();
+  }
+
+  @Test
+  void findByHost_whenHostnameResolvedLater() {
+    assertThat(underTest.findByHost("ssh.example.com")).isEmpty();
+
+    sshConnection.getConnectionAddresses().addressTwo().setHostName("ssh.example.com");
+
+    assertThat(underTest.findByHost("example")).containsExactly(sshConnection);
+  }
+
+  @Test
+  void clear() {
+    underTest.clear();
+
+    assertThat(underTest.findByPort(0, 65535)).isEmpty();
+    assertThat(underTest.findByHost("10")).isEmpty();
+  }
+}
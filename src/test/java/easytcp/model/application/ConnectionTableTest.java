@@ -0,0 +1,72 @@
+package easytcp.model.application;
+
+import easytcp.model.packet.InternetAddress;
+import easytcp.model.packet.TCPConnection;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionTableTest {
+  private final ConnectionTable underTest = new ConnectionTable();
+
+  private static InternetAddress address(String numericAddress, int port) throws UnknownHostException {
+    var inetAddress = InetAddress.getByName(numericAddress);
+    return new InternetAddress(inetAddress.getHostAddress(), null, inetAddress, port);
+  }
+
+  @Test
+  void get_findsConnectionInEitherDirection() throws UnknownHostException {
+    var client = address("192.168.0.2", 50123);
+    var server = address("10.0.0.1", 443);
+    var connection = new TCPConnection();
+
+    assertThat(underTest.get(client, server)).isNull();
+    assertThat(underTest.computeIfAbsent(client, server, () -> connection)).isSameAs(connection);
+
+    //other instances of the same addresses, as new packets have
+    assertThat(underTest.get(address("10.0.0.1", 443), address("192.168.0.2", 50123))).isSameAs(connection);
+    assertThat(underTest.get(address("192.168.0.2", 50123), address("10.0.0.1", 443))).isSameAs(connection);
+    assertThat(underTest.get(address("192.168.0.2", 50124), server)).isNull();
+    assertThat(underTest.computeIfAbsent(server, client, TCPConnection::new)).isSameAs(connection);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  void get_whenIpv6OrSameAddress() throws UnknownHostException {
+    var ipv6 = new TCPConnection();
+    var loopback = new TCPConnection();
+    underTest.computeIfAbsent(address("2001:db8::1", 443), address("2001:db8::2", 50000), () -> ipv6);
+    underTest.computeIfAbsent(address("127.0.0.1", 8080), address("127.0.0.1", 50000), () -> loopback);
+
+    assertThat(underTest.get(address("2001:db8::2", 50000), address("2001:db8::1", 443))).isSameAs(ipv6);
+    assertThat(underTest.get(address("127.0.0.1", 50000), address("127.0.0.1", 8080))).isSameAs(loopback);
+    //the IPv6 loopback address is not the IPv4 one
+    assertThat(underTest.get(address("::1", 8080), address("127.0.0.1", 50000))).isNull();
+  }
+
+  @Test
+  void computeIfAbsent_whenTableGrows_keepsEveryConnection() throws UnknownHostException {
+    var server = address("10.0.0.1", 443);
+    var connections = new ArrayList<TCPConnection>();
+    for (int port = 1000; port < 3000; port++) {
+      var connection = new TCPConnection();
+      connections.add(connection);
+      underTest.computeIfAbsent(address("192.168.0.2", port), server, () -> connection);
+    }
+
+    assertThat(underTest.size()).isEqualTo(2000);
+    assertThat(underTest.values()).containsExactlyElementsOf(connections);
+    for (int port = 1000; port < 3000; port++) {
+      assertThat(underTest.get(server, address("192.168.0.2", port))).isSameAs(connections.get(port - 1000));
+    }
+
+    underTest.clear();
+
+    assertThat(underTest.size()).isZero();
+    assertThat(underTest.get(server, address("192.168.0.2", 1000))).isNull();
+  }
+}
@@ -0,0 +1,81 @@
+package easytcp.model.application;
+
+import easytcp.model.packet.InternetAddress;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalAddressClassifierTest {
+
+  private static InternetAddress address(String numericAddress) throws UnknownHostException {
+    var inetAddress = InetAddress.getByName(numericAddress);
+    return new InternetAddress(inetAddress.getHostAddress(), null, inetAddress, 443);
+  }
+
+  @Test
+  void isLocal_withDefaultNetworks() throws UnknownHostException {
+    var underTest = LocalAddressClassifier.of(LocalAddressClassifier.DEFAULT_LOCAL_NETWORKS, List.of());
+
+    assertThat(underTest.isLocal(address("10.1.2.3"))).isTrue();
+    assertThat(underTest.isLocal(address("172.16.5.4"))).isTrue();
+    assertThat(underTest.isLocal(address("172.31.255.255"))).isTrue();
+    assertThat(underTest.isLocal(address("192.168.218.251"))).isTrue();
+    assertThat(underTest.isLocal(address("127.0.0.1"))).isTrue();
+    assertThat(underTest.isLocal(address("fc00::1"))).isTrue();
+    assertThat(underTest.isLocal(address("fd12:3456::1"))).isTrue();
+    assertThat(underTest.isLocal(address("::1"))).isTrue();
+    //public addresses which happen to begin like private ones
+    assertThat(underTest.isLocal(address("172.217.1.1"))).isFalse();
+    assertThat(underTest.isLocal(address("192.169.0.1"))).isFalse();
+    assertThat(underTest.isLocal(address("8.8.8.8"))).isFalse();
+    assertThat(underTest.isLocal(address("2001:db8::1"))).isFalse();
+    //the IPv4 network does not take in the IPv6 addresses with the same bits
+    assertThat(underTest.isLocal(address("::a01:203"))).isFalse();
+  }
+
+  @Test
+  void isLocal_withInterfaceAddressesAndCustomNetworks() throws UnknownHostException {
+    var underTest = LocalAddressClassifier.of(List.of("203.0.113.0/24", "2001:db8:1::/48"),
+      List.of(InetAddress.getByName("198.51.100.7"), InetAddress.getByName("2001:db8::7")));
+
+    assertThat(underTest.isLocal(address("203.0.113.200"))).isTrue();
+    assertThat(underTest.isLocal(address("2001:db8:1:2::3"))).isTrue();
+    assertThat(underTest.isLocal(address("198.51.100.7"))).isTrue();
+    assertThat(underTest.isLocal(address("2001:db8::7"))).isTrue();
+    assertThat(underTest.isLocal(address("198.51.100.8"))).isFalse();
+    assertThat(underTest.isLocal(address("203.0.114.1"))).isFalse();
+    //the defaults are not added when networks are given
+    assertThat(underTest.isLocal(address("192.168.0.2"))).isFalse();
+  }
+
+  @Test
+  void isLocal_whenAddressHasNoInetAddress() throws UnknownHostException {
+    var underTest = LocalAddressClassifier.of(List.of("0.0.0.0/0"), List.of());
+
+    assertThat(underTest.isLocal(address("8.8.8.8"))).isTrue();
+    assertThat(underTest.isLocal(new InternetAddress("not an address", null, null, 443))).isFalse();
+  }
+
+  @Test
+  void validateNetwork() {
+    LocalAddressClassifier.validateNetwork(" 10.0.0.0/8 ");
+    LocalAddressClassifier.validateNetwork("fe80::1");
+
+    assertThatThrownBy(() -> LocalAddressClassifier.validateNetwork("example.com/24"))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("Not a numeric address");
+    assertThatThrownBy(() -> LocalAddressClassifier.validateNetwork("10.0.0.0/x"))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("Not a prefix length");
+    assertThatThrownBy(() -> LocalAddressClassifier.validateNetwork("10.0.0.0/33"))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("out of range");
+    assertThatThrownBy(() -> LocalAddressClassifier.validateNetwork(""))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
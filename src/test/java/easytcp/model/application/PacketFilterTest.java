@@ -0,0 +1,106 @@
+package easytcp.model.application;
+
+import easytcp.TestUtils;
+import easytcp.model.IPprotocol;
+import easytcp.model.TCPFlag;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.TCPConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PacketFilterTest {
+  private final FiltersForm filtersForm = FiltersForm.getInstance();
+  private TCPConnection connection;
+  private EasyTCPacket outgoingPacket;
+  private EasyTCPacket incomingPacket;
+
+  @BeforeEach
+  void setUp() {
+    filtersForm.restoreDefaults();
+    connection = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("10.0.0.1", null),
+      TestUtils.createAddress("192.168.0.2", null));
+    outgoingPacket = TestUtils.createEasyTcpDataPacket(connection, true, 1L, 1L, 0, List.of(TCPFlag.ACK));
+    incomingPacket = TestUtils.createEasyTcpDataPacket(connection, false, 1L, 1L, 0, List.of(TCPFlag.ACK));
+  }
+
+  @AfterEach
+  void tearDown() {
+    filtersForm.restoreDefaults();
+  }
+
+  @Test
+  void getPacketFilter_onlyCompiledAgainWhenFiltersChange() {
+    var filter = filtersForm.getPacketFilter();
+
+    filtersForm.setShowIpv4(true);
+    filtersForm.setHostSelected(null);
+    filtersForm.setShowTcpOptions(true);
+    assertThat(filtersForm.getPacketFilter()).isSameAs(filter);
+
+    filtersForm.setPortRangeSelected("80");
+    var changed = filtersForm.getPacketFilter();
+    assertThat(changed).isNotSameAs(filter);
+    assertThat(changed.getVersion()).isGreaterThan(filter.getVersion());
+  }
+
+  @Test
+  void test_reusesResultForTheConnection() {
+    filtersForm.setHostSelected("10.0");
+    var filter = filtersForm.getPacketFilter();
+
+    assertThat(filter.test(outgoingPacket)).isTrue();
+    var match = connection.getFilterMatch();
+    assertThat(filter.test(incomingPacket)).isTrue();
+
+    assertThat(connection.getFilterMatch()).isSameAs(match);
+    assertThat(match.packetFilter()).isSameAs(filter);
+  }
+
+  @Test
+  void test_whenHostnameResolved_checksConnectionAgain() {
+    filtersForm.setHostSelected("fish.com");
+    var filter = filtersForm.getPacketFilter();
+    assertThat(filter.test(outgoingPacket)).isFalse();
+
+    connection.getConnectionAddresses().addressOne().setHostName("fish.com");
+
+    assertThat(filter.test(incomingPacket)).isTrue();
+  }
+
+  @Test
+  void test_portFilters() {
+    filtersForm.setPortRangeSelected(" 70 - 90 ");
+    assertThat(filtersForm.getPacketFilter().test(outgoingPacket)).isTrue();
+
+    //a port on its own with a dash is a single port
+    filtersForm.setPortRangeSelected("81-");
+    assertThat(filtersForm.getPacketFilter().test(outgoingPacket)).isFalse();
+
+    //text which is not a port leaves the other filters to decide
+    filtersForm.setPortRangeSelected("abc");
+    assertThat(filtersForm.getPacketFilter().test(outgoingPacket)).isTrue();
+    filtersForm.setShowIpv4(false);
+    assertThat(filtersForm.getPacketFilter().test(outgoingPacket)).isFalse();
+  }
+
+  @Test
+  void test_selectedConnectionAndProtocol() {
+    var otherConnection = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("10.0.0.3", null),
+      TestUtils.createAddress("192.168.0.2", null));
+    incomingPacket.setiPprotocol(IPprotocol.IPV6);
+
+    filtersForm.setSelectedConnection(otherConnection);
+    assertThat(filtersForm.getPacketFilter().test(outgoingPacket)).isFalse();
+
+    filtersForm.setSelectedConnection(connection);
+    assertThat(filtersForm.getPacketFilter().test(outgoingPacket)).isTrue();
+    assertThat(filtersForm.getPacketFilter().test(incomingPacket)).isFalse();
+  }
+}
@@ -0,0 +1,140 @@
+package easytcp.model.packet;
+
+import easytcp.TestUtils;
+import easytcp.model.PacketStoreBackend;
+import easytcp.model.TCPFlag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pcap4j.packet.TcpMaximumSegmentSizeOption;
+import org.pcap4j.packet.namednumber.TcpOptionKind;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarPacketStoreTest {
+  private PacketContainer underTest;
+  private TCPConnection connection;
+
+  @BeforeEach
+  void setUp() {
+    PacketContainer.resetSharedColumns();
+    underTest = new PacketContainer(PacketStoreBackend.OFF_HEAP_COLUMNAR);
+    connection = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("123.123", "fish.com"),
+      TestUtils.createAddress("333.222", "otherfish.uk"));
+  }
+
+  private EasyTCPacket packet(boolean outgoing, long seq, int payloadLen, String timestamp, TCPFlag... flags) {
+    var packet = TestUtils.createEasyTcpDataPacket(connection, outgoing, 7L, seq, payloadLen, List.of(flags));
+    packet.setTimestamp(Timestamp.valueOf(timestamp));
+    return packet;
+  }
+
+  @Test
+  void packetReadBackHasTheSameFields() {
+    var sent = packet(true, 4000000000L, 40, "2018-11-12 13:02:56.12345678", TCPFlag.PSH, TCPFlag.ACK);
+    sent.setTcpOptions(List.of(new TcpMaximumSegmentSizeOption.Builder().maxSegSize((short) 33).build()));
+    sent.setTcpConnectionStatusAsOfPacket(ConnectionStatus.ESTABLISHED);
+    underTest.addPacketToContainer(sent);
+
+    var result = underTest.getPackets().get(0);
+    assertThat(result).isNotSameAs(sent);
+    assertThat(result.getSequenceNumber()).isEqualTo(4000000000L);
+    assertThat(result.getAckNumber()).isEqualTo(7L);
+    assertThat(result.getDataPayloadLength()).isEqualTo(40);
+    assertThat(result.getWindowSize()).isEqualTo(50);
+    assertThat(result.getTimestampNanos()).isEqualTo(sent.getTimestampNanos());
+    assertThat(result.getTcpFlagsDisplayable()).isEqualTo(sent.getTcpFlagsDisplayable());
+    assertThat(result.getOutgoingPacket()).isTrue();
+    assertThat(result.getTcpConnection()).isSameAs(connection);
+    assertThat(result.getTcpConnectionStatusAsOfPacket()).isEqualTo(ConnectionStatus.ESTABLISHED);
+    assertThat(result.getTcpOptions().getMaximumSegmentSize()).hasValue(33);
+    assertThat(underTest.getUniqueTcpOptions(true)).containsExactly(TcpOptionKind.MAXIMUM_SEGMENT_SIZE);
+  }
+
+  @Test
+  void latePacketsAreReadInTimestampOrder() {
+    underTest.addPacketToContainer(packet(true, 1L, 0, "2018-11-12 13:02:56.3", TCPFlag.ACK));
+    underTest.addPacketToContainer(packet(false, 2L, 0, "2018-11-12 13:02:56.1", TCPFlag.ACK));
+    underTest.addPacketToContainer(packet(true, 3L, 0, "2018-11-12 13:02:56.2", TCPFlag.ACK));
+
+    assertThat(underTest.getPackets())
+      .extracting(EasyTCPacket::getSequenceNumber)
+      .containsExactly(2L, 3L, 1L);
+    assertThat(underTest.getOutgoingPackets())
+      .extracting(EasyTCPacket::getSequenceNumber)
+      .containsExactly(3L, 1L);
+  }
+
+  @Test
+  void sequenceLookupsWorkAcrossWraparound() {
+    underTest.addPacketToContainer(packet(true, 4294967000L, 100, "2018-11-12 13:02:56.1", TCPFlag.ACK));
+    underTest.addPacketToContainer(packet(true, 4294967100L, 400, "2018-11-12 13:02:56.2", TCPFlag.ACK));
+    underTest.addPacketToContainer(packet(true, 204L, 100, "2018-11-12 13:02:56.3", TCPFlag.ACK));
+
+    assertThat(underTest.findPacketsWithSeqNum(204L, true))
+      .extracting(EasyTCPacket::getSequenceNumber)
+      .containsExactly(204L);
+    assertThat(underTest.findPacketsWithSeqNum(204L, false)).isEmpty();
+    assertThat(underTest.findLatestPacketWithSeqNumberLessThan(100L, true))
+      .map(EasyTCPacket::getSequenceNumber)
+      .hasValue(4294967100L);
+    assertThat(underTest.findLatestPacketWithSeqNumberLessThan(304L, true))
+      .map(EasyTCPacket::getSequenceNumber)
+      .hasValue(204L);
+  }
+
+  @Test
+  void flagQueriesAndByteCountsMatchTheHeapStore() {
+    var heap = new PacketContainer(PacketStoreBackend.HEAP);
+    var packets = List.of(
+      packet(true, 1L, 0, "2018-11-12 13:02:56.1", TCPFlag.SYN),
+      packet(false, 1L, 0, "2018-11-12 13:02:56.2", TCPFlag.SYN, TCPFlag.ACK),
+      packet(true, 2L, 40, "2018-11-12 13:02:56.3", TCPFlag.PSH, TCPFlag.ACK),
+      packet(false, 2L, 2, "2018-11-12 13:02:56.4", TCPFlag.PSH, TCPFlag.ACK));
+    packets.forEach(pkt -> {
+      heap.addPacketToContainer(pkt);
+      underTest.addPacketToContainer(pkt);
+    });
+
+    assertThat(underTest.getBytesSentOrReceived(true)).isEqualTo(heap.getBytesSentOrReceived(true)).isEqualTo(40L);
+    assertThat(underTest.getBytesSentOrReceived(false)).isEqualTo(heap.getBytesSentOrReceived(false)).isEqualTo(2L);
+    assertThat(underTest.getAllPacketsWithoutFlag(TCPFlag.SYN, true))
+      .extracting(EasyTCPacket::getSequenceNumber)
+      .containsExactly(2L);
+    assertThat(underTest.findPacketsWithFlagOutGoingOrNot(TCPFlag.SYN).get(false))
+      .extracting(EasyTCPacket::getTcpFlagsDisplayable)
+      .containsExactlyElementsOf(
+        heap.findPacketsWithFlagOutGoingOrNot(TCPFlag.SYN).get(false)
+          .stream().map(EasyTCPacket::getTcpFlagsDisplayable).toList());
+    assertThat(underTest.findPacketWith(2L, 7L, 2, packets.get(3).getTcpFlagsDisplayable()))
+      .map(EasyTCPacket::getOutgoingPacket)
+      .hasValue(false);
+  }
+
+  @Test
+  void changesToReadPacketsAreWrittenBackAndSharedBetweenContainers() {
+    var other = new PacketContainer(PacketStoreBackend.OFF_HEAP_COLUMNAR);
+    var sent = packet(true, 1L, 0, "2018-11-12 13:02:56.1", TCPFlag.SYN);
+    underTest.addPacketToContainer(sent);
+    other.addPacketToContainer(underTest.getPackets().get(0));
+
+    underTest.getPackets().get(0).setSelectedPacket(true);
+    underTest.getPackets().get(0).setTcpConnectionStatusAsOfPacket(ConnectionStatus.SYN_SENT);
+
+    assertThat(other.getPackets().get(0).getSelectedPacket()).isTrue();
+    assertThat(other.getPackets().get(0).getTcpConnectionStatusAsOfPacket()).isEqualTo(ConnectionStatus.SYN_SENT);
+  }
+
+  @Test
+  void copyIsIndependentOfTheOriginal() {
+    underTest.addPacketToContainer(packet(true, 1L, 0, "2018-11-12 13:02:56.1", TCPFlag.SYN));
+    var copy = new PacketContainer(underTest);
+    copy.addPacketToContainer(packet(true, 2L, 0, "2018-11-12 13:02:56.2", TCPFlag.ACK));
+
+    assertThat(underTest.getPackets()).hasSize(1);
+    assertThat(copy.getPackets()).hasSize(2);
+  }
+}
@@ -0,0 +1,54 @@
+package easytcp.model.packet;
+
+import easytcp.TestUtils;
+import easytcp.model.TCPFlag;
+import org.junit.jupiter.api.Test;
+import org.pcap4j.packet.namednumber.TcpOptionKind;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionStatisticsTest {
+
+  @Test
+  void countsPacketsBytesAndFlagsPerDirection() {
+    //contains 3 outgoing and 4 incoming packets
+    var connection = TestUtils.getConnectionWithHandshakeAndFin();
+
+    var result = connection.getStatistics();
+
+    assertThat(result.getPacketCount(true)).isEqualTo(3);
+    assertThat(result.getPacketCount(false)).isEqualTo(4);
+    assertThat(result.getPacketCount()).isEqualTo(7);
+    assertThat(result.getBytes(true)).isEqualTo(80);
+    assertThat(result.getBytes(false)).isEqualTo(2);
+    assertThat(result.getFlagCount(TCPFlag.ACK, true)).isEqualTo(2);
+    assertThat(result.getFlagCount(TCPFlag.ACK, false)).isEqualTo(4);
+    assertThat(result.getFlagCount(TCPFlag.SYN, true)).isEqualTo(1);
+    assertThat(result.getFlagCount(TCPFlag.RST, false)).isZero();
+  }
+
+  @Test
+  void getOptionKinds_inOrderFirstSeen() {
+    var connection = TestUtils.getConnectionWithNagle();
+
+    var result = connection.getStatistics();
+
+    assertThat(result.getOptionKinds(true))
+      .containsExactly(TcpOptionKind.MAXIMUM_SEGMENT_SIZE, TcpOptionKind.WINDOW_SCALE);
+    assertThat(result.getOptionKinds(false))
+      .containsExactlyElementsOf(connection.getPacketContainer().getUniqueTcpOptions(false));
+  }
+
+  @Test
+  void copiesAndClearsWithTheContainer() {
+    var connection = TestUtils.getConnectionWithHandshakeAndFin();
+    var copy = new TCPConnection(connection);
+
+    connection.getPacketContainer().clearPackets();
+
+    assertThat(connection.getStatistics().getPacketCount()).isZero();
+    assertThat(connection.getStatistics().getOptionKinds(true)).isEmpty();
+    assertThat(copy.getStatistics().getPacketCount()).isEqualTo(7);
+    assertThat(copy.getStatistics().getFlagCount(TCPFlag.FIN, false)).isEqualTo(1);
+  }
+}
@@ -0,0 +1,90 @@
+package easytcp.model.packet;
+
+import easytcp.TestUtils;
+import easytcp.model.TCPFlag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionTrackingTest {
+  private ConnectionTracking underTest;
+  private TCPConnection connection;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ConnectionTracking();
+    connection = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("123.123", "fish.com"),
+      TestUtils.createAddress("333.222", "otherfish.uk"));
+  }
+
+  private EasyTCPacket record(boolean outgoing, long seq, long ack, TCPFlag... flags) {
+    var packet = TestUtils.createEasyTcpDataPacket(connection, outgoing, ack, seq, 0, List.of(flags));
+    underTest.record(packet);
+    return packet;
+  }
+
+  private EasyTCPacket acking(boolean outgoing, long ack) {
+    return TestUtils.createEasyTcpDataPacket(connection, outgoing, ack, 0L, 0, List.of(TCPFlag.ACK));
+  }
+
+  @Test
+  void acknowledgedFlags_whenNothingSentTheOtherWay() {
+    record(true, 100L, 0L, TCPFlag.SYN);
+
+    assertThat(underTest.acknowledgedFlags(acking(true, 101L))).isEqualTo(ConnectionTracking.NOT_ACKNOWLEDGED);
+    assertThat(underTest.acknowledgedFlags(acking(false, 100L))).isEqualTo(ConnectionTracking.NOT_ACKNOWLEDGED);
+  }
+
+  @Test
+  void acknowledgedFlags_findsHandshakeDataAndFinSegments() {
+    var syn = record(true, 100L, 0L, TCPFlag.SYN);
+    record(true, 101L, 501L, TCPFlag.ACK);
+    var fin = record(true, 301L, 501L, TCPFlag.FIN, TCPFlag.ACK);
+
+    assertThat(underTest.acknowledgedFlags(acking(false, 101L))).isEqualTo(syn.getTcpFlagBits());
+    assertThat(ConnectionTracking.hasFlag(underTest.acknowledgedFlags(acking(false, 201L)), TCPFlag.ACK)).isTrue();
+    assertThat(ConnectionTracking.hasFlag(underTest.acknowledgedFlags(acking(false, 201L)), TCPFlag.FIN)).isFalse();
+    assertThat(underTest.acknowledgedFlags(acking(false, 302L))).isEqualTo(fin.getTcpFlagBits());
+  }
+
+  @Test
+  void outstandingSynAndFin() {
+    record(true, 100L, 0L, TCPFlag.SYN);
+    var outgoing = underTest.getDirection(true);
+    var incoming = underTest.getDirection(false);
+    assertThat(outgoing.isSynOutstanding(incoming)).isTrue();
+
+    record(false, 500L, 101L, TCPFlag.SYN, TCPFlag.ACK);
+    assertThat(outgoing.isSynOutstanding(incoming)).isFalse();
+    assertThat(incoming.isSynOutstanding(outgoing)).isTrue();
+
+    record(true, 101L, 501L, TCPFlag.FIN, TCPFlag.ACK);
+    assertThat(incoming.isSynOutstanding(outgoing)).isFalse();
+    assertThat(outgoing.isFinOutstanding(incoming)).isTrue();
+
+    assertThat(outgoing)
+      .extracting(ConnectionTracking.Direction::getInitialSequenceNumber,
+        ConnectionTracking.Direction::getLastSequenceNumber,
+        ConnectionTracking.Direction::getLastAckNumber,
+        ConnectionTracking.Direction::getFinSequenceNumber)
+      .containsExactly(100L, 101L, 501L, 101L);
+    assertThat(underTest.getFirstPacketDestination()).isEqualTo(connection.getConnectionAddresses().addressOne());
+    assertThat(underTest.isFirstPacketOutgoing()).isTrue();
+  }
+
+  @Test
+  void acknowledgedFlags_whenSequenceNumbersWrapAround() {
+    record(true, 4294967200L, 0L, TCPFlag.ACK);
+    var afterWrap = record(true, 50L, 0L, TCPFlag.FIN, TCPFlag.ACK);
+
+    assertThat(underTest.acknowledgedFlags(acking(false, 51L))).isEqualTo(afterWrap.getTcpFlagBits());
+    var beforeWrap = underTest.acknowledgedFlags(acking(false, 4294967201L));
+    assertThat(ConnectionTracking.hasFlag(beforeWrap, TCPFlag.ACK)).isTrue();
+    assertThat(ConnectionTracking.hasFlag(beforeWrap, TCPFlag.FIN)).isFalse();
+    assertThat(underTest.getDirection(true).getInitialSequenceNumber()).isEqualTo(4294967200L);
+  }
+}
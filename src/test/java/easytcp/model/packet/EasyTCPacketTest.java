@@ -0,0 +1,99 @@
+package easytcp.model.packet;
+
+import easytcp.model.TCPFlag;
+import org.junit.jupiter.api.Test;
+import org.pcap4j.packet.TcpMaximumSegmentSizeOption;
+import org.pcap4j.packet.TcpNoOperationOption;
+import org.pcap4j.packet.TcpWindowScaleOption;
+import org.pcap4j.packet.namednumber.TcpOptionKind;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EasyTCPacketTest {
+  private final EasyTCPacket underTest = new EasyTCPacket();
+
+  @Test
+  void setTcpFlags_assertSharedViewWithEveryFlag() {
+    underTest.setTcpFlags(Map.of(TCPFlag.PSH, true, TCPFlag.ACK, true, TCPFlag.FIN, false));
+
+    assertThat(underTest.getTcpFlags())
+      .hasSize(TCPFlag.values().length)
+      .containsEntry(TCPFlag.PSH, true)
+      .containsEntry(TCPFlag.ACK, true)
+      .containsEntry(TCPFlag.SYN, false);
+    assertThat(underTest.hasFlag(TCPFlag.PSH)).isTrue();
+    assertThat(underTest.hasFlag(TCPFlag.RST)).isFalse();
+    assertThat(underTest.getTcpFlagsDisplayable()).isEqualTo(".P");
+
+    var other = new EasyTCPacket();
+    other.setTcpFlagBits(EasyTCPacket.toFlagBits(false, true, true, false, false, false));
+    assertThat(other.getTcpFlags()).isSameAs(underTest.getTcpFlags());
+  }
+
+  @Test
+  void setTimestamp_assertNanosecondsKept() {
+    var timestamp = Timestamp.valueOf("2018-11-12 13:02:56.123456789");
+
+    underTest.setTimestamp(timestamp);
+
+    assertThat(underTest.getTimestamp()).isEqualTo(timestamp);
+    assertThat(underTest.getTimestampNanos() % 1_000_000_000L).isEqualTo(123_456_789L);
+  }
+
+  @Test
+  void setTimestamp_whenBeforeEpoch() {
+    var timestamp = Timestamp.valueOf("1969-12-31 23:59:59.5");
+
+    underTest.setTimestamp(timestamp);
+
+    assertThat(underTest.getTimestampNanos()).isEqualTo(-500_000_000L);
+    assertThat(underTest.getTimestamp()).isEqualTo(timestamp);
+  }
+
+  @Test
+  void getTimestamp_whenNotSet() {
+    assertThat(underTest.hasTimestamp()).isFalse();
+    assertThat(underTest.getTimestamp()).isNull();
+  }
+
+  @Test
+  void getOutgoingPacket_whenNotSet() {
+    assertThat(underTest.getOutgoingPacket()).isNull();
+    underTest.setOutgoingPacket(false);
+    assertThat(underTest.getOutgoingPacket()).isFalse();
+  }
+
+  @Test
+  void setTcpOptions_fromPcap4jOptions() {
+    underTest.setTcpOptions(List.of(
+      new TcpMaximumSegmentSizeOption.Builder().maxSegSize((short) 1460).correctLengthAtBuild(true).build(),
+      TcpNoOperationOption.getInstance(),
+      new TcpWindowScaleOption.Builder().shiftCount((byte) 7).correctLengthAtBuild(true).build()));
+
+    var options = underTest.getTcpOptions();
+    assertThat(options.getKinds()).containsExactly(
+      TcpOptionKind.MAXIMUM_SEGMENT_SIZE, TcpOptionKind.NO_OPERATION, TcpOptionKind.WINDOW_SCALE);
+    assertThat(options.getMaximumSegmentSize()).hasValue(1460);
+    assertThat(options.getWindowScale()).hasValue(7);
+    assertThat(underTest.getTcpOptionsDisplayable()).isEqualTo("2, 1, 3");
+  }
+
+  @Test
+  void decodeTcpOptions_assertSharedInstances() {
+    //MSS 1460, NOP, window scale 7, end of options
+    var raw = ByteBuffer.wrap(new byte[] {2, 4, 0x05, (byte) 0xB4, 1, 3, 3, 7, 0, 0, 0, 0});
+
+    var options = TcpOptions.decode(raw, 0, raw.capacity());
+
+    assertThat(options.size()).isEqualTo(4);
+    assertThat(options.getMaximumSegmentSize()).hasValue(1460);
+    assertThat(options.getWindowScale()).hasValue(7);
+    assertThat(TcpOptions.decode(raw, 0, raw.capacity())).isSameAs(options);
+    assertThat(TcpOptions.decode(raw, 0, 0)).isSameAs(TcpOptions.NONE);
+  }
+}
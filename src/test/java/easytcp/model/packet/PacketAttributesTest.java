@@ -0,0 +1,94 @@
+package easytcp.model.packet;
+
+import easytcp.TestUtils;
+import easytcp.model.TCPFlag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PacketAttributesTest {
+  private PacketAttributes underTest;
+  private TCPConnection connection;
+  private List<EasyTCPacket> statusesWorkedOut;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new PacketAttributes();
+    //contains 7 packets
+    connection = TestUtils.getConnectionWithHandshakeAndFin();
+    statusesWorkedOut = new ArrayList<>();
+  }
+
+  //moves on to the next status for every packet, recording the packets each status was worked out for
+  private void update() {
+    underTest.update(connection.getPacketContainer(), (status, pkt) -> {
+      statusesWorkedOut.add(pkt);
+      return ConnectionStatus.values()[(status.ordinal() + 1) % ConnectionStatus.values().length];
+    });
+  }
+
+  @Test
+  void update_derivesValuesForEveryPacket() {
+    update();
+
+    var packets = connection.getPacketContainer().getPackets();
+    assertThat(underTest.size()).isEqualTo(7);
+    assertThat(underTest.getPacket(2)).isEqualTo(packets.get(2));
+    assertThat(underTest.getSegmentNumber(2)).isEqualTo(3);
+    assertThat(underTest.getRelativeNanos(0)).isZero();
+    assertThat(underTest.getRelativeNanos(1)).isEqualTo(110_000_000L);
+    assertThat(underTest.getFirstTimestampNanos()).isEqualTo(packets.get(0).getTimestampNanos());
+    //the status before the first packet is unknown, which is the last status
+    assertThat(underTest.getStatus(0)).isEqualTo(ConnectionStatus.SYN_SENT);
+    assertThatThrownBy(() -> underTest.getStatus(7)).isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  @Test
+  void update_whenPacketAppended_onlyDerivesNewPacket() {
+    update();
+    update();
+    assertThat(statusesWorkedOut).hasSize(7);
+
+    var packet = TestUtils.createEasyTcpDataPacket(connection, true, 46L, 6L, 0, List.of(TCPFlag.ACK));
+    packet.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:57.0"));
+    connection.getPacketContainer().addPacketToContainer(packet);
+    update();
+
+    assertThat(statusesWorkedOut).hasSize(8).endsWith(packet);
+    assertThat(underTest.getStatus(7).ordinal()).isEqualTo((underTest.getStatus(6).ordinal() + 1)
+      % ConnectionStatus.values().length);
+  }
+
+  @Test
+  void update_whenPacketArrivesLate_derivesAllAgain() {
+    update();
+
+    var packet = TestUtils.createEasyTcpDataPacket(connection, true, 0L, 0L, 0, List.of(TCPFlag.ACK));
+    packet.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:55.0"));
+    connection.getPacketContainer().addPacketToContainer(packet);
+    update();
+
+    assertThat(statusesWorkedOut).hasSize(15);
+    assertThat(underTest.indexOf(packet)).isZero();
+    assertThat(underTest.getRelativeNanos(1)).isEqualTo(1_123_456_780L);
+  }
+
+  @Test
+  void indexOf() {
+    update();
+
+    var packets = connection.getPacketContainer().getPackets();
+    for (int i = 0; i < packets.size(); i++) {
+      assertThat(underTest.indexOf(packets.get(i))).isEqualTo(i);
+    }
+    var other = TestUtils.createEasyTcpDataPacket(connection, true, 99L, 99L, 0, List.of(TCPFlag.ACK));
+    other.setTimestamp(packets.get(3).getTimestamp());
+    assertThat(underTest.indexOf(other)).isEqualTo(-1);
+  }
+}
@@ -82,6 +82,34 @@ class PacketContainerTest {
     assertThat(result2).contains(synReceivedPacket);
   }
 
+  @Test
+  void findLatestPacketWithSeqNumberLessThan_whenSequenceNumbersWrapAround() {
+    var container = new PacketContainer();
+    var beforeWrap = TestUtils.createEasyTcpDataPacket(
+        connection, true, 1L, 4294967200L, 50, List.of(TCPFlag.ACK));
+    beforeWrap.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:56.1"));
+    var afterWrap = TestUtils.createEasyTcpDataPacket(
+        connection, true, 1L, 54L, 50, List.of(TCPFlag.ACK));
+    afterWrap.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:56.2"));
+    container.addPacketToContainer(beforeWrap);
+    container.addPacketToContainer(afterWrap);
+
+    //an ack number past the wrap acknowledges both, one before it only the packet before the wrap
+    assertThat(container.findLatestPacketWithSeqNumberLessThan(104L, true)).contains(afterWrap);
+    assertThat(container.findLatestPacketWithSeqNumberLessThan(4294967250L, true)).contains(beforeWrap);
+    assertThat(container.findPacketsWithSeqNum(54L, true)).containsExactly(afterWrap);
+  }
+
+  @Test
+  void findPreviousPacketReceived() {
+    var con = TestUtils.getConnectionWithHandshakeAndFin();
+    var packets = con.getPacketContainer().getPackets();
+    //the fin sent after the psh packet was received
+    var result = con.getPacketContainer().findPreviousPacketReceived(packets.get(4));
+    assertThat(result).contains(packets.get(3));
+    assertThat(con.getPacketContainer().findPreviousPacketReceived(packets.get(0))).isEmpty();
+  }
+
   @Test
   void addPacketToContainer_assertSorted() {
     var newPktEarlierThanOthers = TestUtils.createEasyTcpDataPacket(
@@ -104,6 +132,26 @@ class PacketContainerTest {
     );
   }
 
+  @Test
+  void addPacketToContainer_assertEarlierSnapshotUnchanged() {
+    var snapshot = underTest.getPackets();
+    var latePkt = TestUtils.createEasyTcpDataPacket(
+        connection, true, 1L, 1L, 20, List.of(TCPFlag.FIN));
+    latePkt.setTimestamp(
+        Timestamp.from(Instant.now().minus(1, ChronoUnit.DAYS)));
+    var inOrderPkt = TestUtils.createEasyTcpDataPacket(
+        connection, true, 1L, 1L, 20, List.of(TCPFlag.ACK));
+    inOrderPkt.setTimestamp(
+        Timestamp.from(Instant.now().plus(1, ChronoUnit.DAYS)));
+
+    underTest.addPacketToContainer(latePkt);
+    underTest.addPacketToContainer(inOrderPkt);
+
+    //the view handed out before the packets were added is not affected by them
+    assertThat(snapshot).hasSize(4).doesNotContain(latePkt, inOrderPkt);
+    assertThat(underTest.getPackets()).hasSize(6).startsWith(latePkt).endsWith(inOrderPkt);
+  }
+
   @Test
   void getAllPacketsWithoutFlag() {
     var result = underTest.getAllPacketsWithoutFlag(TCPFlag.PSH, true);
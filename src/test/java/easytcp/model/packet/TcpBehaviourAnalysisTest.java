@@ -0,0 +1,105 @@
+package easytcp.model.packet;
+
+import easytcp.TestUtils;
+import easytcp.model.TCPFlag;
+import easytcp.model.TcpStrategyDetection;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TcpBehaviourAnalysisTest {
+
+  private TcpBehaviourAnalysis.Evidence analyseFromScratch(TCPConnection connection,
+                                                          TcpStrategyDetection level,
+                                                          boolean outgoing) {
+    var analysis = new TcpBehaviourAnalysis();
+    analysis.update(connection);
+    return analysis.getEvidence(level, outgoing);
+  }
+
+  @Test
+  void getEvidence_whenConWithNagle() {
+    var connection = TestUtils.getConnectionWithNagle();
+    var underTest = connection.getBehaviourAnalysis();
+
+    underTest.update(connection);
+
+    assertThat(underTest.getEvidence(TcpStrategyDetection.BALANCED, true))
+      .isEqualTo(new TcpBehaviourAnalysis.Evidence(4, 0, 0));
+    assertThat(underTest.getEvidence(TcpStrategyDetection.BALANCED, false))
+      .isEqualTo(new TcpBehaviourAnalysis.Evidence(3, 0, 0));
+  }
+
+  @Test
+  void getEvidence_whenConWithSlowStart() {
+    var connection = TestUtils.getConnectionWithSlowStart();
+    var underTest = connection.getBehaviourAnalysis();
+
+    underTest.update(connection);
+
+    assertThat(underTest.getEvidence(TcpStrategyDetection.STRICT, true).slowStartPossibility()).isEqualTo(12);
+    assertThat(underTest.getEvidence(TcpStrategyDetection.STRICT, false).slowStartPossibility()).isZero();
+  }
+
+  @Test
+  void getEvidence_delayedAckDependsOnLevel() {
+    var connection = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("192", "fish.com"),
+      TestUtils.createAddress("333", "host.com"));
+    var data = TestUtils.createEasyTcpDataPacket(connection, true, 1L, 1L, 20, List.of(TCPFlag.ACK));
+    data.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:56.0"));
+    //acked 180ms later, past the lenient timeout but not the balanced one
+    var ack = TestUtils.createEasyTcpDataPacket(connection, false, 21L, 1L, 0, List.of(TCPFlag.ACK));
+    ack.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:56.18"));
+    connection.getPacketContainer().addPacketToContainer(data);
+    connection.getPacketContainer().addPacketToContainer(ack);
+    var underTest = connection.getBehaviourAnalysis();
+
+    underTest.update(connection);
+
+    assertThat(underTest.getEvidence(TcpStrategyDetection.LENIENT, false).delayedAckPossibility()).isEqualTo(1);
+    assertThat(underTest.getEvidence(TcpStrategyDetection.BALANCED, false).delayedAckPossibility()).isZero();
+    assertThat(underTest.getEvidence(TcpStrategyDetection.STRICT, false).delayedAckPossibility()).isZero();
+  }
+
+  @Test
+  void update_whenPacketsAdded_matchesAnalysingFromScratch() {
+    var connection = TestUtils.getConnectionWithNagle();
+    var underTest = connection.getBehaviourAnalysis();
+    underTest.update(connection);
+
+    var appended = TestUtils.createEasyTcpDataPacket(connection, false, 101L, 81L, 20, List.of(TCPFlag.ACK));
+    appended.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:56.99345678"));
+    connection.getPacketContainer().addPacketToContainer(appended);
+    underTest.update(connection);
+
+    assertThat(underTest.getEvidence(TcpStrategyDetection.LENIENT, false))
+      .isEqualTo(analyseFromScratch(connection, TcpStrategyDetection.LENIENT, false))
+      .isEqualTo(new TcpBehaviourAnalysis.Evidence(5, 1, 0));
+
+    var late = TestUtils.createEasyTcpDataPacket(connection, true, 41L, 61L, 20, List.of(TCPFlag.ACK));
+    late.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:56.16345678"));
+    connection.getPacketContainer().addPacketToContainer(late);
+    underTest.update(connection);
+
+    assertThat(underTest.getEvidence(TcpStrategyDetection.LENIENT, true))
+      .isEqualTo(analyseFromScratch(connection, TcpStrategyDetection.LENIENT, true))
+      .isEqualTo(new TcpBehaviourAnalysis.Evidence(5, 0, 2));
+  }
+
+  @Test
+  void update_whenMssChanges_analysesAgain() {
+    var connection = TestUtils.getConnectionWithNagle();
+    var underTest = connection.getBehaviourAnalysis();
+    underTest.update(connection);
+
+    connection.setMaximumSegmentSizeServer(null);
+    underTest.update(connection);
+
+    //only the packets sent after the previous one was acked are left as evidence
+    assertThat(underTest.getEvidence(TcpStrategyDetection.LENIENT, true).naglePossibility()).isEqualTo(1);
+  }
+}
@@ -7,6 +7,7 @@ import easytcp.view.PacketLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -21,7 +22,7 @@ class ArrowDiagramMouseListenerTest {
     @Mock
     private ArrowDiagram arrowDiagram;
 
-    @Mock
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private PacketLog packetLog;
 
     @InjectMocks
@@ -48,6 +49,8 @@ class ArrowDiagramMouseListenerTest {
         //asserts method calls
         verify(arrowDiagram)
                 .setSelectedPacket(tcpConnection.getPacketContainer().getPackets().get(0), false);
+        verify(packetLog.getPacketTableModel())
+                .setSelectedPacket(tcpConnection.getPacketContainer().getPackets().get(0));
         verify(packetLog)
                 .refreshPacketLog(true);
     }
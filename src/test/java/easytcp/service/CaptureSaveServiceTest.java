@@ -8,6 +8,7 @@ import easytcp.model.packet.*;
 import easytcp.service.capture.CaptureSaveService;
 import easytcp.service.capture.PcapFileReaderService;
 import easytcp.view.ArrowDiagram;
+import easytcp.view.PacketLogTableModel;
 import easytcp.view.options.OptionsPanel;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,7 +19,6 @@ import org.pcap4j.packet.namednumber.IpNumber;
 import org.pcap4j.packet.namednumber.IpVersion;
 import org.pcap4j.packet.namednumber.TcpPort;
 
-import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import java.net.Inet4Address;
@@ -53,7 +53,7 @@ class CaptureSaveServiceTest {
     var fishFile = new File("fish");
     fishFile.delete();
     CaptureData.getInstance().clear();
-    PacketTransformerService.getPcapCaptureData().clear();
+    PacketTransformerService.clearPcapCaptureData();
     var packetTransformerService = new PacketTransformerService();
 
     var dstAddr = InetAddress.getByName("fish.com");
@@ -87,7 +87,7 @@ class CaptureSaveServiceTest {
     var packetReader = new PcapFileReaderService(packetTransformerService);
     var optionsPanel = mock(OptionsPanel.class);
     when(optionsPanel.getMiddleRow()).thenReturn(mock());
-    var captureData = packetReader.readPacketFile(fishFile, FiltersForm.getInstance(), new JTextPane(), optionsPanel);
+    var captureData = packetReader.readPacketFile(fishFile, FiltersForm.getInstance(), new PacketLogTableModel(new PacketDisplayService()), optionsPanel);
     Thread.sleep(500);
 
     while (ApplicationStatus.getStatus().isLoading().get()) {
@@ -0,0 +1,136 @@
+package easytcp.service;
+
+import easytcp.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class HostnameResolverServiceTest {
+  private static final Duration WAIT = Duration.ofSeconds(5);
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicInteger lookups = new AtomicInteger();
+  private InetAddress address;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    address = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+  }
+
+  private HostnameResolverService resolverReturning(Function<InetAddress, String> lookup, int maxCached) {
+    return new HostnameResolverService(2, Integer.MAX_VALUE, maxCached, Duration.ofSeconds(60), Duration.ofSeconds(5),
+      addr -> {
+        lookups.incrementAndGet();
+        return lookup.apply(addr);
+      }, clock::get);
+  }
+
+  @Test
+  void resolvesAndCachesHostname() {
+    var underTest = resolverReturning(addr -> "fish.com", 10);
+
+    assertThat(underTest.resolve(address)).succeedsWithin(WAIT).isEqualTo("fish.com");
+    assertThat(underTest.resolve(address)).isCompletedWithValue("fish.com");
+    assertThat(underTest.getCachedHostname("10.0.0.1")).isEqualTo("fish.com");
+    assertThat(lookups).hasValue(1);
+  }
+
+  @Test
+  void concurrentRequestsShareOneLookup() throws Exception {
+    var release = new CountDownLatch(1);
+    var underTest = resolverReturning(addr -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "fish.com";
+    }, 10);
+    var first = TestUtils.createAddress("10.0.0.1", null);
+    first.setPcap4jAddress(address);
+    var second = TestUtils.createAddress("10.0.0.1", null);
+    second.setPcap4jAddress(address);
+
+    var firstResolved = underTest.resolve(first);
+    var secondResolved = underTest.resolve(second);
+    var future = underTest.resolve(address);
+    release.countDown();
+
+    assertThat(future).succeedsWithin(WAIT).isEqualTo("fish.com");
+    assertThat(firstResolved).succeedsWithin(WAIT);
+    assertThat(secondResolved).succeedsWithin(WAIT);
+    assertThat(first.getHostName()).isEqualTo("fish.com");
+    assertThat(second.getHostName()).isEqualTo("fish.com");
+    assertThat(lookups).hasValue(1);
+  }
+
+  @Test
+  void failedLookupsAreCachedForTheNegativeTimeToLive() {
+    var underTest = resolverReturning(InetAddress::getHostAddress, 10);
+    var unresolved = TestUtils.createAddress("10.0.0.1", null);
+    unresolved.setPcap4jAddress(address);
+
+    assertThat(underTest.resolve(unresolved)).succeedsWithin(WAIT);
+    assertThat(underTest.resolve(address)).isCompletedWithValue(null);
+    assertThat(unresolved.getHostName()).isNull();
+    assertThat(unresolved.getAddressString()).isEqualTo("10.0.0.1");
+    assertThat(lookups).hasValue(1);
+
+    clock.addAndGet(Duration.ofSeconds(5).toNanos());
+    assertThat(underTest.resolve(address)).succeedsWithin(WAIT).isNull();
+    assertThat(lookups).hasValue(2);
+  }
+
+  @Test
+  void resolveWhenDue_asksOncePerNegativeTimeToLive() {
+    var underTest = spy(resolverReturning(InetAddress::getHostAddress, 10));
+    var unresolved = TestUtils.createAddress("10.0.0.1", null);
+    unresolved.setPcap4jAddress(address);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.resolveWhenDue(unresolved);
+    }
+    verify(underTest, times(1)).resolve(unresolved);
+
+    clock.addAndGet(Duration.ofSeconds(5).toNanos());
+    underTest.resolveWhenDue(unresolved);
+    verify(underTest, times(2)).resolve(unresolved);
+  }
+
+  @Test
+  void resolvedHostnamesExpireAfterTimeToLive() {
+    var underTest = resolverReturning(addr -> "fish.com", 10);
+
+    assertThat(underTest.resolve(address)).succeedsWithin(WAIT).isEqualTo("fish.com");
+    clock.addAndGet(Duration.ofSeconds(59).toNanos());
+    assertThat(underTest.getCachedHostname("10.0.0.1")).isEqualTo("fish.com");
+    clock.addAndGet(Duration.ofSeconds(1).toNanos());
+    assertThat(underTest.getCachedHostname("10.0.0.1")).isNull();
+  }
+
+  @Test
+  void leastRecentlyUsedHostnameIsEvictedWhenFull() throws Exception {
+    var underTest = resolverReturning(addr -> "host" + addr.getAddress()[3], 2);
+    var other = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+    var third = InetAddress.getByAddress(new byte[] {10, 0, 0, 3});
+
+    assertThat(underTest.resolve(address)).succeedsWithin(WAIT);
+    assertThat(underTest.resolve(other)).succeedsWithin(WAIT);
+    underTest.getCachedHostname("10.0.0.1");
+    assertThat(underTest.resolve(third)).succeedsWithin(WAIT);
+
+    assertThat(underTest.getCachedHostname("10.0.0.1")).isEqualTo("host1");
+    assertThat(underTest.getCachedHostname("10.0.0.2")).isNull();
+    assertThat(underTest.getCachedHostname("10.0.0.3")).isEqualTo("host3");
+  }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -89,26 +90,16 @@ class PacketDisplayServiceTest {
   }
 
   @Test
-  void prettyPrintPacket() {
-    var result = underTest.prettyPrintPacket(synSentPkt, FiltersForm.getInstance());
-
-    //asserting the string minus the timestamp
-    assertThat(result).containsIgnoringWhitespaces("""
-                    <p> <a href="1:0:0:S:\
-                    ConnectionAddresses {addressOne=InternetAddress{alphanumericalAddress='192', hostName='fish.com', pcap4jAddress=null, port=80},\
-                     addressTwo=InternetAddress{alphanumericalAddress='333', hostName='host.com', pcap4jAddress=null, port=80}}"> \
-                     2018-11-12""",
-            "IPv4 333:80 > 192:80: Flags [S], seq 1, ack 0, win 50, options [2], length 0 </a></p>");
-
-    var result2 = underTest.prettyPrintPacket(pshSentPkt, FiltersForm.getInstance());
-
-    assertThat(result2)
-      .contains("""
-          <p> <a href="3:40:2:.P:ConnectionAddresses{addressOne=InternetAddress{alphanumericalAddress='192', hostName='fish.com',\
-           pcap4jAddress=null, port=80}, addressTwo=InternetAddress{alphanumericalAddress='333', hostName='host.com', pcap4jAddress=null, port=80}}">\
-          """,
-        """
-          IPv4 333:80 > 192:80: Flags [.P], seq 3, ack 2, win 50, options [], length 40 </a></p>""");
+  void toLogRow() {
+    var result = underTest.toLogRow(synSentPkt, FiltersForm.getInstance());
+
+    //asserting the row minus the timestamp
+    assertThat(result[0]).startsWith("2018-11-12");
+    assertThat(Arrays.copyOfRange(result, 1, result.length)).containsExactly("IPv4", "333:80", "192:80", "S", "1", "0", "50", "[2]", "0");
+
+    var result2 = underTest.toLogRow(pshSentPkt, FiltersForm.getInstance());
+
+    assertThat(Arrays.copyOfRange(result2, 1, result2.length)).containsExactly("IPv4", "333:80", "192:80", ".P", "3", "2", "50", "[]", "40");
   }
 
   @Test
@@ -148,7 +139,6 @@ class PacketDisplayServiceTest {
   void getStatusForPacket_stateTraversalThroughFullConnection_serverTerminates() {
     var result = ConnectionStatus.UNKNOWN;
     var serverTerminatesCon = TestUtils.getConnectionWithHandshakeAndFinCloseWait();
-    serverTerminatesCon.setStatusAsOfPacketTraversal(ConnectionStatus.UNKNOWN);
     var statusOrder = new ArrayList<ConnectionStatus>();
     for(EasyTCPacket pkt: serverTerminatesCon.getPacketContainer().getPackets()) {
       result = underTest.getStatusForPacket(pkt, serverTerminatesCon);
@@ -1,12 +1,16 @@
 package easytcp.service;
 
+import easytcp.TrafficGenerator;
 import easytcp.model.IPprotocol;
 import easytcp.model.PcapCaptureData;
+import easytcp.model.TCPFlag;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
 import easytcp.model.packet.*;
+import easytcp.service.capture.FilePacketListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.pcap4j.core.PcapHandle;
 import org.pcap4j.packet.IpV4Packet;
 import org.pcap4j.packet.TcpPacket;
 import org.pcap4j.packet.namednumber.IpNumber;
@@ -17,13 +21,26 @@ import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class PacketTransformerServiceTest {
+  private static final Map<String, String> HOSTNAMES = Map.of("10.0.0.1", "fish.com", "10.0.0.2", "google.com");
+  private final AtomicInteger lookups = new AtomicInteger();
+  private HostnameResolverService hostnameResolver;
   private PacketTransformerService underTest;
   private IpV4Packet pcap4jIpPacket;
   private TcpPacket pcap4jTCPacket;
@@ -32,9 +49,15 @@ class PacketTransformerServiceTest {
 
   @BeforeEach
   void setUp() throws UnknownHostException {
-    underTest = new PacketTransformerService();
-    dstAddr = InetAddress.getByName("fish.com");
-    srcAddr = InetAddress.getByName("google.com");
+    //the lookup is stubbed so the test neither goes to the network nor shares the application's resolver
+    hostnameResolver = new HostnameResolverService(2, Integer.MAX_VALUE, 100, Duration.ofSeconds(60),
+      Duration.ofSeconds(5), addr -> {
+        lookups.incrementAndGet();
+        return HOSTNAMES.get(addr.getHostAddress());
+      }, System::nanoTime);
+    underTest = new PacketTransformerService(hostnameResolver);
+    dstAddr = InetAddress.getByAddress("fish.com", new byte[] {10, 0, 0, 1});
+    srcAddr = InetAddress.getByAddress("google.com", new byte[] {10, 0, 0, 2});
     pcap4jTCPacket = new TcpPacket.Builder()
       .ack(true)
       .psh(true)
@@ -54,7 +77,7 @@ class PacketTransformerServiceTest {
       .tos((IpV4Packet.IpV4Tos) () -> (byte) 0)
       .build();
     CaptureData.getInstance().clear();
-    PacketTransformerService.getPcapCaptureData().clear();
+    PacketTransformerService.clearPcapCaptureData();
   }
 
   @Test
@@ -101,21 +124,29 @@ class PacketTransformerServiceTest {
   }
 
   @Test
-  void transformCapturedPackets() {
+  void fromPackets_whenReadFromFile_assertAddedToCapture() {
+    //the packet goes through the same single pass a file is read with
     var timestamp = Timestamp.from(Instant.now());
-    underTest.storePcap4jPackets(pcap4jIpPacket, pcap4jTCPacket, timestamp);
+    var ipPacket = new IpV4Packet.Builder(pcap4jIpPacket)
+      .payloadBuilder(new TcpPacket.Builder(pcap4jTCPacket))
+      .build();
+    var handle = mock(PcapHandle.class);
+    when(handle.getTimestamp()).thenReturn(timestamp);
 
-    underTest.transformCapturedPackets();
+    new FilePacketListener(underTest, handle, CaptureData.getInstance(), FiltersForm.getInstance(), bytesRead -> {})
+      .gotPacket(ipPacket);
 
     var result = CaptureData.getInstance();
 
     assertThat(result.getPackets().getPackets()).hasSize(1);
 
     assertThat(result.getTcpConnectionsEstablished()).isEqualTo(1);
-    assertThat(result.getResolvedHostnames())
-      .contains(
-        entry(srcAddr.getHostAddress(), "google.com"),
-        entry(dstAddr.getHostAddress(), "fish.com"));
+    //both addresses were sent to the resolver by the packet, asking again joins or reuses that lookup
+    assertThat(hostnameResolver.resolve(srcAddr)).succeedsWithin(Duration.ofSeconds(5)).isEqualTo("google.com");
+    assertThat(hostnameResolver.resolve(dstAddr)).succeedsWithin(Duration.ofSeconds(5)).isEqualTo("fish.com");
+    assertThat(lookups).hasValue(2);
+    assertThat(hostnameResolver.getCachedHostname(srcAddr.getHostAddress())).isEqualTo("google.com");
+    assertThat(hostnameResolver.getCachedHostname(dstAddr.getHostAddress())).isEqualTo("fish.com");
 
     assertThat(result.getTcpConnectionsWithStatus(Set.of(ConnectionStatus.UNKNOWN)))
       .containsExactly(result.getPackets().getPackets().get(0).getTcpConnection());
@@ -132,7 +163,7 @@ class PacketTransformerServiceTest {
         EasyTCPacket::getHeaderPayloadLength)
       .containsExactly(55L, 100L, true, IPprotocol.IPV4, 0, ".P", 20);
 
-    assertThat(result.getTcpConnectionMap().values())
+    assertThat(result.getTcpConnections())
       .extracting(TCPConnection::getConnectionStatus,
         TCPConnection::getConnectionAddresses,
         i -> i.getPacketContainer().getPackets(),
@@ -150,4 +181,123 @@ class PacketTransformerServiceTest {
         null));
 
   }
-}
\ No newline at end of file
+
+  private EasyTCPacket decoded(boolean fromClient, long seq, long ack, int payloadLength, TCPFlag... flags)
+    throws UnknownHostException {
+    var client = InetAddress.getByName("192.168.0.2");
+    var server = InetAddress.getByName("10.0.0.1");
+    var flagList = List.of(flags);
+    var packet = new EasyTCPacket();
+    packet.setiPprotocol(IPprotocol.IPV4);
+    packet.setSequenceNumber(seq);
+    packet.setAckNumber(ack);
+    packet.setDataPayloadLength(payloadLength);
+    packet.setTcpFlagBits(EasyTCPacket.toFlagBits(false, flagList.contains(TCPFlag.ACK), false,
+      flagList.contains(TCPFlag.RST), flagList.contains(TCPFlag.SYN), flagList.contains(TCPFlag.FIN)));
+    packet.setTimestamp(Timestamp.from(Instant.now()));
+    return fromClient
+      ? underTest.fromDecodedPacket(packet, client, 50000, server, 80, CaptureData.getInstance(), FiltersForm.getInstance())
+      : underTest.fromDecodedPacket(packet, server, 80, client, 50000, CaptureData.getInstance(), FiltersForm.getInstance());
+  }
+
+  @Test
+  void fromDecodedPacket_followsConnectionThroughHandshakeAndClose() throws UnknownHostException {
+    var syn = decoded(true, 1000, 0, 0, TCPFlag.SYN);
+    var connection = syn.getTcpConnection();
+    assertThat(syn.getOutgoingPacket()).isTrue();
+    assertThat(connection.getConnectionStatus()).isEqualTo(ConnectionStatus.SYN_SENT);
+
+    var synAck = decoded(false, 5000, 1001, 0, TCPFlag.SYN, TCPFlag.ACK);
+    assertThat(synAck.getOutgoingPacket()).isFalse();
+    assertThat(synAck.getTcpConnection()).isSameAs(connection);
+    assertThat(connection.getConnectionStatus()).isEqualTo(ConnectionStatus.SYN_RECEIVED);
+
+    decoded(true, 1001, 5001, 0, TCPFlag.ACK);
+    decoded(true, 1001, 5001, 100, TCPFlag.ACK);
+    decoded(false, 5001, 1101, 0, TCPFlag.ACK);
+    assertThat(connection.getConnectionStatus()).isEqualTo(ConnectionStatus.ESTABLISHED);
+
+    decoded(true, 1101, 5001, 0, TCPFlag.FIN, TCPFlag.ACK);
+    assertThat(connection.getConnectionStatus()).isEqualTo(ConnectionStatus.FIN_WAIT_1);
+    decoded(false, 5001, 1102, 0, TCPFlag.ACK);
+    assertThat(connection.getConnectionStatus()).isEqualTo(ConnectionStatus.FIN_WAIT_2);
+    decoded(false, 5001, 1102, 0, TCPFlag.FIN, TCPFlag.ACK);
+    decoded(true, 1102, 5002, 0, TCPFlag.ACK);
+    assertThat(connection.getConnectionStatus()).isEqualTo(ConnectionStatus.TIME_WAIT);
+
+    var tracking = connection.getTracking();
+    assertThat(tracking.getDirection(true).getInitialSequenceNumber()).isEqualTo(1000L);
+    assertThat(tracking.getDirection(false).getInitialSequenceNumber()).isEqualTo(5000L);
+    assertThat(tracking.getDirection(true).isFinOutstanding(tracking.getDirection(false))).isFalse();
+    assertThat(connection.getPacketContainer().getPackets()).hasSize(9);
+  }
+
+  @Test
+  void fromDecodedPacket_whenConnectionsSetUpInParallel_createsEachConnectionOnce() throws Exception {
+    var threads = 4;
+    var connectionCount = 50;
+    var packetsPerConnectionPerThread = 20;
+    var server = InetAddress.getByName("10.0.0.1");
+    var client = InetAddress.getByName("192.168.0.2");
+    var executor = Executors.newFixedThreadPool(threads);
+    var start = new CountDownLatch(1);
+    try {
+      var tasks = new ArrayList<Future<?>>();
+      for (int thread = 0; thread < threads; thread++) {
+        tasks.add(executor.submit(() -> {
+          start.await();
+          //every thread sends packets on every connection, so they race to create them
+          for (int i = 0; i < packetsPerConnectionPerThread; i++) {
+            for (int port = 0; port < connectionCount; port++) {
+              var packet = new EasyTCPacket();
+              packet.setiPprotocol(IPprotocol.IPV4);
+              packet.setTcpFlagBits(EasyTCPacket.toFlagBits(false, true, false, false, false, false));
+              packet.setTimestamp(Timestamp.from(Instant.now()));
+              underTest.fromDecodedPacket(packet, client, 50000 + port, server, 80,
+                CaptureData.getInstance(), FiltersForm.getInstance());
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (var task : tasks) {
+        task.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    var connections = CaptureData.getInstance().getTcpConnections();
+    assertThat(connections).hasSize(connectionCount);
+    assertThat(connections)
+      .allSatisfy(connection -> assertThat(connection.getPacketContainer().getPackets())
+        .hasSize(threads * packetsPerConnectionPerThread)
+        .allSatisfy(packet -> assertThat(packet.getTcpConnection()).isSameAs(connection)));
+  }
+
+  @Test
+  void fromPackets_whenGeneratedTraffic_followsEveryConnectionUntilClosed() {
+    //the generated addresses are never looked up, so they do not fill the resolver used by other tests
+    var underTest = new PacketTransformerService(mock(HostnameResolverService.class));
+    var captureData = CaptureData.getInstance();
+    var generator = new TrafficGenerator().seed(7).connections(300).retransmissionRate(0.05).resetShare(0);
+    var packetCount = 0;
+
+    for (var packet : generator) {
+      var ipPacket = packet.ipPacket();
+      var result = underTest.fromPackets(ipPacket, ipPacket.get(TcpPacket.class), packet.timestamp(),
+        captureData, FiltersForm.getInstance());
+      captureData.getPackets().addPacketToContainer(result);
+      packetCount++;
+      //the clients are on a private network, so their packets are the outgoing ones
+      assertThat(result.getOutgoingPacket()).isEqualTo(packet.fromClient());
+    }
+
+    assertThat(captureData.getPackets().getPackets()).hasSize(packetCount);
+    assertThat(captureData.getTcpConnections())
+      .hasSize(300)
+      .allSatisfy(connection -> assertThat(connection.getConnectionStatus())
+        .isIn(ConnectionStatus.TIME_WAIT, ConnectionStatus.CLOSED));
+  }
+}
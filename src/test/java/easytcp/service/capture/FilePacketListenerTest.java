@@ -1,6 +1,9 @@
 package easytcp.service.capture;
 
 import easytcp.TestUtils;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.EasyTCPacket;
 import easytcp.service.PacketTransformerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,7 +14,10 @@ import org.pcap4j.core.PcapHandle;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -27,22 +33,35 @@ class FilePacketListenerTest {
   @Mock
   private PacketTransformerService packetTransformerService;
 
+  @Mock
+  private FiltersForm filtersForm;
+
+  private final List<Long> progress = new ArrayList<>();
 
   @BeforeEach
   void setUp() {
-    filePacketListener = new FilePacketListener(packetTransformerService, handle);
+    CaptureData.getInstance().clear();
+    filePacketListener = new FilePacketListener(
+      packetTransformerService, handle, CaptureData.getInstance(), filtersForm, progress::add);
   }
 
   @Test
   void gotPacket() throws Exception{
-    //tests that the listener correctly passes the packets to the transformer service
+    //tests that the listener correctly passes the packets to the transformer service and stores the result
     var tcpPacket = TestUtils.createPcap4jTcpPacketBuilder();
     var ipPacket = TestUtils.createPcap4Packet(tcpPacket);
     var timestamp = Timestamp.from(Instant.now());
+    var transformedPacket = new EasyTCPacket();
     when(handle.getTimestamp()).thenReturn(timestamp);
+    when(packetTransformerService.fromPackets(
+      eq(ipPacket), eq(tcpPacket.build()), eq(timestamp), eq(CaptureData.getInstance()), eq(filtersForm)))
+      .thenReturn(transformedPacket);
     filePacketListener.gotPacket(ipPacket);
 
-    verify(packetTransformerService)
-      .storePcap4jPackets(eq(ipPacket), eq(tcpPacket.build()), eq(timestamp));
+    assertThat(CaptureData.getInstance().getPackets().getPackets())
+      .containsExactly(transformedPacket);
+    assertThat(filePacketListener.getPacketsRead()).isEqualTo(1);
+    assertThat(progress)
+      .containsExactly((long) FilePacketListener.RECORD_HEADER_LENGTH + ipPacket.length());
   }
-}
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ import easytcp.model.application.FiltersForm;
 import easytcp.service.PacketDisplayService;
 import easytcp.service.ServiceProvider;
 import easytcp.service.capture.LiveCaptureService;
+import easytcp.view.PacketLogTableModel;
 import easytcp.view.options.CaptureDescriptionPanel;
 import easytcp.view.options.MiddleRow;
 import easytcp.view.options.OptionsPanel;
@@ -19,8 +20,6 @@ import org.pcap4j.core.NotOpenException;
 import org.pcap4j.core.PcapNativeException;
 import org.pcap4j.core.Pcaps;
 
-import javax.swing.*;
-
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -45,7 +44,7 @@ public class LiveCaptureServiceTest {
     var networkInterface = Pcaps.findAllDevs().get(0);
     var optionsPanel = mock(OptionsPanel.class);
     var result = liveCaptureService.startCapture(
-        networkInterface, filtersForm, new JTextPane(), optionsPanel);
+        networkInterface, filtersForm, new PacketLogTableModel(packetDisplayService), optionsPanel);
     assertThat(result.isOpen()).isTrue();
     var appStatus = ApplicationStatus.getStatus();
 
@@ -57,8 +56,9 @@ public class LiveCaptureServiceTest {
   }
 
   @Test
-  public void setLogTextPane_whenEmptyCaptureData() {
-    var textPane = new JTextPane();
+  public void updatePacketLog_whenEmptyCaptureData() {
+    captureData.clear();
+    var packetLogModel = new PacketLogTableModel(packetDisplayService);
     var optionsPanel = mock(OptionsPanel.class);
 
     var mr = mock(MiddleRow.class);
@@ -67,23 +67,11 @@ public class LiveCaptureServiceTest {
     when(optionsPanel.getMiddleRow()).thenReturn(mr);
     when(optionsPanel.getCaptureDescriptionPanel()).thenReturn(cap);
 
-    LiveCaptureService.setLogTextPane(filtersForm, textPane, captureData, packetDisplayService, optionsPanel);
-
-    assertThat(textPane.getText())
-      .isEqualToIgnoringWhitespace("""
-        <html>
-          <head>
+    LiveCaptureService.updatePacketLog(filtersForm, packetLogModel, captureData, optionsPanel);
 
-          </head>
-          <body>
-            <p style="margin-top: 0">
-              
-            </p>
-          </body>
-        </html>
-        """);
+    assertThat(packetLogModel.getRowCount()).isZero();
 
     verify(mr).setConnectionStatusLabel(captureData);
     verify(cap).updateCaptureStats(captureData);
   }
-}
\ No newline at end of file
+}
@@ -5,9 +5,7 @@ import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
 import easytcp.model.packet.EasyTCPacket;
-import easytcp.service.PacketDisplayService;
 import easytcp.service.PacketTransformerService;
-import easytcp.view.options.OptionsPanel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,9 +13,9 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.pcap4j.core.PcapHandle;
 
-import javax.swing.*;
 import java.sql.Timestamp;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -32,18 +30,14 @@ class LivePacketListenerTest {
   private PacketTransformerService packetTransformerService;
   @Mock
   private FiltersForm filtersForm;
-  private AtomicBoolean isSettingForm = new AtomicBoolean(false);
-  @Mock
-  private JTextPane textPane;
-  @Mock
-  private PacketDisplayService packetDisplayService;
-  @Mock
-  private OptionsPanel optionsPanel;
+  private CapturePipeline capturePipeline;
+  private final List<EasyTCPacket> addedPackets = new CopyOnWriteArrayList<>();
 
   @BeforeEach
   void setUp() {
-    livePacketListener = new LivePacketListener(handle, packetTransformerService, CaptureData.getInstance(), filtersForm,
-      isSettingForm, textPane, packetDisplayService, optionsPanel);
+    capturePipeline = new CapturePipeline(
+      packetTransformerService, CaptureData.getInstance(), filtersForm, addedPackets::add, 2);
+    livePacketListener = new LivePacketListener(handle, capturePipeline);
     CaptureData.getInstance().clear();
   }
 
@@ -58,9 +52,14 @@ class LivePacketListenerTest {
       .thenReturn(transformedPacket);
     when(handle.getTimestamp()).thenReturn(mock(Timestamp.class));
     livePacketListener.gotPacket(pcap4jIpPacket);
+    //waits for the pipeline to finish with the packet
+    capturePipeline.close();
 
     assertThat(CaptureData.getInstance().getPackets().getPackets())
       .containsExactly(transformedPacket);
+    assertThat(addedPackets).containsExactly(transformedPacket);
+    assertThat(capturePipeline.getProcessedCount()).isEqualTo(1);
+    assertThat(capturePipeline.getDroppedCount()).isZero();
 
     verify(packetTransformerService).fromPackets(
       eq(pcap4jIpPacket), eq(pcap4jTCPacketBuilder.build()), any(), eq(CaptureData.getInstance()), eq(filtersForm));
@@ -0,0 +1,194 @@
+package easytcp.service.capture;
+
+import easytcp.model.IPprotocol;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.service.PacketTransformerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedPcapFileReaderTest {
+  private final MappedPcapFileReader underTest = new MappedPcapFileReader(new PacketTransformerService());
+  private final CaptureData captureData = CaptureData.getInstance();
+  private final FiltersForm filtersForm = FiltersForm.getInstance();
+
+  @TempDir
+  Path tempDir;
+
+  @BeforeEach
+  void setUp() {
+    captureData.clear();
+    filtersForm.restoreDefaults();
+    filtersForm.setShowIpv6(true);
+  }
+
+  @Test
+  void readFile_whenMicrosecondPcapLittleEndian() throws IOException {
+    var file = writePcap(ByteOrder.LITTLE_ENDIAN, false, List.of(ipv4Frame(100, 0x02, 0, false)));
+
+    var packetsRead = underTest.readFile(file, captureData, filtersForm, bytes -> {});
+
+    assertThat(packetsRead).isEqualTo(1);
+    assertThat(captureData.getPackets().getPackets().get(0))
+      .extracting(EasyTCPacket::getiPprotocol,
+        EasyTCPacket::getSequenceNumber,
+        EasyTCPacket::getAckNumber,
+        EasyTCPacket::getWindowSize,
+        EasyTCPacket::getTcpFlagsDisplayable,
+        EasyTCPacket::getHeaderPayloadLength,
+        EasyTCPacket::getDataPayloadLength)
+      .containsExactly(IPprotocol.IPV4, 100L, 77L, 1000, "S", 20, 0);
+    var packet = captureData.getPackets().getPackets().get(0);
+    assertThat(packet.getSourceAddress().getAlphanumericalAddress()).isEqualTo("192.168.1.2");
+    assertThat(packet.getSourceAddress().getPort()).isEqualTo(5000);
+    assertThat(packet.getDestinationAddress().getAlphanumericalAddress()).isEqualTo("10.0.0.1");
+    assertThat(packet.getDestinationAddress().getPort()).isEqualTo(80);
+    assertThat(packet.getTimestamp().getTime()).isEqualTo(1_000_123L);
+    assertThat(packet.getTimestamp().getNanos()).isEqualTo(123_456_000);
+  }
+
+  @Test
+  void readFile_whenNanosecondPcapWithVlanAndIpv6() throws IOException {
+    var file = writePcap(ByteOrder.BIG_ENDIAN, true,
+      List.of(ipv4Frame(0xFFFFFFF0, 0x18, 10, true), ipv6Frame(42)));
+
+    underTest.readFile(file, captureData, filtersForm, bytes -> {});
+
+    var packets = captureData.getPackets().getPackets();
+    assertThat(packets).hasSize(2);
+    //ethernet padding after the IP packet is not counted as payload
+    assertThat(packets.get(0))
+      .extracting(EasyTCPacket::getSequenceNumber, EasyTCPacket::getTcpFlagsDisplayable, EasyTCPacket::getDataPayloadLength)
+      .containsExactly(4294967280L, ".P", 10);
+    assertThat(packets.get(0).getTimestamp().getNanos()).isEqualTo(123_456_789);
+    assertThat(packets.get(1))
+      .extracting(EasyTCPacket::getiPprotocol, EasyTCPacket::getSequenceNumber)
+      .containsExactly(IPprotocol.IPV6, 42L);
+    assertThat(packets.get(1).getSourceAddress().getPort()).isEqualTo(443);
+  }
+
+  @Test
+  void readFile_whenPcapngWithNanosecondResolution() throws IOException {
+    var file = writePcapng(List.of(ipv4Frame(1, 0x02, 0, false), ipv4Frame(2, 0x10, 0, false)));
+    var progress = new long[1];
+
+    underTest.readFile(file, captureData, filtersForm, bytes -> progress[0] = bytes);
+
+    var packets = captureData.getPackets().getPackets();
+    assertThat(packets).extracting(EasyTCPacket::getSequenceNumber).containsExactly(1L, 2L);
+    assertThat(packets.get(0).getTimestamp().getTime()).isEqualTo(2_000_000L);
+    assertThat(packets.get(0).getTimestamp().getNanos()).isEqualTo(5);
+    assertThat(packets.get(1).getTimestamp().getNanos()).isEqualTo(1005);
+    assertThat(progress[0]).isEqualTo(file.length());
+  }
+
+  @Test
+  void readFile_whenIpv6Hidden_assertOnlyIpv4Read() throws IOException {
+    filtersForm.setShowIpv6(false);
+    var file = writePcap(ByteOrder.LITTLE_ENDIAN, false, List.of(ipv4Frame(1, 0x02, 0, false), ipv6Frame(2)));
+
+    assertThat(underTest.readFile(file, captureData, filtersForm, bytes -> {})).isEqualTo(1);
+  }
+
+  @Test
+  void readFile_whenNotACaptureFile() throws IOException {
+    var file = tempDir.resolve("notACapture").toFile();
+    Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+    assertThatThrownBy(() -> underTest.readFile(file, captureData, filtersForm, bytes -> {}))
+      .isInstanceOf(IOException.class);
+  }
+
+  private byte[] ipv4Frame(int sequenceNumber, int flags, int payloadLength, boolean vlanTagged) {
+    //6 bytes of ethernet padding are added after the packet
+    var frame = ByteBuffer.allocate(14 + (vlanTagged ? 4 : 0) + 40 + payloadLength + 6);
+    frame.put(new byte[12]);
+    if (vlanTagged) {
+      frame.putShort((short) 0x8100).putShort((short) 5);
+    }
+    frame.putShort((short) 0x0800);
+    frame.put((byte) 0x45).put((byte) 0).putShort((short) (40 + payloadLength)).putInt(0)
+      .put((byte) 64).put((byte) 6).putShort((short) 0)
+      .put(new byte[] {(byte) 192, (byte) 168, 1, 2}).put(new byte[] {10, 0, 0, 1});
+    frame.putShort((short) 5000).putShort((short) 80).putInt(sequenceNumber).putInt(77)
+      .put((byte) 0x50).put((byte) flags).putShort((short) 1000).putInt(0);
+    return frame.array();
+  }
+
+  private byte[] ipv6Frame(int sequenceNumber) {
+    var frame = ByteBuffer.allocate(14 + 40 + 8 + 20);
+    frame.put(new byte[12]).putShort((short) 0x86DD);
+    //a hop by hop options header comes before the TCP header
+    frame.putInt(0x60000000).putShort((short) 28).put((byte) 0).put((byte) 64);
+    var source = new byte[16];
+    source[15] = 1;
+    var destination = new byte[16];
+    destination[0] = (byte) 0xfe;
+    destination[15] = 2;
+    frame.put(source).put(destination);
+    frame.put((byte) 6).put((byte) 0).put(new byte[6]);
+    frame.putShort((short) 443).putShort((short) 6000).putInt(sequenceNumber).putInt(0)
+      .put((byte) 0x50).put((byte) 0x02).putShort((short) 100).putInt(0);
+    return frame.array();
+  }
+
+  private File writePcap(ByteOrder order, boolean nanosecondResolution, List<byte[]> frames) throws IOException {
+    var out = new ByteArrayOutputStream();
+    var header = ByteBuffer.allocate(24).order(order);
+    header.putInt(nanosecondResolution ? 0xa1b23c4d : 0xa1b2c3d4).putShort((short) 2).putShort((short) 4)
+      .putInt(0).putInt(0).putInt(65535).putInt(1);
+    out.write(header.array());
+    for (int i = 0; i < frames.size(); i++) {
+      var frame = frames.get(i);
+      var record = ByteBuffer.allocate(16).order(order);
+      record.putInt(1000 + i).putInt(nanosecondResolution ? 123_456_789 : 123_456).putInt(frame.length).putInt(frame.length);
+      out.write(record.array());
+      out.write(frame);
+    }
+    var file = tempDir.resolve("capture.pcap").toFile();
+    Files.write(file.toPath(), out.toByteArray());
+    return file;
+  }
+
+  private File writePcapng(List<byte[]> frames) throws IOException {
+    var order = ByteOrder.LITTLE_ENDIAN;
+    var out = new ByteArrayOutputStream();
+    var sectionHeader = ByteBuffer.allocate(28).order(order);
+    sectionHeader.putInt(0x0A0D0D0A).putInt(28).putInt(0x1A2B3C4D).putShort((short) 1).putShort((short) 0)
+      .putLong(-1).putInt(28);
+    out.write(sectionHeader.array());
+    //an ethernet interface with a timestamp resolution of nanoseconds
+    var interfaceDescription = ByteBuffer.allocate(32).order(order);
+    interfaceDescription.putInt(1).putInt(32).putShort((short) 1).putShort((short) 0).putInt(65535)
+      .putShort((short) 9).putShort((short) 1).put((byte) 9).put(new byte[3])
+      .putShort((short) 0).putShort((short) 0).putInt(32);
+    out.write(interfaceDescription.array());
+    var timestamp = 2000L * 1_000_000_000L + 5;
+    for (var frame : frames) {
+      var padding = (4 - frame.length % 4) % 4;
+      var blockLength = 32 + frame.length + padding;
+      var block = ByteBuffer.allocate(blockLength).order(order);
+      block.putInt(6).putInt(blockLength).putInt(0).putInt((int) (timestamp >>> 32)).putInt((int) timestamp)
+        .putInt(frame.length).putInt(frame.length).put(frame).put(new byte[padding]).putInt(blockLength);
+      out.write(block.array());
+      timestamp += 1000;
+    }
+    var file = tempDir.resolve("capture.pcapng").toFile();
+    Files.write(file.toPath(), out.toByteArray());
+    return file;
+  }
+}
@@ -0,0 +1,123 @@
+package easytcp.service.capture;
+
+import easytcp.TestUtils;
+import easytcp.model.PacketStoreBackend;
+import easytcp.model.TCPFlag;
+import easytcp.model.application.ApplicationStatus;
+import easytcp.model.application.CaptureData;
+import easytcp.model.packet.ConnectionStatus;
+import easytcp.model.packet.TCPConnection;
+import easytcp.service.PacketTransformerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PacketEvictionServiceTest {
+  private static final int PACKETS_PER_CONNECTION = 10;
+  private final PacketTransformerService packetTransformerService = mock(PacketTransformerService.class);
+  private CaptureData captureData;
+  private PacketEvictionService underTest;
+  private TCPConnection closedConnection;
+  private TCPConnection quietConnection;
+  private TCPConnection busyConnection;
+
+  @BeforeEach
+  void setUp() {
+    captureData = CaptureData.getInstance();
+    captureData.clear();
+    underTest = new PacketEvictionService(packetTransformerService, captureData);
+    //the closed connection had the most recent packets, but is over so goes first
+    closedConnection = addConnection("1.1.1.1", 2_000, ConnectionStatus.CLOSED);
+    quietConnection = addConnection("2.2.2.2", 0, ConnectionStatus.ESTABLISHED);
+    busyConnection = addConnection("3.3.3.3", 1_000, ConnectionStatus.ESTABLISHED);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ApplicationStatus.getStatus().setPacketStoreBackend(PacketStoreBackend.HEAP);
+    captureData.clear();
+  }
+
+  private TCPConnection addConnection(String address, long startMillis, ConnectionStatus status) {
+    var connection = captureData.getOrAddTcpConnection(
+      TestUtils.createAddress(address, address), TestUtils.createAddress("9.9.9.9", "server"));
+    connection.setConnectionStatus(status);
+    for (int i = 0; i < PACKETS_PER_CONNECTION; i++) {
+      var packet = TestUtils.createEasyTcpDataPacket(connection, i % 2 == 0, (long) i, (long) i, 10, List.of(TCPFlag.ACK));
+      packet.setTimestamp(Timestamp.from(Instant.ofEpochMilli(startMillis + i)));
+      connection.getPacketContainer().addPacketToContainer(packet);
+      captureData.getPackets().addPacketToContainer(packet);
+    }
+    return connection;
+  }
+
+  @Test
+  void enforce_whenWithinBudget_assertNothingEvicted() {
+    var estimate = underTest.estimateBytes();
+
+    assertThat(underTest.enforce(estimate)).isZero();
+    assertThat(underTest.enforce(0)).isZero();
+    assertThat(captureData.getPackets().getPackets()).hasSize(3 * PACKETS_PER_CONNECTION);
+    assertThat(captureData.getEvictedPackets()).isZero();
+    verify(packetTransformerService, never()).evictPcap4jPacketsOf(anySet());
+  }
+
+  @Test
+  void enforce_whenOverBudget_assertFinishedConnectionEvictedFirst() {
+    var budget = underTest.estimateBytes() - PacketEvictionService.ESTIMATED_PACKET_BYTES;
+
+    var evicted = underTest.enforce(budget);
+
+    assertThat(evicted).isEqualTo(PACKETS_PER_CONNECTION);
+    assertThat(closedConnection.getPacketContainer().getPackets()).isEmpty();
+    assertThat(quietConnection.getPacketContainer().getPackets()).hasSize(PACKETS_PER_CONNECTION);
+    assertThat(busyConnection.getPacketContainer().getPackets()).hasSize(PACKETS_PER_CONNECTION);
+    assertThat(captureData.getPackets().getPackets())
+      .hasSize(2 * PACKETS_PER_CONNECTION)
+      .noneMatch(packet -> packet.getTcpConnection() == closedConnection);
+    //the connection is still listed with what it sent
+    assertThat(captureData.getTcpConnections()).contains(closedConnection);
+    assertThat(closedConnection.getPacketContainer().getStatistics().getPacketCount())
+      .isEqualTo(PACKETS_PER_CONNECTION);
+    assertThat(captureData.getEvictedPackets()).isEqualTo(PACKETS_PER_CONNECTION);
+    assertThat(captureData.getEvictedConnections()).isEqualTo(1);
+    verify(packetTransformerService).evictPcap4jPacketsOf(anySet());
+  }
+
+  @Test
+  void enforce_whenFarOverBudget_assertQuietestConnectionsEvicted() {
+    var budget = underTest.estimateBytes() / 2;
+
+    underTest.enforce(budget);
+
+    assertThat(closedConnection.getPacketContainer().getPackets()).isEmpty();
+    assertThat(quietConnection.getPacketContainer().getPackets()).isEmpty();
+    assertThat(busyConnection.getPacketContainer().getPackets()).hasSize(PACKETS_PER_CONNECTION);
+    assertThat(underTest.estimateBytes()).isLessThanOrEqualTo(budget);
+    assertThat(captureData.getEvictedConnections()).isEqualTo(2);
+  }
+
+  @Test
+  void enforce_whenOffHeapColumnsFillBudget_assertNothingEvicted() {
+    ApplicationStatus.getStatus().setPacketStoreBackend(PacketStoreBackend.OFF_HEAP_COLUMNAR);
+    captureData.clear();
+    var connection = addConnection("4.4.4.4", 0, ConnectionStatus.CLOSED);
+    var offHeapBytes = captureData.getPackets().getOffHeapBytes();
+
+    assertThat(offHeapBytes).isPositive();
+    assertThat(underTest.estimateBytes()).isGreaterThan(offHeapBytes);
+    assertThat(underTest.enforce(offHeapBytes)).isZero();
+    assertThat(connection.getPacketContainer().getPackets()).hasSize(PACKETS_PER_CONNECTION);
+    assertThat(captureData.getEvictedPackets()).isZero();
+  }
+}
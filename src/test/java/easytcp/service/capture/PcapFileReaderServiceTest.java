@@ -4,12 +4,12 @@ import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
 import easytcp.service.PacketTransformerService;
+import easytcp.view.PacketLogTableModel;
 import easytcp.view.options.OptionsPanel;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import javax.swing.*;
 import java.io.File;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -22,13 +22,13 @@ class PcapFileReaderServiceTest {
   @Test
   void readPacketFile_successfullyRead() throws InterruptedException {
     CaptureData.getInstance().clear();
-    PacketTransformerService.getPcapCaptureData().clear();
+    PacketTransformerService.clearPcapCaptureData();
     FiltersForm.getInstance().restoreDefaults();
     var file = new File("src/test/resources/testPcapFile");
     var filters = FiltersForm.getInstance();
-    var txtPane = mock(JTextPane.class);
+    var packetLogModel = mock(PacketLogTableModel.class);
     var optionsPanel = mock(OptionsPanel.class);
-    var captureData = pcapFileReaderService.readPacketFile(file, filters, txtPane, optionsPanel);
+    var captureData = pcapFileReaderService.readPacketFile(file, filters, packetLogModel, optionsPanel);
 
     Thread.sleep(500);
 
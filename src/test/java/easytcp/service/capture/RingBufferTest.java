@@ -0,0 +1,78 @@
+package easytcp.service.capture;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferTest {
+
+  @Test
+  void offer_whenFull_assertRejected() {
+    var ringBuffer = new RingBuffer<Integer>(4);
+
+    for (int i = 0; i < 4; i++) {
+      assertThat(ringBuffer.offer(i)).isTrue();
+    }
+    assertThat(ringBuffer.offer(4)).isFalse();
+    assertThat(ringBuffer.size()).isEqualTo(4);
+
+    assertThat(ringBuffer.poll()).isEqualTo(0);
+    assertThat(ringBuffer.offer(4)).isTrue();
+  }
+
+  @Test
+  void poll_whenEmpty_assertNull() {
+    var ringBuffer = new RingBuffer<Integer>(4);
+
+    assertThat(ringBuffer.poll()).isNull();
+    assertThat(ringBuffer.poll(1, TimeUnit.MILLISECONDS)).isNull();
+    assertThat(ringBuffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  void constructor_assertCapacityRoundedToPowerOfTwo() {
+    assertThat(new RingBuffer<Integer>(5).capacity()).isEqualTo(8);
+    assertThat(new RingBuffer<Integer>(8).capacity()).isEqualTo(8);
+  }
+
+  @Test
+  void offer_whenManyProducers_assertEachItemConsumedOnceInProducerOrder() throws Exception {
+    var ringBuffer = new RingBuffer<long[]>(64);
+    var producers = 4;
+    var itemsPerProducer = 10_000;
+    var executor = Executors.newFixedThreadPool(producers);
+    for (int p = 0; p < producers; p++) {
+      final var producer = p;
+      executor.execute(() -> {
+        for (int i = 0; i < itemsPerProducer; i++) {
+          while (!ringBuffer.offer(new long[] {producer, i})) {
+            Thread.onSpinWait();
+          }
+        }
+      });
+    }
+    var lastSeen = new ArrayList<Long>();
+    for (int p = 0; p < producers; p++) {
+      lastSeen.add(-1L);
+    }
+    var consumed = 0;
+    while (consumed < producers * itemsPerProducer) {
+      var item = ringBuffer.poll(100, TimeUnit.MILLISECONDS);
+      if (item != null) {
+        var producer = (int) item[0];
+        //items from a single producer arrive in the order they were offered
+        assertThat(item[1]).isEqualTo(lastSeen.get(producer) + 1);
+        lastSeen.set(producer, item[1]);
+        consumed++;
+      }
+    }
+    executor.shutdown();
+
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(ringBuffer.isEmpty()).isTrue();
+  }
+}
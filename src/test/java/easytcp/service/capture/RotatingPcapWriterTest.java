@@ -0,0 +1,128 @@
+package easytcp.service.capture;
+
+import easytcp.TrafficGenerator;
+import easytcp.model.CaptureFileSettings;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.service.PacketTransformerService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RotatingPcapWriterTest {
+  private static final int LINKTYPE_ETHERNET = 1;
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void offer_whenSizeLimitReached_assertOldestFilesOverwritten() throws Exception {
+    var settings = new CaptureFileSettings(tempDir, "ring", 10_000, Duration.ZERO, 3);
+    var packets = new TrafficGenerator().seed(1).connections(50).toList();
+
+    try (var writer = new RotatingPcapWriter(settings, LINKTYPE_ETHERNET, 65536)) {
+      packets.forEach(packet -> writer.offer(packet.toFrame(), packet.toFrame().length, packet.timestamp()));
+      var files = writer.flush();
+
+      assertThat(writer.getWrittenCount()).isEqualTo(packets.size());
+      assertThat(writer.getDroppedCount()).isZero();
+      assertThat(files).hasSize(3);
+      assertThat(files).allSatisfy(file -> assertThat(file.length()).isLessThanOrEqualTo(10_000));
+      assertThat(tempDir.resolve("ring0.pcap")).exists();
+      assertThat(tempDir.resolve("ring3.pcap")).doesNotExist();
+    }
+  }
+
+  @Test
+  void copyTo_thenRead() throws Exception {
+    var settings = new CaptureFileSettings(tempDir.resolve("ring"), "capture", 0, Duration.ofMinutes(1), 10);
+    var packets = new TrafficGenerator().seed(2).connections(20).toList();
+    var clock = new AtomicLong();
+    var saved = tempDir.resolve("saved.pcap");
+
+    try (var writer = new RotatingPcapWriter(settings, LINKTYPE_ETHERNET, 65536, clock::get)) {
+      for (int i = 0; i < packets.size(); i++) {
+        var packet = packets.get(i);
+        writer.offer(packet.toFrame(), packet.toFrame().length, packet.timestamp());
+        if (i == packets.size() / 2) {
+          //starts a second file for the rest of the packets
+          writer.flush();
+          clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        }
+      }
+      assertThat(writer.flush()).hasSize(2);
+      writer.copyTo(saved);
+    }
+
+    var captureData = CaptureData.getInstance();
+    captureData.clear();
+    var filtersForm = FiltersForm.getInstance();
+    filtersForm.restoreDefaults();
+    filtersForm.setShowIpv6(true);
+    var packetsRead = new MappedPcapFileReader(new PacketTransformerService())
+      .readFile(saved.toFile(), captureData, filtersForm, bytes -> {});
+
+    assertThat(packetsRead).isEqualTo(packets.size());
+    assertThat(captureData.getTcpConnectionsEstablished()).isEqualTo(20);
+  }
+
+  @Test
+  void copyTo_whenRotatingWhileCopying_assertEverySavedFileComplete() throws Exception {
+    var settings = new CaptureFileSettings(tempDir.resolve("ring"), "busy", 4_000, Duration.ZERO, 2);
+    var packets = new TrafficGenerator().seed(3).connections(200).toList();
+
+    try (var writer = new RotatingPcapWriter(settings, LINKTYPE_ETHERNET, 65536)) {
+      //the small files rotate all the time, overwriting the oldest while it is being saved if nothing stops it
+      var capture = new Thread(() -> {
+        for (int round = 0; round < 20; round++) {
+          packets.forEach(packet -> writer.offer(packet.toFrame(), packet.toFrame().length, packet.timestamp()));
+        }
+      });
+      capture.start();
+      for (int i = 0; i < 100; i++) {
+        var saved = tempDir.resolve("saved" + i + ".pcap");
+        writer.copyTo(saved);
+
+        assertThat(readRecordCount(saved)).as("records of " + saved).isNotNegative();
+      }
+      capture.join();
+    }
+  }
+
+  /* Walks the records of a pcap file, returning -1 when the last one does not end where the file does.
+   */
+  private static long readRecordCount(Path file) throws IOException {
+    var buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+    var position = 24;
+    var records = 0L;
+    while (position + 16 <= buffer.limit()) {
+      position += 16 + buffer.getInt(position + 8);
+      records++;
+    }
+    return position == buffer.limit() ? records : -1;
+  }
+
+  @Test
+  void offer_whenClosed_assertDropped() throws Exception {
+    var settings = new CaptureFileSettings(tempDir, "closed", 0, Duration.ZERO, 1);
+    var packet = new TrafficGenerator().connections(1).toList().get(0);
+    var writer = new RotatingPcapWriter(settings, LINKTYPE_ETHERNET, 65536);
+    writer.close();
+
+    assertThat(writer.offer(packet.toFrame(), 0, packet.timestamp())).isFalse();
+    assertThat(writer.getDroppedCount()).isEqualTo(1);
+    assertThat(Files.size(tempDir.resolve("closed0.pcap"))).isEqualTo(24);
+    assertThatThrownBy(() -> new CaptureFileSettings(tempDir, "none", 0, Duration.ZERO, 0))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
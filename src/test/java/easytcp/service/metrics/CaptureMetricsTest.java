@@ -0,0 +1,95 @@
+package easytcp.service.metrics;
+
+import easytcp.model.application.CaptureData;
+import easytcp.service.HostnameResolverService;
+import easytcp.service.capture.CapturePipeline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapStat;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CaptureMetricsTest {
+  private final AtomicLong clock = new AtomicLong();
+  private final HostnameResolverService hostnameResolverService = mock(HostnameResolverService.class);
+  private CaptureMetrics captureMetrics;
+
+  @BeforeEach
+  void setUp() {
+    var captureData = CaptureData.getInstance();
+    captureData.clear();
+    captureMetrics = new CaptureMetrics(hostnameResolverService, captureData, clock::get, () -> 64L * 1024 * 1024);
+  }
+
+  @Test
+  void getPacketsPerSecond_assertAveragedOverASecond() {
+    for (int i = 0; i < 500; i++) {
+      captureMetrics.recordTransform(2000);
+    }
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(captureMetrics.getPacketsPerSecond()).isZero();
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(captureMetrics.getPacketsPerSecond()).isEqualTo(500);
+    assertThat(captureMetrics.getPacketsTransformed()).isEqualTo(500);
+    assertThat(captureMetrics.getTransformLatencyP99()).isEqualTo(2000);
+  }
+
+  @Test
+  void startLiveCapture_assertKernelAndPipelineCountsRead() throws Exception {
+    captureMetrics.recordDecode(100);
+    var handle = mock(PcapHandle.class);
+    var stats = mock(PcapStat.class);
+    when(handle.isOpen()).thenReturn(true);
+    when(handle.getStats()).thenReturn(stats);
+    when(stats.getNumPacketsReceived()).thenReturn(1000L);
+    when(stats.getNumPacketsDropped()).thenReturn(10L);
+    var pipeline = mock(CapturePipeline.class);
+    when(pipeline.getDroppedCount()).thenReturn(3L);
+    when(pipeline.getQueuedCount()).thenReturn(42);
+    when(hostnameResolverService.getBacklog()).thenReturn(7);
+
+    captureMetrics.startLiveCapture(handle, pipeline);
+
+    assertThat(captureMetrics.getDecodeLatencyMax()).isZero();
+    assertThat(captureMetrics.getKernelPacketsReceived()).isEqualTo(1000);
+    assertThat(captureMetrics.getKernelPacketsDropped()).isEqualTo(10);
+    assertThat(captureMetrics.getPacketsDropped()).isEqualTo(3);
+    assertThat(captureMetrics.getQueueDepth()).isEqualTo(42);
+    assertThat(captureMetrics.getHostnameResolverBacklog()).isEqualTo(7);
+
+    //the last counts are kept once the capture is stopped
+    when(handle.isOpen()).thenReturn(false);
+    assertThat(captureMetrics.getKernelPacketsReceived()).isEqualTo(1000);
+  }
+
+  @Test
+  void getHeapBytesPerStoredPacket_whenNoPackets_assertZero() {
+    assertThat(captureMetrics.getStoredPackets()).isZero();
+    assertThat(captureMetrics.getHeapBytesPerStoredPacket()).isZero();
+    assertThat(captureMetrics.getHeapUsedBytes()).isEqualTo(64L * 1024 * 1024);
+  }
+
+  @Test
+  void register_assertReadableOverJmx() throws Exception {
+    var mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    var objectName = new ObjectName(CaptureMetrics.OBJECT_NAME);
+    if (mBeanServer.isRegistered(objectName)) {
+      mBeanServer.unregisterMBean(objectName);
+    }
+    captureMetrics.register();
+    captureMetrics.recordUiRefresh(TimeUnit.MILLISECONDS.toNanos(3));
+
+    assertThat(mBeanServer.isRegistered(objectName)).isTrue();
+    assertThat((Long) mBeanServer.getAttribute(objectName, "UiRefreshDurationMax")).isPositive();
+    mBeanServer.unregisterMBean(objectName);
+  }
+}
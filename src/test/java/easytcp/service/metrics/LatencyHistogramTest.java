@@ -0,0 +1,47 @@
+package easytcp.service.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+  @Test
+  void bucketOf_assertValueWithinBucketBounds() {
+    LongStream.of(0, 1, 3, 4, 5, 7, 8, 1000, 123_456_789, Long.MAX_VALUE).forEach(value -> {
+      var bucket = LatencyHistogram.bucketOf(value);
+      assertThat(LatencyHistogram.upperBoundOf(bucket)).isGreaterThanOrEqualTo(value);
+      assertThat(bucket == 0 || LatencyHistogram.upperBoundOf(bucket - 1) < value).isTrue();
+    });
+  }
+
+  @Test
+  void getPercentile_assertWithinAQuarterOfValue() {
+    var histogram = new LatencyHistogram();
+    for (long i = 1; i <= 10_000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(10_000);
+    assertThat(histogram.getMax()).isEqualTo(10_000_000);
+    assertThat(histogram.getMean()).isEqualTo(5_000_500);
+    assertThat(histogram.getPercentile(50)).isBetween(5_000_000L, 6_250_000L);
+    assertThat(histogram.getPercentile(99)).isBetween(9_900_000L, 10_000_000L);
+    assertThat(histogram.getPercentile(100)).isEqualTo(10_000_000);
+  }
+
+  @Test
+  void reset_assertEmpty() {
+    var histogram = new LatencyHistogram();
+    histogram.record(500);
+    histogram.record(-1);
+
+    histogram.reset();
+
+    assertThat(histogram.getCount()).isZero();
+    assertThat(histogram.getMax()).isZero();
+    assertThat(histogram.getPercentile(99)).isZero();
+  }
+}
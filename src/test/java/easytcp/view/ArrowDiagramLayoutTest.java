@@ -0,0 +1,132 @@
+package easytcp.view;
+
+import easytcp.TestUtils;
+import easytcp.model.TCPFlag;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.ConnectionStatus;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.TCPConnection;
+import easytcp.service.PacketDisplayService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ArrowDiagramLayoutTest {
+  private final FiltersForm filtersForm = FiltersForm.getInstance();
+  private PacketDisplayService packetDisplayService;
+  private ArrowDiagramLayout underTest;
+  private TCPConnection connection;
+
+  @BeforeEach
+  void setUp() {
+    filtersForm.restoreDefaults();
+    packetDisplayService = spy(new PacketDisplayService());
+    underTest = new ArrowDiagramLayout(packetDisplayService);
+    //contains 7 packets
+    connection = TestUtils.getConnectionWithHandshakeAndFin();
+  }
+
+  @AfterEach
+  void tearDown() {
+    filtersForm.restoreDefaults();
+  }
+
+  @Test
+  void update_laysOutEveryVisiblePacket() {
+    assertThat(underTest.update(connection, filtersForm)).isTrue();
+
+    var packets = connection.getPacketContainer().getPackets();
+    assertThat(underTest.size()).isEqualTo(7);
+    var first = underTest.get(0);
+    assertThat(first)
+      .extracting(ArrowDiagramLayout.Arrow::packet,
+        ArrowDiagramLayout.Arrow::outgoing,
+        ArrowDiagramLayout.Arrow::top,
+        ArrowDiagramLayout.Arrow::statusLabel)
+      .containsExactly(packets.get(0), true, ArrowDiagramLayout.INITIAL_VERTICAL_POSITION,
+        ConnectionStatus.SYN_SENT.getDisplayText());
+    assertThat(underTest.getLabels(0))
+      .extracting(ArrowDiagramLayout.Labels::segmentLabel, ArrowDiagramLayout.Labels::timestampLabel)
+      .containsExactly("Segment 1", "0.000000 (0.0000)");
+    assertThat(underTest.get(1).outgoing()).isFalse();
+    assertThat(underTest.get(1).statusLabel()).isNotNull();
+    assertThat(underTest.get(6).top())
+      .isEqualTo(ArrowDiagramLayout.INITIAL_VERTICAL_POSITION + 6 * ArrowDiagramLayout.ARROW_SPACING);
+    assertThat(underTest.indexOf(packets.get(3))).isEqualTo(3);
+    assertThat(connection.getPacketAttributes().size()).isEqualTo(7);
+  }
+
+  @Test
+  void update_whenNothingChanged_keepsLayout() {
+    underTest.update(connection, filtersForm);
+
+    assertThat(underTest.update(connection, filtersForm)).isFalse();
+    verify(packetDisplayService, times(7)).isVisible(any(), any());
+  }
+
+  @Test
+  void getLabels_formatsLabelsOnce() {
+    underTest.update(connection, filtersForm);
+
+    var labels = underTest.getLabels(2);
+
+    assertThat(underTest.getLabels(2)).isSameAs(labels);
+    assertThat(labels.segmentLabel()).isEqualTo("Segment 3");
+    verify(packetDisplayService, times(1)).getTcpFlagsForPacket(any(), any());
+  }
+
+  @Test
+  void update_whenPacketAdded_onlyLaysOutNewPacket() {
+    underTest.update(connection, filtersForm);
+    var packet = TestUtils.createEasyTcpDataPacket(connection, true, 46L, 6L, 0, List.of(TCPFlag.ACK));
+    packet.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:57.0"));
+    connection.getPacketContainer().addPacketToContainer(packet);
+
+    assertThat(underTest.update(connection, filtersForm)).isTrue();
+
+    assertThat(underTest.size()).isEqualTo(8);
+    assertThat(underTest.get(7).packet()).isEqualTo(packet);
+    assertThat(underTest.getLabels(7).segmentLabel()).isEqualTo("Segment 8");
+    verify(packetDisplayService, times(8)).isVisible(any(), any());
+  }
+
+  @Test
+  void update_whenFiltersChange_rebuildsLayout() {
+    underTest.update(connection, filtersForm);
+
+    filtersForm.setShowIpv4(false);
+
+    assertThat(underTest.update(connection, filtersForm)).isTrue();
+    assertThat(underTest.size()).isZero();
+    assertThat(underTest.getHeight()).isEqualTo(500);
+  }
+
+  @Test
+  void update_whenNoConnection() {
+    underTest.update(connection, filtersForm);
+
+    assertThat(underTest.update(null, filtersForm)).isTrue();
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  void indexesAt_onlyCoverArrowsNearTheArea() {
+    underTest.update(connection, filtersForm);
+
+    assertThat(underTest.firstIndexAt(0)).isZero();
+    assertThat(underTest.endIndexAt(300)).isEqualTo(2);
+    assertThat(underTest.firstIndexAt(700)).isEqualTo(3);
+    assertThat(underTest.endIndexAt(10_000)).isEqualTo(7);
+    assertThat(underTest.indexOf(new EasyTCPacket())).isEqualTo(-1);
+    assertThat(underTest.getHeight()).isEqualTo(1100);
+  }
+}
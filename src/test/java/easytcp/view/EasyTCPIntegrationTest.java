@@ -74,7 +74,7 @@ class EasyTCPIntegrationTest extends AssertJSwingTestCaseTemplate {
 
         //asserting file has been successfully read
         frame.label("connection count")
-                .requireText("%s TCP connections\n".formatted(CaptureData.getInstance().getTcpConnectionMap().keySet().size()));
+                .requireText("%s TCP connections\n".formatted(CaptureData.getInstance().getTcpConnectionsEstablished()));
         frame.label("packets count")
                 .requireText("%s packets captured".formatted(CaptureData.getInstance().getPackets().getPackets().size()));
         frame.textBox("connectionsInformation")
@@ -0,0 +1,175 @@
+package easytcp.view;
+
+import easytcp.TestUtils;
+import easytcp.model.TCPFlag;
+import easytcp.model.application.CaptureData;
+import easytcp.model.application.FiltersForm;
+import easytcp.model.packet.EasyTCPacket;
+import easytcp.model.packet.TCPConnection;
+import easytcp.service.PacketDisplayService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PacketLogTableModelTest {
+  private final FiltersForm filtersForm = FiltersForm.getInstance();
+  private final CaptureData captureData = CaptureData.getInstance();
+  private PacketDisplayService packetDisplayService;
+  private PacketLogTableModel underTest;
+  private TCPConnection connection;
+  private final List<TableModelEvent> events = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    captureData.clear();
+    filtersForm.restoreDefaults();
+    packetDisplayService = spy(new PacketDisplayService());
+    underTest = new PacketLogTableModel(packetDisplayService);
+    underTest.addTableModelListener(events::add);
+    connection = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("123.123", "fish.com"),
+      TestUtils.createAddress("333.222", "otherfish.uk"));
+  }
+
+  @AfterEach
+  void tearDown() {
+    captureData.clear();
+    filtersForm.restoreDefaults();
+  }
+
+  private EasyTCPacket addPacket(long seq, String timestamp) {
+    var packet = TestUtils.createEasyTcpDataPacket(connection, true, 1L, seq, 0, List.of(TCPFlag.ACK));
+    packet.setTimestamp(Timestamp.valueOf(timestamp));
+    captureData.getPackets().addPacketToContainer(packet);
+    return packet;
+  }
+
+  @Test
+  void update_appendsRowsForNewPackets() {
+    addPacket(1L, "2018-11-12 13:02:56.1");
+    underTest.update(captureData, filtersForm);
+    addPacket(2L, "2018-11-12 13:02:56.2");
+    events.clear();
+
+    underTest.update(captureData, filtersForm);
+
+    assertThat(underTest.getRowCount()).isEqualTo(2);
+    assertThat(underTest.getPacketAt(1).getSequenceNumber()).isEqualTo(2L);
+    assertThat(events).singleElement()
+      .extracting(TableModelEvent::getType, TableModelEvent::getFirstRow, TableModelEvent::getLastRow)
+      .containsExactly(TableModelEvent.INSERT, 1, 1);
+  }
+
+  @Test
+  void update_rebuildsRowsWhenPacketArrivesLate() {
+    addPacket(1L, "2018-11-12 13:02:56.2");
+    underTest.update(captureData, filtersForm);
+    addPacket(2L, "2018-11-12 13:02:56.1");
+
+    underTest.update(captureData, filtersForm);
+
+    assertThat(underTest.getPacketAt(0).getSequenceNumber()).isEqualTo(2L);
+    assertThat(underTest.getPacketAt(1).getSequenceNumber()).isEqualTo(1L);
+  }
+
+  @Test
+  void update_rebuildsRowsWhenFiltersChange() {
+    addPacket(1L, "2018-11-12 13:02:56.1");
+    underTest.update(captureData, filtersForm);
+    assertThat(underTest.getRowCount()).isEqualTo(1);
+
+    filtersForm.setShowIpv4(false);
+    underTest.update(captureData, filtersForm);
+
+    assertThat(underTest.getRowCount()).isZero();
+  }
+
+  @Test
+  void buildIndex_whenFilteringByHost_onlyTakesPacketsOfMatchingConnections() {
+    var otherConnection = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("123.123", "fish.com"),
+      TestUtils.createAddress("444.555", "shark.com"));
+    captureData.addTcpConnection(connection);
+    captureData.addTcpConnection(otherConnection);
+    var timestamps = List.of("2018-11-12 13:02:56.1", "2018-11-12 13:02:56.2", "2018-11-12 13:02:56.2",
+      "2018-11-12 13:02:56.3");
+    for (int i = 0; i < timestamps.size(); i++) {
+      var pktConnection = i % 2 == 0 ? connection : otherConnection;
+      var packet = TestUtils.createEasyTcpDataPacket(pktConnection, true, 1L, (long) i, 0, List.of(TCPFlag.ACK));
+      packet.setTimestamp(Timestamp.valueOf(timestamps.get(i)));
+      pktConnection.getPacketContainer().addPacketToContainer(packet);
+      captureData.getPackets().addPacketToContainer(packet);
+    }
+    filtersForm.setHostSelected("shark");
+
+    underTest.apply(underTest.buildIndex(captureData, filtersForm));
+
+    assertThat(underTest.getRowCount()).isEqualTo(2);
+    assertThat(underTest.getPacketAt(0).getSequenceNumber()).isEqualTo(1L);
+    assertThat(underTest.getPacketAt(1).getSequenceNumber()).isEqualTo(3L);
+    verify(packetDisplayService, never()).isVisible(any(), any());
+  }
+
+  @Test
+  void getValueAt_formatsRowOnceWhileCached() {
+    addPacket(7L, "2018-11-12 13:02:56.1");
+    underTest.apply(underTest.buildIndex(captureData, filtersForm));
+
+    assertThat(underTest.getValueAt(0, 5)).isEqualTo("7");
+    assertThat(underTest.getValueAt(0, 1)).isEqualTo("IPv4");
+    assertThat(underTest.getColumnName(5)).isEqualTo("Seq");
+
+    verify(packetDisplayService, times(1)).toLogRow(underTest.getPacketAt(0), filtersForm);
+  }
+
+  @Test
+  void getVisibleConnectionCount_countedAsRowsAreAdded() {
+    addPacket(1L, "2018-11-12 13:02:56.1");
+    underTest.update(captureData, filtersForm);
+    assertThat(underTest.getVisibleConnectionCount()).isEqualTo(1);
+    var other = TestUtils.createTCPConnection(true,
+      TestUtils.createAddress("123.124", "fish.com"),
+      TestUtils.createAddress("333.222", "otherfish.uk"));
+    var otherPacket = TestUtils.createEasyTcpDataPacket(other, true, 1L, 2L, 0, List.of(TCPFlag.ACK));
+    otherPacket.setTimestamp(Timestamp.valueOf("2018-11-12 13:02:56.2"));
+    captureData.getPackets().addPacketToContainer(otherPacket);
+    addPacket(3L, "2018-11-12 13:02:56.3");
+
+    underTest.update(captureData, filtersForm);
+
+    assertThat(underTest.getRowCount()).isEqualTo(3);
+    assertThat(underTest.getVisibleConnectionCount()).isEqualTo(2);
+    verify(packetDisplayService, times(3)).isVisible(any(), any());
+  }
+
+  @Test
+  void getSelectedPacketRow() {
+    addPacket(1L, "2018-11-12 13:02:56.1");
+    var second = addPacket(2L, "2018-11-12 13:02:56.2");
+    underTest.update(captureData, filtersForm);
+    assertThat(underTest.getSelectedPacketRow()).isEqualTo(-1);
+
+    second.setSelectedPacket(true);
+    underTest.setSelectedPacket(second);
+
+    assertThat(underTest.getSelectedPacketRow()).isEqualTo(1);
+    assertThat(underTest.isSelectedRow(1)).isTrue();
+    assertThat(underTest.isSelectedRow(0)).isFalse();
+
+    second.setSelectedPacket(false);
+
+    assertThat(underTest.getSelectedPacketRow()).isEqualTo(-1);
+  }
+}
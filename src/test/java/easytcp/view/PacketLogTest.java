@@ -1,7 +1,6 @@
 package easytcp.view;
 
 import easytcp.TestUtils;
-import easytcp.model.PcapCaptureData;
 import easytcp.model.application.ApplicationStatus;
 import easytcp.model.application.CaptureData;
 import easytcp.model.application.FiltersForm;
@@ -80,8 +79,7 @@ class PacketLogTest {
     void newLog_assertDataCleared() throws InterruptedException {
         //needs a size to be present to instantiate an arrow diagram object
         ApplicationStatus.getStatus().setFrameDimension(new Dimension(500, 500));
-        PacketTransformerService.getPcapCaptureData()
-            .add(new PcapCaptureData(null, null, null));
+        new PacketTransformerService().storePcap4jPackets(null, null, null);
         var captureData = CaptureData.getInstance();
         var con = TestUtils.createTCPConnection(false,
             TestUtils.createAddress("123", "fish"),